@@ -28,6 +28,7 @@ import com.jess.arms.di.component.AppComponent;
 import com.jess.arms.di.component.DaggerAppComponent;
 import com.jess.arms.di.module.GlobalConfigModule;
 import com.jess.arms.integration.ConfigModule;
+import com.jess.arms.integration.IRepositoryManager;
 import com.jess.arms.integration.ManifestParser;
 import com.jess.arms.integration.cache.IntelligentCache;
 import com.jess.arms.utils.ArmsUtils;
@@ -40,7 +41,9 @@ import javax.inject.Inject;
 import javax.inject.Named;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import okhttp3.HttpUrl;
 
 /**
  * ================================================
@@ -63,6 +66,16 @@ public class AppDelegate implements App, AppLifecycles {
     @Inject
     @Named("ActivityLifecycleForRxLifecycle")
     protected Application.ActivityLifecycleCallbacks mActivityLifecycleForRxLifecycle;
+    @Inject
+    @Named("WarmUpServices")
+    protected List<Class<?>> mWarmUpServices;
+    @Inject
+    @Nullable
+    protected IRepositoryManager.WarmUpListener mWarmUpListener;
+    @Inject
+    @Nullable
+    @Named("PreconnectUrls")
+    protected List<HttpUrl> mPreconnectUrls;
     private Application mApplication;
     private AppComponent mAppComponent;
     private List<ConfigModule> mModules;
@@ -135,6 +148,16 @@ public class AppDelegate implements App, AppLifecycles {
         for (AppLifecycles lifecycle : mAppLifecycles) {
             lifecycle.onCreate(mApplication);
         }
+        
+        //在后台预热 GlobalConfigModule.Builder#warmUpServices() 中配置的 Retrofit service, 缩短首次请求的耗时
+        if (mWarmUpServices != null && !mWarmUpServices.isEmpty()) {
+            mAppComponent.repositoryManager().warmUpRetrofitServices(mWarmUpServices, mWarmUpListener);
+        }
+        
+        //在后台预先与 BaseUrl 和 GlobalConfigModule.Builder#preconnect() 中配置的服务器建立连接, 首次请求不再需要等待 DNS 解析、TCP 和 TLS 握手
+        if (mPreconnectUrls != null) {
+            mAppComponent.connectionPrewarmer().prewarm(mPreconnectUrls, true);
+        }
     }
     
     @Override
@@ -258,6 +281,9 @@ public class AppDelegate implements App, AppLifecycles {
             //系统正运行于低内存的状态并且你的进程正处于 LRU 列表中最容易被杀掉的位置, 你应该释放任何不影响你的 App 恢复状态的资源
             //低于 API 14 的 App 可以使用 onLowMemory 回调
             //                case TRIM_MEMORY_COMPLETE:
+            
+            //根据内存级别分级缩小框架中所有缓存的容量, App 回到前台时会自动恢复, 缩小的比例可使用 GlobalConfigModule.Builder#trimPolicy() 自定义
+            mAppComponent.cacheRegistry().onTrimMemory(level);
         }
         
         @Override
@@ -275,6 +301,8 @@ public class AppDelegate implements App, AppLifecycles {
         @Override
         public void onLowMemory() {
             //系统正运行于低内存的状态并且你的进程正处于 LRU 列表中最容易被杀掉的位置, 你应该释放任何不影响你的 App 恢复状态的资源
+            //此回调可能发生在前台, 所以缓存只按 TRIM_MEMORY_RUNNING_CRITICAL 缩小, 不会被清空
+            mAppComponent.cacheRegistry().onLowMemory();
         }
     }
 }
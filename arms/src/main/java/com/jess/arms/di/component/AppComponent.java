@@ -22,8 +22,13 @@ import com.jess.arms.base.delegate.AppDelegate;
 import com.jess.arms.di.module.AppModule;
 import com.jess.arms.di.module.ClientModule;
 import com.jess.arms.di.module.GlobalConfigModule;
+import com.jess.arms.http.ConnectionPrewarmer;
+import com.jess.arms.http.timing.HttpTimings;
 import com.jess.arms.integration.IRepositoryManager;
+import com.jess.arms.integration.RequestCoalescer;
 import com.jess.arms.integration.cache.Cache;
+import com.jess.arms.integration.cache.CacheRegistry;
+import com.jess.arms.integration.metrics.MetricsRegistry;
 import com.jess.arms.utils.ArmsUtils;
 
 import java.util.concurrent.ExecutorService;
@@ -80,6 +85,42 @@ public interface AppComponent {
      */
     Cache.Factory<String, Object> cacheFactory();
     
+    /**
+     * 记录所有由 {@link #cacheFactory()} 构建的缓存, 内存紧张时缩小缓存的容量
+     *
+     * @return {@link CacheRegistry}
+     */
+    CacheRegistry cacheRegistry();
+    
+    /**
+     * 合并相同的网络请求, 可用来查看被合并的请求数量
+     *
+     * @return {@link RequestCoalescer}
+     */
+    RequestCoalescer requestCoalescer();
+    
+    /**
+     * 按接口统计的网络请求各个阶段 (DNS, 连接, TLS, 首字节, 读取响应体等) 的耗时分布, 可用于在 App 内查看或上报
+     *
+     * @return {@link HttpTimings}
+     */
+    HttpTimings httpTimings();
+    
+    /**
+     * 进程内的指标注册表, 包含框架内置的缓存命中率, Retrofit service 创建耗时, 网络请求耗时和 Presenter 订阅数等指标
+     * 可通过 {@link MetricsRegistry#writeJson(java.io.Writer, boolean)} 导出快照随自己的埋点一起上报
+     *
+     * @return {@link MetricsRegistry}
+     */
+    MetricsRegistry metrics();
+    
+    /**
+     * 在后台预先与服务器建立连接, 可在网络切换后调用 {@link ConnectionPrewarmer#prewarm(java.util.List, boolean)} 重新预热
+     *
+     * @return {@link ConnectionPrewarmer}
+     */
+    ConnectionPrewarmer connectionPrewarmer();
+    
     /**
      * 返回一个全局公用的线程池,适用于大多数异步需求。
      * 避免多个线程池创建带来的资源消耗。
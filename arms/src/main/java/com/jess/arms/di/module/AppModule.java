@@ -24,6 +24,7 @@ import com.jess.arms.integration.RepositoryManager;
 import com.jess.arms.integration.cache.Cache;
 import com.jess.arms.integration.cache.CacheType;
 import com.jess.arms.integration.lifecycle.ActivityLifecycleForRxLifecycle;
+import com.jess.arms.integration.metrics.MetricsRegistry;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -52,7 +53,14 @@ public abstract class AppModule {
     @Singleton
     @Provides
     static Cache<String, Object> provideExtras(Cache.Factory<String, Object> cacheFactory) {
-        return cacheFactory.build(CacheType.EXTRAS);
+        //extras 中可能存储 Bitmap 等大对象, 按内存字节数而不是条目数限制容量
+        return cacheFactory.build(CacheType.EXTRAS_MEMORY);
+    }
+    
+    @Singleton
+    @Provides
+    static MetricsRegistry provideMetricsRegistry() {
+        return MetricsRegistry.getInstance();
     }
     
     @Singleton
@@ -19,13 +19,19 @@ import android.app.Application;
 import android.content.Context;
 
 import com.jess.arms.http.GlobalHttpHandler;
+import com.jess.arms.http.GzipRequestInterceptor;
+import com.jess.arms.http.limit.ConcurrencyLimitInterceptor;
 import com.jess.arms.http.log.RequestInterceptor;
+import com.jess.arms.http.priority.PriorityCallFactory;
+import com.jess.arms.http.timing.HttpTimingListener;
+import com.jess.arms.http.timing.HttpTimings;
 
 import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 import androidx.annotation.NonNull;
@@ -33,10 +39,12 @@ import androidx.annotation.Nullable;
 import dagger.Binds;
 import dagger.Module;
 import dagger.Provides;
+import okhttp3.ConnectionPool;
 import okhttp3.Dispatcher;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Response;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
@@ -52,22 +60,25 @@ import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
  */
 @Module
 public abstract class ClientModule {
-    private static final int TIME_OUT = 10;
     
     /**
      * 提供 {@link Retrofit}
      *
-     * @param application   {@link Application}
-     * @param configuration {@link RetrofitConfiguration}
-     * @param builder       {@link Retrofit.Builder}
-     * @param client        {@link OkHttpClient}
-     * @param httpUrl       {@link HttpUrl}
+     * @param application           {@link Application}
+     * @param configuration         {@link RetrofitConfiguration}
+     * @param builder               {@link Retrofit.Builder}
+     * @param client                {@link OkHttpClient}
+     * @param httpUrl               {@link HttpUrl}
+     * @param prefetchMaxRequests   {@link com.jess.arms.http.priority.Priority#PREFETCH} 的最大并发数
+     * @param backgroundMaxRequests {@link com.jess.arms.http.priority.Priority#BACKGROUND} 的最大并发数
      * @return {@link Retrofit}
      */
     @Singleton
     @Provides
-    static Retrofit provideRetrofit(Application application, @Nullable RetrofitConfiguration configuration, Retrofit.Builder builder, OkHttpClient client, HttpUrl httpUrl) {
-        builder.baseUrl(httpUrl).client(client);
+    static Retrofit provideRetrofit(Application application, @Nullable RetrofitConfiguration configuration, Retrofit.Builder builder, OkHttpClient client, HttpUrl httpUrl
+        , @Named("PrefetchMaxRequests") int prefetchMaxRequests, @Named("BackgroundMaxRequests") int backgroundMaxRequests) {
+        //按优先级将请求分配到不同的通道, 低优先级的请求限制并发数, 避免与用户正在等待的请求争抢
+        builder.baseUrl(httpUrl).callFactory(new PriorityCallFactory(client, prefetchMaxRequests, backgroundMaxRequests));
         
         if (configuration != null) {
             configuration.configRetrofit(application, builder);
@@ -80,24 +91,42 @@ public abstract class ClientModule {
     /**
      * 提供 {@link OkHttpClient}
      *
-     * @param application     {@link Application}
-     * @param configuration   {@link OkhttpConfiguration}
-     * @param builder         {@link OkHttpClient.Builder}
-     * @param intercept       {@link Interceptor}
-     * @param interceptors    {@link List<Interceptor>}
-     * @param handler         {@link GlobalHttpHandler}
-     * @param executorService {@link ExecutorService}
+     * @param application      {@link Application}
+     * @param configuration    {@link OkhttpConfiguration}
+     * @param builder          {@link OkHttpClient.Builder}
+     * @param intercept        {@link Interceptor}
+     * @param interceptors     {@link List<Interceptor>}
+     * @param handler          {@link GlobalHttpHandler}
+     * @param gzipInterceptor  {@link GzipRequestInterceptor}
+     * @param limitInterceptor {@link ConcurrencyLimitInterceptor}
+     * @param httpTimings      {@link HttpTimings}
+     * @param executorService  {@link ExecutorService}
+     * @param connectionPool   {@link ConnectionPool}
+     * @param protocols        支持的协议, 为 {@code null} 时使用 OkHttp 的默认值
+     * @param timeoutMillis    连接超时和读取超时, 单位毫秒
      * @return {@link OkHttpClient}
      */
     @Singleton
     @Provides
     static OkHttpClient provideClient(Application application, @Nullable OkhttpConfiguration configuration, OkHttpClient.Builder builder, Interceptor intercept
-        , @Nullable List<Interceptor> interceptors, @Nullable GlobalHttpHandler handler, ExecutorService executorService) {
+        , @Nullable List<Interceptor> interceptors, @Nullable GlobalHttpHandler handler, @Nullable GzipRequestInterceptor gzipInterceptor
+        , @Nullable ConcurrencyLimitInterceptor limitInterceptor, HttpTimings httpTimings, ExecutorService executorService
+        , ConnectionPool connectionPool, @Nullable List<Protocol> protocols, @Named("HttpTimeoutMillis") long timeoutMillis) {
         builder
-            .connectTimeout(TIME_OUT, TimeUnit.SECONDS)
-            .readTimeout(TIME_OUT, TimeUnit.SECONDS)
+            .connectTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+            .readTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+            .connectionPool(connectionPool)
             .addNetworkInterceptor(intercept);
         
+        if (protocols != null) {
+            builder.protocols(protocols);
+        }
+        
+        //在打印日志的拦截器之后压缩请求体, 使日志中打印的是压缩前的内容
+        if (gzipInterceptor != null) {
+            builder.addNetworkInterceptor(gzipInterceptor);
+        }
+        
         if (handler != null) {
             builder.addInterceptor(new Interceptor() {
                 @Override
@@ -117,9 +146,17 @@ public abstract class ClientModule {
         //为 OkHttp 设置默认的线程池
         builder.dispatcher(new Dispatcher(executorService));
         
+        //记录每个请求各个阶段的耗时, 如果在 OkhttpConfiguration 中设置了其他的 EventListener.Factory 则会被替换
+        builder.eventListenerFactory(HttpTimingListener.factory(httpTimings));
+        
         if (configuration != null) {
             configuration.configOkhttp(application, builder);
         }
+        
+        //在 OkhttpConfiguration 添加的拦截器 (比如替换 BaseUrl 的拦截器) 之后再限制并发数, 使用最终发往的域名
+        if (limitInterceptor != null) {
+            builder.addInterceptor(limitInterceptor);
+        }
         return builder.build();
     }
     
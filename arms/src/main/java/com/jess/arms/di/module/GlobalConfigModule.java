@@ -19,32 +19,61 @@ import android.app.Application;
 import android.text.TextUtils;
 
 import com.jess.arms.http.BaseUrl;
+import com.jess.arms.http.ConnectionPrewarmer;
 import com.jess.arms.http.GlobalHttpHandler;
+import com.jess.arms.http.GzipRequestInterceptor;
+import com.jess.arms.http.limit.ConcurrencyLimitInterceptor;
+import com.jess.arms.http.limit.LimitConfig;
+import com.jess.arms.http.log.AsyncFormatPrinter;
 import com.jess.arms.http.log.DefaultFormatPrinter;
 import com.jess.arms.http.log.FormatPrinter;
 import com.jess.arms.http.log.RequestInterceptor;
+import com.jess.arms.http.priority.Priority;
+import com.jess.arms.http.priority.PriorityCallFactory;
+import com.jess.arms.http.priority.PriorityExecutor;
+import com.jess.arms.integration.IRepositoryManager;
+import com.jess.arms.integration.RequestCoalescer;
 import com.jess.arms.integration.cache.Cache;
+import com.jess.arms.integration.cache.CacheRegistry;
 import com.jess.arms.integration.cache.CacheType;
+import com.jess.arms.integration.cache.Codec;
+import com.jess.arms.integration.cache.DiskCache;
+import com.jess.arms.integration.cache.EvictionPolicy;
+import com.jess.arms.integration.cache.ExpiringCache;
+import com.jess.arms.integration.cache.ExpiringCacheType;
 import com.jess.arms.integration.cache.IntelligentCache;
 import com.jess.arms.integration.cache.LruCache;
+import com.jess.arms.integration.cache.MemoryCacheType;
+import com.jess.arms.integration.cache.ResponseCache;
+import com.jess.arms.integration.cache.SerializableCodec;
+import com.jess.arms.integration.cache.TrimPolicy;
+import com.jess.arms.integration.cache.Weighers;
+import com.jess.arms.integration.metrics.MetricsRegistry;
 import com.jess.arms.utils.Preconditions;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import dagger.Module;
 import dagger.Provides;
+import okhttp3.ConnectionPool;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
+import okhttp3.Protocol;
 import okhttp3.internal.Util;
 
 /**
@@ -66,9 +95,33 @@ public class GlobalConfigModule {
     private ClientModule.RetrofitConfiguration mRetrofitConfiguration;
     private ClientModule.OkhttpConfiguration mOkhttpConfiguration;
     private RequestInterceptor.Level mPrintHttpLogLevel;
+    private long mResponseCaptureLimit;
+    private long mGzipRequestMinBytes;
+    private List<String> mGzipRequestHosts;
     private FormatPrinter mFormatPrinter;
+    private int mAsyncPrintCapacity;
     private Cache.Factory<String, Object> mCacheFactory;
+    private EvictionPolicy mEvictionPolicy;
+    private TrimPolicy mTrimPolicy;
+    private File mDiskCacheDirectory;
+    private long mDiskCacheMaxBytes;
+    private Codec<Object> mDiskCacheCodec;
+    private File mResponseCacheDirectory;
+    private long mResponseCacheMaxBytes;
+    private Codec<Object> mResponseCacheCodec;
+    private boolean mRequestCoalescing;
+    private List<Class<?>> mWarmUpServices;
+    private IRepositoryManager.WarmUpListener mWarmUpListener;
     private ExecutorService mExecutorService;
+    private int mPrefetchMaxRequests;
+    private int mBackgroundMaxRequests;
+    private LimitConfig mDefaultLimitConfig;
+    private Map<String, LimitConfig> mHostLimitConfigs;
+    private long mHttpTimeoutMillis;
+    private int mMaxIdleConnections;
+    private long mKeepAliveMillis;
+    private List<Protocol> mProtocols;
+    private List<HttpUrl> mPreconnectUrls;
     
     private GlobalConfigModule(Builder builder) {
         this.mApiUrl = builder.apiUrl;
@@ -78,9 +131,33 @@ public class GlobalConfigModule {
         this.mRetrofitConfiguration = builder.retrofitConfiguration;
         this.mOkhttpConfiguration = builder.okhttpConfiguration;
         this.mPrintHttpLogLevel = builder.printHttpLogLevel;
+        this.mResponseCaptureLimit = builder.responseCaptureLimit;
+        this.mGzipRequestMinBytes = builder.gzipRequestMinBytes;
+        this.mGzipRequestHosts = builder.gzipRequestHosts;
         this.mFormatPrinter = builder.formatPrinter;
+        this.mAsyncPrintCapacity = builder.asyncPrintCapacity;
         this.mCacheFactory = builder.cacheFactory;
+        this.mEvictionPolicy = builder.evictionPolicy;
+        this.mTrimPolicy = builder.trimPolicy;
+        this.mDiskCacheDirectory = builder.diskCacheDirectory;
+        this.mDiskCacheMaxBytes = builder.diskCacheMaxBytes;
+        this.mDiskCacheCodec = builder.diskCacheCodec;
+        this.mResponseCacheDirectory = builder.responseCacheDirectory;
+        this.mResponseCacheMaxBytes = builder.responseCacheMaxBytes;
+        this.mResponseCacheCodec = builder.responseCacheCodec;
+        this.mRequestCoalescing = builder.requestCoalescing;
+        this.mWarmUpServices = builder.warmUpServices;
+        this.mWarmUpListener = builder.warmUpListener;
         this.mExecutorService = builder.executorService;
+        this.mPrefetchMaxRequests = builder.prefetchMaxRequests;
+        this.mBackgroundMaxRequests = builder.backgroundMaxRequests;
+        this.mDefaultLimitConfig = builder.defaultLimitConfig;
+        this.mHostLimitConfigs = builder.hostLimitConfigs;
+        this.mHttpTimeoutMillis = builder.httpTimeoutMillis;
+        this.mMaxIdleConnections = builder.maxIdleConnections;
+        this.mKeepAliveMillis = builder.keepAliveMillis;
+        this.mProtocols = builder.protocols;
+        this.mPreconnectUrls = builder.preconnectUrls;
     }
     
     public static Builder builder() {
@@ -143,47 +220,260 @@ public class GlobalConfigModule {
         return mPrintHttpLogLevel == null ? RequestInterceptor.Level.ALL : mPrintHttpLogLevel;
     }
     
+    /**
+     * 提供 {@link RequestInterceptor} 捕获响应体时最多保留的字节数, 小于等于 0 时读取整个响应体
+     *
+     * @return 最多保留的字节数
+     */
+    @Singleton
+    @Provides
+    @Named("ResponseCaptureLimit")
+    long provideResponseCaptureLimit() {
+        return mResponseCaptureLimit;
+    }
+    
+    /**
+     * 提供压缩请求体的 {@link GzipRequestInterceptor}, 没有通过 {@link Builder#gzipRequestBody(long, String...)} 设置支持的域名时返回 {@code null}
+     *
+     * @return {@link GzipRequestInterceptor}
+     */
+    @Singleton
+    @Provides
+    @Nullable
+    GzipRequestInterceptor provideGzipRequestInterceptor() {
+        return mGzipRequestHosts == null ? null : new GzipRequestInterceptor(mGzipRequestMinBytes, mGzipRequestHosts);
+    }
+    
+    /**
+     * 提供按域名自适应限制并发请求数的 {@link ConcurrencyLimitInterceptor}, 没有通过 {@link Builder#concurrencyLimit(LimitConfig)}
+     * 或 {@link Builder#concurrencyLimit(String, LimitConfig)} 设置时返回 {@code null}
+     *
+     * @param metrics {@link MetricsRegistry}
+     * @return {@link ConcurrencyLimitInterceptor}
+     */
+    @Singleton
+    @Provides
+    @Nullable
+    ConcurrencyLimitInterceptor provideConcurrencyLimitInterceptor(MetricsRegistry metrics) {
+        if (mDefaultLimitConfig == null && mHostLimitConfigs == null) {
+            return null;
+        }
+        return new ConcurrencyLimitInterceptor(mDefaultLimitConfig
+            , mHostLimitConfigs == null ? Collections.<String, LimitConfig>emptyMap() : mHostLimitConfigs, metrics);
+    }
+    
     @Singleton
     @Provides
     FormatPrinter provideFormatPrinter() {
-        return mFormatPrinter == null ? new DefaultFormatPrinter() : mFormatPrinter;
+        final FormatPrinter printer = mFormatPrinter == null ? new DefaultFormatPrinter() : mFormatPrinter;
+        return mAsyncPrintCapacity > 0 ? new AsyncFormatPrinter(printer, mAsyncPrintCapacity) : printer;
     }
     
     @Singleton
     @Provides
-    Cache.Factory<String, Object> provideCacheFactory(Application application) {
-        return mCacheFactory == null ? new Cache.Factory<String, Object>() {
+    TrimPolicy provideTrimPolicy() {
+        return mTrimPolicy == null ? TrimPolicy.DEFAULT : mTrimPolicy;
+    }
+    
+    /**
+     * 提供框架中所有缓存的构建工厂, 构建出的缓存会注册至 {@link CacheRegistry}, 以便在内存紧张时缩小容量
+     *
+     * @return {@link Cache.Factory}
+     */
+    @Singleton
+    @Provides
+    Cache.Factory<String, Object> provideCacheFactory(Application application, CacheRegistry registry, ExecutorService executorService) {
+        return registry.wrap(mCacheFactory == null ? createDefaultCacheFactory(application, executorService) : mCacheFactory);
+    }
+    
+    private Cache.Factory<String, Object> createDefaultCacheFactory(Application application, ExecutorService executorService) {
+        final EvictionPolicy policy = mEvictionPolicy == null ? EvictionPolicy.LRU : mEvictionPolicy;
+        return new Cache.Factory<String, Object>() {
             
             @NonNull
             @Override
             public Cache<String, Object> build(CacheType type) {
                 //若想自定义 LruCache 的 size, 或者不想使用 LruCache, 想使用自己自定义的策略
                 //使用 GlobalConfigModule.Builder#cacheFactory() 即可扩展
+                //只想更换淘汰策略, 使用 GlobalConfigModule.Builder#evictionPolicy() 即可
+                final CacheType baseType = type instanceof ExpiringCacheType ? ((ExpiringCacheType) type).getCacheType() : type;
+                Cache<String, Object> cache;
+                if (baseType instanceof MemoryCacheType) {
+                    //以内存字节数为单位的 CacheType 使用按字节估算 size 的 LruCache
+                    cache = new LruCache<>(((MemoryCacheType) baseType).calculateCacheBytes(application), Weighers.retainedBytes());
+                } else {
+                    cache = policy.newCache(baseType.calculateCacheSize(application));
+                }
+                if (type instanceof ExpiringCacheType) {
+                    //附加了过期策略的 CacheType 使用 ExpiringCache 包装, 配置了 refreshAfterWrite 时以低优先级在后台刷新
+                    final ExpiringCacheType expiringType = (ExpiringCacheType) type;
+                    final Executor refreshExecutor = executorService instanceof PriorityExecutor
+                        ? ((PriorityExecutor) executorService).withPriority(Priority.BACKGROUND) : executorService;
+                    cache = new ExpiringCache<>(cache, expiringType.getExpiryPolicy(), expiringType.getRefresher(), refreshExecutor);
+                }
                 switch (type.getCacheTypeId()) {
                     //Activity、Fragment 以及 Extras 使用 IntelligentCache (具有 LruCache 和 可永久存储数据的 Map)
                     case CacheType.EXTRAS_TYPE_ID:
+                        //只有全局唯一的 Extras 可以使用磁盘缓存, DiskCache 不记录过期时间, 所以附加了过期策略的 CacheType 不使用
+                        if (mDiskCacheDirectory != null && !(type instanceof ExpiringCacheType)) {
+                            return new IntelligentCache<>(cache, createDiskCache(type));
+                        }
+                        return new IntelligentCache<>(cache);
                     case CacheType.ACTIVITY_CACHE_TYPE_ID:
                     case CacheType.FRAGMENT_CACHE_TYPE_ID:
-                        return new IntelligentCache<>(type.calculateCacheSize(application));
+                        return new IntelligentCache<>(cache);
                     //其余使用 LruCache (当达到最大容量时可根据 LRU 算法抛弃不合规数据)
                     default:
-                        return new LruCache<>(type.calculateCacheSize(application));
+                        return cache;
                 }
             }
-        } : mCacheFactory;
+        };
     }
     
     /**
      * 返回一个全局公用的线程池,适用于大多数异步需求。
      * 避免多个线程池创建带来的资源消耗。
+     * 默认为线程数有上限的 {@link PriorityExecutor}, 等待执行的任务按 {@link Priority} 排序
      *
      * @return {@link Executor}
      */
     @Singleton
     @Provides
     ExecutorService provideExecutorService() {
-        return mExecutorService == null ? new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
-            new SynchronousQueue<Runnable>(), Util.threadFactory("Arms Executor", false)) : mExecutorService;
+        return mExecutorService == null ? new PriorityExecutor(PriorityExecutor.defaultPoolSize(),
+            Util.threadFactory("Arms Executor", false)) : mExecutorService;
+    }
+    
+    /**
+     * 提供 {@link Priority#PREFETCH} 的网络请求的最大并发数
+     *
+     * @return 最大并发数
+     * @see PriorityCallFactory
+     */
+    @Singleton
+    @Provides
+    @Named("PrefetchMaxRequests")
+    int providePrefetchMaxRequests() {
+        return mPrefetchMaxRequests <= 0 ? PriorityCallFactory.DEFAULT_PREFETCH_MAX_REQUESTS : mPrefetchMaxRequests;
+    }
+    
+    /**
+     * 提供 {@link Priority#BACKGROUND} 的网络请求的最大并发数
+     *
+     * @return 最大并发数
+     * @see PriorityCallFactory
+     */
+    @Singleton
+    @Provides
+    @Named("BackgroundMaxRequests")
+    int provideBackgroundMaxRequests() {
+        return mBackgroundMaxRequests <= 0 ? PriorityCallFactory.DEFAULT_BACKGROUND_MAX_REQUESTS : mBackgroundMaxRequests;
+    }
+    
+    /**
+     * 提供 Cache service 所使用的网络请求结果缓存, 默认在 {@link Application#getCacheDir()} 中使用 10 MB 的磁盘缓存
+     *
+     * @return {@link ResponseCache}
+     */
+    @Singleton
+    @Provides
+    ResponseCache provideResponseCache(Application application, Cache.Factory<String, Object> cacheFactory) {
+        final File directory = mResponseCacheDirectory == null
+            ? new File(application.getCacheDir(), "ResponseCache") : mResponseCacheDirectory;
+        final long maxBytes = mResponseCacheMaxBytes <= 0 ? 10 * 1024 * 1024 : mResponseCacheMaxBytes;
+        final DiskCache<Object> diskCache = new DiskCache<>(directory, maxBytes,
+            mResponseCacheCodec == null ? new SerializableCodec<>() : mResponseCacheCodec,
+            Executors.newSingleThreadExecutor(Util.threadFactory("Arms ResponseCache", false)));
+        return new ResponseCache(cacheFactory.build(CacheType.RESPONSE_CACHE), diskCache);
+    }
+    
+    /**
+     * 提供合并相同网络请求的 {@link RequestCoalescer}, 默认不开启
+     *
+     * @return {@link RequestCoalescer}
+     */
+    @Singleton
+    @Provides
+    RequestCoalescer provideRequestCoalescer() {
+        return new RequestCoalescer(mRequestCoalescing);
+    }
+    
+    /**
+     * 提供 App 启动时需要预热的 Retrofit service
+     *
+     * @return 需要预热的 Retrofit service class
+     * @see IRepositoryManager#warmUpRetrofitServices(List, IRepositoryManager.WarmUpListener)
+     */
+    @Singleton
+    @Provides
+    @Named("WarmUpServices")
+    List<Class<?>> provideWarmUpServices() {
+        return mWarmUpServices == null ? Collections.<Class<?>>emptyList() : mWarmUpServices;
+    }
+    
+    @Singleton
+    @Provides
+    @Nullable
+    IRepositoryManager.WarmUpListener provideWarmUpListener() {
+        return mWarmUpListener;
+    }
+    
+    /**
+     * 提供 {@link okhttp3.OkHttpClient} 的连接超时和读取超时, 默认为 10 秒
+     *
+     * @return 超时时间, 单位毫秒
+     */
+    @Singleton
+    @Provides
+    @Named("HttpTimeoutMillis")
+    long provideHttpTimeoutMillis() {
+        return mHttpTimeoutMillis <= 0 ? TimeUnit.SECONDS.toMillis(10) : mHttpTimeoutMillis;
+    }
+    
+    /**
+     * 提供 {@link okhttp3.OkHttpClient} 的连接池, 默认与 OkHttp 一致, 最多保留 5 个空闲连接, 空闲连接存活 5 分钟
+     *
+     * @return {@link ConnectionPool}
+     */
+    @Singleton
+    @Provides
+    ConnectionPool provideConnectionPool() {
+        return mMaxIdleConnections <= 0 ? new ConnectionPool()
+            : new ConnectionPool(mMaxIdleConnections, mKeepAliveMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 提供 {@link okhttp3.OkHttpClient} 支持的协议, 为 {@code null} 时使用 OkHttp 的默认值 (HTTP/2 和 HTTP/1.1)
+     *
+     * @return 支持的协议
+     */
+    @Singleton
+    @Provides
+    @Nullable
+    List<Protocol> provideProtocols() {
+        return mProtocols;
+    }
+    
+    /**
+     * 提供 App 启动时除 BaseUrl 外需要预先建立连接的 url, 没有通过 {@link Builder#preconnect(String...)} 开启时返回 {@code null}
+     * 不依赖 {@link HttpUrl}, BaseUrl 由 {@link ConnectionPrewarmer} 在后台的预热任务中解析, 避免在 {@link BaseUrl#url()} 可用之前就提前确定了 BaseUrl
+     *
+     * @return 需要预先建立连接的 url
+     * @see ConnectionPrewarmer
+     */
+    @Singleton
+    @Provides
+    @Nullable
+    @Named("PreconnectUrls")
+    List<HttpUrl> providePreconnectUrls() {
+        return mPreconnectUrls == null ? null : new ArrayList<>(mPreconnectUrls);
+    }
+    
+    private DiskCache<Object> createDiskCache(CacheType type) {
+        //DiskCache 需要按提交的顺序写入, 所以每个 DiskCache 使用单独的单线程线程池
+        return new DiskCache<>(new File(mDiskCacheDirectory, String.valueOf(type.getCacheTypeId())), mDiskCacheMaxBytes,
+            mDiskCacheCodec == null ? new SerializableCodec<>() : mDiskCacheCodec,
+            Executors.newSingleThreadExecutor(Util.threadFactory("Arms DiskCache", false)));
     }
     
     public static final class Builder {
@@ -194,9 +484,33 @@ public class GlobalConfigModule {
         private ClientModule.RetrofitConfiguration retrofitConfiguration;
         private ClientModule.OkhttpConfiguration okhttpConfiguration;
         private RequestInterceptor.Level printHttpLogLevel;
+        private long responseCaptureLimit;
+        private long gzipRequestMinBytes;
+        private List<String> gzipRequestHosts;
         private FormatPrinter formatPrinter;
+        private int asyncPrintCapacity;
         private Cache.Factory<String, Object> cacheFactory;
+        private EvictionPolicy evictionPolicy;
+        private TrimPolicy trimPolicy;
+        private File diskCacheDirectory;
+        private long diskCacheMaxBytes;
+        private Codec<Object> diskCacheCodec;
+        private File responseCacheDirectory;
+        private long responseCacheMaxBytes;
+        private Codec<Object> responseCacheCodec;
+        private boolean requestCoalescing;
+        private List<Class<?>> warmUpServices;
+        private IRepositoryManager.WarmUpListener warmUpListener;
         private ExecutorService executorService;
+        private int prefetchMaxRequests;
+        private int backgroundMaxRequests;
+        private LimitConfig defaultLimitConfig;
+        private Map<String, LimitConfig> hostLimitConfigs;
+        private long httpTimeoutMillis;
+        private int maxIdleConnections;
+        private long keepAliveMillis;
+        private List<Protocol> protocols;
+        private List<HttpUrl> preconnectUrls;
         
         private Builder() {
         }
@@ -243,21 +557,298 @@ public class GlobalConfigModule {
             return this;
         }
         
+        /**
+         * 开启 {@link RequestInterceptor} 限制内存的捕获模式, 日志中的响应结果最多保留 {@code maxBytes} 个字节, 超出的部分被截断
+         * 响应体在被读取的同时复制, 不会延迟 Retrofit 读取响应体; {@link GlobalHttpHandler} 读取的响应结果不受此限制
+         * 默认不开启, 会将整个响应体读取至内存
+         *
+         * @param maxBytes 最多保留的字节数
+         * @return {@link Builder}
+         */
+        public Builder responseCaptureLimit(long maxBytes) {
+            Preconditions.checkArgument(maxBytes > 0, "MaxBytes must be > 0");
+            this.responseCaptureLimit = maxBytes;
+            return this;
+        }
+        
+        /**
+         * 使用 gzip 压缩发往 {@code hosts} 的请求体, 请求体在发送的同时被压缩, 不会预先读入内存, 默认不压缩
+         * 只有长度大于或等于 {@code minBytes} 或长度未知的请求体才会被压缩, 请确认这些域名的服务器支持 {@code Content-Encoding: gzip}
+         *
+         * @param minBytes 压缩的阈值, 比如 1024
+         * @param hosts    支持解压请求体的域名, 可以使用 {@code *.example.com} 的形式匹配所有子域名
+         * @return {@link Builder}
+         * @see GzipRequestInterceptor
+         */
+        public Builder gzipRequestBody(long minBytes, String... hosts) {
+            Preconditions.checkArgument(minBytes >= 0, "MinBytes must be >= 0");
+            Preconditions.checkNotNull(hosts, "hosts can not be null.");
+            if (gzipRequestHosts == null) {
+                gzipRequestHosts = new ArrayList<>();
+            }
+            this.gzipRequestHosts.addAll(Arrays.asList(hosts));
+            this.gzipRequestMinBytes = minBytes;
+            return this;
+        }
+        
+        /**
+         * 按域名自适应限制并发请求数, 此配置用于所有没有通过 {@link #concurrencyLimit(String, LimitConfig)} 单独配置的域名, 默认不限制
+         *
+         * @param config {@link LimitConfig}
+         * @return {@link Builder}
+         * @see ConcurrencyLimitInterceptor
+         */
+        public Builder concurrencyLimit(LimitConfig config) {
+            this.defaultLimitConfig = Preconditions.checkNotNull(config, LimitConfig.class.getCanonicalName() + "can not be null.");
+            return this;
+        }
+        
+        /**
+         * 自适应限制发往 {@code host} 的并发请求数, 每个域名的并发上限独立调整
+         *
+         * @param host   域名, 比如 {@code api.github.com}
+         * @param config {@link LimitConfig}
+         * @return {@link Builder}
+         * @see ConcurrencyLimitInterceptor
+         */
+        public Builder concurrencyLimit(String host, LimitConfig config) {
+            Preconditions.checkNotNull(host, "host can not be null.");
+            Preconditions.checkNotNull(config, LimitConfig.class.getCanonicalName() + "can not be null.");
+            if (hostLimitConfigs == null) {
+                hostLimitConfigs = new HashMap<>();
+            }
+            this.hostLimitConfigs.put(host, config);
+            return this;
+        }
+        
+        /**
+         * 设置连接超时和读取超时, 默认为 10 秒
+         *
+         * @param timeout  超时时间
+         * @param timeUnit {@link TimeUnit}
+         * @return {@link Builder}
+         */
+        public Builder httpTimeout(long timeout, TimeUnit timeUnit) {
+            Preconditions.checkArgument(timeout > 0, "Timeout must be > 0");
+            Preconditions.checkNotNull(timeUnit, "timeUnit can not be null.");
+            this.httpTimeoutMillis = timeUnit.toMillis(timeout);
+            return this;
+        }
+        
+        /**
+         * 设置连接池最多保留的空闲连接数和空闲连接的存活时间, 默认为 5 个和 5 分钟
+         * 使用 {@link #preconnect(String...)} 时, 存活时间应大于 App 启动至第一个请求发出的时间, 否则预先建立的连接会被关闭
+         *
+         * @param maxIdleConnections 最多保留的空闲连接数
+         * @param keepAliveDuration  空闲连接的存活时间
+         * @param timeUnit           {@link TimeUnit}
+         * @return {@link Builder}
+         */
+        public Builder connectionPool(int maxIdleConnections, long keepAliveDuration, TimeUnit timeUnit) {
+            Preconditions.checkArgument(maxIdleConnections > 0, "MaxIdleConnections must be > 0");
+            Preconditions.checkArgument(keepAliveDuration > 0, "KeepAliveDuration must be > 0");
+            Preconditions.checkNotNull(timeUnit, "timeUnit can not be null.");
+            this.maxIdleConnections = maxIdleConnections;
+            this.keepAliveMillis = timeUnit.toMillis(keepAliveDuration);
+            return this;
+        }
+        
+        /**
+         * 设置支持的协议, 按优先顺序排列, 比如服务器的 HTTP/2 实现有问题时可以只使用 {@link Protocol#HTTP_1_1}
+         * 必须包含 {@link Protocol#HTTP_1_1}, 或者只包含 {@link Protocol#H2_PRIOR_KNOWLEDGE}
+         *
+         * @param protocols 支持的协议
+         * @return {@link Builder}
+         */
+        public Builder protocols(Protocol... protocols) {
+            Preconditions.checkNotNull(protocols, "protocols can not be null.");
+            final List<Protocol> list = Arrays.asList(protocols);
+            Preconditions.checkArgument(list.contains(Protocol.HTTP_1_1)
+                    || (list.size() == 1 && list.contains(Protocol.H2_PRIOR_KNOWLEDGE)),
+                "protocols must contain http/1.1 or only h2_prior_knowledge");
+            this.protocols = new ArrayList<>(list);
+            return this;
+        }
+        
+        /**
+         * App 启动时在后台预先与 BaseUrl 和 {@code urls} 所在的服务器建立连接, 缩短首次请求的耗时, 默认不开启
+         * 不传入 {@code urls} 时只预热 BaseUrl, BaseUrl 在后台的预热任务中才会被确定, 不会早于 {@link BaseUrl#url()} 可用的时机
+         *
+         * @param urls 除 BaseUrl 外需要预先建立连接的 url, 比如 {@code https://img.example.com}
+         * @return {@link Builder}
+         * @see ConnectionPrewarmer
+         */
+        public Builder preconnect(String... urls) {
+            Preconditions.checkNotNull(urls, "urls can not be null.");
+            if (preconnectUrls == null) {
+                preconnectUrls = new ArrayList<>();
+            }
+            for (String url : urls) {
+                final HttpUrl httpUrl = HttpUrl.parse(url);
+                Preconditions.checkArgument(httpUrl != null, "Invalid url: %s", url);
+                this.preconnectUrls.add(httpUrl);
+            }
+            return this;
+        }
+        
         public Builder formatPrinter(FormatPrinter formatPrinter) {
             this.formatPrinter = Preconditions.checkNotNull(formatPrinter, FormatPrinter.class.getCanonicalName() + "can not be null.");
             return this;
         }
         
+        /**
+         * 在后台线程中打印 Http 日志, 使用 {@link AsyncFormatPrinter} 包装 {@link FormatPrinter}, 默认在网络请求的线程中打印
+         *
+         * @param capacity 等待打印的日志最多能缓存的条数, 超出时丢弃最旧的日志, 比如 {@link AsyncFormatPrinter#DEFAULT_CAPACITY}
+         * @return {@link Builder}
+         */
+        public Builder printHttpLogAsync(int capacity) {
+            Preconditions.checkArgument(capacity > 0, "Capacity must be > 0");
+            this.asyncPrintCapacity = capacity;
+            return this;
+        }
+        
         public Builder cacheFactory(Cache.Factory<String, Object> cacheFactory) {
             this.cacheFactory = cacheFactory;
             return this;
         }
         
+        /**
+         * 设置框架默认的 {@link Cache.Factory} 所使用的淘汰策略, 使用 {@link #cacheFactory(Cache.Factory)} 时此设置无效
+         *
+         * @param evictionPolicy {@link EvictionPolicy}
+         * @return {@link Builder}
+         */
+        public Builder evictionPolicy(EvictionPolicy evictionPolicy) {
+            this.evictionPolicy = Preconditions.checkNotNull(evictionPolicy, EvictionPolicy.class.getCanonicalName() + "can not be null.");
+            return this;
+        }
+        
+        /**
+         * 设置内存紧张时缩小缓存容量的策略, 默认为 {@link TrimPolicy#DEFAULT}
+         *
+         * @param trimPolicy {@link TrimPolicy}
+         * @return {@link Builder}
+         */
+        public Builder trimPolicy(TrimPolicy trimPolicy) {
+            this.trimPolicy = Preconditions.checkNotNull(trimPolicy, TrimPolicy.class.getCanonicalName() + "can not be null.");
+            return this;
+        }
+        
+        /**
+         * 为框架默认的 {@link Cache.Factory} 构建的 extras ({@link CacheType#EXTRAS_MEMORY}) 开启二级磁盘缓存, 默认不开启
+         * 使用 {@link #cacheFactory(Cache.Factory)} 时此设置无效
+         *
+         * @param directory 存放磁盘缓存的目录, 比如 {@code new File(context.getCacheDir(), "arms")}
+         * @param maxBytes  磁盘缓存的最大字节数
+         * @return {@link Builder}
+         */
+        public Builder diskCache(File directory, long maxBytes) {
+            return diskCache(directory, maxBytes, new SerializableCodec<>());
+        }
+        
+        /**
+         * 为框架默认的 {@link Cache.Factory} 构建的 extras ({@link CacheType#EXTRAS_MEMORY}) 开启二级磁盘缓存, 默认不开启
+         * 使用 {@link #cacheFactory(Cache.Factory)} 时此设置无效
+         *
+         * @param directory 存放磁盘缓存的目录, 比如 {@code new File(context.getCacheDir(), "arms")}
+         * @param maxBytes  磁盘缓存的最大字节数
+         * @param codec     序列化 {@code value} 的 {@link Codec}
+         * @return {@link Builder}
+         */
+        public Builder diskCache(File directory, long maxBytes, Codec<Object> codec) {
+            Preconditions.checkArgument(maxBytes > 0, "MaxBytes must be > 0");
+            this.diskCacheDirectory = Preconditions.checkNotNull(directory, "directory can not be null.");
+            this.diskCacheCodec = Preconditions.checkNotNull(codec, Codec.class.getCanonicalName() + "can not be null.");
+            this.diskCacheMaxBytes = maxBytes;
+            return this;
+        }
+        
+        /**
+         * 设置 Cache service 所使用的 {@link ResponseCache} 的磁盘缓存
+         * 默认为 {@link Application#getCacheDir()} 中的 ResponseCache 目录, 最大 10 MB, 使用 {@link SerializableCodec}
+         *
+         * @param directory 存放磁盘缓存的目录
+         * @param maxBytes  磁盘缓存的最大字节数
+         * @param codec     序列化 {@link ResponseCache.Entry} 的 {@link Codec}
+         * @return {@link Builder}
+         */
+        public Builder responseCache(File directory, long maxBytes, Codec<Object> codec) {
+            Preconditions.checkArgument(maxBytes > 0, "MaxBytes must be > 0");
+            this.responseCacheDirectory = Preconditions.checkNotNull(directory, "directory can not be null.");
+            this.responseCacheCodec = Preconditions.checkNotNull(codec, Codec.class.getCanonicalName() + "can not be null.");
+            this.responseCacheMaxBytes = maxBytes;
+            return this;
+        }
+        
+        /**
+         * 是否合并相同的网络请求, 开启后同一个 Retrofit service 方法以相同的参数被同时调用时只会发起一次请求, 默认不开启
+         *
+         * @param requestCoalescing {@code true} 为开启
+         * @return {@link Builder}
+         * @see RequestCoalescer
+         */
+        public Builder requestCoalescing(boolean requestCoalescing) {
+            this.requestCoalescing = requestCoalescing;
+            return this;
+        }
+        
+        /**
+         * 设置 App 启动时需要在后台预先创建并预解析的 Retrofit service, 比如首页所使用的 service, 以缩短首次请求的耗时
+         *
+         * @param serviceClasses Retrofit service class
+         * @return {@link Builder}
+         * @see IRepositoryManager#warmUpRetrofitServices(List, IRepositoryManager.WarmUpListener)
+         */
+        public Builder warmUpServices(Class<?>... serviceClasses) {
+            Preconditions.checkNotNull(serviceClasses, "serviceClasses can not be null.");
+            if (warmUpServices == null) {
+                warmUpServices = new ArrayList<>();
+            }
+            this.warmUpServices.addAll(Arrays.asList(serviceClasses));
+            return this;
+        }
+        
+        /**
+         * 设置 Retrofit service 预热完成后的回调, 可用来上报预热的耗时
+         *
+         * @param warmUpListener {@link IRepositoryManager.WarmUpListener}
+         * @return {@link Builder}
+         */
+        public Builder warmUpListener(IRepositoryManager.WarmUpListener warmUpListener) {
+            this.warmUpListener = warmUpListener;
+            return this;
+        }
+        
+        /**
+         * 设置全局公用的线程池, 同时也是 OkHttp 的线程池, 默认为 {@link PriorityExecutor}
+         * 设置为其他线程池后, 低优先级的异步请求不再在线程池中排队, 但依然受到 {@link #priorityLanes(int, int)} 的并发数限制
+         *
+         * @param executorService {@link ExecutorService}
+         * @return {@link Builder}
+         */
         public Builder executorService(ExecutorService executorService) {
             this.executorService = executorService;
             return this;
         }
         
+        /**
+         * 设置低优先级网络请求的最大并发数, 默认为 {@link PriorityCallFactory#DEFAULT_PREFETCH_MAX_REQUESTS} 和
+         * {@link PriorityCallFactory#DEFAULT_BACKGROUND_MAX_REQUESTS}, {@link Priority#USER_BLOCKING} 的请求不受限制
+         *
+         * @param prefetchMaxRequests   {@link Priority#PREFETCH} 的最大并发数
+         * @param backgroundMaxRequests {@link Priority#BACKGROUND} 的最大并发数
+         * @return {@link Builder}
+         * @see PriorityCallFactory
+         */
+        public Builder priorityLanes(int prefetchMaxRequests, int backgroundMaxRequests) {
+            Preconditions.checkArgument(prefetchMaxRequests > 0, "PrefetchMaxRequests must be > 0");
+            Preconditions.checkArgument(backgroundMaxRequests > 0, "BackgroundMaxRequests must be > 0");
+            this.prefetchMaxRequests = prefetchMaxRequests;
+            this.backgroundMaxRequests = backgroundMaxRequests;
+            return this;
+        }
+        
         public GlobalConfigModule build() {
             return new GlobalConfigModule(this);
         }
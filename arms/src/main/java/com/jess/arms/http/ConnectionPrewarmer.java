@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http;
+
+import com.jess.arms.base.delegate.AppDelegate;
+import com.jess.arms.di.module.GlobalConfigModule;
+import com.jess.arms.http.priority.Priority;
+import com.jess.arms.http.priority.PriorityExecutor;
+import com.jess.arms.utils.Preconditions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import androidx.annotation.NonNull;
+import dagger.Lazy;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import timber.log.Timber;
+
+/**
+ * ================================================
+ * 在后台预先与服务器建立连接 (DNS 解析、TCP 连接和 TLS 握手), 连接放入 {@link OkHttpClient} 的连接池中
+ * 使 App 启动后的第一个请求可以直接复用连接, 不需要在关键路径上等待握手
+ * <p>
+ * OkHttp 没有提供单独建立连接的 API, 所以通过向每个域名的根路径发送一个 {@code HEAD} 请求来建立连接, 请确认服务器可以接受此请求
+ * 预热请求使用与 {@link OkHttpClient} 相同的连接池、DNS 和证书配置, 但不经过任何拦截器, 也不会被计入 {@link com.jess.arms.http.timing.HttpTimings}
+ * 连接在连接池中的存活时间由 {@link GlobalConfigModule.Builder#connectionPool(int, long, TimeUnit)} 决定
+ * <p>
+ * 配置了 {@link GlobalConfigModule.Builder#preconnect(String...)} 时, {@link AppDelegate#onCreate} 会自动预热 BaseUrl 和配置的域名
+ * 预热请求在 {@link Priority#BACKGROUND} 优先级的任务中依次同步执行, 不会占用 {@link okhttp3.Dispatcher} 的并发名额
+ * BaseUrl 也在此任务中才被解析, 使 {@link com.jess.arms.http.BaseUrl#url()} 有足够的时间准备好
+ * 也可以在网络切换后再次调用 {@link #prewarm(List, boolean)}
+ *
+ * @see GlobalConfigModule.Builder#preconnect(String...)
+ * ================================================
+ */
+@Singleton
+public class ConnectionPrewarmer {
+    private final Lazy<OkHttpClient> mClient;
+    private final Lazy<ExecutorService> mExecutorService;
+    private final Lazy<HttpUrl> mBaseUrl;
+    
+    @Inject
+    public ConnectionPrewarmer(Lazy<OkHttpClient> client, Lazy<ExecutorService> executorService, Lazy<HttpUrl> baseUrl) {
+        this.mClient = client;
+        this.mExecutorService = executorService;
+        this.mBaseUrl = baseUrl;
+    }
+    
+    /**
+     * 在后台与这些 url 所在的服务器建立连接, 同一个服务器 (scheme + 域名 + 端口) 只会建立一次连接
+     * 此方法不会阻塞, 可以在主线程中调用, {@link OkHttpClient} 的创建也在后台执行
+     *
+     * @param urls 需要预热的 url, 只使用 url 中的 scheme、域名和端口
+     */
+    public void prewarm(@NonNull List<HttpUrl> urls) {
+        prewarm(urls, false);
+    }
+    
+    /**
+     * 在后台与这些 url 所在的服务器建立连接, 同一个服务器 (scheme + 域名 + 端口) 只会建立一次连接
+     * 此方法不会阻塞, 可以在主线程中调用, {@link OkHttpClient} 的创建和 BaseUrl 的解析都在后台执行
+     *
+     * @param urls           需要预热的 url, 只使用 url 中的 scheme、域名和端口
+     * @param includeBaseUrl {@code true} 为同时预热 BaseUrl, BaseUrl 排在 {@code urls} 之前
+     */
+    public void prewarm(@NonNull List<HttpUrl> urls, final boolean includeBaseUrl) {
+        Preconditions.checkNotNull(urls, "urls == null");
+        if (urls.isEmpty() && !includeBaseUrl) {
+            return;
+        }
+        final List<HttpUrl> targets = new ArrayList<>(urls);
+        final Runnable task = () -> {
+            if (includeBaseUrl) {
+                targets.add(0, mBaseUrl.get());
+            }
+            final OkHttpClient client = newPrewarmClient(mClient.get());
+            for (HttpUrl url : rootsOf(targets)) {
+                prewarm(client, url);
+            }
+        };
+        final ExecutorService executorService = mExecutorService.get();
+        if (executorService instanceof PriorityExecutor) {
+            ((PriorityExecutor) executorService).execute(task, Priority.BACKGROUND);
+        } else {
+            executorService.execute(task);
+        }
+    }
+    
+    /**
+     * 只保留 url 中的 scheme、域名和端口, 并去掉重复的服务器
+     */
+    private static Set<HttpUrl> rootsOf(List<HttpUrl> urls) {
+        final Set<HttpUrl> roots = new LinkedHashSet<>();
+        for (HttpUrl url : urls) {
+            roots.add(new HttpUrl.Builder().scheme(url.scheme()).host(url.host()).port(url.port()).build());
+        }
+        return roots;
+    }
+    
+    /**
+     * 共用原始 {@link OkHttpClient} 的连接池和其他配置, 但移除所有拦截器和 {@link EventListener}
+     */
+    private static OkHttpClient newPrewarmClient(OkHttpClient client) {
+        final OkHttpClient.Builder builder = client.newBuilder().eventListener(EventListener.NONE);
+        builder.interceptors().clear();
+        builder.networkInterceptors().clear();
+        return builder.build();
+    }
+    
+    private static void prewarm(OkHttpClient client, HttpUrl url) {
+        final long start = System.nanoTime();
+        final Request request = new Request.Builder()
+            .url(url)
+            .head()
+            .build();
+        //已经在后台任务中, 直接同步执行, 使预热请求与任务保持相同的优先级
+        try {
+            final Response response = client.newCall(request).execute();
+            response.close();
+            Timber.d("Preconnect %s took %d ms", url, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            Timber.w(e, "Preconnect %s failed", url);
+        }
+    }
+}
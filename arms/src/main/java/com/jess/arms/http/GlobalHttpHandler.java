@@ -48,6 +48,13 @@ public interface GlobalHttpHandler {
             return response;
         }
         
+        @NonNull
+        @Override
+        public Response onHttpResultResponse(@NonNull HttpResultSupplier httpResult, @NonNull Interceptor.Chain chain, @NonNull Response response) {
+            //不读取响应体
+            return response;
+        }
+        
         @NonNull
         @Override
         public Request onHttpRequestBefore(@NonNull Interceptor.Chain chain, @NonNull Request request) {
@@ -60,13 +67,32 @@ public interface GlobalHttpHandler {
      * 这里可以先客户端一步拿到每一次 Http 请求的结果, 可以先解析成 Json, 再做一些操作, 如检测到 token 过期后
      * 重新请求 token, 并重新执行请求
      *
+     * 如果不是每个请求都需要读取结果, 请重写 {@link #onHttpResultResponse(HttpResultSupplier, Interceptor.Chain, Response)}
+     *
      * @param httpResult 服务器返回的结果 (已被框架自动转换为字符串)
      * @param chain      {@link okhttp3.Interceptor.Chain}
      * @param response   {@link Response}
      * @return {@link Response}
      */
     @NonNull
-    Response onHttpResultResponse(@Nullable String httpResult, @NonNull Interceptor.Chain chain, @NonNull Response response);
+    default Response onHttpResultResponse(@Nullable String httpResult, @NonNull Interceptor.Chain chain, @NonNull Response response) {
+        return response;
+    }
+    
+    /**
+     * 与 {@link #onHttpResultResponse(String, Interceptor.Chain, Response)} 相同, 但服务器返回的结果只在调用
+     * {@link HttpResultSupplier#get()} 时才会被读取并解析, 不需要结果时 (比如只需要检查 {@link Response#code()}) 不会产生额外的内存开销
+     * 框架只会调用此方法, 默认实现会读取结果并交给 {@link #onHttpResultResponse(String, Interceptor.Chain, Response)}
+     *
+     * @param httpResult 延迟读取的服务器返回的结果
+     * @param chain      {@link okhttp3.Interceptor.Chain}
+     * @param response   {@link Response}
+     * @return {@link Response}
+     */
+    @NonNull
+    default Response onHttpResultResponse(@NonNull HttpResultSupplier httpResult, @NonNull Interceptor.Chain chain, @NonNull Response response) {
+        return onHttpResultResponse(httpResult.get(), chain, response);
+    }
     
     /**
      * 这里可以在请求服务器之前拿到 {@link Request}, 做一些操作比如给 {@link Request} 统一添加 token 或者 header 以及参数加密等操作
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http;
+
+import com.jess.arms.utils.Preconditions;
+import com.jess.arms.utils.ZipHelper;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import androidx.annotation.Nullable;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+import okio.Sink;
+
+/**
+ * ================================================
+ * 在写入请求体的同时以 gzip 格式压缩的 {@link RequestBody}, 不会预先把整个请求体读入内存
+ * <p>
+ * 压缩后的长度无法提前得知, 所以 {@link #contentLength()} 返回 -1, OkHttp 会使用 {@code Transfer-Encoding: chunked} 发送
+ * 使用时需要自行为请求加上 {@code Content-Encoding: gzip} 请求头, 并确认服务器支持解压 gzip 格式的请求体
+ * <pre>{@code
+ * request.newBuilder()
+ *     .header("Content-Encoding", "gzip")
+ *     .method(request.method(), new GzipRequestBody(request.body()))
+ *     .build();
+ * }</pre>
+ *
+ * @see ZipHelper#gzipSink(okio.Sink, int)
+ * ================================================
+ */
+public class GzipRequestBody extends RequestBody {
+    private final RequestBody mDelegate;
+    private final int mLevel;
+    
+    public GzipRequestBody(RequestBody delegate) {
+        this(delegate, Deflater.DEFAULT_COMPRESSION);
+    }
+    
+    /**
+     * @param delegate 原始的请求体
+     * @param level    压缩级别, 0 ~ 9 或 {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public GzipRequestBody(RequestBody delegate, int level) {
+        this.mDelegate = Preconditions.checkNotNull(delegate, "delegate == null");
+        this.mLevel = level;
+    }
+    
+    @Nullable
+    @Override
+    public MediaType contentType() {
+        return mDelegate.contentType();
+    }
+    
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+    
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        final DetachableSink target = new DetachableSink(sink);
+        final BufferedSink gzipSink = Okio.buffer(ZipHelper.gzipSink(target, mLevel));
+        boolean success = false;
+        try {
+            mDelegate.writeTo(gzipSink);
+            success = true;
+        } finally {
+            if (!success) {
+                //写入失败时不能再向 sink 写入 gzip 尾部或关闭 sink, 否则服务器可能收到一个完整但被截断的请求体
+                //所以先断开 sink 再关闭 gzipSink, 只为了将池中的 Deflater 归还
+                target.detach();
+                ZipHelper.closeQuietly(gzipSink);
+            }
+        }
+        //关闭时才会写入剩余的压缩数据和 gzip 尾部
+        gzipSink.close();
+    }
+    
+    /**
+     * 断开后丢弃所有写入的数据, 并且不会关闭被包装的 {@link Sink}
+     */
+    private static final class DetachableSink extends ForwardingSink {
+        private boolean detached;
+        
+        DetachableSink(Sink delegate) {
+            super(delegate);
+        }
+        
+        void detach() {
+            detached = true;
+        }
+        
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            if (detached) {
+                source.skip(byteCount);
+            } else {
+                super.write(source, byteCount);
+            }
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            if (!detached) {
+                super.flush();
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (!detached) {
+                super.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http;
+
+import com.jess.arms.di.module.GlobalConfigModule;
+import com.jess.arms.utils.Preconditions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import androidx.annotation.NonNull;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * ================================================
+ * 使用 {@link GzipRequestBody} 边发送边压缩请求体的网络拦截器, 只压缩发往支持 {@code Content-Encoding: gzip} 的域名的请求
+ * <p>
+ * 以下请求不会被压缩:
+ * 1. 没有请求体, 或请求体的长度已知并且小于阈值 (长度未知的请求体通常是流式上传, 会被压缩)
+ * 2. 请求已经设置了 {@code Content-Encoding} 请求头
+ * 3. 域名不在支持列表中, 列表中的域名可以使用 {@code *.example.com} 的形式匹配所有子域名
+ * <p>
+ * 此拦截器在 {@link com.jess.arms.http.log.RequestInterceptor} 之后添加, 所以日志中打印的仍然是压缩前的请求体
+ * 由于压缩后的长度无法提前得知, 被压缩的请求会移除 {@code Content-Length} 并使用 {@code Transfer-Encoding: chunked} 发送
+ *
+ * @see GlobalConfigModule.Builder#gzipRequestBody(long, String...)
+ * ================================================
+ */
+public class GzipRequestInterceptor implements Interceptor {
+    private final long mMinBytes;
+    private final Set<String> mHosts = new HashSet<>();
+    private final List<String> mWildcardHosts = new ArrayList<>();
+    
+    /**
+     * @param minBytes 请求体长度已知时, 只压缩长度大于或等于 {@code minBytes} 的请求体
+     * @param hosts    支持 {@code Content-Encoding: gzip} 的域名
+     */
+    public GzipRequestInterceptor(long minBytes, @NonNull Collection<String> hosts) {
+        Preconditions.checkArgument(minBytes >= 0, "MinBytes must be >= 0");
+        Preconditions.checkNotNull(hosts, "hosts can not be null.");
+        this.mMinBytes = minBytes;
+        for (String host : hosts) {
+            final String lower = host.toLowerCase(Locale.US);
+            if (lower.startsWith("*.")) {
+                mWildcardHosts.add(lower.substring(1));
+            } else {
+                mHosts.add(lower);
+            }
+        }
+    }
+    
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        final Request request = chain.request();
+        final RequestBody body = request.body();
+        if (body == null || request.header("Content-Encoding") != null || !isSupportedHost(request.url().host())) {
+            return chain.proceed(request);
+        }
+        final long contentLength = body.contentLength();
+        if (contentLength != -1 && contentLength < mMinBytes) {
+            return chain.proceed(request);
+        }
+        return chain.proceed(request.newBuilder()
+            .removeHeader("Content-Length")
+            .header("Transfer-Encoding", "chunked")
+            .header("Content-Encoding", "gzip")
+            .method(request.method(), new GzipRequestBody(body))
+            .build());
+    }
+    
+    private boolean isSupportedHost(String host) {
+        if (mHosts.contains(host)) {
+            return true;
+        }
+        for (String suffix : mWildcardHosts) {
+            if (host.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http;
+
+import androidx.annotation.Nullable;
+
+/**
+ * ================================================
+ * 延迟读取服务器返回的结果, 只有调用 {@link #get()} 时才会读取并解析响应体, 多次调用返回同一个结果
+ *
+ * @see GlobalHttpHandler#onHttpResultResponse(HttpResultSupplier, okhttp3.Interceptor.Chain, okhttp3.Response)
+ * ================================================
+ */
+public interface HttpResultSupplier {
+    
+    /**
+     * 读取并返回服务器返回的结果 (已被框架自动转换为字符串), 响应体不是文本类型时返回 {@code null}
+     *
+     * @return 服务器返回的结果
+     */
+    @Nullable
+    String get();
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.limit;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+
+/**
+ * ================================================
+ * 单个域名的自适应并发限制器, 根据 {@link LimitConfig.Algorithm} 在每个请求结束时调整并发上限
+ * <p>
+ * 耗时使用两个指数加权移动平均值估算: 短期平均值 ({@link #SHORT_WINDOW} 个样本) 反映当前的排队情况,
+ * 长期平均值 ({@link #LONG_WINDOW} 个样本) 作为网络未拥塞时的基准; 短期平均值远低于长期平均值时 (比如从蜂窝网络切换至 Wi-Fi)
+ * 长期平均值会逐渐向下修正
+ * <p>
+ * 所有方法都在此对象的锁中执行, 等待名额时会释放锁
+ * ================================================
+ */
+final class AdaptiveLimiter {
+    private static final int SHORT_WINDOW = 10;
+    private static final int LONG_WINDOW = 100;
+    //梯度算法中新旧上限的平滑系数
+    private static final double SMOOTHING = 0.2;
+    //等待名额时检查请求是否被取消的间隔
+    private static final long CANCEL_CHECK_MILLIS = 100;
+    
+    private final LimitConfig mConfig;
+    private double mLimit;
+    private int mInFlight;
+    private int mQueued;
+    private double mShortRtt;
+    private double mLongRtt;
+    private int mSampleCount;
+    
+    AdaptiveLimiter(LimitConfig config) {
+        this.mConfig = config;
+        this.mLimit = config.getInitialLimit();
+    }
+    
+    /**
+     * 获取一个名额, 达到并发上限时排队等待
+     *
+     * @param call 当前的请求, 被取消时停止等待
+     * @return {@code true} 为获取成功, {@code false} 为排队超时或排队的请求过多
+     * @throws IOException 等待时请求被取消或线程被中断
+     */
+    synchronized boolean acquire(Call call) throws IOException {
+        if (mInFlight < getLimit()) {
+            mInFlight++;
+            return true;
+        }
+        if (mQueued >= mConfig.getMaxQueued() || mConfig.getMaxQueueTimeMillis() == 0) {
+            return false;
+        }
+        mQueued++;
+        try {
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(mConfig.getMaxQueueTimeMillis());
+            while (mInFlight >= getLimit()) {
+                if (call.isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+                final long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    return false;
+                }
+                try {
+                    wait(Math.min(remainingMillis, CANCEL_CHECK_MILLIS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the concurrency limit");
+                }
+            }
+            mInFlight++;
+            return true;
+        } finally {
+            mQueued--;
+        }
+    }
+    
+    /**
+     * 请求成功收到响应, 释放名额并根据耗时调整并发上限
+     *
+     * @param rttNanos 从发出请求至响应体被读取完毕或被关闭的耗时
+     */
+    synchronized void onSuccess(long rttNanos) {
+        final int inFlight = mInFlight;
+        mInFlight--;
+        updateRtt(rttNanos);
+        //并发数不到上限的一半时说明请求量本身就不大, 耗时正常也不应该继续提高上限
+        final boolean appLimited = inFlight * 2 < mLimit;
+        double limit = mLimit;
+        if (mConfig.getAlgorithm() == LimitConfig.Algorithm.AIMD) {
+            if (mSampleCount > 1 && rttNanos > mLongRtt * mConfig.getRttTolerance()) {
+                limit = limit * mConfig.getBackoffRatio();
+            } else if (!appLimited) {
+                limit = limit + 1;
+            }
+        } else {
+            final double gradient = Math.max(0.5, Math.min(1.0, mConfig.getRttTolerance() * mLongRtt / mShortRtt));
+            //耗时在容忍范围内时按平方根的速度提高上限, 超出时按比例降低上限
+            double newLimit = gradient < 1 ? limit * gradient : limit + Math.sqrt(limit);
+            if (appLimited) {
+                newLimit = Math.min(newLimit, limit);
+            }
+            limit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        }
+        setLimit(limit);
+    }
+    
+    /**
+     * 请求超时, 释放名额并缩小并发上限
+     */
+    synchronized void onDropped() {
+        mInFlight--;
+        setLimit(mLimit * mConfig.getBackoffRatio());
+    }
+    
+    /**
+     * 请求因为其他原因失败 (比如被取消, 域名解析失败), 只释放名额
+     */
+    synchronized void onIgnored() {
+        mInFlight--;
+        notifyAll();
+    }
+    
+    /**
+     * @return 当前的并发上限
+     */
+    synchronized int getLimit() {
+        return (int) mLimit;
+    }
+    
+    private void updateRtt(long rttNanos) {
+        mSampleCount++;
+        if (mSampleCount == 1) {
+            mShortRtt = rttNanos;
+            mLongRtt = rttNanos;
+            return;
+        }
+        //样本不足一个窗口时使用累计平均值, 避免最初的几个样本权重过大
+        mShortRtt += (rttNanos - mShortRtt) / Math.min(mSampleCount, SHORT_WINDOW);
+        mLongRtt += (rttNanos - mLongRtt) / Math.min(mSampleCount, LONG_WINDOW);
+        if (mLongRtt > mShortRtt * 2) {
+            mLongRtt *= 0.95;
+        }
+    }
+    
+    private void setLimit(double limit) {
+        mLimit = Math.max(mConfig.getMinLimit(), Math.min(mConfig.getMaxLimit(), limit));
+        notifyAll();
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.limit;
+
+import com.jess.arms.di.module.GlobalConfigModule;
+import com.jess.arms.integration.metrics.Counter;
+import com.jess.arms.integration.metrics.MetricsRegistry;
+import com.jess.arms.utils.Preconditions;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * ================================================
+ * 按域名自适应限制并发请求数的拦截器, 网络拥塞 (比如信号不好的蜂窝网络) 时同时发起大量请求会使每个请求都变慢
+ * 此拦截器根据观测到的耗时自动调整每个域名的并发上限, 超出上限的请求排队等待, 排队超时则抛出 {@link LimitExceededException}
+ * <p>
+ * 只有通过 {@link GlobalConfigModule.Builder#concurrencyLimit(String, LimitConfig)} 配置的域名, 或通过
+ * {@link GlobalConfigModule.Builder#concurrencyLimit(LimitConfig)} 配置了默认配置时的所有域名才会被限制
+ * <p>
+ * 每个域名当前的并发上限同时记录在 {@link MetricsRegistry} 中的 {@code http.limit.<host>.limit}, 被拒绝的请求数记录在
+ * {@code http.limit.rejected}
+ * <p>
+ * 等待名额时会阻塞当前线程, 异步请求会占用 OkHttp 线程池中的线程, 所以默认只允许少量请求短时间排队, 见 {@link LimitConfig.Builder#queue(long, int)}
+ * <p>
+ * 名额在响应体被读取完毕或被关闭时才归还, 同时以此时的耗时调整并发上限, 这样下载大文件等耗时的响应体也会计入并发数
+ * 所以收到响应后必须关闭响应体 (Retrofit 会自动关闭), 否则这个名额永远不会被归还
+ *
+ * @see LimitConfig
+ * ================================================
+ */
+public class ConcurrencyLimitInterceptor implements Interceptor {
+    private final LimitConfig mDefaultConfig;
+    private final Map<String, LimitConfig> mHostConfigs;
+    private final ConcurrentHashMap<String, AdaptiveLimiter> mLimiters = new ConcurrentHashMap<>();
+    private final MetricsRegistry mMetrics;
+    private final Counter mRejected;
+    
+    /**
+     * @param defaultConfig 没有单独配置的域名所使用的配置, 为 {@code null} 时不限制这些域名
+     * @param hostConfigs   每个域名单独的配置
+     * @param metrics       {@link MetricsRegistry}
+     */
+    public ConcurrencyLimitInterceptor(@Nullable LimitConfig defaultConfig, @NonNull Map<String, LimitConfig> hostConfigs
+        , @NonNull MetricsRegistry metrics) {
+        this.mDefaultConfig = defaultConfig;
+        this.mHostConfigs = new HashMap<>(Preconditions.checkNotNull(hostConfigs, "hostConfigs can not be null."));
+        this.mMetrics = Preconditions.checkNotNull(metrics, "metrics can not be null.");
+        this.mRejected = metrics.counter("http.limit.rejected");
+    }
+    
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        final String host = chain.request().url().host();
+        final AdaptiveLimiter limiter = obtainLimiter(host);
+        if (limiter == null) {
+            return chain.proceed(chain.request());
+        }
+        if (!limiter.acquire(chain.call())) {
+            mRejected.inc();
+            throw new LimitExceededException(host, limiter.getLimit());
+        }
+        final Permit permit = new Permit(limiter, chain.call());
+        boolean success = false;
+        try {
+            final Response response = chain.proceed(chain.request());
+            final ResponseBody body = response.body();
+            final Response result;
+            if (body == null) {
+                permit.complete();
+                result = response;
+            } else {
+                result = response.newBuilder().body(new PermitResponseBody(body, permit)).build();
+            }
+            success = true;
+            return result;
+        } catch (IOException | RuntimeException e) {
+            permit.fail(e);
+            throw e;
+        } finally {
+            //Error 等未被捕获的异常, 同样需要归还名额
+            if (!success) {
+                permit.fail(null);
+            }
+        }
+    }
+    
+    /**
+     * 返回这个域名当前的并发上限, 这个域名没有被限制或还没有请求过时返回 -1
+     *
+     * @param host 域名
+     * @return 并发上限
+     */
+    public int getLimit(@NonNull String host) {
+        final AdaptiveLimiter limiter = mLimiters.get(host);
+        return limiter == null ? -1 : limiter.getLimit();
+    }
+    
+    @Nullable
+    private AdaptiveLimiter obtainLimiter(String host) {
+        AdaptiveLimiter limiter = mLimiters.get(host);
+        if (limiter != null) {
+            return limiter;
+        }
+        LimitConfig config = mHostConfigs.get(host);
+        if (config == null) {
+            config = mDefaultConfig;
+        }
+        if (config == null) {
+            return null;
+        }
+        final AdaptiveLimiter created = new AdaptiveLimiter(config);
+        limiter = mLimiters.putIfAbsent(host, created);
+        if (limiter == null) {
+            limiter = created;
+            mMetrics.gauge("http.limit." + host + ".limit", created::getLimit);
+        }
+        return limiter;
+    }
+    
+    /**
+     * 请求占用的名额, 多次归还只会生效一次
+     */
+    private static final class Permit {
+        private final AdaptiveLimiter mLimiter;
+        private final Call mCall;
+        private final long mStartNanos = System.nanoTime();
+        private final AtomicBoolean mReleased = new AtomicBoolean();
+        
+        Permit(AdaptiveLimiter limiter, Call call) {
+            this.mLimiter = limiter;
+            this.mCall = call;
+        }
+        
+        /**
+         * 响应体被读取完毕或被关闭, 以此时的耗时调整并发上限
+         */
+        void complete() {
+            if (mReleased.compareAndSet(false, true)) {
+                mLimiter.onSuccess(System.nanoTime() - mStartNanos);
+            }
+        }
+        
+        void fail(@Nullable Exception e) {
+            if (!mReleased.compareAndSet(false, true)) {
+                return;
+            }
+            //包括连接超时和读取超时, 说明网络已经拥塞
+            if (e instanceof InterruptedIOException && !mCall.isCanceled()) {
+                mLimiter.onDropped();
+            } else {
+                mLimiter.onIgnored();
+            }
+        }
+    }
+    
+    /**
+     * 在响应体被读取完毕、读取失败或被关闭时归还 {@link Permit}
+     */
+    private static final class PermitResponseBody extends ResponseBody {
+        private final ResponseBody mDelegate;
+        private final BufferedSource mSource;
+        
+        PermitResponseBody(ResponseBody delegate, final Permit permit) {
+            this.mDelegate = delegate;
+            this.mSource = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    final long read;
+                    try {
+                        read = super.read(sink, byteCount);
+                    } catch (IOException e) {
+                        permit.fail(e);
+                        throw e;
+                    }
+                    if (read == -1) {
+                        permit.complete();
+                    }
+                    return read;
+                }
+                
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        permit.complete();
+                    }
+                }
+            });
+        }
+        
+        @Nullable
+        @Override
+        public MediaType contentType() {
+            return mDelegate.contentType();
+        }
+        
+        @Override
+        public long contentLength() {
+            return mDelegate.contentLength();
+        }
+        
+        @Override
+        public BufferedSource source() {
+            return mSource;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.limit;
+
+import com.jess.arms.di.module.GlobalConfigModule;
+import com.jess.arms.utils.Preconditions;
+
+import androidx.annotation.NonNull;
+
+/**
+ * ================================================
+ * {@link ConcurrencyLimitInterceptor} 中每个域名的并发限制配置, 通过 {@link #builder()} 构建
+ * <p>
+ * 并发上限在 [{@link #getMinLimit()}, {@link #getMaxLimit()}] 之间根据观测到的耗时 (从发出请求至响应体被读取完毕) 自动调整
+ * 达到上限后新的请求最多排队等待 {@link #getMaxQueueTimeMillis()} 毫秒, 超时或排队的请求超过 {@link #getMaxQueued()} 个时
+ * 直接抛出 {@link LimitExceededException} 而不是继续发起请求, 使网络拥塞时已发出的请求能更快完成
+ *
+ * @see GlobalConfigModule.Builder#concurrencyLimit(LimitConfig)
+ * @see GlobalConfigModule.Builder#concurrencyLimit(String, LimitConfig)
+ * ================================================
+ */
+public final class LimitConfig {
+    private final Algorithm mAlgorithm;
+    private final int mInitialLimit;
+    private final int mMinLimit;
+    private final int mMaxLimit;
+    private final double mRttTolerance;
+    private final double mBackoffRatio;
+    private final long mMaxQueueTimeMillis;
+    private final int mMaxQueued;
+    
+    private LimitConfig(Builder builder) {
+        this.mAlgorithm = builder.algorithm;
+        this.mInitialLimit = builder.initialLimit;
+        this.mMinLimit = builder.minLimit;
+        this.mMaxLimit = builder.maxLimit;
+        this.mRttTolerance = builder.rttTolerance;
+        this.mBackoffRatio = builder.backoffRatio;
+        this.mMaxQueueTimeMillis = builder.maxQueueTimeMillis;
+        this.mMaxQueued = builder.maxQueued;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * 调整并发上限的算法
+     */
+    public enum Algorithm {
+        /**
+         * 加性增, 乘性减 (Additive Increase Multiplicative Decrease)
+         * 请求超时, 或耗时超过长期平均耗时的 {@link #getRttTolerance()} 倍时, 并发上限乘以 {@link #getBackoffRatio()}
+         * 否则在并发数接近上限时将上限加一
+         */
+        AIMD,
+        /**
+         * 梯度 (Gradient), 根据短期平均耗时与长期平均耗时的比值平滑的调整并发上限, 耗时开始上升时就会逐渐降低上限
+         * 比 {@link #AIMD} 更早的对排队 (耗时上升) 做出反应, 上限的波动也更小
+         */
+        GRADIENT
+    }
+    
+    public Algorithm getAlgorithm() {
+        return mAlgorithm;
+    }
+    
+    public int getInitialLimit() {
+        return mInitialLimit;
+    }
+    
+    public int getMinLimit() {
+        return mMinLimit;
+    }
+    
+    public int getMaxLimit() {
+        return mMaxLimit;
+    }
+    
+    public double getRttTolerance() {
+        return mRttTolerance;
+    }
+    
+    public double getBackoffRatio() {
+        return mBackoffRatio;
+    }
+    
+    public long getMaxQueueTimeMillis() {
+        return mMaxQueueTimeMillis;
+    }
+    
+    public int getMaxQueued() {
+        return mMaxQueued;
+    }
+    
+    public static final class Builder {
+        private Algorithm algorithm = Algorithm.GRADIENT;
+        private int initialLimit = 4;
+        private int minLimit = 1;
+        private int maxLimit = 32;
+        private double rttTolerance = 2.0;
+        private double backoffRatio = 0.9;
+        private long maxQueueTimeMillis = 1000;
+        private int maxQueued = 2;
+        
+        private Builder() {
+        }
+        
+        /**
+         * 调整并发上限的算法, 默认为 {@link Algorithm#GRADIENT}
+         *
+         * @param algorithm {@link Algorithm}
+         * @return {@link Builder}
+         */
+        public Builder algorithm(@NonNull Algorithm algorithm) {
+            this.algorithm = Preconditions.checkNotNull(algorithm, "algorithm can not be null.");
+            return this;
+        }
+        
+        /**
+         * 并发上限的初始值和范围, 默认为 4, [1, 32]
+         *
+         * @param initialLimit 初始的并发上限
+         * @param minLimit     最小的并发上限
+         * @param maxLimit     最大的并发上限
+         * @return {@link Builder}
+         */
+        public Builder limit(int initialLimit, int minLimit, int maxLimit) {
+            Preconditions.checkArgument(minLimit >= 1, "MinLimit must be >= 1");
+            Preconditions.checkArgument(minLimit <= initialLimit && initialLimit <= maxLimit,
+                "Limits must satisfy minLimit <= initialLimit <= maxLimit");
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            return this;
+        }
+        
+        /**
+         * 可以容忍的耗时上升倍数, 默认为 2, 即耗时超过长期平均耗时的 2 倍时才认为网络出现了拥塞
+         *
+         * @param rttTolerance 耗时上升倍数
+         * @return {@link Builder}
+         */
+        public Builder rttTolerance(double rttTolerance) {
+            Preconditions.checkArgument(rttTolerance >= 1, "RttTolerance must be >= 1");
+            this.rttTolerance = rttTolerance;
+            return this;
+        }
+        
+        /**
+         * 请求超时 (以及使用 {@link Algorithm#AIMD} 时耗时超出容忍范围) 时并发上限缩小的比例, 默认为 0.9
+         *
+         * @param backoffRatio 缩小的比例
+         * @return {@link Builder}
+         */
+        public Builder backoffRatio(double backoffRatio) {
+            Preconditions.checkArgument(backoffRatio >= 0.5 && backoffRatio < 1, "BackoffRatio must be in [0.5, 1)");
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+        
+        /**
+         * 达到并发上限后请求的排队策略, 默认最多 2 个请求排队, 每个请求最多等待 1 秒
+         * 排队时会阻塞 OkHttp 线程池中的线程 (框架默认的线程池只有 4 ~ 16 个线程), 排队的请求数应远小于线程数, 否则其他域名的请求也会被拖慢
+         * {@code maxQueueTimeMillis} 或 {@code maxQueued} 为 0 时不排队, 达到并发上限后直接抛出 {@link LimitExceededException}
+         *
+         * @param maxQueueTimeMillis 每个请求最多排队的时间, 单位毫秒
+         * @param maxQueued          最多同时排队的请求数
+         * @return {@link Builder}
+         */
+        public Builder queue(long maxQueueTimeMillis, int maxQueued) {
+            Preconditions.checkArgument(maxQueueTimeMillis >= 0, "MaxQueueTimeMillis must be >= 0");
+            Preconditions.checkArgument(maxQueued >= 0, "MaxQueued must be >= 0");
+            this.maxQueueTimeMillis = maxQueueTimeMillis;
+            this.maxQueued = maxQueued;
+            return this;
+        }
+        
+        public LimitConfig build() {
+            return new LimitConfig(this);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.limit;
+
+import java.io.IOException;
+
+import androidx.annotation.NonNull;
+
+/**
+ * ================================================
+ * 请求的域名已达到并发上限, 并且排队超时或排队的请求过多时, 由 {@link ConcurrencyLimitInterceptor} 抛出
+ * 此时请求没有被发出, 可以稍后重试
+ *
+ * @see LimitConfig
+ * ================================================
+ */
+public class LimitExceededException extends IOException {
+    private static final long serialVersionUID = 1L;
+    private final String mHost;
+    private final int mLimit;
+    
+    public LimitExceededException(@NonNull String host, int limit) {
+        super("Concurrency limit of " + limit + " exceeded for " + host);
+        this.mHost = host;
+        this.mLimit = limit;
+    }
+    
+    /**
+     * @return 达到并发上限的域名
+     */
+    @NonNull
+    public String getHost() {
+        return mHost;
+    }
+    
+    /**
+     * @return 抛出异常时的并发上限
+     */
+    public int getLimit() {
+        return mLimit;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.log;
+
+import com.jess.arms.di.module.GlobalConfigModule;
+import com.jess.arms.utils.Preconditions;
+
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import timber.log.Timber;
+
+/**
+ * ================================================
+ * 异步的 {@link FormatPrinter}, 将每次打印作为一条记录放入固定容量的环形缓冲区, 由一个后台线程依次交给 {@link #mDelegate} 打印
+ * 格式化 Json、Xml 以及输出日志的耗时都转移至后台线程, 不再增加网络请求的耗时
+ * <p>
+ * 缓冲区已满时丢弃最旧的记录, 可通过 {@link #getDroppedCount()} 查看被丢弃的记录数量
+ * 后台线程在第一次打印时启动, 是守护线程, 不会阻止进程退出
+ *
+ * @see GlobalConfigModule.Builder#printHttpLogAsync(int)
+ * ================================================
+ */
+public class AsyncFormatPrinter implements FormatPrinter {
+    public static final int DEFAULT_CAPACITY = 256;
+    
+    private final FormatPrinter mDelegate;
+    private final Runnable[] mRecords;
+    //下一条待打印记录的位置
+    private int mHead;
+    private int mSize;
+    private long mDroppedCount;
+    private Thread mThread;
+    
+    public AsyncFormatPrinter(@NonNull FormatPrinter delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Constructor for AsyncFormatPrinter.
+     *
+     * @param delegate 真正打印日志的 {@link FormatPrinter}, 比如 {@link DefaultFormatPrinter}
+     * @param capacity 缓冲区最多能容纳的记录数量
+     */
+    public AsyncFormatPrinter(@NonNull FormatPrinter delegate, int capacity) {
+        Preconditions.checkArgument(capacity > 0, "Capacity must be > 0");
+        this.mDelegate = Preconditions.checkNotNull(delegate, "delegate == null");
+        this.mRecords = new Runnable[capacity];
+    }
+    
+    /**
+     * 返回因缓冲区已满而被丢弃的记录数量
+     *
+     * @return 被丢弃的记录数量
+     */
+    public synchronized long getDroppedCount() {
+        return mDroppedCount;
+    }
+    
+    /**
+     * 返回缓冲区中等待打印的记录数量
+     *
+     * @return 等待打印的记录数量
+     */
+    public synchronized int getPendingCount() {
+        return mSize;
+    }
+    
+    @Override
+    public void printJsonRequest(@NonNull final Request request, @NonNull final String bodyString) {
+        enqueue(() -> mDelegate.printJsonRequest(request, bodyString));
+    }
+    
+    @Override
+    public void printFileRequest(@NonNull final Request request) {
+        enqueue(() -> mDelegate.printFileRequest(request));
+    }
+    
+    @Override
+    public void printJsonResponse(final long chainMs, final boolean isSuccessful, final int code, @NonNull final String headers,
+                                  @Nullable final MediaType contentType, @Nullable final String bodyString,
+                                  @NonNull final List<String> segments, @NonNull final String message, @NonNull final String responseUrl) {
+        enqueue(() -> mDelegate.printJsonResponse(chainMs, isSuccessful, code, headers, contentType, bodyString, segments, message, responseUrl));
+    }
+    
+    @Override
+    public void printFileResponse(final long chainMs, final boolean isSuccessful, final int code, @NonNull final String headers,
+                                  @NonNull final List<String> segments, @NonNull final String message, @NonNull final String responseUrl) {
+        enqueue(() -> mDelegate.printFileResponse(chainMs, isSuccessful, code, headers, segments, message, responseUrl));
+    }
+    
+    @Override
+    public void printJsonResponse(@NonNull final Request request, final long chainMs, final boolean isSuccessful, final int code,
+                                  @NonNull final String headers, @Nullable final MediaType contentType, @Nullable final String bodyString,
+                                  @NonNull final List<String> segments, @NonNull final String message, @NonNull final String responseUrl) {
+        enqueue(() -> mDelegate.printJsonResponse(request, chainMs, isSuccessful, code, headers, contentType, bodyString, segments,
+            message, responseUrl));
+    }
+    
+    @Override
+    public void printFileResponse(@NonNull final Request request, final long chainMs, final boolean isSuccessful, final int code,
+                                  @NonNull final String headers, @NonNull final List<String> segments, @NonNull final String message,
+                                  @NonNull final String responseUrl) {
+        enqueue(() -> mDelegate.printFileResponse(request, chainMs, isSuccessful, code, headers, segments, message, responseUrl));
+    }
+    
+    /**
+     * 放入一条记录, 缓冲区已满时覆盖最旧的记录
+     */
+    private synchronized void enqueue(Runnable record) {
+        final int capacity = mRecords.length;
+        if (mSize == capacity) {
+            mRecords[mHead] = record;
+            mHead = (mHead + 1) % capacity;
+            mDroppedCount++;
+        } else {
+            mRecords[(mHead + mSize) % capacity] = record;
+            mSize++;
+        }
+        if (mThread == null) {
+            mThread = new Thread(this::drain, "Arms FormatPrinter");
+            mThread.setDaemon(true);
+            mThread.start();
+        }
+        notify();
+    }
+    
+    private synchronized Runnable take() throws InterruptedException {
+        while (mSize == 0) {
+            wait();
+        }
+        final Runnable record = mRecords[mHead];
+        mRecords[mHead] = null;
+        mHead = (mHead + 1) % mRecords.length;
+        mSize--;
+        return record;
+    }
+    
+    private void drain() {
+        while (true) {
+            final Runnable record;
+            try {
+                record = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                record.run();
+            } catch (RuntimeException e) {
+                Timber.w(e, "Print http log failed");
+            }
+        }
+    }
+}
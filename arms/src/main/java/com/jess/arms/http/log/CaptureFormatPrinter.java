@@ -0,0 +1,305 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.log;
+
+import com.jess.arms.di.module.GlobalConfigModule;
+import com.jess.arms.utils.Preconditions;
+import com.jess.arms.utils.ZipHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.internal.Util;
+import timber.log.Timber;
+
+/**
+ * ================================================
+ * 将 Http 请求和响应以紧凑的二进制格式追加写入本地文件的 {@link FormatPrinter}, 方便测试人员在真机上收集抓包记录
+ * 收集到的文件可以通过 {@link #exportHar(Writer)} 或 {@link HarConverter} 转换为 HAR 格式, 再用 Chrome 或 Charles 等工具分析
+ * <p>
+ * 抓包文件 ({@code capture-<id>.bin}) 的大小固定为 {@link #mFileBytes}, 使用 {@link FileChannel#map(FileChannel.MapMode, long, long)}
+ * 映射至内存后以只追加的方式写入, 当前文件写满后创建新的文件, 文件数量超过 {@link #mMaxFiles} 时删除最旧的文件
+ * 每条记录的格式为 {@code [magic][length][payload]}, {@code magic} 最后写入, 所以被中断的记录不会被读取, 记录的编码见 {@link CaptureRecord}
+ * 同一次请求的请求记录和响应记录带有相同的 call id, {@link HarConverter} 依此将它们配对
+ * <p>
+ * 打印方法只在调用线程中创建记录, 编码和写入都在后台的单个线程中完成, 不会阻塞 OkHttp 的线程
+ * 等待写入的记录超过 {@link #mCapacity} 条时丢弃最旧的记录, 可通过 {@link #getDroppedCount()} 查看被丢弃的记录数量
+ * 记录在写入文件前会使用 {@link HttpRedactor} 隐藏敏感信息, 默认为 {@link HttpRedactor#DEFAULT}
+ * <p>
+ * 每次启动都会从一个新的文件开始写入, 超过文件大小 1/8 的请求体或响应体会被截断
+ *
+ * @see GlobalConfigModule.Builder#formatPrinter(FormatPrinter)
+ * ================================================
+ */
+public class CaptureFormatPrinter implements FormatPrinter {
+    public static final int DEFAULT_FILE_BYTES = 1024 * 1024;
+    public static final int DEFAULT_MAX_FILES = 8;
+    //记录格式变化时需要修改, 旧格式的文件会被当作空文件
+    static final int RECORD_MAGIC = 0x41524D49;
+    static final int RECORD_HEADER_SIZE = 8;
+    private static final String FILE_PREFIX = "capture-";
+    private static final String FILE_SUFFIX = ".bin";
+    
+    private final File mDirectory;
+    private final int mFileBytes;
+    private final int mMaxFiles;
+    private final int mCapacity;
+    @Nullable
+    private final HttpRedactor mRedactor;
+    private final ThreadPoolExecutor mExecutor;
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final AtomicLong mLastCallId = new AtomicLong(CaptureRecord.NO_CALL_ID);
+    //已记录但还未收到响应的请求的 call id, 使用弱引用, 没有响应的请求不会造成泄漏
+    private final Map<Request, Long> mCallIds = Collections.synchronizedMap(new WeakHashMap<>());
+    //以下字段只在写入线程中访问
+    private MappedByteBuffer mBuffer;
+    private int mPosition;
+    private int mNextId = -1;
+    
+    public CaptureFormatPrinter(@NonNull File directory) {
+        this(directory, DEFAULT_FILE_BYTES, DEFAULT_MAX_FILES, AsyncFormatPrinter.DEFAULT_CAPACITY, HttpRedactor.DEFAULT);
+    }
+    
+    /**
+     * Constructor for CaptureFormatPrinter.
+     *
+     * @param directory 抓包文件的存放目录, 比如 {@code new File(context.getExternalFilesDir(null), "http-capture")}
+     * @param fileBytes 每个抓包文件的大小
+     * @param maxFiles  最多保留的抓包文件数量
+     * @param capacity  等待写入的记录最多能缓存的条数
+     * @param redactor  写入前隐藏敏感信息的 {@link HttpRedactor}, 为 {@code null} 时原样写入
+     */
+    public CaptureFormatPrinter(@NonNull File directory, int fileBytes, int maxFiles, int capacity, @Nullable HttpRedactor redactor) {
+        Preconditions.checkArgument(fileBytes >= 4096, "FileBytes must be >= 4096");
+        Preconditions.checkArgument(maxFiles > 0, "MaxFiles must be > 0");
+        Preconditions.checkArgument(capacity > 0, "Capacity must be > 0");
+        this.mDirectory = Preconditions.checkNotNull(directory, "directory can not be null.");
+        this.mFileBytes = fileBytes;
+        this.mMaxFiles = maxFiles;
+        this.mCapacity = capacity;
+        this.mRedactor = redactor;
+        this.mExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity),
+            Util.threadFactory("Arms HttpCapture", true), new ThreadPoolExecutor.DiscardOldestPolicy() {
+            @Override
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                mDroppedCount.incrementAndGet();
+                super.rejectedExecution(r, executor);
+            }
+        });
+    }
+    
+    /**
+     * 返回因等待写入的记录过多或记录过大而被丢弃的记录数量
+     *
+     * @return 被丢弃的记录数量
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+    
+    /**
+     * 返回当前所有的抓包文件, 按写入的先后顺序排列
+     *
+     * @return 抓包文件
+     */
+    @NonNull
+    public List<File> getCaptureFiles() {
+        return listCaptureFiles(mDirectory);
+    }
+    
+    /**
+     * 将当前所有的抓包文件转换为 HAR 格式写入 {@code out}, 此时正在写入的记录不会被导出, 请不要在主线程中调用
+     *
+     * @param out 写入 HAR 的 {@link Writer}, 不会被关闭
+     * @throws IOException
+     * @see HarConverter
+     */
+    public void exportHar(@NonNull Writer out) throws IOException {
+        new HarConverter().convert(getCaptureFiles(), out);
+    }
+    
+    @Override
+    public void printJsonRequest(@NonNull Request request, @NonNull String bodyString) {
+        enqueue(request(request, bodyString));
+    }
+    
+    @Override
+    public void printFileRequest(@NonNull Request request) {
+        enqueue(request(request, null));
+    }
+    
+    @Override
+    public void printJsonResponse(long chainMs, boolean isSuccessful, int code, @NonNull String headers, @Nullable MediaType contentType,
+                                  @Nullable String bodyString, @NonNull List<String> segments, @NonNull String message, @NonNull String responseUrl) {
+        enqueue(new CaptureRecord(CaptureRecord.TYPE_RESPONSE, CaptureRecord.NO_CALL_ID, System.currentTimeMillis(), chainMs, code,
+            isSuccessful, message, responseUrl, headers, contentType == null ? null : contentType.toString(), bodyString));
+    }
+    
+    @Override
+    public void printFileResponse(long chainMs, boolean isSuccessful, int code, @NonNull String headers,
+                                  @NonNull List<String> segments, @NonNull String message, @NonNull String responseUrl) {
+        enqueue(new CaptureRecord(CaptureRecord.TYPE_RESPONSE, CaptureRecord.NO_CALL_ID, System.currentTimeMillis(), chainMs, code,
+            isSuccessful, message, responseUrl, headers, null, null));
+    }
+    
+    @Override
+    public void printJsonResponse(@NonNull Request request, long chainMs, boolean isSuccessful, int code, @NonNull String headers,
+                                  @Nullable MediaType contentType, @Nullable String bodyString, @NonNull List<String> segments,
+                                  @NonNull String message, @NonNull String responseUrl) {
+        enqueue(new CaptureRecord(CaptureRecord.TYPE_RESPONSE, takeCallId(request), System.currentTimeMillis(), chainMs, code,
+            isSuccessful, message, responseUrl, headers, contentType == null ? null : contentType.toString(), bodyString));
+    }
+    
+    @Override
+    public void printFileResponse(@NonNull Request request, long chainMs, boolean isSuccessful, int code, @NonNull String headers,
+                                  @NonNull List<String> segments, @NonNull String message, @NonNull String responseUrl) {
+        enqueue(new CaptureRecord(CaptureRecord.TYPE_RESPONSE, takeCallId(request), System.currentTimeMillis(), chainMs, code,
+            isSuccessful, message, responseUrl, headers, null, null));
+    }
+    
+    private CaptureRecord request(Request request, @Nullable String bodyString) {
+        final long callId = mLastCallId.incrementAndGet();
+        mCallIds.put(request, callId);
+        final MediaType contentType = request.body() == null ? null : request.body().contentType();
+        return new CaptureRecord(CaptureRecord.TYPE_REQUEST, callId, System.currentTimeMillis(), 0, 0, false, request.method(),
+            request.url().toString(), request.headers().toString(), contentType == null ? null : contentType.toString(), bodyString);
+    }
+    
+    /**
+     * 取出 {@code request} 的请求记录的 call id, 请求没有被记录时返回 {@link CaptureRecord#NO_CALL_ID}
+     */
+    private long takeCallId(Request request) {
+        final Long callId = mCallIds.remove(request);
+        return callId == null ? CaptureRecord.NO_CALL_ID : callId;
+    }
+    
+    private void enqueue(CaptureRecord record) {
+        mExecutor.execute(() -> append(record));
+    }
+    
+    private void append(CaptureRecord record) {
+        try {
+            final byte[] payload = redact(record).encode();
+            final int length = RECORD_HEADER_SIZE + payload.length;
+            if (length > mFileBytes) {
+                mDroppedCount.incrementAndGet();
+                return;
+            }
+            if (mBuffer == null || mPosition + length > mFileBytes) {
+                rotate();
+            }
+            mBuffer.position(mPosition + RECORD_HEADER_SIZE);
+            mBuffer.put(payload);
+            mBuffer.putInt(mPosition + 4, payload.length);
+            //最后写入 magic, 读取时遇到 magic 不匹配即认为文件结束
+            mBuffer.putInt(mPosition, RECORD_MAGIC);
+            mPosition += length;
+        } catch (IOException e) {
+            mDroppedCount.incrementAndGet();
+            Timber.w(e, "Write http capture failed");
+        }
+    }
+    
+    private CaptureRecord redact(CaptureRecord record) {
+        final int maxBodyLength = mFileBytes / 8;
+        String body = mRedactor == null ? record.body : mRedactor.redactBody(record.body);
+        if (body != null && body.length() > maxBodyLength) {
+            body = body.substring(0, maxBodyLength) + "\n...(truncated)";
+        }
+        final String headers = mRedactor == null ? record.headers : mRedactor.redactHeaders(record.headers);
+        final String url = mRedactor == null ? record.url : mRedactor.redactUrl(record.url);
+        return new CaptureRecord(record.type, record.callId, record.timestamp, record.chainMs, record.code, record.successful,
+            record.method, url, headers, record.contentType, body);
+    }
+    
+    /**
+     * 创建新的抓包文件, 并删除超出数量的最旧的文件
+     */
+    private void rotate() throws IOException {
+        if (mBuffer != null) {
+            mBuffer.force();
+            mBuffer = null;
+        }
+        List<File> files = listCaptureFiles(mDirectory);
+        if (mNextId < 0) {
+            if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+                throw new IOException("Unable to create directory " + mDirectory);
+            }
+            mNextId = files.isEmpty() ? 0 : fileId(files.get(files.size() - 1)) + 1;
+        }
+        final File file = new File(mDirectory, FILE_PREFIX + mNextId++ + FILE_SUFFIX);
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            mBuffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, mFileBytes);
+        } finally {
+            //映射建立后关闭文件, 映射依然有效
+            ZipHelper.closeQuietly(randomAccessFile);
+        }
+        mPosition = 0;
+        for (int i = 0; i < files.size() + 1 - mMaxFiles; i++) {
+            //noinspection ResultOfMethodCallIgnored
+            files.get(i).delete();
+        }
+    }
+    
+    /**
+     * 返回 {@code directory} 中所有的抓包文件, 按写入的先后顺序排列
+     *
+     * @param directory 抓包文件的存放目录
+     * @return 抓包文件
+     */
+    @NonNull
+    static List<File> listCaptureFiles(File directory) {
+        final File[] files = directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX)
+            && fileId(name) >= 0);
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        final List<File> list = new ArrayList<>(files.length);
+        Collections.addAll(list, files);
+        Collections.sort(list, (o1, o2) -> fileId(o1) - fileId(o2));
+        return list;
+    }
+    
+    private static int fileId(File file) {
+        return fileId(file.getName());
+    }
+    
+    private static int fileId(String name) {
+        try {
+            return Integer.parseInt(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.log;
+
+import java.io.EOFException;
+import java.nio.charset.Charset;
+
+import androidx.annotation.Nullable;
+import okio.Buffer;
+
+/**
+ * ================================================
+ * {@link CaptureFormatPrinter} 写入抓包文件的一条记录, 以及它的二进制编码
+ * <p>
+ * 编码格式为 {@code [type][callId][timestamp][chainMs][code][successful][method][url][headers][contentType][body]}
+ * 字符串以 {@code [length][UTF-8 bytes]} 的形式写入, {@code length} 为 -1 时表示 {@code null}
+ * 请求记录的 {@code chainMs}, {@code code} 和 {@code successful} 没有意义, 响应记录的 {@code method} 为响应信息 (message)
+ * 同一次请求的请求记录和响应记录的 {@code callId} 相同, 找不到对应的请求记录时响应记录的 {@code callId} 为 {@link #NO_CALL_ID}
+ * ================================================
+ */
+final class CaptureRecord {
+    static final byte TYPE_REQUEST = 1;
+    static final byte TYPE_RESPONSE = 2;
+    static final long NO_CALL_ID = 0;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    
+    final byte type;
+    final long callId;
+    final long timestamp;
+    final long chainMs;
+    final int code;
+    final boolean successful;
+    final String method;
+    final String url;
+    final String headers;
+    @Nullable
+    final String contentType;
+    @Nullable
+    final String body;
+    
+    CaptureRecord(byte type, long callId, long timestamp, long chainMs, int code, boolean successful, String method, String url,
+                  String headers, @Nullable String contentType, @Nullable String body) {
+        this.type = type;
+        this.callId = callId;
+        this.timestamp = timestamp;
+        this.chainMs = chainMs;
+        this.code = code;
+        this.successful = successful;
+        this.method = method;
+        this.url = url;
+        this.headers = headers;
+        this.contentType = contentType;
+        this.body = body;
+    }
+    
+    /**
+     * 响应信息, 只有响应记录才有
+     */
+    String message() {
+        return method;
+    }
+    
+    byte[] encode() {
+        final Buffer buffer = new Buffer();
+        buffer.writeByte(type);
+        buffer.writeLong(callId);
+        buffer.writeLong(timestamp);
+        buffer.writeLong(chainMs);
+        buffer.writeInt(code);
+        buffer.writeByte(successful ? 1 : 0);
+        writeString(buffer, method);
+        writeString(buffer, url);
+        writeString(buffer, headers);
+        writeString(buffer, contentType);
+        writeString(buffer, body);
+        return buffer.readByteArray();
+    }
+    
+    static CaptureRecord decode(byte[] bytes) throws EOFException {
+        final Buffer buffer = new Buffer().write(bytes);
+        return new CaptureRecord(buffer.readByte(), buffer.readLong(), buffer.readLong(), buffer.readLong(), buffer.readInt(),
+            buffer.readByte() != 0, readString(buffer), readString(buffer), readString(buffer),
+            readString(buffer), readString(buffer));
+    }
+    
+    private static void writeString(Buffer buffer, @Nullable String value) {
+        if (value == null) {
+            buffer.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(UTF_8);
+        buffer.writeInt(bytes.length);
+        buffer.write(bytes);
+    }
+    
+    private static String readString(Buffer buffer) throws EOFException {
+        final int length = buffer.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > buffer.size()) {
+            throw new EOFException("Broken string length " + length);
+        }
+        return buffer.readUtf8(length);
+    }
+}
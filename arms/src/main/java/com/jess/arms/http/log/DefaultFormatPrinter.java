@@ -69,6 +69,22 @@ public class DefaultFormatPrinter implements FormatPrinter {
             return 0;
         }
     };
+    private final int mMaxBodyLength;
+    
+    public DefaultFormatPrinter() {
+        this(CharacterHandler.DEFAULT_FORMAT_MAX_LENGTH);
+    }
+    
+    /**
+     * @param maxBodyLength 格式化 json 和 xml 响应体时最多输出的字符数, 超出的部分会被截断
+     *                      可以通过 {@link GlobalConfigModule.Builder#formatPrinter(FormatPrinter)} 设置
+     */
+    public DefaultFormatPrinter(int maxBodyLength) {
+        if (maxBodyLength <= 0) {
+            throw new IllegalArgumentException("maxBodyLength must be > 0");
+        }
+        this.mMaxBodyLength = maxBodyLength;
+    }
     
     private static boolean isEmpty(String line) {
         return TextUtils.isEmpty(line) || N.equals(line) || T.equals(line) || TextUtils.isEmpty(line.trim());
@@ -191,7 +207,7 @@ public class DefaultFormatPrinter implements FormatPrinter {
      */
     @Override
     public void printJsonRequest(@NonNull Request request, @NonNull String bodyString) {
-        final String requestBody = LINE_SEPARATOR + BODY_TAG + LINE_SEPARATOR + bodyString;
+        final String requestBody = LINE_SEPARATOR + BODY_TAG + LINE_SEPARATOR + CharacterHandler.jsonFormat(bodyString, mMaxBodyLength);
         final String tag = getTag(true);
         
         LogUtils.debugInfo(tag, REQUEST_UP_LINE);
@@ -233,8 +249,8 @@ public class DefaultFormatPrinter implements FormatPrinter {
     @Override
     public void printJsonResponse(long chainMs, boolean isSuccessful, int code, @NonNull String headers, @Nullable MediaType contentType,
                                   @Nullable String bodyString, @NonNull List<String> segments, @NonNull String message, @NonNull final String responseUrl) {
-        bodyString = RequestInterceptor.isJson(contentType) ? CharacterHandler.jsonFormat(bodyString)
-            : RequestInterceptor.isXml(contentType) ? CharacterHandler.xmlFormat(bodyString) : bodyString;
+        bodyString = RequestInterceptor.isJson(contentType) ? CharacterHandler.jsonFormat(bodyString, mMaxBodyLength)
+            : RequestInterceptor.isXml(contentType) ? CharacterHandler.xmlFormat(bodyString, mMaxBodyLength) : bodyString;
         
         final String responseBody = LINE_SEPARATOR + BODY_TAG + LINE_SEPARATOR + bodyString;
         final String tag = getTag(false);
@@ -42,7 +42,7 @@ public interface FormatPrinter {
      * 打印网络请求信息, 当网络请求时 {{@link okhttp3.RequestBody}} 可以解析的情况
      *
      * @param request
-     * @param bodyString 发送给服务器的请求体中的数据(已解析)
+     * @param bodyString 发送给服务器的请求体中的数据(已解码, 未格式化)
      */
     void printJsonRequest(@NonNull Request request, @NonNull String bodyString);
     
@@ -82,4 +82,30 @@ public interface FormatPrinter {
      */
     void printFileResponse(long chainMs, boolean isSuccessful, int code, @NonNull String headers,
                            @NonNull List<String> segments, @NonNull String message, @NonNull String responseUrl);
+    
+    /**
+     * 与 {@link #printJsonResponse(long, boolean, int, String, MediaType, String, List, String, String)} 相同,
+     * 但多了发起此次请求的 {@link Request}, 与 {@link #printJsonRequest(Request, String)} 或 {@link #printFileRequest(Request)}
+     * 收到的是同一个对象, 可以用来将响应与请求配对 (重定向后 {@code responseUrl} 与请求的 url 不同)
+     * 框架只会调用此方法, 默认实现交给不带 {@link Request} 的方法
+     *
+     * @param request 发起此次请求的 {@link Request}
+     */
+    default void printJsonResponse(@NonNull Request request, long chainMs, boolean isSuccessful, int code, @NonNull String headers,
+                                   @Nullable MediaType contentType, @Nullable String bodyString, @NonNull List<String> segments,
+                                   @NonNull String message, @NonNull String responseUrl) {
+        printJsonResponse(chainMs, isSuccessful, code, headers, contentType, bodyString, segments, message, responseUrl);
+    }
+    
+    /**
+     * 与 {@link #printFileResponse(long, boolean, int, String, List, String, String)} 相同, 但多了发起此次请求的 {@link Request}
+     * 框架只会调用此方法, 默认实现交给不带 {@link Request} 的方法
+     *
+     * @param request 发起此次请求的 {@link Request}
+     * @see #printJsonResponse(Request, long, boolean, int, String, MediaType, String, List, String, String)
+     */
+    default void printFileResponse(@NonNull Request request, long chainMs, boolean isSuccessful, int code, @NonNull String headers,
+                                   @NonNull List<String> segments, @NonNull String message, @NonNull String responseUrl) {
+        printFileResponse(chainMs, isSuccessful, code, headers, segments, message, responseUrl);
+    }
 }
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.log;
+
+import android.util.JsonWriter;
+
+import com.jess.arms.BuildConfig;
+import com.jess.arms.utils.Preconditions;
+import com.jess.arms.utils.ZipHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.HttpUrl;
+import timber.log.Timber;
+
+/**
+ * ================================================
+ * 将 {@link CaptureFormatPrinter} 写入的抓包文件转换为 HAR 1.2 格式, 可以导入 Chrome DevTools, Charles 等工具离线分析
+ * <p>
+ * 抓包文件中请求和响应是分开记录的, 转换时按记录中的 call id 将响应与请求配对, 没有响应的请求以状态码 0 输出
+ * 按 call id 配对不受重定向 (响应的 url 与请求不同) 和同一 url 的并发请求影响
+ * 转换时可以再使用一个 {@link HttpRedactor} 隐藏敏感信息, 比如在抓包时不想隐藏, 而在分享给他人时才隐藏
+ * ================================================
+ */
+public final class HarConverter {
+    @Nullable
+    private final HttpRedactor mRedactor;
+    private final SimpleDateFormat mDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+    
+    public HarConverter() {
+        this(null);
+    }
+    
+    /**
+     * @param redactor 转换时隐藏敏感信息的 {@link HttpRedactor}, 为 {@code null} 时原样输出
+     */
+    public HarConverter(@Nullable HttpRedactor redactor) {
+        this.mRedactor = redactor;
+        mDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+    
+    /**
+     * 将 {@code directory} 中所有的抓包文件转换为 HAR 格式写入 {@code out}
+     *
+     * @param directory 抓包文件的存放目录
+     * @param out       写入 HAR 的 {@link Writer}, 不会被关闭
+     * @throws IOException
+     */
+    public void convert(@NonNull File directory, @NonNull Writer out) throws IOException {
+        convert(CaptureFormatPrinter.listCaptureFiles(directory), out);
+    }
+    
+    /**
+     * 将 {@code files} 转换为 HAR 格式写入 {@code out}, 每次读取一个文件, 边读边写
+     *
+     * @param files 抓包文件, 需要按写入的先后顺序排列
+     * @param out   写入 HAR 的 {@link Writer}, 不会被关闭
+     * @throws IOException
+     */
+    public void convert(@NonNull List<File> files, @NonNull Writer out) throws IOException {
+        Preconditions.checkNotNull(files, "files can not be null.");
+        final JsonWriter writer = new JsonWriter(Preconditions.checkNotNull(out, "out can not be null."));
+        writer.setIndent("  ");
+        writer.beginObject().name("log").beginObject();
+        writer.name("version").value("1.2");
+        writer.name("creator").beginObject().name("name").value("MVPArms").name("version").value(BuildConfig.VERSION_NAME).endObject();
+        writer.name("entries").beginArray();
+        
+        //等待与响应配对的请求, key 为 call id, 按写入的先后顺序排列
+        final Map<Long, CaptureRecord> pending = new LinkedHashMap<>();
+        for (File file : files) {
+            final ByteBuffer buffer = read(file);
+            int position = 0;
+            while (position + CaptureFormatPrinter.RECORD_HEADER_SIZE <= buffer.limit()
+                && buffer.getInt(position) == CaptureFormatPrinter.RECORD_MAGIC) {
+                final int length = buffer.getInt(position + 4);
+                if (length < 0 || length > buffer.limit() - position - CaptureFormatPrinter.RECORD_HEADER_SIZE) {
+                    break;
+                }
+                final byte[] payload = new byte[length];
+                buffer.position(position + CaptureFormatPrinter.RECORD_HEADER_SIZE);
+                buffer.get(payload);
+                position += CaptureFormatPrinter.RECORD_HEADER_SIZE + length;
+                
+                final CaptureRecord record;
+                try {
+                    record = CaptureRecord.decode(payload);
+                } catch (IOException | RuntimeException e) {
+                    Timber.w(e, "Skip broken http capture record in %s", file);
+                    continue;
+                }
+                if (record.type == CaptureRecord.TYPE_REQUEST) {
+                    pending.put(record.callId, record);
+                } else if (record.type == CaptureRecord.TYPE_RESPONSE) {
+                    final CaptureRecord request = record.callId == CaptureRecord.NO_CALL_ID ? null : pending.remove(record.callId);
+                    writeEntry(writer, request, record);
+                }
+            }
+        }
+        for (CaptureRecord request : pending.values()) {
+            writeEntry(writer, request, null);
+        }
+        
+        writer.endArray();
+        writer.endObject().endObject();
+        writer.flush();
+    }
+    
+    private static ByteBuffer read(File file) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final byte[] bytes = new byte[(int) randomAccessFile.length()];
+            randomAccessFile.readFully(bytes);
+            return ByteBuffer.wrap(bytes);
+        } finally {
+            ZipHelper.closeQuietly(randomAccessFile);
+        }
+    }
+    
+    private void writeEntry(JsonWriter writer, @Nullable CaptureRecord request, @Nullable CaptureRecord response) throws IOException {
+        final CaptureRecord first = request != null ? request : response;
+        final long started = request != null ? request.timestamp : response.timestamp - response.chainMs;
+        final long time = response == null ? 0 : response.chainMs;
+        
+        writer.beginObject();
+        writer.name("startedDateTime").value(mDateFormat.format(new Date(started)));
+        writer.name("time").value(time);
+        
+        writer.name("request").beginObject();
+        writer.name("method").value(request == null ? "GET" : request.method);
+        final String requestUrl = mRedactor == null ? first.url : mRedactor.redactUrl(first.url);
+        writer.name("url").value(requestUrl);
+        writer.name("httpVersion").value("HTTP/1.1");
+        writer.name("cookies").beginArray().endArray();
+        writeHeaders(writer, request == null ? "" : request.headers);
+        writer.name("queryString").beginArray();
+        final HttpUrl url = HttpUrl.parse(requestUrl);
+        if (url != null) {
+            for (int i = 0; i < url.querySize(); i++) {
+                writer.beginObject()
+                    .name("name").value(url.queryParameterName(i))
+                    .name("value").value(url.queryParameterValue(i) == null ? "" : url.queryParameterValue(i))
+                    .endObject();
+            }
+        }
+        writer.endArray();
+        if (request != null && request.body != null) {
+            writer.name("postData").beginObject()
+                .name("mimeType").value(request.contentType == null ? "" : request.contentType)
+                .name("text").value(redactBody(request.body))
+                .endObject();
+        }
+        writer.name("headersSize").value(-1);
+        writer.name("bodySize").value(request != null && request.body != null ? request.body.length() : -1);
+        writer.endObject();
+        
+        writer.name("response").beginObject();
+        writer.name("status").value(response == null ? 0 : response.code);
+        writer.name("statusText").value(response == null ? "" : response.message());
+        writer.name("httpVersion").value("HTTP/1.1");
+        writer.name("cookies").beginArray().endArray();
+        writeHeaders(writer, response == null ? "" : response.headers);
+        writer.name("content").beginObject();
+        writer.name("size").value(response == null || response.body == null ? 0 : response.body.length());
+        writer.name("mimeType").value(response == null || response.contentType == null ? "" : response.contentType);
+        if (response != null && response.body != null) {
+            writer.name("text").value(redactBody(response.body));
+        }
+        writer.endObject();
+        final String location = response == null ? "" : headerValue(response.headers, "Location");
+        writer.name("redirectURL").value(mRedactor == null ? location : mRedactor.redactUrl(location));
+        writer.name("headersSize").value(-1);
+        writer.name("bodySize").value(-1);
+        writer.endObject();
+        
+        writer.name("cache").beginObject().endObject();
+        writer.name("timings").beginObject()
+            .name("send").value(0)
+            .name("wait").value(time)
+            .name("receive").value(0)
+            .endObject();
+        writer.endObject();
+    }
+    
+    private String redactBody(String body) {
+        return mRedactor == null ? body : mRedactor.redactBody(body);
+    }
+    
+    /**
+     * 将 {@code okhttp3.Headers#toString()} 格式的请求头或响应头以 HAR 的格式写入
+     */
+    private void writeHeaders(JsonWriter writer, String headers) throws IOException {
+        writer.name("headers").beginArray();
+        for (String line : headers.split("\n")) {
+            final int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            final String name = line.substring(0, colon).trim();
+            final String value = mRedactor != null && mRedactor.isRedactedHeader(name)
+                ? HttpRedactor.REDACTED : line.substring(colon + 1).trim();
+            writer.beginObject().name("name").value(name).name("value").value(value).endObject();
+        }
+        writer.endArray();
+    }
+    
+    private static String headerValue(String headers, String name) {
+        for (String line : headers.split("\n")) {
+            final int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase(name)) {
+                return line.substring(colon + 1).trim();
+            }
+        }
+        return "";
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.log;
+
+import com.jess.arms.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import androidx.annotation.Nullable;
+
+/**
+ * ================================================
+ * 隐藏 Http 抓包记录中的敏感信息, 比如 token, cookie 以及密码
+ * <p>
+ * 指定名称的请求头或响应头的值会被替换为 {@link #REDACTED}; 请求体和响应体中指定名称的 json 字段 (任意层级)
+ * 以及 {@code application/x-www-form-urlencoded} 格式中指定名称的参数, 它们的值也会被替换为 {@link #REDACTED}
+ * url 中与之同名的查询参数 (比如 {@code ?token=xxx}) 同样会被隐藏
+ *
+ * @see CaptureFormatPrinter
+ * @see HarConverter
+ * ================================================
+ */
+public final class HttpRedactor {
+    public static final String REDACTED = "***";
+    /**
+     * 隐藏 {@code Authorization}, {@code Proxy-Authorization}, {@code Cookie} 和 {@code Set-Cookie}
+     */
+    public static final HttpRedactor DEFAULT = new Builder()
+        .header("Authorization")
+        .header("Proxy-Authorization")
+        .header("Cookie")
+        .header("Set-Cookie")
+        .build();
+    
+    private final Set<String> mHeaders;
+    @Nullable
+    private final Pattern mJsonFields;
+    @Nullable
+    private final Pattern mFormFields;
+    @Nullable
+    private final Pattern mQueryParameters;
+    
+    private HttpRedactor(Builder builder) {
+        this.mHeaders = Collections.unmodifiableSet(new HashSet<>(builder.headers));
+        if (builder.bodyFields.isEmpty()) {
+            this.mJsonFields = null;
+            this.mFormFields = null;
+            this.mQueryParameters = null;
+        } else {
+            final StringBuilder names = new StringBuilder();
+            for (String field : builder.bodyFields) {
+                if (names.length() > 0) {
+                    names.append('|');
+                }
+                names.append(field);
+            }
+            //"name": "value" 或 "name": 123/true/null, 值为对象或数组时不处理, 其中的字段会被单独匹配
+            this.mJsonFields = Pattern.compile("(\"(?:" + names + ")\"\\s*:\\s*)(\"(?:[^\"\\\\]|\\\\.)*\"|[^\\s,}\\]\\[{]+)");
+            this.mFormFields = Pattern.compile("((?:^|&)(?:" + names + ")=)([^&]*)");
+            //查询参数的值到下一个参数或 fragment 为止
+            this.mQueryParameters = Pattern.compile("([?&](?:" + names + ")=)([^&#]*)");
+        }
+    }
+    
+    /**
+     * 此请求头或响应头是否需要隐藏
+     *
+     * @param name 请求头或响应头的名称
+     * @return {@code true} 为需要隐藏
+     */
+    public boolean isRedactedHeader(String name) {
+        return mHeaders.contains(name.toLowerCase(Locale.US));
+    }
+    
+    /**
+     * 隐藏 {@code okhttp3.Headers#toString()} 格式 (每行一个 {@code name: value}) 的请求头或响应头中需要隐藏的值
+     *
+     * @param headers 请求头或响应头
+     * @return 隐藏后的请求头或响应头
+     */
+    public String redactHeaders(String headers) {
+        if (mHeaders.isEmpty() || headers == null || headers.length() == 0) {
+            return headers;
+        }
+        final StringBuilder builder = new StringBuilder(headers.length());
+        int start = 0;
+        while (start < headers.length()) {
+            int end = headers.indexOf('\n', start);
+            end = end == -1 ? headers.length() : end + 1;
+            final int colon = headers.indexOf(':', start);
+            if (colon > start && colon < end && isRedactedHeader(headers.substring(start, colon).trim())) {
+                builder.append(headers, start, colon).append(": ").append(REDACTED);
+                if (headers.charAt(end - 1) == '\n') {
+                    builder.append('\n');
+                }
+            } else {
+                builder.append(headers, start, end);
+            }
+            start = end;
+        }
+        return builder.toString();
+    }
+    
+    /**
+     * 隐藏请求体或响应体中需要隐藏的 json 字段和表单参数的值
+     *
+     * @param body 请求体或响应体
+     * @return 隐藏后的请求体或响应体
+     */
+    @Nullable
+    public String redactBody(@Nullable String body) {
+        if (mJsonFields == null || body == null || body.length() == 0) {
+            return body;
+        }
+        final String redacted = replace(mJsonFields, body, "\"" + REDACTED + "\"");
+        return replace(mFormFields, redacted, REDACTED);
+    }
+    
+    /**
+     * 隐藏 url 中需要隐藏的查询参数的值
+     *
+     * @param url 请求地址
+     * @return 隐藏后的请求地址
+     */
+    public String redactUrl(String url) {
+        if (mQueryParameters == null || url == null || url.indexOf('?') == -1) {
+            return url;
+        }
+        return replace(mQueryParameters, url, REDACTED);
+    }
+    
+    private static String replace(Pattern pattern, String input, String replacement) {
+        final Matcher matcher = pattern.matcher(input);
+        if (!matcher.find()) {
+            return input;
+        }
+        final StringBuilder builder = new StringBuilder(input.length());
+        int last = 0;
+        do {
+            builder.append(input, last, matcher.start(2)).append(replacement);
+            last = matcher.end(2);
+        } while (matcher.find());
+        return builder.append(input, last, input.length()).toString();
+    }
+    
+    public static final class Builder {
+        private final List<String> headers = new ArrayList<>();
+        private final List<String> bodyFields = new ArrayList<>();
+        
+        /**
+         * 隐藏此请求头或响应头的值, 不区分大小写
+         *
+         * @param name 请求头或响应头的名称
+         * @return {@link Builder}
+         */
+        public Builder header(String name) {
+            Preconditions.checkNotNull(name, "name can not be null.");
+            headers.add(name.toLowerCase(Locale.US));
+            return this;
+        }
+        
+        /**
+         * 隐藏请求体和响应体中此 json 字段或表单参数的值, 以及 url 中此查询参数的值, 区分大小写
+         *
+         * @param name json 字段, 表单参数或查询参数的名称
+         * @return {@link Builder}
+         */
+        public Builder bodyField(String name) {
+            Preconditions.checkNotNull(name, "name can not be null.");
+            bodyFields.add(Pattern.quote(name));
+            return this;
+        }
+        
+        public HttpRedactor build() {
+            return new HttpRedactor(this);
+        }
+    }
+}
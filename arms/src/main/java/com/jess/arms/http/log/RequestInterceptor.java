@@ -17,10 +17,12 @@ package com.jess.arms.http.log;
 
 import com.jess.arms.di.module.GlobalConfigModule;
 import com.jess.arms.http.GlobalHttpHandler;
+import com.jess.arms.http.HttpResultSupplier;
 import com.jess.arms.utils.CharacterHandler;
 import com.jess.arms.utils.UrlEncoderUtils;
 import com.jess.arms.utils.ZipHelper;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
@@ -29,6 +31,7 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 import androidx.annotation.Nullable;
@@ -40,6 +43,9 @@ import okhttp3.Response;
 import okhttp3.ResponseBody;
 import okio.Buffer;
 import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
 import timber.log.Timber;
 
 
@@ -48,6 +54,11 @@ import timber.log.Timber;
  * 解析框架中的网络请求和响应结果,并以日志形式输出,调试神器
  * 可使用 {@link GlobalConfigModule.Builder#printHttpLogLevel(Level)} 控制或关闭日志
  * <p>
+ * 默认会将整个响应体读取至内存后再解析, 使用 {@link GlobalConfigModule.Builder#responseCaptureLimit(long)} 可开启限制内存的
+ * 捕获模式: 只需要打印日志时, 响应体在被 Retrofit 读取的同时复制最多 {@link #mCaptureLimit} 个字节, 读取完毕后再打印日志,
+ * 不会延迟 Retrofit 读取到第一个字节; 只有 {@link GlobalHttpHandler} 调用 {@link HttpResultSupplier#get()} 时, 才会在返回
+ * {@link Response} 之前将完整的响应体读取至内存, {@link GlobalHttpHandler} 拿到的始终是未截断的响应结果
+ * <p>
  * Created by JessYan on 7/1/2016.
  * <a href="mailto:jess.yan.effort@gmail.com">Contact me</a>
  * <a href="https://github.com/JessYanCoding">Follow me</a>
@@ -62,19 +73,35 @@ public class RequestInterceptor implements Interceptor {
     FormatPrinter mPrinter;
     @Inject
     Level printLevel;
+    @Inject
+    @Named("ResponseCaptureLimit")
+    long mCaptureLimit;
     
     @Inject
     public RequestInterceptor() {
     }
     
     /**
-     * 解析请求服务器的请求参数
+     * 解析请求服务器的请求参数, 并格式化为 json
      *
      * @param request {@link Request}
      * @return 解析后的请求信息
      * @throws UnsupportedEncodingException
+     * @see #readParams(Request)
      */
     public static String parseParams(Request request) throws UnsupportedEncodingException {
+        return CharacterHandler.jsonFormat(readParams(request));
+    }
+    
+    /**
+     * 读取请求服务器的请求参数, 只做 url 解码, 不做格式化, 格式化由 {@link FormatPrinter} 完成
+     * 这样使用 {@link AsyncFormatPrinter} 时格式化的耗时也会转移至后台线程
+     *
+     * @param request {@link Request}
+     * @return 未格式化的请求信息
+     * @throws UnsupportedEncodingException
+     */
+    public static String readParams(Request request) throws UnsupportedEncodingException {
         try {
             RequestBody body = request.newBuilder().build().body();
             if (body == null) {
@@ -91,7 +118,7 @@ public class RequestInterceptor implements Interceptor {
             if (UrlEncoderUtils.hasUrlEncoded(json)) {
                 json = URLDecoder.decode(json, convertCharset(charset));
             }
-            return CharacterHandler.jsonFormat(json);
+            return json;
         } catch (IOException e) {
             e.printStackTrace();
             return "{\"error\": \"" + e.getMessage() + "\"}";
@@ -173,7 +200,7 @@ public class RequestInterceptor implements Interceptor {
         if (logRequest) {
             //打印请求信息
             if (request.body() != null && isParseable(request.body().contentType())) {
-                mPrinter.printJsonRequest(request, parseParams(request));
+                mPrinter.printJsonRequest(request, readParams(request));
             } else {
                 mPrinter.printFileRequest(request);
             }
@@ -192,39 +219,232 @@ public class RequestInterceptor implements Interceptor {
         long t2 = logResponse ? System.nanoTime() : 0;
         
         ResponseBody responseBody = originalResponse.body();
+        final boolean parseable = responseBody != null && isParseable(responseBody.contentType());
+        final long tookMs = TimeUnit.NANOSECONDS.toMillis(t2 - t1);
         
-        //打印响应结果
-        String bodyString = null;
-        if (responseBody != null && isParseable(responseBody.contentType())) {
-            bodyString = printResult(request, originalResponse, logResponse);
+        //捕获模式下, 响应体被读取完毕后再打印
+        final boolean printLater = logResponse && parseable && mCaptureLimit > 0;
+        if (printLater) {
+            originalResponse = captureResult(request, originalResponse, tookMs);
         }
         
-        if (logResponse) {
-            final List<String> segmentList = request.url().encodedPathSegments();
-            final String header = originalResponse.headers().toString();
-            final int code = originalResponse.code();
-            final boolean isSuccessful = originalResponse.isSuccessful();
-            final String message = originalResponse.message();
-            final String url = originalResponse.request().url().toString();
-            
-            if (responseBody != null && isParseable(responseBody.contentType())) {
-                mPrinter.printJsonResponse(TimeUnit.NANOSECONDS.toMillis(t2 - t1), isSuccessful,
-                    code, header, responseBody.contentType(), bodyString, segmentList, message, url);
-            } else {
-                mPrinter.printFileResponse(TimeUnit.NANOSECONDS.toMillis(t2 - t1),
-                    isSuccessful, code, header, segmentList, message, url);
-            }
-            
+        //响应结果只在需要时才读取, 不打印日志并且 GlobalHttpHandler 不需要结果时不会读取响应体
+        final HttpResult httpResult = new HttpResult(request, originalResponse, parseable, logResponse);
+        
+        //打印响应结果
+        if (logResponse && !printLater) {
+            printResponse(request, originalResponse, tookMs, parseable, httpResult.get());
         }
     
         if (mHandler != null)//这里可以比客户端提前一步拿到服务器返回的结果,可以做一些操作,比如token超时,重新获取
         {
-            return mHandler.onHttpResultResponse(bodyString, chain, originalResponse);
+            return mHandler.onHttpResultResponse(httpResult, chain, originalResponse);
         }
         
         return originalResponse;
     }
     
+    /**
+     * 延迟读取的响应结果, 第一次调用 {@link #get()} 时才读取完整的响应体, 之后返回同一个结果
+     * 捕获模式下也不会截断, 只有日志中的响应结果受 {@link #mCaptureLimit} 限制
+     */
+    private final class HttpResult implements HttpResultSupplier {
+        private final Request request;
+        private final Response response;
+        private final boolean parseable;
+        private final boolean logResponse;
+        private boolean read;
+        private String result;
+        
+        HttpResult(Request request, Response response, boolean parseable, boolean logResponse) {
+            this.request = request;
+            this.response = response;
+            this.parseable = parseable;
+            this.logResponse = logResponse;
+        }
+        
+        @Nullable
+        @Override
+        public String get() {
+            if (!read) {
+                read = true;
+                if (parseable) {
+                    try {
+                        result = printResult(request, response, logResponse);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        result = "{\"error\": \"" + e.getMessage() + "\"}";
+                    }
+                }
+            }
+            return result;
+        }
+    }
+    
+    private void printResponse(Request request, Response response, long tookMs, boolean parseable, @Nullable String bodyString) {
+        final List<String> segmentList = response.request().url().encodedPathSegments();
+        final String header = response.headers().toString();
+        final int code = response.code();
+        final boolean isSuccessful = response.isSuccessful();
+        final String message = response.message();
+        final String url = response.request().url().toString();
+        
+        if (parseable) {
+            mPrinter.printJsonResponse(request, tookMs, isSuccessful,
+                code, header, response.body().contentType(), bodyString, segmentList, message, url);
+        } else {
+            mPrinter.printFileResponse(request, tookMs,
+                isSuccessful, code, header, segmentList, message, url);
+        }
+    }
+    
+    /**
+     * 使用 {@link CapturingSource} 包装响应体, 在响应体被读取时复制最多 {@link #mCaptureLimit} 个字节, 读取完毕或关闭时打印日志
+     * 日志中只包含调用方真正读取了的内容, 没有读取完就被关闭的响应体会在日志中注明
+     *
+     * @param request  发起此次请求的 {@link Request}
+     * @param response {@link Response}
+     * @param tookMs   请求耗时
+     * @return 包装后的 {@link Response}
+     */
+    private Response captureResult(final Request request, final Response response, final long tookMs) {
+        final ResponseBody body = response.body();
+        final CapturingSource source = new CapturingSource(body.source(), mCaptureLimit) {
+            @Override
+            void onCaptured(Buffer captured, long consumed, boolean complete) {
+                printResponse(request, response, tookMs, true, parseCapturedContent(response, captured, consumed, complete));
+            }
+        };
+        return response.newBuilder()
+            .body(ResponseBody.create(body.contentType(), body.contentLength(), source.buffer()))
+            .build();
+    }
+    
+    /**
+     * 解析捕获到的 (可能被截断的) 响应结果, 压缩过的内容会尽量解压已捕获的部分
+     *
+     * @param captured 捕获到的内容, 最多 {@link #mCaptureLimit} 个字节
+     * @param consumed 调用方读取了的字节数
+     * @param complete 响应体是否被读取完毕
+     */
+    private String parseCapturedContent(Response response, Buffer captured, long consumed, boolean complete) {
+        boolean truncated = consumed > captured.size();
+        final String encoding = response.headers().get("Content-Encoding");
+        Charset charset = Charset.forName("UTF-8");
+        final MediaType contentType = response.body().contentType();
+        if (contentType != null) {
+            charset = contentType.charset(charset);
+        }
+        Buffer content = captured;
+        if (ZipHelper.isDecompressible(encoding)) {
+            content = new Buffer();
+            final Source decompressor = ZipHelper.decompressSource(captured, encoding);
+            try {
+                while (content.size() < mCaptureLimit && decompressor.read(content, 8192) != -1) {
+                    //解压至多 mCaptureLimit 个字节
+                }
+            } catch (EOFException e) {
+                //被截断的压缩内容只能解压出一部分
+                truncated = true;
+            } catch (IOException e) {
+                return "{\"error\": \"" + e.getMessage() + "\"}";
+            } finally {
+                ZipHelper.closeQuietly(decompressor);
+            }
+            if (content.size() > mCaptureLimit) {
+                final Buffer limited = new Buffer();
+                limited.write(content, mCaptureLimit);
+                content = limited;
+                truncated = true;
+            }
+        }
+        final String result = content.readString(charset);
+        if (!complete) {
+            return result + "\n...(response body closed after " + consumed + " bytes)";
+        }
+        return truncated ? result + "\n...(truncated, capture limit " + mCaptureLimit + " bytes)" : result;
+    }
+    
+    /**
+     * 在响应体被读取的同时复制最多 {@code limit} 个字节, 读取完毕或被关闭时回调 {@link #onCaptured(Buffer, long, boolean)}
+     * <p>
+     * 调用方通过 {@link #buffer()} 读取, {@link BufferedSource} 每次会预读一整个 Segment, 所以被关闭时需要减去其中还未被读取的部分,
+     * 保证回调的内容与调用方真正读取的内容一致
+     */
+    abstract static class CapturingSource extends ForwardingSource {
+        private final Buffer captured = new Buffer();
+        private final long limit;
+        @Nullable
+        private BufferedSource consumer;
+        private long received;
+        private boolean exhausted;
+        private boolean finished;
+        
+        CapturingSource(Source delegate, long limit) {
+            super(delegate);
+            this.limit = limit;
+        }
+        
+        /**
+         * 返回供调用方读取的 {@link BufferedSource}
+         */
+        BufferedSource buffer() {
+            if (consumer == null) {
+                consumer = Okio.buffer(this);
+            }
+            return consumer;
+        }
+        
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            final long read = super.read(sink, byteCount);
+            if (read == -1) {
+                exhausted = true;
+                finish();
+                return read;
+            }
+            final long remaining = limit - captured.size();
+            if (remaining > 0) {
+                sink.copyTo(captured, sink.size() - read, Math.min(read, remaining));
+            }
+            received += read;
+            return read;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            finish();
+            super.close();
+        }
+        
+        private void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            //consumer 关闭时先关闭此 Source 再清空自己的缓冲, 所以此时缓冲中还是预读了但未被读取的内容
+            final long consumed = exhausted || consumer == null ? received : received - consumer.buffer().size();
+            Buffer result = captured;
+            if (captured.size() > consumed) {
+                result = new Buffer();
+                captured.copyTo(result, 0, consumed);
+            }
+            try {
+                onCaptured(result, consumed, exhausted);
+            } catch (RuntimeException e) {
+                //打印日志失败不能影响响应体的读取
+                Timber.w(e, "Print captured response failed");
+            }
+        }
+        
+        /**
+         * @param captured 调用方读取了的内容, 最多 {@code limit} 个字节
+         * @param consumed 调用方读取了的字节数, 大于 {@code captured} 的大小时说明被截断
+         * @param complete 响应体是否被读取完毕, 为 {@code false} 时说明响应体在读取完毕前被关闭
+         */
+        abstract void onCaptured(Buffer captured, long consumed, boolean complete);
+    }
+    
     /**
      * 打印响应结果
      *
@@ -272,12 +492,12 @@ public class RequestInterceptor implements Interceptor {
         if (contentType != null) {
             charset = contentType.charset(charset);
         }
-        if (encoding != null && encoding.equalsIgnoreCase("gzip")) {//content 使用 gzip 压缩
-            return ZipHelper.decompressForGzip(clone.readByteArray(), convertCharset(charset));//解压
-        } else if (encoding != null && encoding.equalsIgnoreCase("zlib")) {//content 使用 zlib 压缩
-            return ZipHelper.decompressToStringForZlib(clone.readByteArray(), convertCharset(charset));//解压
-        } else {//content 没有被压缩, 或者使用其他未知压缩方式
-            return clone.readString(charset);
+        try {
+            //content 使用 gzip, zlib 或 deflate 压缩时边解压边解码, 没有被压缩或者使用其他未知压缩方式时直接读取
+            return ZipHelper.decompressToString(clone, encoding, charset);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return "{\"error\": \"" + e.getMessage() + "\"}";
         }
     }
     
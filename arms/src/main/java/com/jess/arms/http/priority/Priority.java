@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.priority;
+
+import retrofit2.http.Tag;
+
+/**
+ * ================================================
+ * 网络请求和后台任务的优先级, 优先级高的先执行
+ * <p>
+ * 网络请求可以通过以下任意一种方式指定优先级, 未指定时为 {@link #USER_BLOCKING}:
+ * 1. 在 Retrofit service 的方法上添加 {@link RequestPriority}
+ * 2. 在 Retrofit service 的方法中添加 {@link Tag} 参数, 比如 {@code Observable<User> getUser(@Tag Priority priority)}
+ * 3. 直接使用 OkHttp 时调用 {@code Request.Builder#tag(Priority.class, Priority.PREFETCH)}
+ *
+ * @see PriorityCallFactory
+ * @see PriorityExecutor
+ * ================================================
+ */
+public enum Priority {
+    /**
+     * 用户正在等待结果的请求, 比如当前页面的数据, 不受并发数的限制
+     */
+    USER_BLOCKING,
+    /**
+     * 预加载, 比如下一页的数据, 用户很可能马上就会用到, 限制并发数, 避免与 {@link #USER_BLOCKING} 争抢带宽
+     */
+    PREFETCH,
+    /**
+     * 后台任务, 比如上报、同步, 只在少量的并发中执行
+     */
+    BACKGROUND
+}
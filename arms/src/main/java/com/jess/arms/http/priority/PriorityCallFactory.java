@@ -0,0 +1,313 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.priority;
+
+import com.jess.arms.di.module.GlobalConfigModule;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Timeout;
+import retrofit2.Invocation;
+
+/**
+ * ================================================
+ * 按 {@link Priority} 将网络请求分配到不同通道 (lane) 的 {@link Call.Factory}, 框架使用它作为 {@link retrofit2.Retrofit} 的 callFactory
+ * <p>
+ * {@link Priority#USER_BLOCKING} 的请求直接交给原始的 {@link OkHttpClient}, 不受任何限制
+ * {@link Priority#PREFETCH} 和 {@link Priority#BACKGROUND} 的请求各自限制最大并发数, 超出的请求排队等待, 避免与用户正在等待的请求争抢带宽和线程:
+ * 1. 同步请求 ({@link Call#execute()}, RxJava 默认使用此方式) 在调用线程中等待空闲的名额, 请求被取消时立即停止等待
+ * 名额一直占用到响应体被读取完毕或被关闭, 所以下载响应体的过程也受并发数限制, 未关闭的响应体会一直占用名额
+ * 2. 异步请求 ({@link Call#enqueue(Callback)}) 交给通道自己的 {@link Dispatcher}, 线程池为 {@link PriorityExecutor} 时以对应的优先级排队
+ * <p>
+ * 每个通道共用原始 {@link OkHttpClient} 的连接池、拦截器等所有配置, 同步请求和异步请求的并发数分别计算
+ *
+ * @see Priority
+ * @see RequestPriority
+ * @see GlobalConfigModule.Builder#priorityLanes(int, int)
+ * ================================================
+ */
+public class PriorityCallFactory implements Call.Factory {
+    public static final int DEFAULT_PREFETCH_MAX_REQUESTS = 2;
+    public static final int DEFAULT_BACKGROUND_MAX_REQUESTS = 1;
+    
+    private final OkHttpClient mClient;
+    private final Lane mPrefetchLane;
+    private final Lane mBackgroundLane;
+    //Retrofit service 方法上的 RequestPriority, 没有注解的方法缓存为 USER_BLOCKING
+    private final ConcurrentHashMap<Method, Priority> mMethodPriorities = new ConcurrentHashMap<>();
+    
+    /**
+     * @param client                原始的 {@link OkHttpClient}
+     * @param prefetchMaxRequests   {@link Priority#PREFETCH} 的最大并发数
+     * @param backgroundMaxRequests {@link Priority#BACKGROUND} 的最大并发数
+     */
+    public PriorityCallFactory(@NonNull OkHttpClient client, int prefetchMaxRequests, int backgroundMaxRequests) {
+        if (prefetchMaxRequests < 1 || backgroundMaxRequests < 1) {
+            throw new IllegalArgumentException("MaxRequests must be >= 1");
+        }
+        this.mClient = client;
+        this.mPrefetchLane = new Lane(client, Priority.PREFETCH, prefetchMaxRequests);
+        this.mBackgroundLane = new Lane(client, Priority.BACKGROUND, backgroundMaxRequests);
+    }
+    
+    @Override
+    public Call newCall(Request request) {
+        switch (priorityOf(request)) {
+            case PREFETCH:
+                return new LaneCall(mPrefetchLane, mPrefetchLane.mClient.newCall(request));
+            case BACKGROUND:
+                return new LaneCall(mBackgroundLane, mBackgroundLane.mClient.newCall(request));
+            default:
+                return mClient.newCall(request);
+        }
+    }
+    
+    /**
+     * 返回请求的优先级, 优先使用 {@link Request#tag(Class)} 中的 {@link Priority}, 其次为 Retrofit service 方法上的 {@link RequestPriority}
+     *
+     * @param request {@link Request}
+     * @return {@link Priority}
+     */
+    @NonNull
+    public Priority priorityOf(@NonNull Request request) {
+        final Priority tagged = request.tag(Priority.class);
+        if (tagged != null) {
+            return tagged;
+        }
+        final Invocation invocation = request.tag(Invocation.class);
+        if (invocation == null) {
+            return Priority.USER_BLOCKING;
+        }
+        final Method method = invocation.method();
+        Priority priority = mMethodPriorities.get(method);
+        if (priority == null) {
+            final RequestPriority annotation = method.getAnnotation(RequestPriority.class);
+            priority = annotation == null ? Priority.USER_BLOCKING : annotation.value();
+            mMethodPriorities.put(method, priority);
+        }
+        return priority;
+    }
+    
+    /**
+     * 一个优先级的通道, 异步请求由 {@link #mClient} 的 {@link Dispatcher} 限制并发, 同步请求由 {@link #acquire(LaneCall)} 限制并发
+     */
+    private static final class Lane {
+        final OkHttpClient mClient;
+        final int mMaxRequests;
+        int mRunningSyncCalls;
+        
+        Lane(OkHttpClient client, Priority priority, int maxRequests) {
+            final ExecutorService executorService = client.dispatcher().executorService();
+            final Dispatcher dispatcher = new Dispatcher(executorService instanceof PriorityExecutor
+                ? ((PriorityExecutor) executorService).withPriority(priority) : executorService);
+            dispatcher.setMaxRequests(maxRequests);
+            dispatcher.setMaxRequestsPerHost(maxRequests);
+            this.mClient = client.newBuilder().dispatcher(dispatcher).build();
+            this.mMaxRequests = maxRequests;
+        }
+        
+        synchronized void acquire(LaneCall call) throws IOException {
+            boolean interrupted = false;
+            try {
+                while (mRunningSyncCalls >= mMaxRequests) {
+                    if (call.isCanceled()) {
+                        throw new IOException("Canceled");
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (call.isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+                mRunningSyncCalls++;
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        
+        synchronized void release() {
+            mRunningSyncCalls--;
+            notifyAll();
+        }
+        
+        synchronized void wakeUp() {
+            notifyAll();
+        }
+    }
+    
+    /**
+     * 同步请求执行前需要在 {@link Lane} 中获取名额的 {@link Call}
+     */
+    private static final class LaneCall implements Call {
+        private final Lane mLane;
+        private final Call mDelegate;
+        
+        LaneCall(Lane lane, Call delegate) {
+            this.mLane = lane;
+            this.mDelegate = delegate;
+        }
+        
+        @Override
+        public Request request() {
+            return mDelegate.request();
+        }
+        
+        @Override
+        public Response execute() throws IOException {
+            mLane.acquire(this);
+            final Permit permit = new Permit(mLane);
+            boolean success = false;
+            try {
+                final Response response = mDelegate.execute();
+                final ResponseBody body = response.body();
+                if (body == null) {
+                    permit.release();
+                    success = true;
+                    return response;
+                }
+                final Response result = response.newBuilder().body(new PermitResponseBody(body, permit)).build();
+                success = true;
+                return result;
+            } finally {
+                //只有请求失败时才在这里归还名额, 否则等到响应体被读取完毕或被关闭时才归还
+                if (!success) {
+                    permit.release();
+                }
+            }
+        }
+        
+        @Override
+        public void enqueue(Callback responseCallback) {
+            mDelegate.enqueue(responseCallback);
+        }
+        
+        @Override
+        public void cancel() {
+            mDelegate.cancel();
+            //唤醒正在等待名额的线程, 使其立即结束等待
+            mLane.wakeUp();
+        }
+        
+        @Override
+        public boolean isExecuted() {
+            return mDelegate.isExecuted();
+        }
+        
+        @Override
+        public boolean isCanceled() {
+            return mDelegate.isCanceled();
+        }
+        
+        @Override
+        public Timeout timeout() {
+            return mDelegate.timeout();
+        }
+        
+        @SuppressWarnings("MethodDoesntCallSuperMethod")
+        @Override
+        public Call clone() {
+            return new LaneCall(mLane, mDelegate.clone());
+        }
+    }
+    
+    /**
+     * 同步请求在 {@link Lane} 中占用的名额, 多次调用 {@link #release()} 只会归还一次
+     */
+    private static final class Permit {
+        private final Lane mLane;
+        private final AtomicBoolean mReleased = new AtomicBoolean();
+        
+        Permit(Lane lane) {
+            this.mLane = lane;
+        }
+        
+        void release() {
+            if (mReleased.compareAndSet(false, true)) {
+                mLane.release();
+            }
+        }
+    }
+    
+    /**
+     * 响应体被读取完毕或被关闭时归还 {@link Permit} 的 {@link ResponseBody}
+     */
+    private static final class PermitResponseBody extends ResponseBody {
+        private final ResponseBody mDelegate;
+        private final BufferedSource mSource;
+        
+        PermitResponseBody(ResponseBody delegate, final Permit permit) {
+            this.mDelegate = delegate;
+            this.mSource = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    final long read = super.read(sink, byteCount);
+                    if (read == -1) {
+                        permit.release();
+                    }
+                    return read;
+                }
+                
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        permit.release();
+                    }
+                }
+            });
+        }
+        
+        @Nullable
+        @Override
+        public MediaType contentType() {
+            return mDelegate.contentType();
+        }
+        
+        @Override
+        public long contentLength() {
+            return mDelegate.contentLength();
+        }
+        
+        @Override
+        public BufferedSource source() {
+            return mSource;
+        }
+    }
+}
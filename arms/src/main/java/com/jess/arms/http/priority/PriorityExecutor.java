@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.priority;
+
+import com.jess.arms.di.module.GlobalConfigModule;
+import com.jess.arms.utils.Preconditions;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+
+/**
+ * ================================================
+ * 线程数有上限的线程池, 等待执行的任务按 {@link Priority} 排序, 相同优先级的任务按提交的顺序执行
+ * <p>
+ * 框架默认的 {@link ExecutorService} (同时也是 OkHttp {@link okhttp3.Dispatcher} 的线程池) 为此线程池
+ * 线程数由 CPU 核心数决定 (见 {@link #defaultPoolSize()}), 大量请求同时发起时不会无限制的创建线程, 超出的任务在队列中等待
+ * 空闲超过 60 秒的线程会被回收
+ * <p>
+ * 通过 {@link #execute(Runnable)} 提交的任务使用构造时传入的默认优先级, 也可以通过 {@link #execute(Runnable, Priority)}
+ * 指定优先级, 或通过 {@link #withPriority(Priority)} 得到一个以固定优先级提交任务的 {@link ExecutorService}
+ * <p>
+ * 请不要在此线程池中执行会长时间阻塞并等待此线程池中其他任务的任务, 可能会因为线程数不足而死锁
+ *
+ * @see GlobalConfigModule.Builder#executorService(ExecutorService)
+ * ================================================
+ */
+public class PriorityExecutor extends ThreadPoolExecutor {
+    private final AtomicLong mSequence = new AtomicLong();
+    private final Priority mDefaultPriority;
+    
+    /**
+     * @param poolSize      最大线程数
+     * @param threadFactory {@link ThreadFactory}
+     */
+    public PriorityExecutor(int poolSize, @NonNull ThreadFactory threadFactory) {
+        this(poolSize, threadFactory, Priority.USER_BLOCKING);
+    }
+    
+    /**
+     * @param poolSize        最大线程数
+     * @param threadFactory   {@link ThreadFactory}
+     * @param defaultPriority 通过 {@link #execute(Runnable)} 提交的任务的优先级
+     */
+    public PriorityExecutor(int poolSize, @NonNull ThreadFactory threadFactory, @NonNull Priority defaultPriority) {
+        super(poolSize, poolSize, 60, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), threadFactory);
+        this.mDefaultPriority = Preconditions.checkNotNull(defaultPriority, "defaultPriority == null");
+        allowCoreThreadTimeOut(true);
+    }
+    
+    /**
+     * 根据 CPU 核心数计算默认的最大线程数, 网络请求大部分时间在等待 IO, 所以为核心数的两倍, 最少 4 个, 最多 16 个
+     *
+     * @return 默认的最大线程数
+     */
+    public static int defaultPoolSize() {
+        return Math.max(4, Math.min(Runtime.getRuntime().availableProcessors() * 2, 16));
+    }
+    
+    @Override
+    public void execute(Runnable command) {
+        execute(command, mDefaultPriority);
+    }
+    
+    /**
+     * 以指定的优先级提交任务
+     *
+     * @param command  任务
+     * @param priority {@link Priority}
+     */
+    public void execute(@NonNull Runnable command, @NonNull Priority priority) {
+        Preconditions.checkNotNull(command, "command == null");
+        Preconditions.checkNotNull(priority, "priority == null");
+        super.execute(command instanceof Task ? command : new Task(command, priority, mSequence.getAndIncrement()));
+    }
+    
+    /**
+     * 返回一个以固定优先级向此线程池提交任务的 {@link ExecutorService}, 比如作为低优先级 {@link okhttp3.Dispatcher} 的线程池
+     * 返回的 {@link ExecutorService} 不能单独关闭, 其状态与此线程池一致
+     *
+     * @param priority {@link Priority}
+     * @return {@link ExecutorService}
+     */
+    @NonNull
+    public ExecutorService withPriority(@NonNull final Priority priority) {
+        Preconditions.checkNotNull(priority, "priority == null");
+        return new AbstractExecutorService() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                PriorityExecutor.this.execute(command, priority);
+            }
+            
+            @Override
+            public void shutdown() {
+                throw new UnsupportedOperationException("Shut down the PriorityExecutor instead");
+            }
+            
+            @NonNull
+            @Override
+            public List<Runnable> shutdownNow() {
+                throw new UnsupportedOperationException("Shut down the PriorityExecutor instead");
+            }
+            
+            @Override
+            public boolean isShutdown() {
+                return PriorityExecutor.this.isShutdown();
+            }
+            
+            @Override
+            public boolean isTerminated() {
+                return PriorityExecutor.this.isTerminated();
+            }
+            
+            @Override
+            public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+                return PriorityExecutor.this.awaitTermination(timeout, unit);
+            }
+        };
+    }
+    
+    /**
+     * 队列中的任务, 先按 {@link Priority} 排序, 相同优先级的按提交顺序排序
+     */
+    private static final class Task implements Runnable, Comparable<Task> {
+        final Runnable command;
+        final Priority priority;
+        final long sequence;
+        
+        Task(Runnable command, Priority priority, long sequence) {
+            this.command = command;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+        
+        @Override
+        public void run() {
+            command.run();
+        }
+        
+        @Override
+        public int compareTo(@NonNull Task other) {
+            if (priority != other.priority) {
+                return priority.ordinal() - other.priority.ordinal();
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
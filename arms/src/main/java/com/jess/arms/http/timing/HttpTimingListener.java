@@ -0,0 +1,259 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.timing;
+
+import com.jess.arms.utils.Preconditions;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import retrofit2.Invocation;
+import retrofit2.http.DELETE;
+import retrofit2.http.GET;
+import retrofit2.http.HEAD;
+import retrofit2.http.HTTP;
+import retrofit2.http.OPTIONS;
+import retrofit2.http.PATCH;
+import retrofit2.http.POST;
+import retrofit2.http.PUT;
+
+/**
+ * ================================================
+ * 通过 OkHttp 的 {@link EventListener} 记录每个网络请求各个阶段的耗时, 并计入 {@link HttpTimings}
+ * <p>
+ * 由 Retrofit 发起的请求使用接口方法上注解的路径 (比如 {@code /users/{user}}) 作为路径模板
+ * 其他请求 (或使用 {@link retrofit2.http.Url} 的请求) 将路径中的数字和较长的十六进制 id 替换为 {@code {id}} 作为路径模板
+ * 重试和重定向时每一次连接和请求都会分别计入
+ * ================================================
+ */
+public class HttpTimingListener extends EventListener {
+    private static final ConcurrentHashMap<Method, String> PATH_TEMPLATES = new ConcurrentHashMap<>();
+    //Retrofit 接口方法没有路径时的占位, ConcurrentHashMap 不能存放 null
+    private static final String NO_TEMPLATE = "";
+    
+    private final HttpTimings mTimings;
+    private final String mEndpoint;
+    private long mCallStart;
+    private long mDnsStart;
+    private long mConnectStart;
+    private long mSecureConnectStart;
+    private long mRequestStart;
+    private long mRequestEnd;
+    private long mResponseBodyStart;
+    
+    HttpTimingListener(HttpTimings timings, String endpoint) {
+        this.mTimings = timings;
+        this.mEndpoint = endpoint;
+    }
+    
+    /**
+     * 返回为每个请求创建 {@link HttpTimingListener} 的 {@link EventListener.Factory}
+     *
+     * @param timings {@link HttpTimings}
+     * @return {@link EventListener.Factory}
+     */
+    public static EventListener.Factory factory(@NonNull HttpTimings timings) {
+        Preconditions.checkNotNull(timings, "timings can not be null.");
+        return call -> new HttpTimingListener(timings, endpoint(call.request()));
+    }
+    
+    /**
+     * 返回请求所属的接口, 即 "域名 + 路径模板"
+     *
+     * @param request {@link Request}
+     * @return 接口
+     */
+    @NonNull
+    public static String endpoint(@NonNull Request request) {
+        String template = null;
+        final Invocation invocation = request.tag(Invocation.class);
+        if (invocation != null) {
+            template = PATH_TEMPLATES.get(invocation.method());
+            if (template == null) {
+                template = pathTemplate(invocation.method());
+                PATH_TEMPLATES.put(invocation.method(), template);
+            }
+        }
+        if (template == null || template.equals(NO_TEMPLATE)) {
+            template = normalizePath(request.url());
+        }
+        return request.url().host() + template;
+    }
+    
+    private static String pathTemplate(Method method) {
+        for (Annotation annotation : method.getAnnotations()) {
+            String path = null;
+            if (annotation instanceof GET) {
+                path = ((GET) annotation).value();
+            } else if (annotation instanceof POST) {
+                path = ((POST) annotation).value();
+            } else if (annotation instanceof PUT) {
+                path = ((PUT) annotation).value();
+            } else if (annotation instanceof DELETE) {
+                path = ((DELETE) annotation).value();
+            } else if (annotation instanceof PATCH) {
+                path = ((PATCH) annotation).value();
+            } else if (annotation instanceof HEAD) {
+                path = ((HEAD) annotation).value();
+            } else if (annotation instanceof OPTIONS) {
+                path = ((OPTIONS) annotation).value();
+            } else if (annotation instanceof HTTP) {
+                path = ((HTTP) annotation).path();
+            }
+            if (path != null) {
+                return trimPath(path);
+            }
+        }
+        return NO_TEMPLATE;
+    }
+    
+    private static String trimPath(String path) {
+        final int query = path.indexOf('?');
+        if (query != -1) {
+            path = path.substring(0, query);
+        }
+        if (path.isEmpty()) {
+            return NO_TEMPLATE;
+        }
+        if (path.startsWith("http://") || path.startsWith("https://")) {
+            final HttpUrl url = HttpUrl.parse(path);
+            return url == null ? NO_TEMPLATE : url.encodedPath();
+        }
+        return path.startsWith("/") ? path : "/" + path;
+    }
+    
+    private static String normalizePath(HttpUrl url) {
+        final StringBuilder builder = new StringBuilder();
+        for (String segment : url.encodedPathSegments()) {
+            builder.append('/').append(isId(segment) ? "{id}" : segment);
+        }
+        return builder.toString();
+    }
+    
+    private static boolean isId(String segment) {
+        if (segment.isEmpty()) {
+            return false;
+        }
+        boolean digits = true;
+        boolean hex = true;
+        for (int i = 0; i < segment.length(); i++) {
+            final char c = segment.charAt(i);
+            digits &= c >= '0' && c <= '9';
+            hex &= (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F') || c == '-';
+        }
+        return digits || (hex && segment.length() >= 16);
+    }
+    
+    private void record(HttpTimings.Phase phase, long startNanos) {
+        if (startNanos != 0) {
+            mTimings.record(mEndpoint, phase, (System.nanoTime() - startNanos) / 1000);
+        }
+    }
+    
+    @Override
+    public void callStart(Call call) {
+        mCallStart = System.nanoTime();
+    }
+    
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        mDnsStart = System.nanoTime();
+    }
+    
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        record(HttpTimings.Phase.DNS, mDnsStart);
+    }
+    
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        mConnectStart = System.nanoTime();
+    }
+    
+    @Override
+    public void secureConnectStart(Call call) {
+        mSecureConnectStart = System.nanoTime();
+    }
+    
+    @Override
+    public void secureConnectEnd(Call call, @Nullable Handshake handshake) {
+        record(HttpTimings.Phase.TLS, mSecureConnectStart);
+    }
+    
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, @Nullable Protocol protocol) {
+        record(HttpTimings.Phase.CONNECT, mConnectStart);
+    }
+    
+    @Override
+    public void requestHeadersStart(Call call) {
+        mRequestStart = System.nanoTime();
+    }
+    
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        mRequestEnd = System.nanoTime();
+    }
+    
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        mRequestEnd = System.nanoTime();
+    }
+    
+    @Override
+    public void responseHeadersStart(Call call) {
+        if (mRequestStart != 0 && mRequestEnd != 0) {
+            mTimings.record(mEndpoint, HttpTimings.Phase.REQUEST, (mRequestEnd - mRequestStart) / 1000);
+            record(HttpTimings.Phase.TIME_TO_FIRST_BYTE, mRequestEnd);
+        }
+        mRequestStart = 0;
+        mRequestEnd = 0;
+    }
+    
+    @Override
+    public void responseBodyStart(Call call) {
+        mResponseBodyStart = System.nanoTime();
+    }
+    
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        record(HttpTimings.Phase.RESPONSE_BODY, mResponseBodyStart);
+    }
+    
+    @Override
+    public void callEnd(Call call) {
+        record(HttpTimings.Phase.TOTAL, mCallStart);
+    }
+    
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        mTimings.recordFailure(mEndpoint);
+    }
+}
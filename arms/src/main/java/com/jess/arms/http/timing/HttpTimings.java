@@ -0,0 +1,216 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.timing;
+
+import com.jess.arms.di.component.AppComponent;
+import com.jess.arms.integration.metrics.Counter;
+import com.jess.arms.integration.metrics.Histogram;
+import com.jess.arms.integration.metrics.MetricsRegistry;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * ================================================
+ * 按 "域名 + 路径模板" (比如 {@code api.github.com/users/{user}}) 分别统计每个网络请求各个阶段的耗时分布
+ * 由 {@link HttpTimingListener} 记录, 可通过 {@link AppComponent#httpTimings()} 获取, 用于判断页面慢是因为网络还是服务器
+ * <p>
+ * 耗时以微秒为单位记录在无锁的 {@link Histogram} 中, 每个接口占用固定的内存, 最多统计 {@link #MAX_ENDPOINTS} 个接口
+ * 超出后新的接口统一计入 {@code <域名>/*}
+ * <p>
+ * 所有接口的总耗时和失败次数同时汇总至 {@link MetricsRegistry} 中的 {@code http.call.duration_us} 和 {@code http.call.failures}
+ *
+ * @see HttpTimingListener
+ * ================================================
+ */
+@Singleton
+public class HttpTimings {
+    public static final int MAX_ENDPOINTS = 256;
+    
+    private final ConcurrentHashMap<String, Endpoint> mEndpoints = new ConcurrentHashMap<>();
+    private final Histogram mCallDuration;
+    private final Counter mCallFailures;
+    
+    @Inject
+    public HttpTimings(MetricsRegistry metrics) {
+        this.mCallDuration = metrics.histogram("http.call.duration_us");
+        this.mCallFailures = metrics.counter("http.call.failures");
+    }
+    
+    /**
+     * 网络请求的各个阶段
+     */
+    public enum Phase {
+        /**
+         * DNS 解析, 连接复用时没有此阶段
+         */
+        DNS,
+        /**
+         * 建立连接 (包含 TLS 握手), 连接复用时没有此阶段
+         */
+        CONNECT,
+        /**
+         * TLS 握手
+         */
+        TLS,
+        /**
+         * 写入请求头和请求体
+         */
+        REQUEST,
+        /**
+         * 请求写入完毕至收到响应头, 即服务器的处理时间加上一次往返的网络延迟
+         */
+        TIME_TO_FIRST_BYTE,
+        /**
+         * 读取响应体
+         */
+        RESPONSE_BODY,
+        /**
+         * 从请求开始至请求结束的总耗时, 失败的请求不计入
+         */
+        TOTAL
+    }
+    
+    /**
+     * 记录一次耗时
+     *
+     * @param endpoint 接口, 即 "域名 + 路径模板"
+     * @param phase    {@link Phase}
+     * @param micros   耗时, 单位微秒
+     */
+    public void record(@NonNull String endpoint, @NonNull Phase phase, long micros) {
+        obtainEndpoint(endpoint).mHistograms[phase.ordinal()].record(micros);
+        if (phase == Phase.TOTAL) {
+            mCallDuration.record(micros);
+        }
+    }
+    
+    /**
+     * 记录一次失败的请求
+     *
+     * @param endpoint 接口, 即 "域名 + 路径模板"
+     */
+    public void recordFailure(@NonNull String endpoint) {
+        obtainEndpoint(endpoint).mFailureCount.incrementAndGet();
+        mCallFailures.inc();
+    }
+    
+    /**
+     * 返回这个接口的统计, 没有请求过时返回 {@code null}
+     *
+     * @param endpoint 接口, 即 "域名 + 路径模板"
+     * @return {@link Endpoint}
+     */
+    @Nullable
+    public Endpoint getEndpoint(@NonNull String endpoint) {
+        return mEndpoints.get(endpoint);
+    }
+    
+    /**
+     * 返回所有接口的统计, 按接口名称排序
+     *
+     * @return 所有接口的统计
+     */
+    @NonNull
+    public Map<String, Endpoint> getEndpoints() {
+        return Collections.unmodifiableMap(new TreeMap<>(mEndpoints));
+    }
+    
+    /**
+     * 清空所有统计
+     */
+    public void reset() {
+        mEndpoints.clear();
+    }
+    
+    private Endpoint obtainEndpoint(String endpoint) {
+        Endpoint result = mEndpoints.get(endpoint);
+        if (result != null) {
+            return result;
+        }
+        if (mEndpoints.size() >= MAX_ENDPOINTS) {
+            final int slash = endpoint.indexOf('/');
+            endpoint = (slash == -1 ? endpoint : endpoint.substring(0, slash)) + "/*";
+            result = mEndpoints.get(endpoint);
+            if (result != null) {
+                return result;
+            }
+        }
+        result = new Endpoint();
+        final Endpoint previous = mEndpoints.putIfAbsent(endpoint, result);
+        return previous == null ? result : previous;
+    }
+    
+    /**
+     * 返回每个接口的请求次数, 失败次数以及总耗时的 P50 / P90 / P99 (毫秒), 可用于在 App 内查看
+     *
+     * @return 统计摘要
+     */
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Endpoint> entry : getEndpoints().entrySet()) {
+            final Histogram.Snapshot total = entry.getValue().getHistogram(Phase.TOTAL).snapshot();
+            builder.append(entry.getKey())
+                .append(" count=").append(total.getCount())
+                .append(" failures=").append(entry.getValue().getFailureCount())
+                .append(String.format(Locale.US, " p50=%.1fms p90=%.1fms p99=%.1fms",
+                    total.getValueAtQuantile(0.5) / 1000f, total.getValueAtQuantile(0.9) / 1000f,
+                    total.getValueAtQuantile(0.99) / 1000f))
+                .append('\n');
+        }
+        return builder.toString();
+    }
+    
+    /**
+     * 单个接口的统计
+     */
+    public static final class Endpoint {
+        private final Histogram[] mHistograms = new Histogram[Phase.values().length];
+        private final AtomicLong mFailureCount = new AtomicLong();
+        
+        Endpoint() {
+            for (int i = 0; i < mHistograms.length; i++) {
+                mHistograms[i] = new Histogram();
+            }
+        }
+        
+        /**
+         * 返回这个阶段的耗时分布, 单位微秒
+         *
+         * @param phase {@link Phase}
+         * @return {@link Histogram}
+         */
+        @NonNull
+        public Histogram getHistogram(@NonNull Phase phase) {
+            return mHistograms[phase.ordinal()];
+        }
+        
+        public long getFailureCount() {
+            return mFailureCount.get();
+        }
+    }
+}
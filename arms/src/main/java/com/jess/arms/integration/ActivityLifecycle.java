@@ -21,6 +21,7 @@ import android.os.Bundle;
 
 import com.jess.arms.base.delegate.IActivity;
 import com.jess.arms.integration.cache.Cache;
+import com.jess.arms.integration.cache.CacheRegistry;
 import com.jess.arms.integration.cache.IntelligentCache;
 import com.jess.arms.utils.ArmsUtils;
 
@@ -55,6 +56,10 @@ public class ActivityLifecycle implements Application.ActivityLifecycleCallbacks
     Lazy<FragmentManager.FragmentLifecycleCallbacks> mFragmentLifecycle;
     @Inject
     Lazy<List<FragmentManager.FragmentLifecycleCallbacks>> mFragmentLifecycles;
+    @Inject
+    CacheRegistry mCacheRegistry;
+    //处于 started 状态的 Activity 数量, 生命周期回调都在主线程, 所以不需要同步
+    private int mStartedCount;
     
     @Inject
     public ActivityLifecycle() {
@@ -80,6 +85,10 @@ public class ActivityLifecycle implements Application.ActivityLifecycleCallbacks
     
     @Override
     public void onActivityStarted(Activity activity) {
+        //App 从后台回到前台 (第一个 Activity 进入 started 状态), 将内存紧张时被缩小的缓存恢复至原容量
+        if (mStartedCount++ == 0) {
+            mCacheRegistry.restore();
+        }
     }
     
     @Override
@@ -93,6 +102,9 @@ public class ActivityLifecycle implements Application.ActivityLifecycleCallbacks
     
     @Override
     public void onActivityStopped(Activity activity) {
+        if (mStartedCount > 0) {
+            mStartedCount--;
+        }
     }
     
     @Override
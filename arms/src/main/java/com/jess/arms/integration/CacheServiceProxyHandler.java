@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration;
+
+import com.jess.arms.integration.cache.CachePolicy;
+import com.jess.arms.integration.cache.LifeCache;
+import com.jess.arms.integration.cache.ResponseCache;
+import com.jess.arms.utils.Preconditions;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import androidx.annotation.Nullable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import timber.log.Timber;
+
+/**
+ * ================================================
+ * Cache Service 的动态代理, 将 Cache Service 方法中传入的网络请求包装为读写 {@link ResponseCache} 的请求
+ * <p>
+ * Cache Service 中的方法需要返回 {@link Observable} 或 {@link Single}, 参数的约定如下:
+ * <ul>
+ * <li>第一个与返回值类型相同的参数为真正的网络请求, 比如 Retrofit service 返回的 {@link Observable}</li>
+ * <li>{@link CachePolicy} 类型的参数为本次调用的缓存策略, 未传入时为 {@link CachePolicy#CACHE_FIRST}</li>
+ * <li>其余参数的 {@link Object#toString()} 与 Cache Service 的类名和方法名一起组成缓存的 {@code key}, 比如分页的页码
+ * 数组使用 {@link Arrays#deepToString(Object[])}, 没有重写 {@link Object#toString()} 的参数 (包括数组和集合中的元素)
+ * 无法区分内容是否相同, 会直接抛出 {@link IllegalArgumentException}</li>
+ * </ul>
+ * 方法上的 {@link LifeCache} 声明缓存的有效期
+ *
+ * @see IRepositoryManager#obtainCacheService(Class)
+ * ================================================
+ */
+public class CacheServiceProxyHandler implements InvocationHandler {
+    //参数的类型是否重写了 toString(), 避免每次调用都通过反射查找
+    private static final Map<Class<?>, Boolean> OVERRIDES_TO_STRING = new ConcurrentHashMap<>();
+    private final ResponseCache mResponseCache;
+    private final Class<?> mServiceClass;
+    //正在后台重新验证的 key, 避免同一个过期的缓存被同时多次刷新
+    private final Set<String> mRevalidating = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    
+    public CacheServiceProxyHandler(ResponseCache responseCache, Class<?> serviceClass) {
+        mResponseCache = Preconditions.checkNotNull(responseCache, "responseCache == null");
+        mServiceClass = Preconditions.checkNotNull(serviceClass, "serviceClass == null");
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(Object proxy, Method method, @Nullable Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this, args);
+        }
+        final Class<?> returnType = method.getReturnType();
+        Preconditions.checkArgument(returnType == Observable.class || returnType == Single.class,
+            "%s.%s must return Observable or Single", mServiceClass.getSimpleName(), method.getName());
+        
+        Object source = null;
+        CachePolicy policy = CachePolicy.CACHE_FIRST;
+        final StringBuilder key = new StringBuilder(mServiceClass.getCanonicalName()).append('#').append(method.getName());
+        if (args != null) {
+            for (Object arg : args) {
+                if (source == null && returnType.isInstance(arg)) {
+                    source = arg;
+                } else if (arg instanceof CachePolicy) {
+                    policy = (CachePolicy) arg;
+                } else {
+                    key.append(':').append(keyOf(method, arg));
+                }
+            }
+        }
+        Preconditions.checkArgument(source != null, "%s.%s must declare a parameter of type %s as the network source",
+            mServiceClass.getSimpleName(), method.getName(), returnType.getSimpleName());
+        
+        final LifeCache lifeCache = method.getAnnotation(LifeCache.class);
+        final long durationMillis = lifeCache == null ? -1 : lifeCache.timeUnit().toMillis(lifeCache.duration());
+        if (returnType == Single.class) {
+            Preconditions.checkArgument(policy != CachePolicy.CACHE_THEN_NETWORK,
+                "CACHE_THEN_NETWORK emits twice and can not be used with Single");
+            return load(key.toString(), ((Single<Object>) source).toObservable(), policy, durationMillis).singleOrError();
+        }
+        return load(key.toString(), (Observable<Object>) source, policy, durationMillis);
+    }
+    
+    /**
+     * 将参数转换为 {@code key} 的一部分, 参数的内容相同时返回的字符串也相同
+     */
+    private String keyOf(Method method, @Nullable Object arg) {
+        if (arg == null) {
+            return "null";
+        }
+        if (arg instanceof Object[]) {
+            checkElements(method, Arrays.asList((Object[]) arg));
+            return Arrays.deepToString((Object[]) arg);
+        }
+        if (arg.getClass().isArray()) {
+            //基本类型的数组
+            final String string = Arrays.deepToString(new Object[]{arg});
+            return string.substring(1, string.length() - 1);
+        }
+        if (arg instanceof Collection) {
+            checkElements(method, (Collection<?>) arg);
+        } else if (arg instanceof Map) {
+            checkElements(method, ((Map<?, ?>) arg).keySet());
+            checkElements(method, ((Map<?, ?>) arg).values());
+        }
+        Preconditions.checkArgument(overridesToString(arg.getClass()),
+            "%s.%s can not be cached, %s must override toString() to be used as a part of the cache key",
+            mServiceClass.getSimpleName(), method.getName(), arg.getClass().getName());
+        return arg.toString();
+    }
+    
+    private void checkElements(Method method, Collection<?> elements) {
+        for (Object element : elements) {
+            keyOf(method, element);
+        }
+    }
+    
+    private static boolean overridesToString(Class<?> clazz) {
+        Boolean overrides = OVERRIDES_TO_STRING.get(clazz);
+        if (overrides == null) {
+            try {
+                overrides = clazz.getMethod("toString").getDeclaringClass() != Object.class;
+            } catch (NoSuchMethodException e) {
+                overrides = false;
+            }
+            OVERRIDES_TO_STRING.put(clazz, overrides);
+        }
+        return overrides;
+    }
+    
+    private Observable<Object> load(final String key, Observable<Object> source, final CachePolicy policy, final long durationMillis) {
+        final Observable<Object> network = source.doOnNext(value -> mResponseCache.put(key, value));
+        if (policy == CachePolicy.NETWORK_ONLY) {
+            return network;
+        }
+        //在订阅时才读取缓存, 读取磁盘所处的线程由外部的 subscribeOn 控制
+        return Observable.defer(() -> {
+            final ResponseCache.Entry entry = mResponseCache.get(key);
+            if (entry == null) {
+                return network;
+            }
+            final Observable<Object> cached = Observable.just(entry.getValue());
+            switch (policy) {
+                case CACHE_THEN_NETWORK:
+                    return cached.concatWith(network);
+                case STALE_WHILE_REVALIDATE:
+                    if (entry.isExpired(durationMillis)) {
+                        revalidate(key, network);
+                    }
+                    return cached;
+                case CACHE_FIRST:
+                default:
+                    if (!entry.isExpired(durationMillis)) {
+                        return cached;
+                    }
+                    //网络请求失败时使用过期的缓存
+                    return network.onErrorResumeNext(cached);
+            }
+        });
+    }
+    
+    /**
+     * 在后台请求网络更新缓存, 结果只写入缓存, 不发射给本次的订阅者
+     */
+    private void revalidate(final String key, Observable<Object> network) {
+        if (!mRevalidating.add(key)) {
+            return;
+        }
+        network.subscribeOn(Schedulers.io())
+            .doFinally(() -> mRevalidating.remove(key))
+            .subscribe(value -> {
+            }, throwable -> Timber.w("Revalidate failed: %s, %s", key, throwable));
+    }
+}
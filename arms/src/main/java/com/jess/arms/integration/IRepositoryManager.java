@@ -17,8 +17,14 @@ package com.jess.arms.integration;
 
 import android.content.Context;
 
+import com.jess.arms.di.module.GlobalConfigModule;
+import com.jess.arms.integration.cache.CachePolicy;
+import com.jess.arms.integration.cache.LifeCache;
+import com.jess.arms.integration.cache.ResponseCache;
 import com.jess.arms.mvp.IModel;
 
+import java.util.List;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import retrofit2.Retrofit;
@@ -46,6 +52,39 @@ public interface IRepositoryManager {
     @NonNull
     <T> T obtainRetrofitService(@NonNull Class<T> service);
     
+    /**
+     * 在后台线程中预先创建传入的 Retrofit service, 并让 Retrofit 预先解析 service 中的每个方法
+     * 避免第一次请求时在调用的线程中执行反射和注解解析, 框架会在 App 启动时使用
+     * {@link GlobalConfigModule.Builder#warmUpServices(Class[])} 中配置的 service 调用此方法
+     *
+     * @param serviceClasses Retrofit service class
+     * @param listener       每个 service 预热完成后的回调, 可为空, 在后台线程中调用
+     */
+    void warmUpRetrofitServices(@NonNull List<Class<?>> serviceClasses, @Nullable WarmUpListener listener);
+    
+    /**
+     * 根据传入的 Class 获取对应的 Cache service
+     * Cache service 中的方法将传入的网络请求与 {@link ResponseCache} 组合, 每次调用时可传入 {@link CachePolicy} 选择缓存策略
+     * 使用 {@link LifeCache} 声明缓存的有效期, 比如:
+     * <pre>
+     * public interface CommonCache {
+     *     &#64;LifeCache(duration = 2, timeUnit = TimeUnit.MINUTES)
+     *     Observable&lt;List&lt;User&gt;&gt; getUsers(Observable&lt;List&lt;User&gt;&gt; users, int lastIdQueried, CachePolicy policy);
+     * }
+     * </pre>
+     *
+     * @param cache Cache class
+     * @param <T>   Cache class
+     * @return Cache
+     * @see CacheServiceProxyHandler
+     */
+    @NonNull
+    <T> T obtainCacheService(@NonNull Class<T> cache);
+    
+    /**
+     * 清理所有通过 Cache service 缓存的网络请求结果
+     */
+    void clearAllCache();
     
     /**
      * 获取 {@link Context}
@@ -62,6 +101,18 @@ public interface IRepositoryManager {
      */
     void setObtainServiceDelegate(@Nullable ObtainServiceDelegate delegate);
     
+    interface WarmUpListener {
+        
+        /**
+         * 一个 Retrofit service 预热完成
+         *
+         * @param serviceClass  Retrofit service class
+         * @param methodCount   预解析的方法数量, service 由 {@link ObtainServiceDelegate} 创建时为 0
+         * @param elapsedMillis 创建 service 和预解析所有方法的总耗时
+         */
+        void onServiceWarmedUp(@NonNull Class<?> serviceClass, int methodCount, long elapsedMillis);
+    }
+    
     interface ObtainServiceDelegate {
         
         @Nullable
@@ -18,12 +18,22 @@ package com.jess.arms.integration;
 import android.app.Application;
 import android.content.Context;
 
+import com.jess.arms.http.priority.Priority;
+import com.jess.arms.http.priority.PriorityExecutor;
 import com.jess.arms.integration.cache.Cache;
 import com.jess.arms.integration.cache.CacheType;
+import com.jess.arms.integration.cache.ResponseCache;
+import com.jess.arms.integration.metrics.MetricsRegistry;
 import com.jess.arms.mvp.IModel;
 import com.jess.arms.utils.Preconditions;
 
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -32,6 +42,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import dagger.Lazy;
 import retrofit2.Retrofit;
+import timber.log.Timber;
 
 /**
  * ================================================
@@ -54,8 +65,18 @@ public class RepositoryManager implements IRepositoryManager {
     Application mApplication;
     @Inject
     Cache.Factory<String, Object> mCacheFactory;
-    private Cache<String, Object> mRetrofitServiceCache;
-    private ObtainServiceDelegate mDelegate;
+    @Inject
+    Lazy<ResponseCache> mResponseCache;
+    @Inject
+    RequestCoalescer mRequestCoalescer;
+    @Inject
+    Lazy<ExecutorService> mExecutorService;
+    @Inject
+    MetricsRegistry mMetrics;
+    //Retrofit service 的数量有限且占用内存很小, 所以不需要淘汰, 查找时不需要加锁
+    private final ConcurrentHashMap<Class<?>, Object> mRetrofitServices = new ConcurrentHashMap<>();
+    private Cache<String, Object> mCacheServiceCache;
+    private volatile ObtainServiceDelegate mDelegate;
     
     @Inject
     public RepositoryManager() {
@@ -63,6 +84,7 @@ public class RepositoryManager implements IRepositoryManager {
     
     /**
      * 根据传入的 Class 获取对应的 Retrofit service
+     * 已创建的 service 直接从 {@link #mRetrofitServices} 中返回, 不需要加锁; 第一次获取时加锁创建, 保证每个 service 只创建一次
      *
      * @param serviceClass ApiService class
      * @param <T>          ApiService class
@@ -70,28 +92,117 @@ public class RepositoryManager implements IRepositoryManager {
      */
     @NonNull
     @Override
-    public synchronized <T> T obtainRetrofitService(@NonNull Class<T> serviceClass) {
-        if (mRetrofitServiceCache == null) {
-            mRetrofitServiceCache = mCacheFactory.build(CacheType.RETROFIT_SERVICE_CACHE);
+    public <T> T obtainRetrofitService(@NonNull Class<T> serviceClass) {
+        T retrofitService = (T) mRetrofitServices.get(serviceClass);
+        if (retrofitService != null) {
+            return retrofitService;
         }
-        Preconditions.checkNotNull(mRetrofitServiceCache,
-            "Cannot return null from a Cache.Factory#build(int) method");
-        T retrofitService = (T) mRetrofitServiceCache.get(serviceClass.getCanonicalName());
+        return createRetrofitService(serviceClass);
+    }
+    
+    private synchronized <T> T createRetrofitService(@NonNull Class<T> serviceClass) {
+        Preconditions.checkNotNull(serviceClass, "serviceClass == null");
+        T retrofitService = (T) mRetrofitServices.get(serviceClass);
         if (retrofitService == null) {
+            final long start = System.nanoTime();
             if (mDelegate != null) {
                 retrofitService = mDelegate.createRetrofitService(mRetrofit.get(), serviceClass);
             }
             if (retrofitService == null) {
                 retrofitService = (T) Proxy.newProxyInstance(
                     serviceClass.getClassLoader(),
-                    new Class[]{serviceClass},
-                    new RetrofitServiceProxyHandler(mRetrofit.get(), serviceClass));
+                    new Class<?>[]{serviceClass},
+                    new RetrofitServiceProxyHandler(mRetrofit.get(), serviceClass, mRequestCoalescer));
             }
-            mRetrofitServiceCache.put(serviceClass.getCanonicalName(), retrofitService);
+            mRetrofitServices.put(serviceClass, retrofitService);
+            mMetrics.counter("repository.retrofit_service.created").inc();
+            mMetrics.histogram("repository.retrofit_service.create_us")
+                .record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
         }
         return retrofitService;
     }
     
+    /**
+     * 在 {@link #mExecutorService} 中依次创建 Retrofit service 并预解析所有方法, 使用 Timber 打印每个 service 的耗时
+     * 线程池为 {@link PriorityExecutor} 时以 {@link Priority#BACKGROUND} 优先级执行, 不会挤占用户请求的线程
+     *
+     * @param serviceClasses Retrofit service class
+     * @param listener       每个 service 预热完成后的回调, 可为空
+     */
+    @Override
+    public void warmUpRetrofitServices(@NonNull List<Class<?>> serviceClasses, @Nullable WarmUpListener listener) {
+        Preconditions.checkNotNull(serviceClasses, "serviceClasses == null");
+        final List<Class<?>> services = new ArrayList<>(serviceClasses);
+        final Runnable task = () -> {
+            final long start = System.nanoTime();
+            for (Class<?> serviceClass : services) {
+                final long serviceStart = System.nanoTime();
+                int methodCount = 0;
+                try {
+                    final Object service = obtainRetrofitService(serviceClass);
+                    if (Proxy.isProxyClass(service.getClass())) {
+                        final InvocationHandler handler = Proxy.getInvocationHandler(service);
+                        if (handler instanceof RetrofitServiceProxyHandler) {
+                            methodCount = ((RetrofitServiceProxyHandler) handler).warmUp();
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    Timber.w(e, "Warm up %s failed", serviceClass.getName());
+                    continue;
+                }
+                final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - serviceStart);
+                Timber.d("Warm up %s: %d methods in %d ms", serviceClass.getSimpleName(), methodCount, elapsedMillis);
+                if (listener != null) {
+                    listener.onServiceWarmedUp(serviceClass, methodCount, elapsedMillis);
+                }
+            }
+            Timber.d("Warm up %d services in %d ms", services.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        };
+        final ExecutorService executorService = mExecutorService.get();
+        if (executorService instanceof PriorityExecutor) {
+            ((PriorityExecutor) executorService).execute(task, Priority.BACKGROUND);
+        } else {
+            executorService.execute(task);
+        }
+    }
+    
+    /**
+     * 根据传入的 Class 获取对应的 Cache service
+     *
+     * @param cacheClass Cache class
+     * @param <T>        Cache class
+     * @return Cache
+     */
+    @NonNull
+    @Override
+    public synchronized <T> T obtainCacheService(@NonNull Class<T> cacheClass) {
+        Preconditions.checkNotNull(cacheClass, "cacheClass == null");
+        if (mCacheServiceCache == null) {
+            mCacheServiceCache = mCacheFactory.build(CacheType.CACHE_SERVICE_CACHE);
+        }
+        Preconditions.checkNotNull(mCacheServiceCache,
+            "Cannot return null from a Cache.Factory#build(int) method");
+        T cacheService = (T) mCacheServiceCache.get(cacheClass.getCanonicalName());
+        if (cacheService == null) {
+            cacheService = (T) Proxy.newProxyInstance(
+                cacheClass.getClassLoader(),
+                new Class<?>[]{cacheClass},
+                new CacheServiceProxyHandler(mResponseCache.get(), cacheClass));
+            mCacheServiceCache.put(cacheClass.getCanonicalName(), cacheService);
+            mMetrics.counter("repository.cache_service.created").inc();
+        }
+        return cacheService;
+    }
+    
+    /**
+     * 清理所有通过 Cache service 缓存的网络请求结果
+     */
+    @Override
+    public void clearAllCache() {
+        mResponseCache.get().clear();
+    }
+    
     
     @NonNull
     @Override
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration;
+
+import com.jess.arms.di.module.GlobalConfigModule;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.Single;
+
+/**
+ * ================================================
+ * 合并相同的网络请求 (single-flight), 由 {@link RetrofitServiceProxyHandler} 使用
+ * <p>
+ * 同一个 Retrofit service 方法以相同的参数 (使用 {@link Arrays#deepEquals(Object[], Object[])} 比较) 被调用时,
+ * 如果之前的请求还未结束, 后来的订阅者不会发起新的请求, 而是共享之前的请求, 并收到相同的结果 (包括错误)
+ * 请求结束 (或所有订阅者都取消订阅) 之后, 再次调用会发起新的请求, 所以不会缓存任何结果
+ * <p>
+ * 默认不开启, 可通过 {@link GlobalConfigModule.Builder#requestCoalescing(boolean)} 开启
+ *
+ * @see GlobalConfigModule.Builder#requestCoalescing(boolean)
+ * ================================================
+ */
+public class RequestCoalescer {
+    private final ConcurrentHashMap<Key, Observable<?>> mInFlight = new ConcurrentHashMap<>();
+    private final AtomicLong mRequestCount = new AtomicLong();
+    private final AtomicLong mCoalescedCount = new AtomicLong();
+    private final boolean mEnabled;
+    
+    public RequestCoalescer(boolean enabled) {
+        this.mEnabled = enabled;
+    }
+    
+    /**
+     * 是否开启了请求合并
+     *
+     * @return {@code true} 为开启
+     */
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+    
+    /**
+     * 返回经过 {@link RequestCoalescer} 的订阅次数
+     *
+     * @return 订阅次数
+     */
+    public long getRequestCount() {
+        return mRequestCount.get();
+    }
+    
+    /**
+     * 返回被合并 (共享了之前的请求, 没有发起新请求) 的订阅次数
+     *
+     * @return 被合并的订阅次数
+     */
+    public long getCoalescedCount() {
+        return mCoalescedCount.get();
+    }
+    
+    /**
+     * 返回当前正在进行的请求数量
+     *
+     * @return 正在进行的请求数量
+     */
+    public int getInFlightCount() {
+        return mInFlight.size();
+    }
+    
+    /**
+     * 在订阅时合并 {@code method} 和 {@code args} 相同且正在进行的请求
+     *
+     * @param method   Retrofit service 的方法
+     * @param args     方法的参数
+     * @param upstream 真正发起请求的 {@link Observable}
+     * @return 合并后的 {@link Observable}
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public <T> Observable<T> observable(@NonNull Method method, @Nullable Object[] args,
+                                        @NonNull final Callable<? extends ObservableSource<T>> upstream) {
+        final Key key = new Key(method, args);
+        return Observable.defer(() -> {
+            mRequestCount.incrementAndGet();
+            Observable<?> shared = mInFlight.get(key);
+            if (shared == null) {
+                final AtomicReference<Observable<T>> self = new AtomicReference<>();
+                //replay 使在请求结束前加入的订阅者也能收到之前已发射的数据, 请求结束或被取消时从 mInFlight 中移除
+                final Observable<T> created = Observable.defer(upstream)
+                    .doFinally(() -> mInFlight.remove(key, self.get()))
+                    .replay()
+                    .refCount();
+                self.set(created);
+                shared = mInFlight.putIfAbsent(key, created);
+                if (shared == null) {
+                    return created;
+                }
+            }
+            mCoalescedCount.incrementAndGet();
+            return (Observable<T>) shared;
+        });
+    }
+    
+    /**
+     * 在订阅时合并 {@code method} 和 {@code args} 相同且正在进行的请求
+     *
+     * @param method   Retrofit service 的方法
+     * @param args     方法的参数
+     * @param upstream 真正发起请求的 {@link Single}
+     * @return 合并后的 {@link Single}
+     */
+    @NonNull
+    public <T> Single<T> single(@NonNull Method method, @Nullable Object[] args,
+                                @NonNull final Callable<Single<T>> upstream) {
+        return this.<T>observable(method, args, () -> upstream.call().toObservable()).singleOrError();
+    }
+    
+    private static final class Key {
+        final Method method;
+        final Object[] args;
+        final int hashCode;
+        
+        Key(Method method, @Nullable Object[] args) {
+            this.method = method;
+            this.args = args == null ? new Object[0] : args.clone();
+            this.hashCode = 31 * method.hashCode() + Arrays.deepHashCode(this.args);
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return method.equals(other.method) && Arrays.deepEquals(args, other.args);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
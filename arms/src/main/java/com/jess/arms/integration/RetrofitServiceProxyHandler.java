@@ -1,54 +1,179 @@
 package com.jess.arms.integration;
 
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
 
 import androidx.annotation.Nullable;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import retrofit2.Call;
 import retrofit2.Retrofit;
+import timber.log.Timber;
 
 
 public class RetrofitServiceProxyHandler implements InvocationHandler {
     
     private Retrofit mRetrofit;
     private Class<?> mServiceClass;
-    private Object mRetrofitService;
+    @Nullable
+    private RequestCoalescer mRequestCoalescer;
+    // 每个方法的返回值类型只在第一次调用时判断一次
+    private final ConcurrentHashMap<Method, CallType> mCallTypes = new ConcurrentHashMap<>();
+    private volatile Object mRetrofitService;
+    // Retrofit 创建的 service 本身也是动态代理，直接调用它的 InvocationHandler 可以省去 Method#invoke 的反射调用
+    @Nullable
+    private volatile InvocationHandler mRetrofitHandler;
     
     public RetrofitServiceProxyHandler(Retrofit retrofit, Class<?> serviceClass) {
+        this(retrofit, serviceClass, null);
+    }
+    
+    public RetrofitServiceProxyHandler(Retrofit retrofit, Class<?> serviceClass, @Nullable RequestCoalescer requestCoalescer) {
         mRetrofit = retrofit;
         mServiceClass = serviceClass;
+        mRequestCoalescer = requestCoalescer != null && requestCoalescer.isEnabled() ? requestCoalescer : null;
     }
     
     @Override
+    @SuppressWarnings("unchecked")
     public Object invoke(Object proxy, Method method, @Nullable Object[] args) throws Throwable {
         
         // 根据 https://zhuanlan.zhihu.com/p/40097338 对 Retrofit 进行的优化
         
-        if (method.getReturnType() == Observable.class) {
-            // 如果方法返回值是 Observable 的话，则包一层再返回，
-            // 只包一层 defer 由外部去控制耗时方法以及网络请求所处线程，
-            // 如此对原项目的影响为 0，且更可控。
-            return Observable.defer(() -> {
-                // 执行真正的 Retrofit 动态代理的方法
-                return (Observable) method.invoke(getRetrofitService(), args);
-            });
-        } else if (method.getReturnType() == Single.class) {
-            // 如果方法返回值是 Single 的话，则包一层再返回。
-            return Single.defer(() -> {
-                // 执行真正的 Retrofit 动态代理的方法
-                return (Single) method.invoke(getRetrofitService(), args);
-            });
+        CallType callType = mCallTypes.get(method);
+        if (callType == null) {
+            callType = CallType.of(method.getReturnType());
+            mCallTypes.put(method, callType);
         }
         
-        // 返回值不是 Observable 或 Single 的话不处理。
-        return method.invoke(getRetrofitService(), args);
+        // 如果方法返回值是 RxJava 的类型的话，则包一层 defer 再返回，
+        // 只包一层 defer 由外部去控制耗时方法以及网络请求所处线程，
+        // 如此对原项目的影响为 0，且更可控。
+        switch (callType) {
+            case OBSERVABLE:
+                if (mRequestCoalescer != null) {
+                    // 开启了请求合并的话，相同方法和参数且正在进行的请求只会发起一次。
+                    return mRequestCoalescer.observable(method, args, () -> (Observable<Object>) call(method, args));
+                }
+                return Observable.defer(() -> (Observable<Object>) call(method, args));
+            case SINGLE:
+                if (mRequestCoalescer != null) {
+                    return mRequestCoalescer.single(method, args, () -> (Single<Object>) call(method, args));
+                }
+                return Single.defer(() -> (Single<Object>) call(method, args));
+            case FLOWABLE:
+                return Flowable.defer(() -> (Flowable<Object>) call(method, args));
+            case MAYBE:
+                return Maybe.defer(() -> (Maybe<Object>) call(method, args));
+            case COMPLETABLE:
+                return Completable.defer(() -> (Completable) call(method, args));
+            default:
+                // 返回值不是 RxJava 的类型的话不处理。
+                return call(method, args);
+        }
+    }
+    
+    /**
+     * 创建真正的 Retrofit service, 并让 Retrofit 预先解析每个方法的注解 (ServiceMethod), 避免第一次请求时在调用线程中解析
+     * Retrofit 只在方法第一次被调用时解析, 所以这里使用空参数调用一次, 只有返回值为 RxJava 的类型或 {@link Call} 的方法
+     * 被调用后不会发起请求, 其余返回值类型的方法不做预解析
+     *
+     * @return 预解析的方法数量
+     */
+    public int warmUp() {
+        final Object service = getRetrofitService();
+        final InvocationHandler handler = mRetrofitHandler;
+        int count = 0;
+        for (Method method : mServiceClass.getMethods()) {
+            if (!Modifier.isAbstract(method.getModifiers())) {
+                continue;
+            }
+            final CallType callType = CallType.of(method.getReturnType());
+            mCallTypes.put(method, callType);
+            if (handler == null || (callType == CallType.PLAIN && method.getReturnType() != Call.class)) {
+                continue;
+            }
+            try {
+                handler.invoke(service, method, new Object[method.getParameterTypes().length]);
+                count++;
+            } catch (Throwable throwable) {
+                Timber.w("Warm up %s.%s failed: %s", mServiceClass.getSimpleName(), method.getName(), throwable);
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * 执行真正的 Retrofit 动态代理的方法
+     */
+    private Object call(Method method, @Nullable Object[] args) throws Exception {
+        final Object service = getRetrofitService();
+        final InvocationHandler handler = mRetrofitHandler;
+        try {
+            if (handler != null) {
+                return handler.invoke(service, method, args);
+            }
+            return method.invoke(service, args);
+        } catch (InvocationTargetException e) {
+            throw rethrow(e.getCause() == null ? e : e.getCause());
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+    
+    private static Exception rethrow(Throwable throwable) {
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        if (throwable instanceof Exception) {
+            return (Exception) throwable;
+        }
+        return new RuntimeException(throwable);
     }
     
     private Object getRetrofitService() {
-        if (mRetrofitService == null) {
-            mRetrofitService = mRetrofit.create(mServiceClass);
+        Object service = mRetrofitService;
+        if (service == null) {
+            synchronized (this) {
+                service = mRetrofitService;
+                if (service == null) {
+                    service = mRetrofit.create(mServiceClass);
+                    if (Proxy.isProxyClass(service.getClass())) {
+                        mRetrofitHandler = Proxy.getInvocationHandler(service);
+                    }
+                    mRetrofitService = service;
+                }
+            }
+        }
+        return service;
+    }
+    
+    /**
+     * 方法返回值的类型
+     */
+    private enum CallType {
+        OBSERVABLE, SINGLE, FLOWABLE, MAYBE, COMPLETABLE, PLAIN;
+        
+        static CallType of(Class<?> returnType) {
+            if (returnType == Observable.class) {
+                return OBSERVABLE;
+            } else if (returnType == Single.class) {
+                return SINGLE;
+            } else if (returnType == Flowable.class) {
+                return FLOWABLE;
+            } else if (returnType == Maybe.class) {
+                return MAYBE;
+            } else if (returnType == Completable.class) {
+                return COMPLETABLE;
+            }
+            return PLAIN;
         }
-        return mRetrofitService;
     }
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import com.jess.arms.integration.IRepositoryManager;
+
+/**
+ * ================================================
+ * Cache Service 中每次调用时读取 {@link ResponseCache} 的策略, 作为 Cache Service 方法的参数传入
+ * 未传入时默认为 {@link #CACHE_FIRST}
+ * <p>
+ * 缓存是否过期由方法上的 {@link LifeCache} 决定, 没有声明 {@link LifeCache} 的方法缓存永不过期
+ *
+ * @see IRepositoryManager#obtainCacheService(Class)
+ * ================================================
+ */
+public enum CachePolicy {
+    /**
+     * 不读取缓存, 直接请求网络, 请求成功后更新缓存, 适合下拉刷新等必须获取最新数据的场景
+     */
+    NETWORK_ONLY,
+    /**
+     * 缓存未过期时直接使用缓存, 不请求网络; 否则请求网络, 请求失败时如果有过期的缓存则使用过期的缓存
+     */
+    CACHE_FIRST,
+    /**
+     * 有缓存 (无论是否过期) 时先发射缓存, 然后请求网络并发射网络数据, 只支持 {@link io.reactivex.Observable}
+     */
+    CACHE_THEN_NETWORK,
+    /**
+     * 有缓存 (无论是否过期) 时直接使用缓存, 如果缓存已过期, 则同时在后台请求网络更新缓存, 供下次使用
+     */
+    STALE_WHILE_REVALIDATE
+}
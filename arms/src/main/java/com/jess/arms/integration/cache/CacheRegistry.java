@@ -0,0 +1,189 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+
+import com.jess.arms.base.delegate.AppDelegate;
+import com.jess.arms.di.module.GlobalConfigModule;
+import com.jess.arms.integration.metrics.MetricsRegistry;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import androidx.annotation.NonNull;
+
+/**
+ * ================================================
+ * 记录框架中所有由 {@link Cache.Factory} 构建的缓存, 在内存紧张时根据 {@link TrimPolicy} 分级缩小缓存的容量
+ * App 回到前台时再恢复至原容量
+ * <p>
+ * 只持有缓存的弱引用, 随 Activity、Fragment 销毁的缓存不会因为注册而泄漏
+ * <p>
+ * 实现了 {@link Metered} 的缓存在注册时会绑定 {@link MetricsRegistry} 中对应类型的命中率计数器
+ *
+ * @see AppDelegate
+ * @see GlobalConfigModule#provideCacheFactory(Application, CacheRegistry, java.util.concurrent.ExecutorService)
+ * ================================================
+ */
+@Singleton
+public class CacheRegistry {
+    private final List<Registration> mRegistrations = new ArrayList<>();
+    private final TrimPolicy mTrimPolicy;
+    private final MetricsRegistry mMetrics;
+    private volatile boolean mTrimmed;
+    
+    @Inject
+    public CacheRegistry(TrimPolicy trimPolicy, MetricsRegistry metrics) {
+        this.mTrimPolicy = trimPolicy;
+        this.mMetrics = metrics;
+    }
+    
+    /**
+     * 包装 {@link Cache.Factory}, 使其构建的每个缓存都自动注册
+     *
+     * @param factory 原始的 {@link Cache.Factory}
+     * @return 包装后的 {@link Cache.Factory}
+     */
+    @NonNull
+    public <K, V> Cache.Factory<K, V> wrap(@NonNull final Cache.Factory<K, V> factory) {
+        return new Cache.Factory<K, V>() {
+            @NonNull
+            @Override
+            public Cache<K, V> build(CacheType type) {
+                Cache<K, V> cache = factory.build(type);
+                register(type, cache);
+                return cache;
+            }
+        };
+    }
+    
+    /**
+     * 注册缓存, 只有实现了 {@link Trimmable} 的缓存才能被缩小, 只有实现了 {@link Metered} 的缓存才会统计命中率
+     *
+     * @param type  缓存对应的模块类型
+     * @param cache 缓存
+     */
+    public synchronized void register(@NonNull CacheType type, @NonNull Cache<?, ?> cache) {
+        if (cache instanceof Metered) {
+            final String name = "cache." + metricName(type);
+            ((Metered) cache).setStatsCounters(mMetrics.counter(name + ".hits"), mMetrics.counter(name + ".misses"));
+        }
+        if (!(cache instanceof Trimmable)) {
+            return;
+        }
+        pruneCleared();
+        mRegistrations.add(new Registration(type, (Trimmable) cache));
+    }
+    
+    /**
+     * 根据 {@link TrimPolicy} 缩小所有已注册缓存的容量
+     *
+     * @param level {@link ComponentCallbacks2#onTrimMemory(int)} 的内存级别
+     */
+    public synchronized void onTrimMemory(int level) {
+        Iterator<Registration> iterator = mRegistrations.iterator();
+        while (iterator.hasNext()) {
+            Registration registration = iterator.next();
+            Trimmable cache = registration.cache.get();
+            if (cache == null) {
+                iterator.remove();
+                continue;
+            }
+            float multiplier = mTrimPolicy.getSizeMultiplier(registration.type, level);
+            if (multiplier < registration.multiplier) {
+                registration.multiplier = multiplier;
+                cache.setSizeMultiplier(multiplier);
+                mTrimmed = true;
+            }
+        }
+    }
+    
+    /**
+     * 等同于 {@code onTrimMemory(TRIM_MEMORY_RUNNING_CRITICAL)}
+     * {@link ComponentCallbacks2#onLowMemory()} 可能在 App 处于前台时回调, 而 {@link #restore()} 要等到下一次从后台回到前台时
+     * 才会调用, 如果按 {@link ComponentCallbacks2#TRIM_MEMORY_COMPLETE} 处理, 缓存在此期间的容量为 0, 所有的写入都会被丢弃
+     */
+    public void onLowMemory() {
+        onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+    }
+    
+    /**
+     * 将所有被缩小的缓存恢复至原容量, App 回到前台时调用
+     */
+    public void restore() {
+        if (!mTrimmed) {
+            return;
+        }
+        synchronized (this) {
+            Iterator<Registration> iterator = mRegistrations.iterator();
+            while (iterator.hasNext()) {
+                Registration registration = iterator.next();
+                Trimmable cache = registration.cache.get();
+                if (cache == null) {
+                    iterator.remove();
+                } else if (registration.multiplier < 1) {
+                    registration.multiplier = 1;
+                    cache.setSizeMultiplier(1);
+                }
+            }
+            mTrimmed = false;
+        }
+    }
+    
+    private static String metricName(CacheType type) {
+        switch (type.getCacheTypeId()) {
+            case CacheType.CACHE_SERVICE_CACHE_TYPE_ID:
+                return "cache_service";
+            case CacheType.EXTRAS_TYPE_ID:
+                return "extras";
+            case CacheType.ACTIVITY_CACHE_TYPE_ID:
+                return "activity";
+            case CacheType.FRAGMENT_CACHE_TYPE_ID:
+                return "fragment";
+            case CacheType.RESPONSE_CACHE_TYPE_ID:
+                return "response";
+            default:
+                return "type_" + type.getCacheTypeId();
+        }
+    }
+    
+    private void pruneCleared() {
+        Iterator<Registration> iterator = mRegistrations.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().cache.get() == null) {
+                iterator.remove();
+            }
+        }
+    }
+    
+    private static final class Registration {
+        final CacheType type;
+        final WeakReference<Trimmable> cache;
+        float multiplier = 1;
+        
+        Registration(CacheType type, Trimmable cache) {
+            this.type = type;
+            this.cache = new WeakReference<>(cache);
+        }
+    }
+}
@@ -36,14 +36,24 @@ import androidx.fragment.app.Fragment;
  * ================================================
  */
 public interface CacheType {
+    /**
+     * @deprecated {@link RepositoryManager} 不再使用 {@link Cache.Factory} 存储 Retrofit Service, 保留此值只为兼容
+     */
+    @Deprecated
     int RETROFIT_SERVICE_CACHE_TYPE_ID = 0;
     int CACHE_SERVICE_CACHE_TYPE_ID = 1;
     int EXTRAS_TYPE_ID = 2;
     int ACTIVITY_CACHE_TYPE_ID = 3;
     int FRAGMENT_CACHE_TYPE_ID = 4;
+    int RESPONSE_CACHE_TYPE_ID = 5;
     /**
      * {@link RepositoryManager}中存储 Retrofit Service 的容器
+     *
+     * @deprecated Retrofit Service 的数量有限且占用内存很小, 淘汰后只会被重新创建, 所以 {@link RepositoryManager}
+     * 改为使用不可淘汰的 {@link java.util.concurrent.ConcurrentHashMap} 存储, 不再通过 {@link Cache.Factory} 构建此类型,
+     * 自定义的 {@link Cache.Factory} 中针对此类型的处理不会再生效
      */
+    @Deprecated
     CacheType RETROFIT_SERVICE_CACHE = new CacheType() {
         private static final int MAX_SIZE = 150;
         private static final float MAX_SIZE_MULTIPLIER = 0.002f;
@@ -88,7 +98,8 @@ public interface CacheType {
     };
     
     /**
-     * {@link AppComponent} 中的 extras
+     * {@link AppComponent} 中的 extras, 以条目数为单位
+     * 框架的 {@link AppComponent#extras()} 使用以内存字节数为单位的 {@link #EXTRAS_MEMORY}
      */
     CacheType EXTRAS = new CacheType() {
         private static final int MAX_SIZE = 500;
@@ -111,7 +122,7 @@ public interface CacheType {
     };
     
     /**
-     * {@link Activity} 中存储数据的容器
+     * {@link Activity} 中存储数据的容器, 以条目数为单位, 存储 Bitmap 等大小不一的对象时请使用 {@link #ACTIVITY_MEMORY_CACHE}
      */
     CacheType ACTIVITY_CACHE = new CacheType() {
         private static final int MAX_SIZE = 80;
@@ -134,7 +145,7 @@ public interface CacheType {
     };
     
     /**
-     * {@link Fragment} 中存储数据的容器
+     * {@link Fragment} 中存储数据的容器, 以条目数为单位, 存储 Bitmap 等大小不一的对象时请使用 {@link #FRAGMENT_MEMORY_CACHE}
      */
     CacheType FRAGMENT_CACHE = new CacheType() {
         private static final int MAX_SIZE = 80;
@@ -156,6 +167,44 @@ public interface CacheType {
         }
     };
     
+    /**
+     * {@link ResponseCache} 中存储网络请求结果的内存缓存
+     */
+    CacheType RESPONSE_CACHE = new CacheType() {
+        private static final int MAX_SIZE = 100;
+        private static final float MAX_SIZE_MULTIPLIER = 0.001f;
+        
+        @Override
+        public int getCacheTypeId() {
+            return RESPONSE_CACHE_TYPE_ID;
+        }
+        
+        @Override
+        public int calculateCacheSize(Context context) {
+            ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+            int targetMemoryCacheSize = (int) (activityManager.getMemoryClass() * MAX_SIZE_MULTIPLIER * 1024);
+            if (targetMemoryCacheSize >= MAX_SIZE) {
+                return MAX_SIZE;
+            }
+            return targetMemoryCacheSize;
+        }
+    };
+    
+    /**
+     * {@link AppComponent} 中的 extras, 以内存字节数为单位, 最大为 {@link ActivityManager#getMemoryClass()} 的 1/64
+     */
+    CacheType EXTRAS_MEMORY = new MemoryCacheType(EXTRAS_TYPE_ID, 1f / 64);
+    
+    /**
+     * {@link Activity} 中存储数据的容器, 以内存字节数为单位, 最大为 {@link ActivityManager#getMemoryClass()} 的 1/128
+     */
+    CacheType ACTIVITY_MEMORY_CACHE = new MemoryCacheType(ACTIVITY_CACHE_TYPE_ID, 1f / 128);
+    
+    /**
+     * {@link Fragment} 中存储数据的容器, 以内存字节数为单位, 最大为 {@link ActivityManager#getMemoryClass()} 的 1/128
+     */
+    CacheType FRAGMENT_MEMORY_CACHE = new MemoryCacheType(FRAGMENT_CACHE_TYPE_ID, 1f / 128);
+    
     /**
      * 返回框架内需要缓存的模块对应的 {@code id}
      *
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import java.io.IOException;
+
+import androidx.annotation.NonNull;
+
+/**
+ * ================================================
+ * {@link DiskCache} 用来序列化和反序列化 {@code value} 的编解码器, 默认使用 {@link SerializableCodec}
+ * 可自行实现, 比如使用 Gson 将对象转换为 Json
+ *
+ * @see SerializableCodec
+ * ================================================
+ */
+public interface Codec<V> {
+    
+    /**
+     * 将 {@code value} 序列化为字节, 不支持的 {@code value} 抛出 {@link IOException} 即可, 此条目不会写入磁盘
+     *
+     * @param value {@code value}
+     * @return 序列化后的字节
+     * @throws IOException
+     */
+    @NonNull
+    byte[] encode(@NonNull V value) throws IOException;
+    
+    /**
+     * 将字节反序列化为 {@code value}
+     *
+     * @param bytes 序列化后的字节
+     * @return {@code value}
+     * @throws IOException
+     */
+    @NonNull
+    V decode(@NonNull byte[] bytes) throws IOException;
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import com.jess.arms.di.module.GlobalConfigModule;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import androidx.annotation.Nullable;
+
+/**
+ * ================================================
+ * 分段 (Lock Striping) 的 LRU 缓存, 适合被多个线程同时频繁读取的场景, 比如 {@link CacheType#CACHE_SERVICE_CACHE}
+ * <p>
+ * {@link LruCache} 使用单个访问有序的 {@link java.util.LinkedHashMap}, 由于 {@code get} 也会改变链表结构, 所以所有方法
+ * 都需要竞争同一把锁; {@link ConcurrentLruCache} 将条目按 {@code key} 的 hash 分散到多个 {@link Segment} 中,
+ * 写操作只锁住 {@code key} 所在的 {@link Segment}
+ * <p>
+ * 每个 {@link Segment} 使用一个按访问顺序排列的双向链表, 淘汰时直接移除链表头部 (即最近最少使用) 的条目, 时间复杂度为 O(1)
+ * {@link #get(Object)} 不会阻塞: 查找不加锁, 只有在能立即获取分段的锁时才会将条目移至链表尾部, 分段正在被其他线程写入时
+ * 跳过这次访问的记录, 所以淘汰顺序是分段内近似的 LRU, 而不是全局严格的 LRU
+ * <p>
+ * 与 {@link LruCache} 一样支持 {@code null} 作为 {@code key}
+ *
+ * @see EvictionPolicy#CONCURRENT_LRU
+ * @see GlobalConfigModule.Builder#evictionPolicy(EvictionPolicy)
+ * ================================================
+ */
+public class ConcurrentLruCache<K, V> implements Cache<K, V>, Trimmable, Evictable<K, V> {
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    //每个分段至少能容纳的条目数, 避免容量很小时分段过多, 导致 hash 分布不均而过早淘汰
+    private static final int MIN_SEGMENT_SIZE = 16;
+    
+    //ConcurrentHashMap 不支持 null key, 使用此对象代替
+    private static final Object NULL_KEY = new Object();
+    
+    private final Segment<K, V>[] segments;
+    private final int segmentMask;
+    private final int initialMaxSize;
+    private volatile int maxSize;
+    @Nullable
+    private volatile EvictionListener<K, V> evictionListener;
+    
+    /**
+     * Constructor for ConcurrentLruCache.
+     *
+     * @param size 这个缓存的最大 size,这个 size 所使用的单位必须和 {@link #getItemSize(Object)} 所使用的单位一致.
+     */
+    public ConcurrentLruCache(int size) {
+        this(size, DEFAULT_CONCURRENCY_LEVEL);
+    }
+    
+    /**
+     * Constructor for ConcurrentLruCache.
+     *
+     * @param size             这个缓存的最大 size,这个 size 所使用的单位必须和 {@link #getItemSize(Object)} 所使用的单位一致.
+     * @param concurrencyLevel 预计同时写入的线程数, 用来决定分段的数量
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLruCache(int size, int concurrencyLevel) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must be >= 0");
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("ConcurrencyLevel must be > 0");
+        }
+        int segmentCount = 1;
+        while (segmentCount < concurrencyLevel && (segmentCount << 1) * MIN_SEGMENT_SIZE <= size) {
+            segmentCount <<= 1;
+        }
+        this.segments = (Segment<K, V>[]) new Segment<?, ?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(this);
+        }
+        this.segmentMask = segmentCount - 1;
+        this.initialMaxSize = size;
+        distributeMaxSize(size);
+    }
+    
+    /**
+     * 设置一个系数应用于当时构造函数中所传入的 size, 从而得到一个新的 {@link #maxSize}
+     * 并会立即清除每个分段中超出容量的条目
+     *
+     * @param multiplier 系数
+     */
+    @Override
+    public void setSizeMultiplier(float multiplier) {
+        if (multiplier < 0) {
+            throw new IllegalArgumentException("Multiplier must be >= 0");
+        }
+        distributeMaxSize(Math.round(initialMaxSize * multiplier));
+    }
+    
+    /**
+     * 返回每个 {@code item} 所占用的 size,默认为1,这个 size 的单位必须和构造函数所传入的 size 一致
+     * 子类可以重写这个方法以适应不同的单位,比如说 bytes
+     *
+     * @param item 每个 {@code item} 所占用的 size
+     * @return 单个 item 的 {@code size}
+     */
+    protected int getItemSize(V item) {
+        return 1;
+    }
+    
+    /**
+     * 当缓存中有被驱逐的条目时,会回调此方法,默认空实现,子类可以重写这个方法
+     * 此方法在分段的锁中被调用, 请不要在此方法中执行耗时操作
+     *
+     * @param key   被驱逐条目的 {@code key}
+     * @param value 被驱逐条目的 {@code value}
+     */
+    protected void onItemEvicted(K key, V value) {
+        // optional override
+    }
+    
+    @Override
+    public void setEvictionListener(@Nullable EvictionListener<K, V> listener) {
+        this.evictionListener = listener;
+    }
+    
+    /**
+     * 返回当前缓存所能允许的最大 size
+     *
+     * @return {@code maxSize}
+     */
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * 返回当前缓存已占用的总 size, 并发写入时此值只是一个近似值
+     *
+     * @return {@code size}
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.currentSize;
+        }
+        return size;
+    }
+    
+    /**
+     * 如果这个 {@code key} 在缓存中有对应的 {@code value} 并且不为 {@code null},则返回 true
+     *
+     * @param key 用来映射的 {@code key}
+     * @return {@code true} 为在容器中含有这个 {@code key}, 否则为 {@code false}
+     */
+    @Override
+    public boolean containsKey(K key) {
+        return segmentFor(key).map.containsKey(maskNull(key));
+    }
+    
+    /**
+     * 返回当前缓存中含有的所有 {@code key} 的快照
+     *
+     * @return {@code keySet}
+     */
+    @Override
+    public Set<K> keySet() {
+        Set<K> keys = new HashSet<>();
+        for (Segment<K, V> segment : segments) {
+            for (Node<K, V> node : segment.map.values()) {
+                keys.add(node.key);
+            }
+        }
+        return keys;
+    }
+    
+    /**
+     * 返回这个 {@code key} 在缓存中对应的 {@code value}, 如果返回 {@code null} 说明这个 {@code key} 没有对应的 {@code value}
+     * 此方法不会阻塞, 分段空闲时才会记录这次访问
+     *
+     * @param key 用来映射的 {@code key}
+     * @return {@code value}
+     */
+    @Override
+    @Nullable
+    public V get(K key) {
+        final Segment<K, V> segment = segmentFor(key);
+        final Node<K, V> node = segment.map.get(maskNull(key));
+        if (node == null) {
+            return null;
+        }
+        segment.recordAccess(node);
+        return node.value;
+    }
+    
+    /**
+     * 将 {@code key} 和 {@code value} 以条目的形式加入缓存,如果这个 {@code key} 在缓存中已经有对应的 {@code value}
+     * 则此 {@code value} 被新的 {@code value} 替换并返回,如果为 {@code null} 说明是一个新条目
+     * <p>
+     * 如果 {@link #getItemSize} 返回的 size 大于或等于 {@code key} 所在分段所能允许的最大 size, 则不能向缓存中添加此条目
+     * 此时会回调 {@link #onItemEvicted(Object, Object)} 通知此方法当前被驱逐的条目
+     *
+     * @param key   通过这个 {@code key} 添加条目
+     * @param value 需要添加的 {@code value}
+     * @return 如果这个 {@code key} 在容器中已经储存有 {@code value}, 则返回之前的 {@code value} 否则返回 {@code null}
+     */
+    @Override
+    @Nullable
+    public V put(K key, V value) {
+        return segmentFor(key).put(key, value);
+    }
+    
+    /**
+     * 移除缓存中这个 {@code key} 所对应的条目,并返回所移除条目的 {@code value}
+     * 如果返回为 {@code null} 则有可能时因为这个 {@code key} 对应的 {@code value} 为 {@code null} 或条目不存在
+     *
+     * @param key 使用这个 {@code key} 移除对应的条目
+     * @return 如果这个 {@code key} 在容器中已经储存有 {@code value} 并且删除成功则返回删除的 {@code value}, 否则返回 {@code null}
+     */
+    @Override
+    @Nullable
+    public V remove(K key) {
+        return segmentFor(key).remove(key);
+    }
+    
+    /**
+     * 清除缓存中所有的内容
+     */
+    @Override
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.trim(0, false);
+        }
+    }
+    
+    private void distributeMaxSize(int size) {
+        this.maxSize = size;
+        int segmentSize = size / segments.length;
+        int remainder = size % segments.length;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i].setMaxSize(i < remainder ? segmentSize + 1 : segmentSize);
+        }
+    }
+    
+    private Segment<K, V> segmentFor(K key) {
+        int h = key == null ? 0 : key.hashCode();
+        //与 ConcurrentHashMap 一样打散高位, 避免 hashCode 低位相同的 key 集中在同一个分段
+        h ^= (h >>> 16);
+        return segments[h & segmentMask];
+    }
+    
+    private void dispatchEviction(K key, V value) {
+        onItemEvicted(key, value);
+        final EvictionListener<K, V> listener = evictionListener;
+        if (listener != null) {
+            listener.onEvicted(key, value);
+        }
+    }
+    
+    private static Object maskNull(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+    
+    /**
+     * 条目, 同时也是访问顺序链表中的节点, {@link #prev} 和 {@link #next} 只在持有分段的锁时读写
+     */
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final int size;
+        Node<K, V> prev;
+        Node<K, V> next;
+        
+        Node(K key, V value, int size) {
+            this.key = key;
+            this.value = value;
+            this.size = size;
+        }
+    }
+    
+    /**
+     * 分段, 读操作直接访问 {@link #map}, 写操作、淘汰和调整访问顺序需要持有分段自身的锁
+     * 访问顺序链表是以 {@link #head} 为哨兵的环形链表, {@code head.next} 为最近最少使用的条目
+     */
+    private static final class Segment<K, V> extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+        
+        final ConcurrentHashMap<Object, Node<K, V>> map = new ConcurrentHashMap<>();
+        final ConcurrentLruCache<K, V> cache;
+        final Node<K, V> head = new Node<>(null, null, 0);
+        volatile int currentSize;
+        int maxSize;
+        
+        Segment(ConcurrentLruCache<K, V> cache) {
+            this.cache = cache;
+            head.prev = head;
+            head.next = head;
+        }
+        
+        void setMaxSize(int maxSize) {
+            lock();
+            try {
+                this.maxSize = maxSize;
+                trimToSize(maxSize);
+            } finally {
+                unlock();
+            }
+        }
+        
+        /**
+         * 将条目移至链表尾部, 分段的锁正被其他线程持有时直接放弃, 不会阻塞读操作
+         */
+        void recordAccess(Node<K, V> node) {
+            if (!tryLock()) {
+                return;
+            }
+            try {
+                //条目可能已经在获取锁之前被移除或替换
+                if (node.next != null) {
+                    unlink(node);
+                    linkLast(node);
+                }
+            } finally {
+                unlock();
+            }
+        }
+        
+        V put(K key, V value) {
+            lock();
+            try {
+                final int itemSize = cache.getItemSize(value);
+                if (itemSize >= maxSize) {
+                    cache.dispatchEviction(key, value);
+                    return null;
+                }
+                
+                final Node<K, V> node = new Node<>(key, value, itemSize);
+                final Node<K, V> previous = map.put(maskNull(key), node);
+                int size = currentSize + itemSize;
+                if (previous != null) {
+                    unlink(previous);
+                    size -= previous.size;
+                }
+                linkLast(node);
+                currentSize = size;
+                trimToSize(maxSize);
+                
+                return previous == null ? null : previous.value;
+            } finally {
+                unlock();
+            }
+        }
+        
+        V remove(K key) {
+            lock();
+            try {
+                final Node<K, V> node = map.remove(maskNull(key));
+                if (node == null) {
+                    return null;
+                }
+                unlink(node);
+                currentSize -= node.size;
+                return node.value;
+            } finally {
+                unlock();
+            }
+        }
+        
+        /**
+         * 当指定的 size 小于当前分段已占用的总 size 时, 会开始清除链表头部 (最近最少使用) 的条目
+         *
+         * @param size {@code size}
+         */
+        void trimToSize(int size) {
+            trim(size, true);
+        }
+        
+        /**
+         * @param size  {@code size}
+         * @param evict {@code true} 为因容量不足而驱逐, 会通知 {@link EvictionListener}, {@code false} 为 {@link ConcurrentLruCache#clear()}
+         */
+        void trim(int size, boolean evict) {
+            lock();
+            try {
+                while (currentSize > size && head.next != head) {
+                    final Node<K, V> eldest = head.next;
+                    unlink(eldest);
+                    map.remove(maskNull(eldest.key), eldest);
+                    currentSize -= eldest.size;
+                    if (evict) {
+                        cache.dispatchEviction(eldest.key, eldest.value);
+                    } else {
+                        cache.onItemEvicted(eldest.key, eldest.value);
+                    }
+                }
+            } finally {
+                unlock();
+            }
+        }
+        
+        private void linkLast(Node<K, V> node) {
+            node.prev = head.prev;
+            node.next = head;
+            head.prev.next = node;
+            head.prev = node;
+        }
+        
+        private void unlink(Node<K, V> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+    }
+}
@@ -0,0 +1,634 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import com.jess.arms.di.module.GlobalConfigModule;
+import com.jess.arms.utils.Preconditions;
+import com.jess.arms.utils.ZipHelper;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import timber.log.Timber;
+
+/**
+ * ================================================
+ * 基于磁盘的二级缓存, 作为 {@link IntelligentCache} 的 L2, 使数据在内存缓存淘汰之后以及进程被杀死重启之后依然可以命中
+ * <p>
+ * 数据以只追加 (append-only) 的方式写入若干个固定大小的分段文件 ({@link Segment}), 每个分段文件使用
+ * {@link FileChannel#map(FileChannel.MapMode, long, long)} 映射至内存, 读写都直接操作映射的内存, 不需要额外的系统调用
+ * 每条记录的格式为 {@code [magic][keyLength][valueLength][crc][key][value]}, {@code valueLength} 为 -1 时表示删除
+ * <p>
+ * 内存中只保存 {@code key} 至记录位置的索引, 打开时按分段的顺序扫描所有记录重建索引, 遇到未写完或校验失败的记录即停止扫描此分段
+ * 写入同一个 {@code key} 或删除时, 旧的记录成为垃圾, 当最旧的分段中存活的数据少于一半时, 在 {@link #mExecutor} 中
+ * 将其中存活的记录复制到最新的分段并删除此分段 (压缩); 当总大小超出 {@link #mMaxBytes} 时直接丢弃最旧的分段
+ * 压缩和丢弃都只作用于最旧的分段, 这样可以保证删除记录不会早于它所删除的记录被丢弃
+ * <p>
+ * {@code value} 的序列化由 {@link Codec} 完成, 无法序列化的 {@code value} 不会写入磁盘
+ * <p>
+ * 打开分段文件、重建索引、序列化以及所有的写入都在 {@link #mExecutor} 中按提交的顺序执行, 调用线程不会访问磁盘:
+ * {@link #put(String, Object)} 在 {@link #mExecutor} 中才序列化 {@code value}, 所以 {@code value} 在写入之后不应再被修改;
+ * {@link #containsKey(String)} 和 {@link #keySet()} 只查询内存中的索引, 索引重建完成之前视为空;
+ * 读取 {@code value} 需要使用 {@link #getAsync(String, Callback)}, {@link #get(String)} 只能在工作线程中调用,
+ * 索引重建完成之前调用会阻塞等待重建完成, 所以打开之后的第一次读取也能命中
+ *
+ * @see IntelligentCache#IntelligentCache(Cache, DiskCache)
+ * @see GlobalConfigModule.Builder#diskCache(File, long, Codec)
+ * ================================================
+ */
+public class DiskCache<V> {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String SEGMENT_SUFFIX = ".seg";
+    //"ARMS"
+    private static final int RECORD_MAGIC = 0x41524D53;
+    private static final int HEADER_SIZE = 16;
+    private static final int TOMBSTONE = -1;
+    private static final int MIN_SEGMENT_SIZE = 64 * 1024;
+    private static final int MAX_SEGMENT_SIZE = 4 * 1024 * 1024;
+    //最旧的分段中存活的数据低于此比例时开始压缩
+    private static final float COMPACTION_THRESHOLD = 0.5f;
+    //get 等待索引重建的最长时间, 避免在 mExecutor 的线程中误调用 get 时永远等待
+    private static final long LOAD_TIMEOUT_MILLIS = 10 * 1000;
+    
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private final int mSegmentSize;
+    private final Codec<V> mCodec;
+    private final Executor mExecutor;
+    //分段 id 至分段, 按 id 升序即按写入的先后顺序
+    private final TreeMap<Integer, Segment> mSegments = new TreeMap<>();
+    private final Map<String, Location> mIndex = new HashMap<>();
+    private Segment mActive;
+    private long mTotalBytes;
+    //索引重建完成之前, containsKey 和 keySet 直接返回, 不会等待重建或访问磁盘
+    private volatile boolean mLoaded;
+    //索引重建完成 (无论成功与否) 时归零, get 在工作线程中等待
+    private final CountDownLatch mLoadLatch = new CountDownLatch(1);
+    private boolean mDisabled;
+    private boolean mCompactionScheduled;
+    
+    /**
+     * Constructor for DiskCache.
+     * 构造时会在 {@code executor} 中打开分段文件并重建索引, 在此之前提交的写入会排在重建之后执行
+     *
+     * @param directory 存放分段文件的目录, 每个 {@link DiskCache} 需要独占一个目录
+     * @param maxBytes  所有分段文件的最大总字节数
+     * @param codec     {@link Codec}
+     * @param executor  用来打开、写入和压缩的 {@link Executor}, 需要按提交的顺序执行任务, 比如单线程的线程池
+     */
+    public DiskCache(@NonNull File directory, long maxBytes, @NonNull Codec<V> codec, @NonNull Executor executor) {
+        Preconditions.checkArgument(maxBytes > 0, "MaxBytes must be > 0");
+        this.mDirectory = Preconditions.checkNotNull(directory, "directory == null");
+        this.mCodec = Preconditions.checkNotNull(codec, "codec == null");
+        this.mExecutor = Preconditions.checkNotNull(executor, "executor == null");
+        this.mMaxBytes = maxBytes;
+        //至少保留四个分段, 使压缩和丢弃最旧的分段时不会一次失去太多数据
+        this.mSegmentSize = (int) Math.max(MIN_SEGMENT_SIZE, Math.min(MAX_SEGMENT_SIZE, maxBytes / 4));
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+    
+    /**
+     * 返回这个 {@code key} 在磁盘中对应的 {@code value}, 如果返回 {@code null} 说明这个 {@code key} 没有对应的 {@code value}
+     * 此方法会读取映射的内存 (可能触发磁盘 IO) 并反序列化, 索引还未重建完成时会阻塞等待重建完成, 不能在主线程中调用
+     *
+     * @param key 用来映射的 {@code key}
+     * @return {@code value}
+     * @see #getAsync(String, Callback)
+     */
+    @Nullable
+    @WorkerThread
+    public V get(@NonNull String key) {
+        if (!awaitLoaded()) {
+            return null;
+        }
+        final byte[] bytes;
+        synchronized (this) {
+            if (mDisabled) {
+                return null;
+            }
+            final Location location = mIndex.get(key);
+            if (location == null) {
+                return null;
+            }
+            bytes = location.readValue();
+        }
+        try {
+            return mCodec.decode(bytes);
+        } catch (Exception e) {
+            Timber.w(e, "DiskCache decode failed: %s", key);
+            remove(key);
+            return null;
+        }
+    }
+    
+    /**
+     * 如果这个 {@code key} 在磁盘中有对应的 {@code value}, 则返回 true
+     *
+     * @param key 用来映射的 {@code key}
+     * @return {@code true} 为在磁盘中含有这个 {@code key}, 否则为 {@code false}
+     */
+    public boolean containsKey(@NonNull String key) {
+        if (!mLoaded) {
+            return false;
+        }
+        synchronized (this) {
+            return !mDisabled && mIndex.containsKey(key);
+        }
+    }
+    
+    /**
+     * 在 {@link #mExecutor} 中执行 {@link #get(String)}, 并在 {@link #mExecutor} 的线程中回调结果
+     * 会排在之前提交的写入之后执行, 所以能读取到之前 {@link #put(String, Object)} 的 {@code value}
+     *
+     * @param key      用来映射的 {@code key}
+     * @param callback 读取完成后的回调
+     */
+    public void getAsync(@NonNull final String key, @NonNull final Callback<V> callback) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onResult(key, get(key));
+            }
+        });
+    }
+    
+    /**
+     * 返回当前磁盘中含有的所有 {@code key} 的快照
+     *
+     * @return {@code keySet}
+     */
+    @NonNull
+    public Set<String> keySet() {
+        if (!mLoaded) {
+            return new HashSet<>();
+        }
+        synchronized (this) {
+            return mDisabled ? new HashSet<String>() : new HashSet<>(mIndex.keySet());
+        }
+    }
+    
+    /**
+     * 在 {@link #mExecutor} 中序列化 {@code value} 并追加至当前的分段, 调用的线程不会执行序列化
+     * 无法序列化的 {@code value} 不会写入磁盘, 同时会删除这个 {@code key} 之前写入的旧值
+     *
+     * @param key   通过这个 {@code key} 添加条目
+     * @param value 需要添加的 {@code value}, 在写入磁盘之前不应再被修改
+     */
+    public void put(@NonNull final String key, @NonNull final V value) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                byte[] bytes;
+                try {
+                    bytes = mCodec.encode(value);
+                } catch (Exception e) {
+                    Timber.w("DiskCache encode failed: %s, %s", key, e);
+                    bytes = null;
+                }
+                synchronized (DiskCache.this) {
+                    if (!isAvailable()) {
+                        return;
+                    }
+                    if (bytes != null) {
+                        append(key, bytes);
+                    } else if (mIndex.containsKey(key)) {
+                        append(key, null);
+                    }
+                }
+            }
+        });
+    }
+    
+    /**
+     * 在 {@link #mExecutor} 中移除磁盘中这个 {@code key} 所对应的条目, 会追加一条删除记录使重启后依然生效
+     * 与之前提交的 {@link #put(String, Object)} 按顺序执行
+     *
+     * @param key 使用这个 {@code key} 移除对应的条目
+     */
+    public void remove(@NonNull final String key) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (DiskCache.this) {
+                    if (isAvailable() && mIndex.containsKey(key)) {
+                        append(key, null);
+                    }
+                }
+            }
+        });
+    }
+    
+    /**
+     * 在 {@link #mExecutor} 中删除所有的分段文件, 与之前提交的 {@link #put(String, Object)} 按顺序执行
+     */
+    public void clear() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (DiskCache.this) {
+                    if (!isAvailable()) {
+                        return;
+                    }
+                    for (Segment segment : mSegments.values()) {
+                        segment.delete();
+                    }
+                    mSegments.clear();
+                    mIndex.clear();
+                    mTotalBytes = 0;
+                    try {
+                        mActive = openSegment(0);
+                    } catch (IOException e) {
+                        disable(e);
+                    }
+                }
+            }
+        });
+    }
+    
+    /**
+     * 返回所有分段中已写入的总字节数, 包含尚未压缩的垃圾数据
+     *
+     * @return 总字节数
+     */
+    public synchronized long size() {
+        return mTotalBytes;
+    }
+    
+    private boolean isAvailable() {
+        return mLoaded && !mDisabled;
+    }
+    
+    /**
+     * 在 {@link #mExecutor} 中打开目录中所有的分段文件, 并按顺序扫描每条记录重建索引
+     * 打开失败 (比如磁盘已满) 后此 {@link DiskCache} 不再可用, 所有方法都将直接返回
+     */
+    private synchronized void load() {
+        try {
+            loadSegments();
+        } finally {
+            mLoaded = true;
+            mLoadLatch.countDown();
+        }
+    }
+    
+    private void loadSegments() {
+        try {
+            if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+                throw new IOException("Can not create directory: " + mDirectory);
+            }
+            final File[] files = mDirectory.listFiles(new FilenameFilter() {
+                @Override
+                public boolean accept(File dir, String name) {
+                    return name.endsWith(SEGMENT_SUFFIX);
+                }
+            });
+            final List<Integer> ids = new ArrayList<>();
+            if (files != null) {
+                for (File file : files) {
+                    final String name = file.getName();
+                    try {
+                        ids.add(Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        //noinspection ResultOfMethodCallIgnored
+                        file.delete();
+                    }
+                }
+            }
+            Collections.sort(ids);
+            for (Integer id : ids) {
+                final Segment segment = openSegment(id);
+                scan(segment);
+                mTotalBytes += segment.writePosition;
+            }
+            mActive = mSegments.isEmpty() ? openSegment(0) : mSegments.lastEntry().getValue();
+            trimToSize();
+            scheduleCompactionIfNeeded();
+        } catch (IOException e) {
+            disable(e);
+        }
+    }
+    
+    /**
+     * 等待 {@link #load()} 完成, 被中断或超时返回 {@code false}
+     */
+    private boolean awaitLoaded() {
+        if (mLoaded) {
+            return true;
+        }
+        try {
+            if (mLoadLatch.await(LOAD_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            Timber.w("DiskCache index is not loaded after %d ms: %s", LOAD_TIMEOUT_MILLIS, mDirectory);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+    
+    private Segment openSegment(int id) throws IOException {
+        final Segment segment = new Segment(id, new File(mDirectory, id + SEGMENT_SUFFIX), mSegmentSize);
+        mSegments.put(id, segment);
+        return segment;
+    }
+    
+    /**
+     * 扫描分段中的每条记录, 后写入的记录覆盖先写入的记录
+     */
+    private void scan(Segment segment) {
+        final ByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_SIZE <= mSegmentSize) {
+            if (buffer.getInt(position) != RECORD_MAGIC) {
+                break;
+            }
+            final int keyLength = buffer.getInt(position + 4);
+            final int valueLength = buffer.getInt(position + 8);
+            final int crc = buffer.getInt(position + 12);
+            if (keyLength < 0 || valueLength < TOMBSTONE
+                || (long) HEADER_SIZE + keyLength + Math.max(valueLength, 0) > mSegmentSize - position) {
+                break;
+            }
+            final int length = HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+            if (crc != checksum(buffer, position + HEADER_SIZE, length - HEADER_SIZE)) {
+                break;
+            }
+            final byte[] keyBytes = new byte[keyLength];
+            final ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position(position + HEADER_SIZE);
+            duplicate.get(keyBytes);
+            final String key = new String(keyBytes, UTF_8);
+            final Location previous = mIndex.remove(key);
+            if (previous != null) {
+                previous.segment.liveBytes -= previous.length;
+            }
+            if (valueLength != TOMBSTONE) {
+                mIndex.put(key, new Location(segment, position, keyLength, valueLength));
+                segment.liveBytes += length;
+            }
+            position += length;
+        }
+        segment.writePosition = position;
+    }
+    
+    /**
+     * 追加一条记录, {@code value} 为 {@code null} 时追加删除记录
+     */
+    private void append(String key, @Nullable byte[] value) {
+        final byte[] keyBytes = key.getBytes(UTF_8);
+        final int valueLength = value == null ? TOMBSTONE : value.length;
+        final int length = HEADER_SIZE + keyBytes.length + (value == null ? 0 : value.length);
+        if (length > mSegmentSize) {
+            //超出单个分段大小的条目不写入磁盘, 但需要删除之前写入的旧值
+            if (mIndex.containsKey(key)) {
+                append(key, null);
+            }
+            return;
+        }
+        try {
+            if (mActive.writePosition + length > mSegmentSize) {
+                mActive = openSegment(mActive.id + 1);
+            }
+        } catch (IOException e) {
+            disable(e);
+            return;
+        }
+        final Segment segment = mActive;
+        final int position = segment.writePosition;
+        final ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(position + HEADER_SIZE);
+        buffer.put(keyBytes);
+        if (value != null) {
+            buffer.put(value);
+        }
+        buffer.putInt(position + 4, keyBytes.length);
+        buffer.putInt(position + 8, valueLength);
+        buffer.putInt(position + 12, checksum(buffer, position + HEADER_SIZE, length - HEADER_SIZE));
+        //最后写入 magic, 进程在写入过程中被杀死时, 重启后扫描到此处即停止, 不会读到不完整的记录
+        buffer.putInt(position, RECORD_MAGIC);
+        segment.writePosition += length;
+        mTotalBytes += length;
+        
+        final Location previous = mIndex.remove(key);
+        if (previous != null) {
+            previous.segment.liveBytes -= previous.length;
+        }
+        if (value != null) {
+            mIndex.put(key, new Location(segment, position, keyBytes.length, valueLength));
+            segment.liveBytes += length;
+        }
+        trimToSize();
+        scheduleCompactionIfNeeded();
+    }
+    
+    /**
+     * 总大小超出 {@link #mMaxBytes} 时丢弃最旧的分段
+     */
+    private void trimToSize() {
+        while (mTotalBytes > mMaxBytes && mSegments.size() > 1) {
+            dropSegment(mSegments.firstEntry().getValue());
+        }
+    }
+    
+    private void dropSegment(Segment segment) {
+        final Iterator<Location> iterator = mIndex.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().segment == segment) {
+                iterator.remove();
+            }
+        }
+        mSegments.remove(segment.id);
+        mTotalBytes -= segment.writePosition;
+        segment.delete();
+    }
+    
+    private boolean needsCompaction() {
+        final Segment eldest = mSegments.firstEntry().getValue();
+        return eldest != mActive && eldest.liveBytes < eldest.writePosition * COMPACTION_THRESHOLD;
+    }
+    
+    private void scheduleCompactionIfNeeded() {
+        if (mCompactionScheduled || mDisabled || !needsCompaction()) {
+            return;
+        }
+        mCompactionScheduled = true;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                compact();
+            }
+        });
+    }
+    
+    /**
+     * 将最旧的分段中存活的记录原样复制到当前的分段, 然后删除最旧的分段, 直到最旧的分段中存活的数据不低于 {@link #COMPACTION_THRESHOLD}
+     * 每次只锁住一个分段的复制过程, 避免长时间阻塞读写
+     */
+    private void compact() {
+        while (true) {
+            synchronized (this) {
+                if (mDisabled || !needsCompaction()) {
+                    mCompactionScheduled = false;
+                    return;
+                }
+                final Segment eldest = mSegments.firstEntry().getValue();
+                final List<Map.Entry<String, Location>> live = new ArrayList<>();
+                for (Map.Entry<String, Location> entry : mIndex.entrySet()) {
+                    if (entry.getValue().segment == eldest) {
+                        live.add(entry);
+                    }
+                }
+                for (Map.Entry<String, Location> entry : live) {
+                    final Location location = entry.getValue();
+                    if (mActive.writePosition + location.length > mSegmentSize) {
+                        try {
+                            mActive = openSegment(mActive.id + 1);
+                        } catch (IOException e) {
+                            disable(e);
+                            mCompactionScheduled = false;
+                            return;
+                        }
+                    }
+                    final ByteBuffer source = eldest.buffer.duplicate();
+                    source.position(location.position);
+                    source.limit(location.position + location.length);
+                    final ByteBuffer target = mActive.buffer.duplicate();
+                    target.position(mActive.writePosition);
+                    target.put(source);
+                    entry.setValue(new Location(mActive, mActive.writePosition, location.keyLength, location.valueLength));
+                    mActive.writePosition += location.length;
+                    mActive.liveBytes += location.length;
+                    mTotalBytes += location.length;
+                }
+                mSegments.remove(eldest.id);
+                mTotalBytes -= eldest.writePosition;
+                eldest.delete();
+            }
+        }
+    }
+    
+    private void disable(IOException e) {
+        Timber.w(e, "DiskCache disabled: %s", mDirectory);
+        mDisabled = true;
+    }
+    
+    private static int checksum(ByteBuffer buffer, int position, int length) {
+        final byte[] bytes = new byte[length];
+        final ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position);
+        duplicate.get(bytes);
+        final CRC32 crc32 = new CRC32();
+        crc32.update(bytes, 0, length);
+        return (int) crc32.getValue();
+    }
+    
+    /**
+     * {@link #getAsync(String, Callback)} 的回调
+     */
+    public interface Callback<V> {
+        
+        /**
+         * 在 {@link DiskCache} 执行写入的线程中被调用
+         *
+         * @param key   用来映射的 {@code key}
+         * @param value {@code key} 对应的 {@code value}, 为 {@code null} 说明磁盘中没有对应的 {@code value}
+         */
+        void onResult(@NonNull String key, @Nullable V value);
+    }
+    
+    /**
+     * 一个分段文件, 整个文件在打开时映射至内存, 文件大小固定为 {@link #mSegmentSize}
+     */
+    private static final class Segment {
+        final int id;
+        final File file;
+        final MappedByteBuffer buffer;
+        int writePosition;
+        //存活记录的总字节数, 用来判断是否需要压缩
+        int liveBytes;
+        
+        Segment(int id, File file, int size) throws IOException {
+            this.id = id;
+            this.file = file;
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } finally {
+                //映射建立后关闭文件, 映射依然有效
+                ZipHelper.closeQuietly(randomAccessFile);
+            }
+        }
+        
+        void delete() {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+    
+    /**
+     * 记录在分段中的位置
+     */
+    private static final class Location {
+        final Segment segment;
+        final int position;
+        final int keyLength;
+        final int valueLength;
+        final int length;
+        
+        Location(Segment segment, int position, int keyLength, int valueLength) {
+            this.segment = segment;
+            this.position = position;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+            this.length = HEADER_SIZE + keyLength + valueLength;
+        }
+        
+        byte[] readValue() {
+            final byte[] bytes = new byte[valueLength];
+            final ByteBuffer duplicate = segment.buffer.duplicate();
+            duplicate.position(position + HEADER_SIZE + keyLength);
+            duplicate.get(bytes);
+            return bytes;
+        }
+    }
+}
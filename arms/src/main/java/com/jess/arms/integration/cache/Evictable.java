@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import androidx.annotation.Nullable;
+
+/**
+ * ================================================
+ * 可以通知被驱逐条目的 {@link Cache}, {@link IntelligentCache} 通过此接口将内存中被淘汰的条目转存至 {@link DiskCache}
+ * 只有因为容量不足 (包括 {@link Trimmable#setSizeMultiplier(float)} 缩小了容量) 而被驱逐的条目才会通知,
+ * 通过 {@link Cache#remove(Object)} 和 {@link Cache#clear()} 移除的条目不会通知
+ *
+ * @see IntelligentCache#IntelligentCache(Cache, DiskCache)
+ * ================================================
+ */
+public interface Evictable<K, V> {
+    
+    /**
+     * 设置条目被驱逐时的监听器, 传入 {@code null} 即取消监听
+     *
+     * @param listener {@link EvictionListener}
+     */
+    void setEvictionListener(@Nullable EvictionListener<K, V> listener);
+    
+    interface EvictionListener<K, V> {
+        
+        /**
+         * 在驱逐条目的线程中被调用, 此时可能持有缓存的锁, 请不要在此方法中执行耗时操作
+         *
+         * @param key   被驱逐条目的 {@code key}
+         * @param value 被驱逐条目的 {@code value}
+         */
+        void onEvicted(K key, V value);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import android.app.Application;
+
+import com.jess.arms.di.module.GlobalConfigModule;
+
+import androidx.annotation.NonNull;
+
+/**
+ * ================================================
+ * 框架默认的 {@link Cache.Factory} 在构建可淘汰数据的缓存时所使用的淘汰策略
+ * 可通过 {@link GlobalConfigModule.Builder#evictionPolicy(EvictionPolicy)} 选择, 默认为 {@link #LRU}
+ *
+ * @see GlobalConfigModule#provideCacheFactory(Application, CacheRegistry, java.util.concurrent.ExecutorService)
+ * ================================================
+ */
+public enum EvictionPolicy {
+    /**
+     * 使用 {@link LruCache}, 所有操作共用一把锁
+     */
+    LRU {
+        @NonNull
+        @Override
+        public <K, V> Cache<K, V> newCache(int size) {
+            return new LruCache<>(size);
+        }
+    },
+    /**
+     * 使用 {@link ConcurrentLruCache}, 读操作不加锁, 适合多线程频繁读取的场景
+     */
+    CONCURRENT_LRU {
+        @NonNull
+        @Override
+        public <K, V> Cache<K, V> newCache(int size) {
+            return new ConcurrentLruCache<>(size);
+        }
+    },
+    /**
+     * 使用 {@link TinyLfuCache}, 根据访问频率决定是否接纳新条目, 适合大量一次性访问的 {@code key} 和热点数据混合的场景
+     */
+    TINY_LFU {
+        @NonNull
+        @Override
+        public <K, V> Cache<K, V> newCache(int size) {
+            return new TinyLfuCache<>(size);
+        }
+    };
+    
+    /**
+     * 根据淘汰策略构建对应的缓存
+     *
+     * @param size 缓存的最大 size
+     * @return {@link Cache}
+     */
+    @NonNull
+    public abstract <K, V> Cache<K, V> newCache(int size);
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import com.jess.arms.utils.Preconditions;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import timber.log.Timber;
+
+/**
+ * ================================================
+ * 为任意 {@link Cache} 增加过期时间的装饰者, 过期策略由 {@link ExpiryPolicy} 指定, 也可以通过
+ * {@link #put(Object, Object, long, TimeUnit)} 为单个条目指定过期时间
+ * <p>
+ * 条目的过期时间由分层时间轮 {@link TimerWheel} 调度, 每次操作缓存时只处理已经到期的桶, 不需要遍历所有条目
+ * 条目被 {@link #mCache} 自身的淘汰策略 (比如 LRU) 驱逐后, 对应的时间信息会在之后被惰性清除
+ * <p>
+ * 配置了 refreshAfterWrite 时, 需要提供 {@link Refresher} 和 {@link Executor}, 条目写入后超过指定时间再被读取时
+ * 依然返回旧值, 同时在 {@link Executor} 中调用 {@link Refresher#refresh(Object, Object)} 获取新值并替换旧值
+ * <p>
+ * {@link #get(Object)} 和 {@link #containsKey(Object)} 不加锁, 只精确判断读取到的条目是否过期, 配置了 expireAfterAccess
+ * 时直接推迟条目的过期时间, 时间轮触发到旧的桶时会根据新的过期时间重新放入; 写入、删除以及时间轮的推进使用 {@link #mLock}
+ * 保护, 读取时最多每隔 {@link #MAINTENANCE_INTERVAL_NANOS} 尝试获取一次锁来清除过期的条目, 获取不到则跳过
+ * 所以 {@link #mCache} 需要是线程安全的, 比如 {@link LruCache}, {@link ConcurrentLruCache}
+ *
+ * @see ExpiryPolicy
+ * @see ExpiringCacheType
+ * ================================================
+ */
+public class ExpiringCache<K, V> implements Cache<K, V>, Trimmable {
+    //ConcurrentHashMap 不支持 null, 使用此对象代替 null key
+    private static final Object NULL_KEY = new Object();
+    //读取时尝试推进时间轮的最小间隔
+    private static final long MAINTENANCE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    //实际存储数据的容器
+    private final Cache<K, V> mCache;
+    //每个条目的时间信息, 只有需要过期或刷新的条目才会有
+    private final Map<Object, TimerWheel.Node<K>> mNodes = new ConcurrentHashMap<>();
+    //保护 mTimerWheel 以及写入 mCache 和 mNodes 的顺序
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final ExpiryPolicy mPolicy;
+    private final Ticker mTicker;
+    private final TimerWheel<K> mTimerWheel;
+    @Nullable
+    private final Refresher<K, V> mRefresher;
+    @Nullable
+    private final Executor mExecutor;
+    private final TimerWheel.Listener<K> mExpiredListener = new TimerWheel.Listener<K>() {
+        @Override
+        public void onExpired(TimerWheel.Node<K> node) {
+            //先移除数据再移除时间信息, 不加锁的读取读到时间信息为空时, 数据一定已经被移除
+            mCache.remove(node.key);
+            mNodes.remove(maskNull(node.key));
+        }
+    };
+    private volatile long mLastMaintenanceNanos;
+    
+    public ExpiringCache(@NonNull Cache<K, V> cache, @NonNull ExpiryPolicy policy) {
+        this(cache, policy, null, null);
+    }
+    
+    /**
+     * @param cache     实际存储数据的容器
+     * @param policy    过期策略
+     * @param refresher 配置了 refreshAfterWrite 时用来获取新值
+     * @param executor  执行 {@link Refresher#refresh(Object, Object)} 的线程池
+     */
+    public ExpiringCache(@NonNull Cache<K, V> cache, @NonNull ExpiryPolicy policy,
+                         @Nullable Refresher<K, V> refresher, @Nullable Executor executor) {
+        this.mCache = Preconditions.checkNotNull(cache, "cache == null");
+        this.mPolicy = Preconditions.checkNotNull(policy, "policy == null");
+        Preconditions.checkArgument(!policy.refreshesAfterWrite() || (refresher != null && executor != null),
+            "refreshAfterWrite requires a Refresher and an Executor");
+        this.mRefresher = refresher;
+        this.mExecutor = executor;
+        this.mTicker = policy.getTicker();
+        this.mLastMaintenanceNanos = mTicker.read();
+        this.mTimerWheel = new TimerWheel<>(mLastMaintenanceNanos);
+    }
+    
+    /**
+     * 如果 {@link #mCache} 实现了 {@link Trimmable} 则调整 {@link #mCache} 的容量
+     *
+     * @param multiplier 系数
+     */
+    @Override
+    public void setSizeMultiplier(float multiplier) {
+        if (mCache instanceof Trimmable) {
+            ((Trimmable) mCache).setSizeMultiplier(multiplier);
+        }
+    }
+    
+    @Override
+    public int size() {
+        mLock.lock();
+        try {
+            expireEntries();
+            return mCache.size();
+        } finally {
+            mLock.unlock();
+        }
+    }
+    
+    @Override
+    public int getMaxSize() {
+        return mCache.getMaxSize();
+    }
+    
+    /**
+     * 返回这个 {@code key} 在缓存中对应且未过期的 {@code value}
+     * 配置了 expireAfterAccess 时会重新计算过期时间, 配置了 refreshAfterWrite 且已到刷新时间时会在后台刷新
+     *
+     * @param key {@code key}
+     * @return {@code value}
+     */
+    @Nullable
+    @Override
+    public V get(K key) {
+        final long now = mTicker.read();
+        tryExpireEntries(now);
+        final TimerWheel.Node<K> node = mNodes.get(maskNull(key));
+        final V value = mCache.get(key);
+        if (node == null) {
+            return value;
+        }
+        if (isExpired(node, now)) {
+            expire(node, now);
+            return null;
+        }
+        if (mPolicy.expiresAfterAccess() && node.expireAfterWriteNanos == ExpiryPolicy.UNSET) {
+            //过期时间只会推迟, 不需要移动条目在时间轮中的位置
+            node.accessTime = now;
+            node.deadline = deadlineOf(node);
+        }
+        if (value != null && mPolicy.refreshesAfterWrite() && !node.refreshing
+            && now - node.writeTime >= mPolicy.getRefreshAfterWriteNanos()) {
+            refresh(node, value);
+        }
+        return value;
+    }
+    
+    /**
+     * 使用 {@link ExpiryPolicy} 中的过期策略存储条目
+     *
+     * @param key   {@code key}
+     * @param value {@code value}
+     * @return 如果这个 {@code key} 在容器中已经储存有未过期的 {@code value}, 则返回之前的 {@code value} 否则返回 {@code null}
+     */
+    @Nullable
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, ExpiryPolicy.UNSET);
+    }
+    
+    /**
+     * 存储条目, 并指定此条目在写入 {@code duration} 后过期, 此条目不再使用 {@link ExpiryPolicy} 中的过期策略
+     *
+     * @param key      {@code key}
+     * @param value    {@code value}
+     * @param duration 过期时间
+     * @param unit     过期时间的单位
+     * @return 如果这个 {@code key} 在容器中已经储存有未过期的 {@code value}, 则返回之前的 {@code value} 否则返回 {@code null}
+     */
+    @Nullable
+    public V put(K key, V value, long duration, @NonNull TimeUnit unit) {
+        Preconditions.checkArgument(duration >= 0, "Duration must be >= 0");
+        return put(key, value, unit.toNanos(duration));
+    }
+    
+    @Nullable
+    @Override
+    public V remove(K key) {
+        mLock.lock();
+        try {
+            expireEntries();
+            final TimerWheel.Node<K> node = mNodes.remove(maskNull(key));
+            if (node != null) {
+                mTimerWheel.deschedule(node);
+            }
+            return mCache.remove(key);
+        } finally {
+            mLock.unlock();
+        }
+    }
+    
+    @Override
+    public boolean containsKey(K key) {
+        final long now = mTicker.read();
+        tryExpireEntries(now);
+        final TimerWheel.Node<K> node = mNodes.get(maskNull(key));
+        if (node != null && isExpired(node, now)) {
+            expire(node, now);
+            return false;
+        }
+        return mCache.containsKey(key);
+    }
+    
+    @Override
+    public Set<K> keySet() {
+        mLock.lock();
+        try {
+            expireEntries();
+            return mCache.keySet();
+        } finally {
+            mLock.unlock();
+        }
+    }
+    
+    @Override
+    public void clear() {
+        mLock.lock();
+        try {
+            for (TimerWheel.Node<K> node : mNodes.values()) {
+                mTimerWheel.deschedule(node);
+            }
+            mNodes.clear();
+            mCache.clear();
+        } finally {
+            mLock.unlock();
+        }
+    }
+    
+    private V put(K key, V value, long expireAfterWriteNanos) {
+        mLock.lock();
+        try {
+            final long now = expireEntries();
+            TimerWheel.Node<K> node = mNodes.remove(maskNull(key));
+            final boolean expired = node != null && isExpired(node, now);
+            if (node != null) {
+                mTimerWheel.deschedule(node);
+            }
+            final V previous = mCache.put(key, value);
+            if (expireAfterWriteNanos != ExpiryPolicy.UNSET || mPolicy.expiresAfterWrite()
+                || mPolicy.expiresAfterAccess() || mPolicy.refreshesAfterWrite()) {
+                node = new TimerWheel.Node<>(key);
+                node.writeTime = now;
+                node.accessTime = now;
+                node.expireAfterWriteNanos = expireAfterWriteNanos;
+                node.deadline = deadlineOf(node);
+                if (node.deadline != Long.MAX_VALUE) {
+                    mTimerWheel.schedule(node);
+                }
+                mNodes.put(maskNull(key), node);
+                pruneNodes();
+            }
+            return expired ? null : previous;
+        } finally {
+            mLock.unlock();
+        }
+    }
+    
+    /**
+     * 根据条目的写入时间和访问时间计算过期时间, 没有过期时间时返回 {@link Long#MAX_VALUE}
+     */
+    private long deadlineOf(TimerWheel.Node<K> node) {
+        long deadline = Long.MAX_VALUE;
+        if (node.expireAfterWriteNanos != ExpiryPolicy.UNSET) {
+            deadline = saturatedAdd(node.writeTime, node.expireAfterWriteNanos);
+        } else {
+            if (mPolicy.expiresAfterWrite()) {
+                deadline = saturatedAdd(node.writeTime, mPolicy.getExpireAfterWriteNanos());
+            }
+            if (mPolicy.expiresAfterAccess()) {
+                deadline = Math.min(deadline, saturatedAdd(node.accessTime, mPolicy.getExpireAfterAccessNanos()));
+            }
+        }
+        return deadline;
+    }
+    
+    /**
+     * 时间轮以桶为单位触发过期, 所以读取时还需要精确判断条目是否已经过期, 已过期则加锁立即移除
+     * 加锁之前条目可能已经被替换或者被访问而推迟了过期时间, 所以加锁后需要重新判断
+     */
+    private void expire(TimerWheel.Node<K> node, long now) {
+        mLock.lock();
+        try {
+            if (mNodes.get(maskNull(node.key)) == node && isExpired(node, now)) {
+                mTimerWheel.deschedule(node);
+                mExpiredListener.onExpired(node);
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+    
+    private static boolean isExpired(TimerWheel.Node<?> node, long now) {
+        return node.deadline != Long.MAX_VALUE && node.deadline - now <= 0;
+    }
+    
+    private static long saturatedAdd(long time, long duration) {
+        final long result = time + duration;
+        return duration > 0 && result < time ? Long.MAX_VALUE : result;
+    }
+    
+    private static Object maskNull(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+    
+    /**
+     * 需要持有 {@link #mLock}, 在锁内读取时间, 保证时间轮只会向前推进
+     *
+     * @return 当前时间
+     */
+    private long expireEntries() {
+        final long now = mTicker.read();
+        mTimerWheel.advance(now, mExpiredListener);
+        mLastMaintenanceNanos = now;
+        return now;
+    }
+    
+    /**
+     * 距离上次推进时间轮超过 {@link #MAINTENANCE_INTERVAL_NANOS} 时, 尝试获取锁并推进时间轮, 其他线程持有锁时直接跳过
+     */
+    private void tryExpireEntries(long now) {
+        if (now - mLastMaintenanceNanos < MAINTENANCE_INTERVAL_NANOS || !mLock.tryLock()) {
+            return;
+        }
+        try {
+            expireEntries();
+        } finally {
+            mLock.unlock();
+        }
+    }
+    
+    /**
+     * 条目可能已经被 {@link #mCache} 自身的淘汰策略驱逐, 当时间信息的数量明显多于缓存中的条目数量时, 清除这些多余的时间信息
+     */
+    private void pruneNodes() {
+        if (mNodes.size() <= 2 * mCache.size() + 16) {
+            return;
+        }
+        final Iterator<TimerWheel.Node<K>> iterator = mNodes.values().iterator();
+        while (iterator.hasNext()) {
+            final TimerWheel.Node<K> node = iterator.next();
+            if (!mCache.containsKey(node.key)) {
+                mTimerWheel.deschedule(node);
+                iterator.remove();
+            }
+        }
+    }
+    
+    private void refresh(final TimerWheel.Node<K> node, final V oldValue) {
+        mLock.lock();
+        try {
+            //其他线程可能已经开始刷新或者替换了这个条目
+            if (node.refreshing || mNodes.get(maskNull(node.key)) != node) {
+                return;
+            }
+            node.refreshing = true;
+        } finally {
+            mLock.unlock();
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                V newValue = null;
+                try {
+                    newValue = mRefresher.refresh(node.key, oldValue);
+                } catch (Exception e) {
+                    Timber.w(e, "Refresh failed: %s", node.key);
+                }
+                mLock.lock();
+                try {
+                    //刷新期间条目已被替换、移除或过期, 则丢弃刷新的结果
+                    if (mNodes.get(maskNull(node.key)) != node) {
+                        return;
+                    }
+                    if (newValue == null) {
+                        node.refreshing = false;
+                    } else {
+                        //保留条目通过 put(K, V, long, TimeUnit) 单独指定的过期时间
+                        put(node.key, newValue, node.expireAfterWriteNanos);
+                    }
+                } finally {
+                    mLock.unlock();
+                }
+            }
+        });
+    }
+    
+    /**
+     * 配置了 refreshAfterWrite 时, 用来获取条目的新值
+     */
+    public interface Refresher<K, V> {
+        
+        /**
+         * 在 {@link Executor} 中被调用, 返回 {@code key} 对应的新值, 返回 {@code null} 或抛出异常时保留旧值
+         *
+         * @param key      {@code key}
+         * @param oldValue 旧值
+         * @return 新值
+         */
+        @Nullable
+        V refresh(K key, V oldValue) throws Exception;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import android.app.Application;
+import android.content.Context;
+
+import com.jess.arms.di.module.GlobalConfigModule;
+import com.jess.arms.utils.Preconditions;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * ================================================
+ * 为已有的 {@link CacheType} 附加 {@link ExpiryPolicy}, 框架默认的 {@link Cache.Factory} 遇到此类型时
+ * 会先按照 {@link #getCacheType()} 构建缓存, 再使用 {@link ExpiringCache} 包装
+ * <p>
+ * 对于使用 {@link IntelligentCache} 的模块, 只有 LRU 部分的条目会过期, 使用 {@link IntelligentCache#KEY_KEEP} 存储的条目永不过期
+ * {@link ExpiryPolicy} 配置了 refreshAfterWrite 时必须提供 {@link ExpiringCache.Refresher}, 框架默认的 {@link Cache.Factory}
+ * 会在 {@link GlobalConfigModule#provideExecutorService()} 中以低优先级执行刷新
+ *
+ * @see GlobalConfigModule#provideCacheFactory(Application, CacheRegistry, java.util.concurrent.ExecutorService)
+ * ================================================
+ */
+public class ExpiringCacheType implements CacheType {
+    private final CacheType mCacheType;
+    private final ExpiryPolicy mExpiryPolicy;
+    @Nullable
+    private final ExpiringCache.Refresher<String, Object> mRefresher;
+    
+    public ExpiringCacheType(@NonNull CacheType cacheType, @NonNull ExpiryPolicy expiryPolicy) {
+        this(cacheType, expiryPolicy, null);
+    }
+    
+    /**
+     * @param cacheType    被附加过期策略的 {@link CacheType}
+     * @param expiryPolicy {@link ExpiryPolicy}
+     * @param refresher    配置了 refreshAfterWrite 时用于获取新值, 否则可以为 {@code null}
+     */
+    public ExpiringCacheType(@NonNull CacheType cacheType, @NonNull ExpiryPolicy expiryPolicy,
+                             @Nullable ExpiringCache.Refresher<String, Object> refresher) {
+        this.mCacheType = Preconditions.checkNotNull(cacheType, "cacheType == null");
+        this.mExpiryPolicy = Preconditions.checkNotNull(expiryPolicy, "expiryPolicy == null");
+        Preconditions.checkArgument(!expiryPolicy.refreshesAfterWrite() || refresher != null,
+            "refreshAfterWrite requires a Refresher");
+        this.mRefresher = refresher;
+    }
+    
+    @NonNull
+    public CacheType getCacheType() {
+        return mCacheType;
+    }
+    
+    @NonNull
+    public ExpiryPolicy getExpiryPolicy() {
+        return mExpiryPolicy;
+    }
+    
+    @Nullable
+    public ExpiringCache.Refresher<String, Object> getRefresher() {
+        return mRefresher;
+    }
+    
+    @Override
+    public int getCacheTypeId() {
+        return mCacheType.getCacheTypeId();
+    }
+    
+    @Override
+    public int calculateCacheSize(Context context) {
+        return mCacheType.calculateCacheSize(context);
+    }
+}
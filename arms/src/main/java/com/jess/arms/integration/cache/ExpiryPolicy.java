@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import com.jess.arms.utils.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ================================================
+ * {@link ExpiringCache} 的过期策略, 使用 {@link #builder()} 构建
+ * <p>
+ * expireAfterWrite: 条目写入 (或被替换) 后经过指定时间即过期
+ * expireAfterAccess: 条目最后一次被读取或写入后经过指定时间即过期
+ * refreshAfterWrite: 条目写入后经过指定时间, 下一次读取时返回旧值并在后台刷新, 需要配合 {@link ExpiringCache.Refresher} 使用
+ *
+ * @see ExpiringCache
+ * @see ExpiringCacheType
+ * ================================================
+ */
+public final class ExpiryPolicy {
+    static final long UNSET = -1;
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final long refreshAfterWriteNanos;
+    private final Ticker ticker;
+    
+    private ExpiryPolicy(Builder builder) {
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        this.refreshAfterWriteNanos = builder.refreshAfterWriteNanos;
+        this.ticker = builder.ticker == null ? Ticker.SYSTEM : builder.ticker;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public long getExpireAfterWriteNanos() {
+        return expireAfterWriteNanos;
+    }
+    
+    public long getExpireAfterAccessNanos() {
+        return expireAfterAccessNanos;
+    }
+    
+    public long getRefreshAfterWriteNanos() {
+        return refreshAfterWriteNanos;
+    }
+    
+    public Ticker getTicker() {
+        return ticker;
+    }
+    
+    boolean expiresAfterWrite() {
+        return expireAfterWriteNanos != UNSET;
+    }
+    
+    boolean expiresAfterAccess() {
+        return expireAfterAccessNanos != UNSET;
+    }
+    
+    boolean refreshesAfterWrite() {
+        return refreshAfterWriteNanos != UNSET;
+    }
+    
+    public static final class Builder {
+        private long expireAfterWriteNanos = UNSET;
+        private long expireAfterAccessNanos = UNSET;
+        private long refreshAfterWriteNanos = UNSET;
+        private Ticker ticker;
+        
+        private Builder() {
+        }
+        
+        public Builder expireAfterWrite(long duration, TimeUnit unit) {
+            this.expireAfterWriteNanos = toNanos(duration, unit);
+            return this;
+        }
+        
+        public Builder expireAfterAccess(long duration, TimeUnit unit) {
+            this.expireAfterAccessNanos = toNanos(duration, unit);
+            return this;
+        }
+        
+        public Builder refreshAfterWrite(long duration, TimeUnit unit) {
+            this.refreshAfterWriteNanos = toNanos(duration, unit);
+            return this;
+        }
+        
+        public Builder ticker(Ticker ticker) {
+            this.ticker = Preconditions.checkNotNull(ticker, Ticker.class.getCanonicalName() + "can not be null.");
+            return this;
+        }
+        
+        public ExpiryPolicy build() {
+            return new ExpiryPolicy(this);
+        }
+        
+        private static long toNanos(long duration, TimeUnit unit) {
+            Preconditions.checkNotNull(unit, "unit == null");
+            Preconditions.checkArgument(duration >= 0, "Duration must be >= 0");
+            return unit.toNanos(duration);
+        }
+    }
+}
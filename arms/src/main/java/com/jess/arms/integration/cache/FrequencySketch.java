@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+/**
+ * ================================================
+ * 基于 Count-Min Sketch 的访问频率估算器, 供 {@link TinyLfuCache} 判断新条目是否值得替换旧条目
+ * <p>
+ * 每个 {@code long} 中存放 16 个 4 bit 的计数器 (最大值为 15), 每个元素在 4 个计数器中计数, 取其中的最小值作为估算的频率
+ * 当累计的计数次数达到采样大小 (最大容量的 10 倍) 时, 所有计数器减半, 使过去的热点数据随时间老化
+ * <p>
+ * 此类不是线程安全的, 需要由调用方同步
+ * ================================================
+ */
+final class FrequencySketch<E> {
+    private static final long[] SEED = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAX_COUNT = 15;
+    
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+    
+    /**
+     * @param maximumSize 缓存的最大条目数, 用来决定计数器的数量和采样大小
+     */
+    FrequencySketch(int maximumSize) {
+        int maximum = Math.max(1, maximumSize);
+        int length = 1;
+        while (length < maximum && length < (1 << 30)) {
+            length <<= 1;
+        }
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = maximum >= Integer.MAX_VALUE / 10 ? Integer.MAX_VALUE : 10 * maximum;
+    }
+    
+    /**
+     * 返回 {@code e} 估算的访问频率, 最大为 15
+     *
+     * @param e 元素
+     * @return 估算的访问频率
+     */
+    int frequency(E e) {
+        int hash = spread(e == null ? 0 : e.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+    
+    /**
+     * 将 {@code e} 的访问频率加一, 计数器已达最大值时不再增加
+     *
+     * @param e 元素
+     */
+    void increment(E e) {
+        int hash = spread(e == null ? 0 : e.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+    
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = (0xfL << offset);
+        if ((table[i] & mask) != mask) {
+            table[i] += (1L << offset);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * 所有计数器减半, 奇数计数器减半时丢失的部分先从 {@link #size} 中扣除, 再将 {@link #size} 减半
+     */
+    private void reset() {
+        int count = 0;
+        for (int i = 0; i < table.length; i++) {
+            count += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size - (count >>> 2)) >>> 1;
+    }
+    
+    private int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += (hash >>> 32);
+        return ((int) hash) & tableMask;
+    }
+    
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -15,11 +15,15 @@
  */
 package com.jess.arms.integration.cache;
 
+import com.jess.arms.integration.metrics.Counter;
 import com.jess.arms.utils.Preconditions;
 
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -35,21 +39,81 @@ import androidx.annotation.Nullable;
  * 调用 {@link IntelligentCache#put(Object, Object)} 方法, 使用 {@link #KEY_KEEP} + {@code key} 作为 key 传入的
  * {@code value} 可存储至 {@link #mMap} (数据永久存储至内存中, 适合比较重要的数据) 中, 否则储存至 {@link #mCache}
  * <p>
+ * 可选的二级磁盘缓存 {@link #mDiskCache}: {@link #mCache} 因容量不足而淘汰的数据会在后台写入磁盘 (需要 {@link #mCache}
+ * 实现 {@link Evictable}), {@link #put(String, Object)} 不会写入磁盘, 只会使磁盘中的旧数据失效
+ * {@link #get(String)}, {@link #containsKey(String)} 和 {@link #keySet()} 只查询内存, 不会在调用的线程中读取磁盘,
+ * {@link #get(String)} 未命中时会在后台从磁盘中读取并重新放入 {@link #mCache}; 需要同时查询磁盘时使用
+ * {@link #getAsync(String, DiskCache.Callback)}, 被淘汰的数据以及进程重启之前被淘汰的数据都可以读取到
+ * <p>
+ * {@link IntelligentCache} 没有全局的锁, 读取不加锁, 线程安全由 {@link #mMap} ({@link ConcurrentHashMap}) 和 {@link #mCache}
+ * 各自保证, 所以 {@link #mCache} 需要是线程安全的, 比如 {@link LruCache}, {@link ConcurrentLruCache}, {@link ExpiringCache}
+ * 只有写入 {@link #mCache} 时按 {@code key} 的 hash 使用分段锁 {@link #mLocks}, 保证从磁盘读取的旧数据不会覆盖同一个 {@code key} 的新数据
+ * <p>
  * Created by JessYan on 12/04/2018 16:06
  * <a href="mailto:jess.yan.effort@gmail.com">Contact me</a>
  * <a href="https://github.com/JessYanCoding">Follow me</a>
  * ================================================
  */
-public class IntelligentCache<V> implements Cache<String, V> {
+public class IntelligentCache<V> implements Cache<String, V>, Trimmable, Metered {
     public static final String KEY_KEEP = "Keep=";
+    private static final int LOCK_STRIPES = 16;
     //可将数据永久存储至内存中的存储容器
     private final Map<String, V> mMap;
     //当达到最大容量时可根据 LRU 算法抛弃不合规数据的存储容器
     private final Cache<String, V> mCache;
+    //可选的二级磁盘缓存
+    @Nullable
+    private final DiskCache<V> mDiskCache;
+    @Nullable
+    private volatile Counter mHitCounter;
+    @Nullable
+    private volatile Counter mMissCounter;
+    //mCache 的写入次数, 从磁盘读取期间 mCache 被写入过时, 丢弃读取到的旧数据
+    private final AtomicInteger mModCount = new AtomicInteger();
+    //写入 mCache 时使用的分段锁, 不同 key 的写入之间互不阻塞
+    private final Object[] mLocks = new Object[LOCK_STRIPES];
     
     public IntelligentCache(int size) {
-        this.mMap = new HashMap<>();
-        this.mCache = new LruCache<>(size);
+        this(new LruCache<>(size));
+    }
+    
+    /**
+     * 使用指定的 {@link Cache} 作为根据淘汰策略抛弃不合规数据的存储容器 {@link #mCache}
+     *
+     * @param cache 可淘汰数据的存储容器, 比如 {@link LruCache}, {@link ConcurrentLruCache}
+     */
+    public IntelligentCache(@NonNull Cache<String, V> cache) {
+        this(cache, null);
+    }
+    
+    /**
+     * 使用指定的 {@link Cache} 作为 {@link #mCache}, 并使用 {@link DiskCache} 作为 {@link #mCache} 的二级缓存
+     *
+     * @param cache     可淘汰数据的存储容器, 比如 {@link LruCache}, {@link ConcurrentLruCache}, 使用 {@link DiskCache} 时
+     *                  需要实现 {@link Evictable}
+     * @param diskCache 二级磁盘缓存, 为 {@code null} 时不使用
+     */
+    @SuppressWarnings("unchecked")
+    public IntelligentCache(@NonNull Cache<String, V> cache, @Nullable DiskCache<V> diskCache) {
+        this.mMap = new ConcurrentHashMap<>();
+        for (int i = 0; i < mLocks.length; i++) {
+            mLocks[i] = new Object();
+        }
+        this.mCache = Preconditions.checkNotNull(cache, "cache == null");
+        this.mDiskCache = diskCache;
+        if (diskCache != null) {
+            Preconditions.checkArgument(cache instanceof Evictable,
+                "%s must implement Evictable to spill into a DiskCache", cache.getClass().getName());
+            //被淘汰的数据转存至磁盘, 序列化和写入都在 DiskCache 的线程中执行
+            ((Evictable<String, V>) cache).setEvictionListener(new Evictable.EvictionListener<String, V>() {
+                @Override
+                public void onEvicted(String key, V value) {
+                    if (value != null) {
+                        diskCache.put(key, value);
+                    }
+                }
+            });
+        }
     }
     
     /**
@@ -64,13 +128,37 @@ public class IntelligentCache<V> implements Cache<String, V> {
         return IntelligentCache.KEY_KEEP + key;
     }
     
+    /**
+     * 如果 {@link #mCache} 实现了 {@link Trimmable} 则调整 {@link #mCache} 的容量, {@link #mMap} 中永久存储的数据不受影响
+     *
+     * @param multiplier 系数
+     */
+    @Override
+    public void setSizeMultiplier(float multiplier) {
+        if (mCache instanceof Trimmable) {
+            ((Trimmable) mCache).setSizeMultiplier(multiplier);
+        }
+    }
+    
+    /**
+     * 设置统计命中和未命中次数的计数器, 从 {@link #mMap}, {@link #mCache} 或 {@link #mDiskCache} 中读取到数据都算作命中
+     *
+     * @param hits   命中次数
+     * @param misses 未命中次数
+     */
+    @Override
+    public void setStatsCounters(@NonNull Counter hits, @NonNull Counter misses) {
+        this.mMissCounter = misses;
+        this.mHitCounter = hits;
+    }
+    
     /**
      * 将 {@link #mMap} 和 {@link #mCache} 的 {@code size} 相加后返回
      *
      * @return 相加后的 {@code size}
      */
     @Override
-    public synchronized int size() {
+    public int size() {
         return mMap.size() + mCache.size();
     }
     
@@ -80,39 +168,153 @@ public class IntelligentCache<V> implements Cache<String, V> {
      * @return 相加后的 {@code maxSize}
      */
     @Override
-    public synchronized int getMaxSize() {
+    public int getMaxSize() {
         return mMap.size() + mCache.getMaxSize();
     }
     
     /**
      * 如果在 {@code key} 中使用 {@link #KEY_KEEP} 作为其前缀, 则操作 {@link #mMap}, 否则操作 {@link #mCache}
+     * 只查询内存, {@link #mCache} 未命中时返回 {@code null}, 如果 {@link #mDiskCache} 中有这个 {@code key}, 则在后台读取
+     * 并重新放入 {@link #mCache}, 此方法不会在调用的线程中读取磁盘; 需要读取磁盘中的数据时使用 {@link #getAsync(String, DiskCache.Callback)}
      *
      * @param key {@code key}
      * @return {@code value}
      */
     @Nullable
     @Override
-    public synchronized V get(String key) {
+    public V get(String key) {
         if (key.startsWith(KEY_KEEP)) {
-            return mMap.get(key);
+            return count(mMap.get(key));
+        }
+        final int modCount = mModCount.get();
+        final V value = mCache.get(key);
+        if (value == null && mDiskCache != null && mDiskCache.containsKey(key)) {
+            promote(key, modCount);
+        }
+        return count(value);
+    }
+    
+    /**
+     * 依次查询内存和 {@link #mDiskCache}, 内存命中时在调用的线程中立即回调, 否则在 {@link #mDiskCache} 的线程中读取磁盘,
+     * 读取到的数据会重新放入 {@link #mCache}, 然后在 {@link #mDiskCache} 的线程中回调
+     * 会等待 {@link #mDiskCache} 的索引重建完成, 所以进程重启后的第一次读取也可以读取到磁盘中的数据
+     *
+     * @param key      {@code key}
+     * @param callback 读取完成后的回调, {@code value} 为 {@code null} 说明内存和磁盘中都没有这个 {@code key}
+     */
+    public void getAsync(@NonNull String key, @NonNull final DiskCache.Callback<V> callback) {
+        Preconditions.checkNotNull(callback, "callback == null");
+        //先记录写入次数再读取内存, 保证读取内存之后的写入都能被 promote 发现
+        final int modCount = mModCount.get();
+        final V value = key.startsWith(KEY_KEEP) ? mMap.get(key) : mCache.get(key);
+        if (value != null || key.startsWith(KEY_KEEP) || mDiskCache == null) {
+            callback.onResult(key, count(value));
+            return;
+        }
+        mDiskCache.getAsync(key, new DiskCache.Callback<V>() {
+            @Override
+            public void onResult(@NonNull String key, @Nullable V value) {
+                if (value != null) {
+                    promote(key, value, modCount);
+                }
+                callback.onResult(key, count(value));
+            }
+        });
+    }
+    
+    /**
+     * 在 {@link #mDiskCache} 的线程中读取 {@code key} 对应的 {@code value} 并放入 {@link #mCache}
+     */
+    private void promote(String key, final int modCount) {
+        mDiskCache.getAsync(key, new DiskCache.Callback<V>() {
+            @Override
+            public void onResult(@NonNull String key, @Nullable V value) {
+                if (value != null) {
+                    promote(key, value, modCount);
+                }
+            }
+        });
+    }
+    
+    /**
+     * 读取磁盘期间 {@link #mCache} 被写入过时, 丢弃读取到的旧数据
+     * 同一个 {@code key} 的写入持有同一把分段锁, 所以检查 {@link #mModCount} 之后不会有新数据被覆盖;
+     * {@link #clear()} 不持有分段锁, 所以放入之后再检查一次, 期间被清空时删除刚放入的数据
+     */
+    private void promote(String key, V value, int modCount) {
+        synchronized (lockFor(key)) {
+            if (mModCount.get() != modCount || mCache.containsKey(key)) {
+                return;
+            }
+            mCache.put(key, value);
+        }
+        if (mModCount.get() != modCount) {
+            remove(key);
+        }
+    }
+    
+    private Object lockFor(String key) {
+        final int h = key.hashCode();
+        return mLocks[(h ^ (h >>> 16)) & (mLocks.length - 1)];
+    }
+    
+    private V count(@Nullable V value) {
+        final Counter counter = value == null ? mMissCounter : mHitCounter;
+        if (counter != null) {
+            counter.inc();
         }
-        return mCache.get(key);
+        return value;
     }
     
     /**
      * 如果在 {@code key} 中使用 {@link #KEY_KEEP} 作为其前缀, 则操作 {@link #mMap}, 否则操作 {@link #mCache}
+     * 数据只写入内存, {@link #mDiskCache} 中这个 {@code key} 的旧数据会在后台删除
      *
      * @param key   {@code key}
      * @param value {@code value}
-     * @return 如果这个 {@code key} 在容器中已经储存有 {@code value}, 则返回之前的 {@code value} 否则返回 {@code null}
+     * @return 如果这个 {@code key} 在内存中已经储存有 {@code value}, 则返回之前的 {@code value} 否则返回 {@code null}
      */
     @Nullable
     @Override
-    public synchronized V put(String key, V value) {
+    public V put(String key, V value) {
         if (key.startsWith(KEY_KEEP)) {
-            return mMap.put(key, value);
+            //ConcurrentHashMap 不支持 null, 存储 null 视为删除
+            return value == null ? mMap.remove(key) : mMap.put(key, value);
+        }
+        synchronized (lockFor(key)) {
+            mModCount.incrementAndGet();
+            if (mDiskCache != null) {
+                mDiskCache.remove(key);
+            }
+            return mCache.put(key, value);
+        }
+    }
+    
+    /**
+     * 存储一个在写入 {@code duration} 后过期的条目, 需要 {@link #mCache} 为 {@link ExpiringCache}
+     * 使用 {@link #KEY_KEEP} 作为前缀的 {@code key} 永不过期, 不能使用此方法
+     * {@link #mDiskCache} 不记录过期时间, 所以此条目不会写入磁盘
+     *
+     * @param key      {@code key}
+     * @param value    {@code value}
+     * @param duration 过期时间
+     * @param unit     过期时间的单位
+     * @return 如果这个 {@code key} 在容器中已经储存有 {@code value}, 则返回之前的 {@code value} 否则返回 {@code null}
+     * @see ExpiringCacheType
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V put(String key, V value, long duration, @NonNull TimeUnit unit) {
+        Preconditions.checkArgument(!key.startsWith(KEY_KEEP), "The entry of KEY_KEEP never expires");
+        Preconditions.checkState(mCache instanceof ExpiringCache,
+            "%s must be built with an ExpiringCache to support expiry", getClass().getSimpleName());
+        synchronized (lockFor(key)) {
+            mModCount.incrementAndGet();
+            if (mDiskCache != null) {
+                mDiskCache.remove(key);
+            }
+            return ((ExpiringCache<String, V>) mCache).put(key, value, duration, unit);
         }
-        return mCache.put(key, value);
     }
     
     /**
@@ -123,21 +325,28 @@ public class IntelligentCache<V> implements Cache<String, V> {
      */
     @Nullable
     @Override
-    public synchronized V remove(String key) {
+    public V remove(String key) {
         if (key.startsWith(KEY_KEEP)) {
             return mMap.remove(key);
         }
-        return mCache.remove(key);
+        synchronized (lockFor(key)) {
+            mModCount.incrementAndGet();
+            if (mDiskCache != null) {
+                mDiskCache.remove(key);
+            }
+            return mCache.remove(key);
+        }
     }
     
     /**
      * 如果在 {@code key} 中使用 {@link #KEY_KEEP} 作为其前缀, 则操作 {@link #mMap}, 否则操作 {@link #mCache}
+     * 与 {@link #get(String)} 一样只查询内存, 不包含只存在于 {@link #mDiskCache} 中的数据
      *
      * @param key {@code key}
      * @return {@code true} 为在容器中含有这个 {@code key}, 否则为 {@code false}
      */
     @Override
-    public synchronized boolean containsKey(String key) {
+    public boolean containsKey(String key) {
         if (key.startsWith(KEY_KEEP)) {
             return mMap.containsKey(key);
         }
@@ -145,23 +354,27 @@ public class IntelligentCache<V> implements Cache<String, V> {
     }
     
     /**
-     * 将 {@link #mMap} 和 {@link #mCache} 的 {@code keySet} 合并返回
+     * 将 {@link #mMap} 和 {@link #mCache} 的 {@code keySet} 合并返回, 不包含只存在于 {@link #mDiskCache} 中的数据
      *
      * @return 合并后的 {@code keySet}
      */
     @Override
-    public synchronized Set<String> keySet() {
-        Set<String> set = mCache.keySet();
+    public Set<String> keySet() {
+        Set<String> set = new HashSet<>(mCache.keySet());
         set.addAll(mMap.keySet());
         return set;
     }
     
     /**
-     * 清空 {@link #mMap} 和 {@link #mCache} 容器
+     * 清空 {@link #mMap}, {@link #mCache} 和 {@link #mDiskCache} 容器
      */
     @Override
     public void clear() {
+        mModCount.incrementAndGet();
         mCache.clear();
         mMap.clear();
+        if (mDiskCache != null) {
+            mDiskCache.clear();
+        }
     }
 }
@@ -18,11 +18,13 @@ package com.jess.arms.integration.cache;
 import android.app.Application;
 
 import com.jess.arms.di.module.GlobalConfigModule;
+import com.jess.arms.integration.metrics.Counter;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 
@@ -31,18 +33,28 @@ import androidx.annotation.Nullable;
  * LRU 即 Least Recently Used,最近最少使用,也就是说,当缓存满了,会优先淘汰那些最近最不常访问的数据
  * 此种缓存策略为框架默认提供,可自行实现其他缓存策略,如磁盘缓存,为框架或开发者提供缓存的功能
  *
- * @see GlobalConfigModule#provideCacheFactory(Application)
+ * @see GlobalConfigModule#provideCacheFactory(Application, CacheRegistry, java.util.concurrent.ExecutorService)
  * @see Cache
  * Created by JessYan on 25/09/2017 16:57
  * <a href="mailto:jess.yan.effort@gmail.com">Contact me</a>
  * <a href="https://github.com/JessYanCoding">Follow me</a>
  * ================================================
  */
-public class LruCache<K, V> implements Cache<K, V> {
-    private final LinkedHashMap<K, V> cache = new LinkedHashMap<>(100, 0.75f, true);
-    private final int initialMaxSize;
-    private int maxSize;
-    private int currentSize = 0;
+public class LruCache<K, V> implements Cache<K, V>, Trimmable, Metered, Evictable<K, V> {
+    private final LinkedHashMap<K, Entry<V>> cache = new LinkedHashMap<>(100, 0.75f, true);
+    @Nullable
+    private final Weigher<? super K, ? super V> weigher;
+    private final long initialMaxSize;
+    private long maxSize;
+    private long currentSize = 0;
+    @Nullable
+    private Counter hitCounter;
+    @Nullable
+    private Counter missCounter;
+    @Nullable
+    private volatile EvictionListener<K, V> evictionListener;
+    //clear() 清除的条目不通知 evictionListener
+    private boolean clearing;
     
     /**
      * Constructor for LruCache.
@@ -52,6 +64,23 @@ public class LruCache<K, V> implements Cache<K, V> {
     public LruCache(int size) {
         this.initialMaxSize = size;
         this.maxSize = size;
+        this.weigher = null;
+    }
+    
+    /**
+     * Constructor for LruCache.
+     * 使用 {@link Weigher} 计算每个条目的 size 时, 不会再调用 {@link #getItemSize(Object)}
+     *
+     * @param size    这个缓存的最大 size,这个 size 所使用的单位必须和 {@link Weigher#weigh(Object, Object)} 所使用的单位一致.
+     * @param weigher 计算每个条目所占用的 size, 比如 {@link Weighers#retainedBytes()}
+     */
+    public LruCache(long size, @NonNull Weigher<? super K, ? super V> weigher) {
+        if (weigher == null) {
+            throw new NullPointerException("weigher == null");
+        }
+        this.initialMaxSize = size;
+        this.maxSize = size;
+        this.weigher = weigher;
     }
     
     /**
@@ -60,17 +89,18 @@ public class LruCache<K, V> implements Cache<K, V> {
      *
      * @param multiplier 系数
      */
+    @Override
     public synchronized void setSizeMultiplier(float multiplier) {
         if (multiplier < 0) {
             throw new IllegalArgumentException("Multiplier must be >= 0");
         }
-        maxSize = Math.round(initialMaxSize * multiplier);
+        maxSize = Math.round((double) initialMaxSize * multiplier);
         evict();
     }
     
     /**
      * 返回每个 {@code item} 所占用的 size,默认为1,这个 size 的单位必须和构造函数所传入的 size 一致
-     * 子类可以重写这个方法以适应不同的单位,比如说 bytes
+     * 子类可以重写这个方法以适应不同的单位,比如说 bytes, 也可以直接使用 {@link #LruCache(long, Weigher)}
      *
      * @param item 每个 {@code item} 所占用的 size
      * @return 单个 item 的 {@code size}
@@ -89,23 +119,48 @@ public class LruCache<K, V> implements Cache<K, V> {
         // optional override
     }
     
+    @Override
+    public void setEvictionListener(@Nullable EvictionListener<K, V> listener) {
+        this.evictionListener = listener;
+    }
+    
     /**
-     * 返回当前缓存所能允许的最大 size
+     * 返回当前缓存所能允许的最大 size, 超出 {@link Integer#MAX_VALUE} 时返回 {@link Integer#MAX_VALUE}
      *
      * @return {@code maxSize}
+     * @see #getMaxWeightedSize()
      */
     @Override
     public synchronized int getMaxSize() {
-        return maxSize;
+        return (int) Math.min(Integer.MAX_VALUE, maxSize);
     }
     
     /**
-     * 返回当前缓存已占用的总 size
+     * 返回当前缓存已占用的总 size, 超出 {@link Integer#MAX_VALUE} 时返回 {@link Integer#MAX_VALUE}
      *
      * @return {@code size}
+     * @see #getWeightedSize()
      */
     @Override
     public synchronized int size() {
+        return (int) Math.min(Integer.MAX_VALUE, currentSize);
+    }
+    
+    /**
+     * 返回当前缓存所能允许的最大 size, 以 {@code long} 计算, 适合以字节为单位的缓存
+     *
+     * @return {@code maxSize}
+     */
+    public synchronized long getMaxWeightedSize() {
+        return maxSize;
+    }
+    
+    /**
+     * 返回当前缓存已占用的总 size, 以 {@code long} 计算, 适合以字节为单位的缓存
+     *
+     * @return {@code size}
+     */
+    public synchronized long getWeightedSize() {
         return currentSize;
     }
     
@@ -139,7 +194,23 @@ public class LruCache<K, V> implements Cache<K, V> {
     @Override
     @Nullable
     public synchronized V get(K key) {
-        return cache.get(key);
+        final Entry<V> entry = cache.get(key);
+        if (hitCounter != null) {
+            (entry == null ? missCounter : hitCounter).inc();
+        }
+        return entry == null ? null : entry.value;
+    }
+    
+    /**
+     * 设置统计命中和未命中次数的计数器
+     *
+     * @param hits   命中次数
+     * @param misses 未命中次数
+     */
+    @Override
+    public synchronized void setStatsCounters(@NonNull Counter hits, @NonNull Counter misses) {
+        this.missCounter = misses;
+        this.hitCounter = hits;
     }
     
     /**
@@ -156,22 +227,20 @@ public class LruCache<K, V> implements Cache<K, V> {
     @Override
     @Nullable
     public synchronized V put(K key, V value) {
-        final int itemSize = getItemSize(value);
+        final long itemSize = weigh(key, value);
         if (itemSize >= maxSize) {
-            onItemEvicted(key, value);
+            dispatchEviction(key, value);
             return null;
         }
         
-        final V result = cache.put(key, value);
-        if (value != null) {
-            currentSize += getItemSize(value);
-        }
+        final Entry<V> result = cache.put(key, new Entry<>(value, value == null ? 0 : itemSize));
+        currentSize += value == null ? 0 : itemSize;
         if (result != null) {
-            currentSize -= getItemSize(result);
+            currentSize -= result.size;
         }
         evict();
         
-        return result;
+        return result == null ? null : result.value;
     }
     
     /**
@@ -184,43 +253,91 @@ public class LruCache<K, V> implements Cache<K, V> {
     @Override
     @Nullable
     public synchronized V remove(K key) {
-        final V value = cache.remove(key);
-        if (value != null) {
-            currentSize -= getItemSize(value);
+        final Entry<V> entry = cache.remove(key);
+        if (entry == null) {
+            return null;
         }
-        return value;
+        currentSize -= entry.size;
+        return entry.value;
     }
     
     /**
      * 清除缓存中所有的内容
      */
     @Override
-    public void clear() {
-        trimToSize(0);
+    public synchronized void clear() {
+        clearing = true;
+        try {
+            trimToSize(0);
+        } finally {
+            clearing = false;
+        }
     }
     
     /**
      * 当指定的 size 小于当前缓存已占用的总 size 时,会开始清除缓存中最近最少使用的条目
+     * {@link #put(Object, Object)}、{@link #setSizeMultiplier(float)} 和 {@link #clear()} 都通过此方法清除条目,
+     * 子类可以重写这个方法, 只有最大 size 超出 {@link Integer#MAX_VALUE} 时才会绕过此方法
      *
      * @param size {@code size}
      */
     protected synchronized void trimToSize(int size) {
-        Map.Entry<K, V> last;
-        while (currentSize > size) {
+        trimToWeightedSize(size);
+    }
+    
+    private void trimToWeightedSize(long size) {
+        Map.Entry<K, Entry<V>> last;
+        while (currentSize > size && !cache.isEmpty()) {
             last = cache.entrySet().iterator().next();
-            final V toRemove = last.getValue();
-            currentSize -= getItemSize(toRemove);
+            final Entry<V> toRemove = last.getValue();
+            currentSize -= toRemove.size;
             final K key = last.getKey();
             cache.remove(key);
-            onItemEvicted(key, toRemove);
+            dispatchEviction(key, toRemove.value);
         }
     }
     
+    private void dispatchEviction(K key, V value) {
+        onItemEvicted(key, value);
+        final EvictionListener<K, V> listener = evictionListener;
+        if (listener != null && !clearing) {
+            listener.onEvicted(key, value);
+        }
+    }
+    
+    private long weigh(K key, V value) {
+        if (weigher == null) {
+            return getItemSize(value);
+        }
+        final long size = weigher.weigh(key, value);
+        if (size < 0) {
+            throw new IllegalStateException("Weigher must not return a negative size: " + size);
+        }
+        return size;
+    }
+    
     /**
      * 当缓存中已占用的总 size 大于所能允许的最大 size ,会使用  {@link #trimToSize(int)} 开始清除满足条件的条目
      */
     private void evict() {
-        trimToSize(maxSize);
+        if (maxSize <= Integer.MAX_VALUE) {
+            trimToSize((int) maxSize);
+        } else {
+            trimToWeightedSize(maxSize);
+        }
+    }
+    
+    /**
+     * 保存条目加入缓存时计算好的 size, 避免移除时重新计算导致前后不一致
+     */
+    private static final class Entry<V> {
+        final V value;
+        final long size;
+        
+        Entry(V value, long size) {
+            this.value = value;
+            this.size = size;
+        }
     }
 }
 
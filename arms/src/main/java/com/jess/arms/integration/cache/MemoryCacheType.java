@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.Context;
+
+import com.jess.arms.di.module.GlobalConfigModule;
+
+/**
+ * ================================================
+ * 以内存字节数为单位的 {@link CacheType}, 缓存的最大 size 为 {@link ActivityManager#getMemoryClass()} 的一定比例
+ * <p>
+ * 框架默认的 {@link Cache.Factory} 遇到此类型时, 会使用 {@link Weighers#retainedBytes()} 构建 {@link LruCache}
+ * 这样一个很大的 Json 和一个 {@link Boolean} 在缓存中占用的 size 就不再相同, 可以避免低内存设备上因缓存过多大对象而 OOM
+ *
+ * @see CacheType#EXTRAS_MEMORY
+ * @see GlobalConfigModule#provideCacheFactory(Application, CacheRegistry, java.util.concurrent.ExecutorService)
+ * ================================================
+ */
+public class MemoryCacheType implements CacheType {
+    private static final long MB = 1024 * 1024;
+    private final int mCacheTypeId;
+    private final float mMemoryClassFraction;
+    
+    /**
+     * @param cacheTypeId         框架内需要缓存的模块对应的 {@code id}, 比如 {@link CacheType#EXTRAS_TYPE_ID}
+     * @param memoryClassFraction 缓存的最大字节数占 {@link ActivityManager#getMemoryClass()} 的比例
+     */
+    public MemoryCacheType(int cacheTypeId, float memoryClassFraction) {
+        if (memoryClassFraction <= 0 || memoryClassFraction > 1) {
+            throw new IllegalArgumentException("MemoryClassFraction must be in (0, 1]");
+        }
+        this.mCacheTypeId = cacheTypeId;
+        this.mMemoryClassFraction = memoryClassFraction;
+    }
+    
+    @Override
+    public int getCacheTypeId() {
+        return mCacheTypeId;
+    }
+    
+    /**
+     * 计算对应模块需要的缓存大小, 单位为字节, 超出 {@link Integer#MAX_VALUE} 时返回 {@link Integer#MAX_VALUE}
+     *
+     * @return 缓存的最大字节数
+     * @see #calculateCacheBytes(Context)
+     */
+    @Override
+    public int calculateCacheSize(Context context) {
+        return (int) Math.min(Integer.MAX_VALUE, calculateCacheBytes(context));
+    }
+    
+    /**
+     * 计算对应模块需要的缓存大小, 单位为字节
+     *
+     * @return 缓存的最大字节数
+     */
+    public long calculateCacheBytes(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        return (long) (activityManager.getMemoryClass() * MB * mMemoryClassFraction);
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import com.jess.arms.integration.metrics.Counter;
+import com.jess.arms.integration.metrics.MetricsRegistry;
+
+import androidx.annotation.NonNull;
+
+/**
+ * ================================================
+ * 可以统计命中率的 {@link Cache}, {@link CacheRegistry} 在注册缓存时会通过此接口为缓存设置 {@link MetricsRegistry} 中的计数器
+ * 计数器名称为 {@code cache.<type>.hits} 和 {@code cache.<type>.misses}, 同一类型的多个缓存 (比如每个 Activity 的缓存) 共用计数器
+ *
+ * @see CacheRegistry
+ * @see MetricsRegistry
+ * ================================================
+ */
+public interface Metered {
+    
+    /**
+     * 设置统计命中和未命中次数的计数器, 之后每次调用 {@link Cache#get(Object)} 都会增加其中一个计数器
+     *
+     * @param hits   命中次数
+     * @param misses 未命中次数
+     */
+    void setStatsCounters(@NonNull Counter hits, @NonNull Counter misses);
+}
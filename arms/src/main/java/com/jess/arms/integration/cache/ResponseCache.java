@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import com.jess.arms.di.module.GlobalConfigModule;
+import com.jess.arms.integration.IRepositoryManager;
+import com.jess.arms.utils.Preconditions;
+
+import java.io.File;
+import java.io.Serializable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+/**
+ * ================================================
+ * Cache Service 所使用的网络请求结果缓存, 由内存缓存 {@link #mMemoryCache} 和可选的磁盘缓存 {@link #mDiskCache} 组成
+ * <p>
+ * 每条缓存都记录了写入的时间 (墙上时间, 进程重启之后依然有效), 是否过期由读取时传入的有效期决定, 过期的缓存不会被主动删除,
+ * 由 {@link #mMemoryCache} 的淘汰策略和 {@link #mDiskCache} 的容量限制淘汰
+ * <p>
+ * 无法被 {@link Codec} 序列化的请求结果只会缓存在内存中
+ *
+ * @see IRepositoryManager#obtainCacheService(Class)
+ * @see GlobalConfigModule.Builder#responseCache(File, long, Codec)
+ * ================================================
+ */
+public class ResponseCache {
+    private final Cache<String, Object> mMemoryCache;
+    @Nullable
+    private final DiskCache<Object> mDiskCache;
+    
+    /**
+     * Constructor for ResponseCache.
+     *
+     * @param memoryCache 内存缓存, 默认由 {@link CacheType#RESPONSE_CACHE} 构建
+     * @param diskCache   磁盘缓存, 为 {@code null} 时只使用内存缓存
+     */
+    public ResponseCache(@NonNull Cache<String, Object> memoryCache, @Nullable DiskCache<Object> diskCache) {
+        this.mMemoryCache = Preconditions.checkNotNull(memoryCache, "memoryCache == null");
+        this.mDiskCache = diskCache;
+    }
+    
+    /**
+     * 返回这个 {@code key} 对应的缓存, 内存中没有时从磁盘中读取并重新放入内存
+     * 此方法可能会读取磁盘, 磁盘缓存的索引还未重建完成时会等待重建完成, 请不要在主线程中调用
+     *
+     * @param key {@code key}
+     * @return {@link Entry}, 没有缓存时返回 {@code null}
+     */
+    @Nullable
+    @WorkerThread
+    public Entry get(@NonNull String key) {
+        Object entry = mMemoryCache.get(key);
+        if (entry == null && mDiskCache != null) {
+            entry = mDiskCache.get(key);
+            if (entry instanceof Entry) {
+                mMemoryCache.put(key, entry);
+            }
+        }
+        return entry instanceof Entry ? (Entry) entry : null;
+    }
+    
+    /**
+     * 缓存网络请求结果, 磁盘缓存在后台写入
+     *
+     * @param key   {@code key}
+     * @param value 网络请求结果
+     */
+    public void put(@NonNull String key, @NonNull Object value) {
+        final Entry entry = new Entry(value, System.currentTimeMillis());
+        mMemoryCache.put(key, entry);
+        if (mDiskCache != null) {
+            mDiskCache.put(key, entry);
+        }
+    }
+    
+    /**
+     * 移除这个 {@code key} 对应的缓存
+     *
+     * @param key {@code key}
+     */
+    public void remove(@NonNull String key) {
+        mMemoryCache.remove(key);
+        if (mDiskCache != null) {
+            mDiskCache.remove(key);
+        }
+    }
+    
+    /**
+     * 清除所有的缓存
+     */
+    public void clear() {
+        mMemoryCache.clear();
+        if (mDiskCache != null) {
+            mDiskCache.clear();
+        }
+    }
+    
+    /**
+     * 一条缓存, 网络请求结果实现了 {@link Serializable} 时才能被默认的 {@link SerializableCodec} 写入磁盘
+     */
+    public static final class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        private final Object value;
+        private final long writeTimeMillis;
+        
+        public Entry(@NonNull Object value, long writeTimeMillis) {
+            this.value = value;
+            this.writeTimeMillis = writeTimeMillis;
+        }
+        
+        @NonNull
+        public Object getValue() {
+            return value;
+        }
+        
+        public long getWriteTimeMillis() {
+            return writeTimeMillis;
+        }
+        
+        /**
+         * 写入时间距今超过 {@code durationMillis} 时视为过期, {@code durationMillis} 小于 0 时永不过期
+         * 系统时间被调回到写入时间之前时也视为过期
+         *
+         * @param durationMillis 有效期
+         * @return {@code true} 为已过期
+         */
+        public boolean isExpired(long durationMillis) {
+            if (durationMillis < 0) {
+                return false;
+            }
+            final long age = System.currentTimeMillis() - writeTimeMillis;
+            return age < 0 || age > durationMillis;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import com.jess.arms.utils.ZipHelper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import androidx.annotation.NonNull;
+
+/**
+ * ================================================
+ * 使用 Java 序列化的 {@link Codec}, 只支持实现了 {@link Serializable} 的 {@code value}
+ *
+ * @see DiskCache
+ * ================================================
+ */
+public class SerializableCodec<V> implements Codec<V> {
+    
+    @NonNull
+    @Override
+    public byte[] encode(@NonNull V value) throws IOException {
+        if (!(value instanceof Serializable)) {
+            throw new NotSerializableException(value.getClass().getName());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        try {
+            out.writeObject(value);
+        } finally {
+            ZipHelper.closeQuietly(out);
+        }
+        return bytes.toByteArray();
+    }
+    
+    @NonNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public V decode(@NonNull byte[] bytes) throws IOException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return (V) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException(e.toString());
+        } finally {
+            ZipHelper.closeQuietly(in);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+/**
+ * ================================================
+ * 为 {@link ExpiringCache} 提供时间源, 单位为纳秒, 只用于计算时间间隔, 与系统时间无关
+ * 默认使用 {@link #SYSTEM}, 测试时可替换为手动推进时间的实现
+ *
+ * @see ExpiryPolicy.Builder#ticker(Ticker)
+ * ================================================
+ */
+public interface Ticker {
+    
+    /**
+     * 使用 {@link System#nanoTime()} 作为时间源
+     */
+    Ticker SYSTEM = new Ticker() {
+        @Override
+        public long read() {
+            return System.nanoTime();
+        }
+    };
+    
+    /**
+     * 返回当前时间, 单位为纳秒
+     *
+     * @return 当前时间
+     */
+    long read();
+}
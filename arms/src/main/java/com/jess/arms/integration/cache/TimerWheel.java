@@ -0,0 +1,185 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ================================================
+ * 分层时间轮, 供 {@link ExpiringCache} 以均摊 O(1) 的代价调度和触发条目的过期, 不需要遍历所有条目
+ * <p>
+ * 共有 5 层, 每层的刻度依次约为 1 秒、1 分钟、1 小时、1 天、6 天 (均取 2 的幂次纳秒), 条目根据距离过期的时间放入对应层的桶中
+ * 时间推进时, 只处理经过的桶, 桶中还未过期的条目会被重新放入更精细的层中
+ * <p>
+ * 此类不是线程安全的, 需要由调用方同步; {@link Node#deadline} 可以在锁外被推迟, 桶被触发时会根据最新的值重新放入
+ * ================================================
+ */
+final class TimerWheel<K> {
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    private static final long[] SPANS = {
+        ceilingPowerOfTwo(TimeUnit.SECONDS.toNanos(1)), // 1.07s
+        ceilingPowerOfTwo(TimeUnit.MINUTES.toNanos(1)), // 1.14m
+        ceilingPowerOfTwo(TimeUnit.HOURS.toNanos(1)),   // 1.22h
+        ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)),    // 1.63d
+        BUCKETS[3] * ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)), // 6.5d
+        BUCKETS[3] * ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)), // 6.5d
+    };
+    private static final long[] SHIFT = {
+        Long.numberOfTrailingZeros(SPANS[0]),
+        Long.numberOfTrailingZeros(SPANS[1]),
+        Long.numberOfTrailingZeros(SPANS[2]),
+        Long.numberOfTrailingZeros(SPANS[3]),
+        Long.numberOfTrailingZeros(SPANS[4]),
+    };
+    
+    private final Node<K>[][] wheel;
+    private long nanos;
+    
+    @SuppressWarnings("unchecked")
+    TimerWheel(long nanos) {
+        this.nanos = nanos;
+        this.wheel = (Node<K>[][]) new Node<?>[BUCKETS.length][];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = (Node<K>[]) new Node<?>[BUCKETS[i]];
+            for (int j = 0; j < wheel[i].length; j++) {
+                wheel[i][j] = Node.sentinel();
+            }
+        }
+    }
+    
+    /**
+     * 将时间推进至 {@code currentTimeNanos}, 并对所有已过期的条目回调 {@link Listener#onExpired(Node)}
+     *
+     * @param currentTimeNanos 当前时间
+     * @param listener         过期回调
+     */
+    void advance(long currentTimeNanos, Listener<K> listener) {
+        long previousTimeNanos = nanos;
+        nanos = currentTimeNanos;
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previousTimeNanos >>> SHIFT[i];
+            long currentTicks = currentTimeNanos >>> SHIFT[i];
+            if (currentTicks - previousTicks <= 0L) {
+                break;
+            }
+            expire(i, previousTicks, currentTicks, listener);
+        }
+    }
+    
+    /**
+     * 根据 {@link Node#deadline} 将条目放入对应的桶中
+     */
+    void schedule(Node<K> node) {
+        Node<K> sentinel = findBucket(node.deadline);
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+    
+    /**
+     * {@link Node#deadline} 改变后, 将条目移至新的桶中
+     */
+    void reschedule(Node<K> node) {
+        deschedule(node);
+        schedule(node);
+    }
+    
+    /**
+     * 将条目从时间轮中移除, 条目不在时间轮中时什么也不做
+     */
+    void deschedule(Node<K> node) {
+        if (node.next != null) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.next = null;
+            node.prev = null;
+        }
+    }
+    
+    private void expire(int index, long previousTicks, long currentTicks, Listener<K> listener) {
+        Node<K>[] timerWheel = wheel[index];
+        int mask = timerWheel.length - 1;
+        int steps = (int) Math.min(currentTicks - previousTicks + 1, timerWheel.length);
+        int start = (int) (previousTicks & mask);
+        int end = start + steps;
+        for (int i = start; i < end; i++) {
+            Node<K> sentinel = timerWheel[i & mask];
+            Node<K> node = sentinel.next;
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            while (node != sentinel) {
+                Node<K> next = node.next;
+                node.prev = null;
+                node.next = null;
+                if (node.deadline - nanos > 0) {
+                    schedule(node);
+                } else {
+                    listener.onExpired(node);
+                }
+                node = next;
+            }
+        }
+    }
+    
+    private Node<K> findBucket(long time) {
+        long duration = time - nanos;
+        int length = wheel.length - 1;
+        for (int i = 0; i < length; i++) {
+            if (duration < SPANS[i + 1]) {
+                long ticks = time >>> SHIFT[i];
+                int index = (int) (ticks & (wheel[i].length - 1));
+                return wheel[i][index];
+            }
+        }
+        return wheel[length][0];
+    }
+    
+    private static long ceilingPowerOfTwo(long x) {
+        return 1L << -Long.numberOfLeadingZeros(x - 1);
+    }
+    
+    interface Listener<K> {
+        void onExpired(Node<K> node);
+    }
+    
+    /**
+     * 时间轮中的条目, 同时保存 {@link ExpiringCache} 所需的时间信息
+     */
+    static final class Node<K> {
+        final K key;
+        long writeTime;
+        //以下字段会被 ExpiringCache 不加锁的读取访问
+        volatile long accessTime;
+        volatile long deadline;
+        //单个条目指定的过期时间, 为 ExpiryPolicy.UNSET 时使用缓存的过期策略
+        long expireAfterWriteNanos = ExpiryPolicy.UNSET;
+        volatile boolean refreshing;
+        Node<K> prev;
+        Node<K> next;
+        
+        Node(K key) {
+            this.key = key;
+        }
+        
+        static <K> Node<K> sentinel() {
+            Node<K> sentinel = new Node<>(null);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            return sentinel;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import com.jess.arms.di.module.GlobalConfigModule;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import androidx.annotation.Nullable;
+
+/**
+ * ================================================
+ * W-TinyLFU (Window TinyLFU) 缓存, 由一个很小的 LRU 窗口区和一个分段 LRU (SLRU) 主区组成
+ * <p>
+ * 新条目先进入窗口区 (约占总容量的 1%), 从窗口区淘汰出的条目需要和主区中即将被淘汰的条目比较访问频率 (由 {@link FrequencySketch} 估算)
+ * 频率更高的一方才能留在主区; 主区分为试用区 (probation) 和保护区 (protected), 在试用区中被再次访问的条目会晋升至保护区
+ * <p>
+ * 与 {@link LruCache} 相比, 一次性扫描大量只访问一次的 {@code key} (比如滑动长列表时每个 item 都存入缓存) 时,
+ * 这些 {@code key} 的访问频率很低, 无法挤掉主区中的热点数据, 所以命中率更稳定
+ * <p>
+ * 此缓存以条目数为单位计算 size
+ *
+ * @see EvictionPolicy#TINY_LFU
+ * @see GlobalConfigModule.Builder#evictionPolicy(EvictionPolicy)
+ * ================================================
+ */
+public class TinyLfuCache<K, V> implements Cache<K, V>, Trimmable, Evictable<K, V> {
+    private static final float WINDOW_PERCENTAGE = 0.01f;
+    private static final float PROTECTED_PERCENTAGE = 0.8f;
+    
+    private final LinkedHashMap<K, V> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, V> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, V> protectedMap = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch<K> sketch;
+    private final int initialMaxSize;
+    private int maxSize;
+    private int windowMaxSize;
+    private int protectedMaxSize;
+    @Nullable
+    private volatile EvictionListener<K, V> evictionListener;
+    
+    /**
+     * Constructor for TinyLfuCache.
+     *
+     * @param size 这个缓存所能容纳的最大条目数
+     */
+    public TinyLfuCache(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must be >= 0");
+        }
+        this.initialMaxSize = size;
+        this.sketch = new FrequencySketch<>(size);
+        resize(size);
+    }
+    
+    /**
+     * 设置一个系数应用于当时构造函数中所传入的 size, 从而得到一个新的 {@link #maxSize}
+     * 并会立即清除超出容量的条目
+     *
+     * @param multiplier 系数
+     */
+    @Override
+    public synchronized void setSizeMultiplier(float multiplier) {
+        if (multiplier < 0) {
+            throw new IllegalArgumentException("Multiplier must be >= 0");
+        }
+        resize(Math.round(initialMaxSize * multiplier));
+    }
+    
+    /**
+     * 当缓存中有被驱逐的条目时,会回调此方法,默认空实现,子类可以重写这个方法
+     *
+     * @param key   被驱逐条目的 {@code key}
+     * @param value 被驱逐条目的 {@code value}
+     */
+    protected void onItemEvicted(K key, V value) {
+        // optional override
+    }
+    
+    @Override
+    public void setEvictionListener(@Nullable EvictionListener<K, V> listener) {
+        this.evictionListener = listener;
+    }
+    
+    /**
+     * 返回当前缓存所能允许的最大 size
+     *
+     * @return {@code maxSize}
+     */
+    @Override
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * 返回当前缓存已占用的总 size
+     *
+     * @return {@code size}
+     */
+    @Override
+    public synchronized int size() {
+        return window.size() + probation.size() + protectedMap.size();
+    }
+    
+    /**
+     * 如果这个 {@code key} 在缓存中有对应的 {@code value} 并且不为 {@code null},则返回 true
+     *
+     * @param key 用来映射的 {@code key}
+     * @return {@code true} 为在容器中含有这个 {@code key}, 否则为 {@code false}
+     */
+    @Override
+    public synchronized boolean containsKey(K key) {
+        return window.containsKey(key) || probation.containsKey(key) || protectedMap.containsKey(key);
+    }
+    
+    /**
+     * 返回当前缓存中含有的所有 {@code key} 的快照
+     *
+     * @return {@code keySet}
+     */
+    @Override
+    public synchronized Set<K> keySet() {
+        Set<K> keys = new HashSet<>(window.keySet());
+        keys.addAll(probation.keySet());
+        keys.addAll(protectedMap.keySet());
+        return keys;
+    }
+    
+    /**
+     * 返回这个 {@code key} 在缓存中对应的 {@code value}, 如果返回 {@code null} 说明这个 {@code key} 没有对应的 {@code value}
+     * 无论是否命中, 都会增加这个 {@code key} 的访问频率
+     *
+     * @param key 用来映射的 {@code key}
+     * @return {@code value}
+     */
+    @Override
+    @Nullable
+    public synchronized V get(K key) {
+        sketch.increment(key);
+        if (window.containsKey(key)) {
+            return window.get(key);
+        }
+        if (protectedMap.containsKey(key)) {
+            return protectedMap.get(key);
+        }
+        if (probation.containsKey(key)) {
+            final V value = probation.remove(key);
+            promote(key, value);
+            return value;
+        }
+        return null;
+    }
+    
+    /**
+     * 将 {@code key} 和 {@code value} 以条目的形式加入缓存,如果这个 {@code key} 在缓存中已经有对应的 {@code value}
+     * 则此 {@code value} 被新的 {@code value} 替换并返回,如果为 {@code null} 说明是一个新条目
+     * <p>
+     * 新条目会先加入窗口区, 窗口区满后, 窗口区淘汰出的条目需要和主区中即将被淘汰的条目比较访问频率, 频率较低的一方被驱逐
+     * 此时会回调 {@link #onItemEvicted(Object, Object)} 通知此方法当前被驱逐的条目
+     *
+     * @param key   通过这个 {@code key} 添加条目
+     * @param value 需要添加的 {@code value}
+     * @return 如果这个 {@code key} 在容器中已经储存有 {@code value}, 则返回之前的 {@code value} 否则返回 {@code null}
+     */
+    @Override
+    @Nullable
+    public synchronized V put(K key, V value) {
+        sketch.increment(key);
+        if (window.containsKey(key)) {
+            return window.put(key, value);
+        }
+        if (protectedMap.containsKey(key)) {
+            return protectedMap.put(key, value);
+        }
+        if (probation.containsKey(key)) {
+            final V previous = probation.remove(key);
+            promote(key, value);
+            return previous;
+        }
+        if (maxSize == 0) {
+            dispatchEviction(key, value);
+            return null;
+        }
+        window.put(key, value);
+        evict();
+        return null;
+    }
+    
+    /**
+     * 移除缓存中这个 {@code key} 所对应的条目,并返回所移除条目的 {@code value}
+     * 如果返回为 {@code null} 则有可能时因为这个 {@code key} 对应的 {@code value} 为 {@code null} 或条目不存在
+     *
+     * @param key 使用这个 {@code key} 移除对应的条目
+     * @return 如果这个 {@code key} 在容器中已经储存有 {@code value} 并且删除成功则返回删除的 {@code value}, 否则返回 {@code null}
+     */
+    @Override
+    @Nullable
+    public synchronized V remove(K key) {
+        if (window.containsKey(key)) {
+            return window.remove(key);
+        }
+        if (protectedMap.containsKey(key)) {
+            return protectedMap.remove(key);
+        }
+        return probation.remove(key);
+    }
+    
+    /**
+     * 清除缓存中所有的内容
+     */
+    @Override
+    public synchronized void clear() {
+        evictAll(window);
+        evictAll(probation);
+        evictAll(protectedMap);
+    }
+    
+    private void resize(int size) {
+        this.maxSize = size;
+        this.windowMaxSize = size == 0 ? 0 : Math.max(1, (int) (size * WINDOW_PERCENTAGE));
+        this.protectedMaxSize = (int) ((size - windowMaxSize) * PROTECTED_PERCENTAGE);
+        while (protectedMap.size() > protectedMaxSize) {
+            demote();
+        }
+        evict();
+    }
+    
+    /**
+     * 将试用区中被再次访问的条目晋升至保护区, 保护区超出容量时将其中最近最少使用的条目降级至试用区
+     */
+    private void promote(K key, V value) {
+        protectedMap.put(key, value);
+        while (protectedMap.size() > protectedMaxSize) {
+            demote();
+        }
+    }
+    
+    private void demote() {
+        final Map.Entry<K, V> eldest = protectedMap.entrySet().iterator().next();
+        final K key = eldest.getKey();
+        final V value = eldest.getValue();
+        protectedMap.remove(key);
+        probation.put(key, value);
+    }
+    
+    /**
+     * 窗口区超出容量时, 将窗口区中最近最少使用的条目作为候选者交给 {@link #admit(Object, Object)}
+     * 主区超出容量时 (比如调用了 {@link #setSizeMultiplier(float)}), 直接驱逐试用区中最近最少使用的条目
+     */
+    private void evict() {
+        while (window.size() > windowMaxSize) {
+            final Map.Entry<K, V> eldest = window.entrySet().iterator().next();
+            final K key = eldest.getKey();
+            final V value = eldest.getValue();
+            window.remove(key);
+            admit(key, value);
+        }
+        while (mainSize() > maxSize - windowMaxSize) {
+            if (probation.isEmpty()) {
+                demote();
+            }
+            evictEldest(probation);
+        }
+    }
+    
+    /**
+     * 主区还有空间时候选者直接进入试用区, 否则候选者需要和试用区中最近最少使用的条目 (牺牲者) 比较访问频率
+     * 只有候选者的访问频率高于牺牲者时, 才会驱逐牺牲者并接纳候选者, 否则驱逐候选者
+     */
+    private void admit(K key, V value) {
+        final int mainMaxSize = maxSize - windowMaxSize;
+        if (mainSize() < mainMaxSize) {
+            probation.put(key, value);
+            return;
+        }
+        if (mainMaxSize <= 0) {
+            dispatchEviction(key, value);
+            return;
+        }
+        if (probation.isEmpty()) {
+            demote();
+        }
+        final K victim = probation.entrySet().iterator().next().getKey();
+        if (sketch.frequency(key) > sketch.frequency(victim)) {
+            evictEldest(probation);
+            probation.put(key, value);
+        } else {
+            dispatchEviction(key, value);
+        }
+    }
+    
+    private int mainSize() {
+        return probation.size() + protectedMap.size();
+    }
+    
+    private void evictEldest(LinkedHashMap<K, V> map) {
+        final Map.Entry<K, V> eldest = map.entrySet().iterator().next();
+        final K key = eldest.getKey();
+        final V value = eldest.getValue();
+        map.remove(key);
+        dispatchEviction(key, value);
+    }
+    
+    private void dispatchEviction(K key, V value) {
+        onItemEvicted(key, value);
+        final EvictionListener<K, V> listener = evictionListener;
+        if (listener != null) {
+            listener.onEvicted(key, value);
+        }
+    }
+    
+    private void evictAll(LinkedHashMap<K, V> map) {
+        final Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<K, V> entry = iterator.next();
+            iterator.remove();
+            onItemEvicted(entry.getKey(), entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import android.content.ComponentCallbacks2;
+
+import com.jess.arms.di.module.GlobalConfigModule;
+
+import androidx.annotation.NonNull;
+
+/**
+ * ================================================
+ * 根据 {@link ComponentCallbacks2#onTrimMemory(int)} 的内存级别, 决定每个 {@link CacheType} 的缓存应该缩小至原容量的多少
+ * 可通过 {@link GlobalConfigModule.Builder#trimPolicy(TrimPolicy)} 自定义
+ *
+ * @see CacheRegistry
+ * ================================================
+ */
+public interface TrimPolicy {
+    
+    /**
+     * 框架默认的策略, 内存越紧张缓存缩得越小, 进程处于后台 LRU 列表最末端 ({@link ComponentCallbacks2#TRIM_MEMORY_COMPLETE}) 时清空缓存
+     */
+    TrimPolicy DEFAULT = new TrimPolicy() {
+        @Override
+        public float getSizeMultiplier(@NonNull CacheType type, int level) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+                return 0;
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+                return 0.25f;
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+                return 0.5f;
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+                //UI 不可见只表示进入后台, 并不代表内存紧张
+                return 1;
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+                return 0.5f;
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                return 0.75f;
+            }
+            return 1;
+        }
+    };
+    
+    /**
+     * 返回 {@code type} 对应的缓存在内存级别为 {@code level} 时应该缩小至原容量的比例
+     *
+     * @param type  框架中需要缓存的模块类型
+     * @param level {@link ComponentCallbacks2#onTrimMemory(int)} 的内存级别
+     * @return 0 到 1 之间的系数, 1 为不缩小
+     */
+    float getSizeMultiplier(@NonNull CacheType type, int level);
+}
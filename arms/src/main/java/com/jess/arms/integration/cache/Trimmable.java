@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+/**
+ * ================================================
+ * 可以在运行时调整容量的 {@link Cache}, 内存紧张时 {@link CacheRegistry} 会通过此接口缩小缓存的容量
+ *
+ * @see CacheRegistry
+ * @see TrimPolicy
+ * ================================================
+ */
+public interface Trimmable {
+    
+    /**
+     * 设置一个系数应用于构造时所传入的 size, 从而得到一个新的最大 size, 并立即清除超出容量的条目
+     * 传入 1 即恢复至构造时的 size
+     *
+     * @param multiplier 系数
+     */
+    void setSizeMultiplier(float multiplier);
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+/**
+ * ================================================
+ * 计算缓存中每个条目所占用的 size (权重), 比如按条目数计算或按估算的内存字节数计算
+ * 返回值的单位必须和缓存的最大 size 所使用的单位一致
+ *
+ * @see Weighers
+ * @see LruCache#LruCache(long, Weigher)
+ * ================================================
+ */
+public interface Weigher<K, V> {
+    
+    /**
+     * 返回这个条目所占用的 size, 不能为负数
+     * 条目加入缓存时只会计算一次, 之后 {@code value} 内容的变化不会影响已记录的 size
+     *
+     * @param key   {@code key}
+     * @param value {@code value}
+     * @return 条目所占用的 size
+     */
+    long weigh(K key, V value);
+}
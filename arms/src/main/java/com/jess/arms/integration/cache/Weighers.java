@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.Collection;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+/**
+ * ================================================
+ * 框架内置的 {@link Weigher}
+ * <p>
+ * {@link #singleton()} 每个条目的 size 都为 1, 即按条目数限制缓存
+ * {@link #retainedBytes()} 估算每个条目在内存中占用的字节数, 即按内存大小限制缓存, 配合 {@link MemoryCacheType} 使用
+ *
+ * @see Weigher
+ * ================================================
+ */
+public final class Weighers {
+    //对象头 + 对齐后的近似大小
+    private static final int OBJECT_OVERHEAD = 16;
+    private static final int ARRAY_OVERHEAD = 16;
+    //LinkedHashMap 中每个条目 (Entry 对象和链表指针) 的近似大小
+    private static final int ENTRY_OVERHEAD = 40;
+    private static final int REFERENCE_SIZE = 4;
+    //集合嵌套的最大估算深度, 更深的对象只按 OBJECT_OVERHEAD 计算, 同时避免集合循环引用时无限递归
+    private static final int MAX_DEPTH = 4;
+    
+    private static final Weigher<Object, Object> SINGLETON = new Weigher<Object, Object>() {
+        @Override
+        public long weigh(Object key, Object value) {
+            return 1;
+        }
+    };
+    
+    private static final Weigher<Object, Object> RETAINED_BYTES = new Weigher<Object, Object>() {
+        @Override
+        public long weigh(Object key, Object value) {
+            return ENTRY_OVERHEAD + sizeOf(key, 0) + sizeOf(value, 0);
+        }
+    };
+    
+    private Weighers() {
+        throw new IllegalStateException("you can't instantiate me!");
+    }
+    
+    /**
+     * 每个条目的 size 都为 1
+     *
+     * @return {@link Weigher}
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    public static <K, V> Weigher<K, V> singleton() {
+        return (Weigher<K, V>) SINGLETON;
+    }
+    
+    /**
+     * 估算每个条目 ({@code key} 和 {@code value}) 在内存中占用的字节数
+     * 支持 {@link String}、基本类型数组、{@link Bitmap}、{@link Collection} 以及 {@link Map}, 其余对象只按对象头估算
+     * 有特殊需求可自行实现 {@link Weigher}
+     *
+     * @return {@link Weigher}
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    public static <K, V> Weigher<K, V> retainedBytes() {
+        return (Weigher<K, V>) RETAINED_BYTES;
+    }
+    
+    /**
+     * 估算 {@code object} 在内存中占用的字节数
+     *
+     * @param object 需要估算的对象
+     * @return 估算的字节数
+     */
+    public static long sizeOf(Object object) {
+        return sizeOf(object, 0);
+    }
+    
+    private static long sizeOf(Object object, int depth) {
+        if (object == null) {
+            return 0;
+        }
+        if (object instanceof String) {
+            return OBJECT_OVERHEAD + 8 + 2L * ((String) object).length();
+        }
+        if (object instanceof byte[]) {
+            return ARRAY_OVERHEAD + ((byte[]) object).length;
+        }
+        if (object instanceof char[]) {
+            return ARRAY_OVERHEAD + 2L * ((char[]) object).length;
+        }
+        if (object instanceof int[]) {
+            return ARRAY_OVERHEAD + 4L * ((int[]) object).length;
+        }
+        if (object instanceof long[]) {
+            return ARRAY_OVERHEAD + 8L * ((long[]) object).length;
+        }
+        if (object instanceof Bitmap) {
+            return OBJECT_OVERHEAD + sizeOfBitmap((Bitmap) object);
+        }
+        if (depth >= MAX_DEPTH) {
+            return OBJECT_OVERHEAD;
+        }
+        if (object instanceof Collection) {
+            long size = OBJECT_OVERHEAD + ARRAY_OVERHEAD;
+            for (Object element : (Collection<?>) object) {
+                size += REFERENCE_SIZE + sizeOf(element, depth + 1);
+            }
+            return size;
+        }
+        if (object instanceof Map) {
+            long size = OBJECT_OVERHEAD + ARRAY_OVERHEAD;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                size += ENTRY_OVERHEAD + sizeOf(entry.getKey(), depth + 1) + sizeOf(entry.getValue(), depth + 1);
+            }
+            return size;
+        }
+        if (object instanceof Object[]) {
+            Object[] array = (Object[]) object;
+            long size = ARRAY_OVERHEAD + (long) REFERENCE_SIZE * array.length;
+            for (Object element : array) {
+                size += sizeOf(element, depth + 1);
+            }
+            return size;
+        }
+        return OBJECT_OVERHEAD;
+    }
+    
+    private static long sizeOfBitmap(Bitmap bitmap) {
+        if (bitmap.isRecycled()) {
+            return 0;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ================================================
+ * 只增不减的计数器, 比如缓存命中次数, 可以在多个线程中同时计数
+ *
+ * @see MetricsRegistry#counter(String)
+ * ================================================
+ */
+public final class Counter {
+    private final AtomicLong mCount = new AtomicLong();
+    
+    Counter() {
+    }
+    
+    public void inc() {
+        mCount.incrementAndGet();
+    }
+    
+    public void add(long delta) {
+        if (delta < 0) {
+            throw new IllegalArgumentException("Delta must be >= 0");
+        }
+        mCount.addAndGet(delta);
+    }
+    
+    public long getCount() {
+        return mCount.get();
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.metrics;
+
+/**
+ * ================================================
+ * 在导出时才读取的瞬时值, 比如缓存当前的条目数, 实现类需要保证 {@link #getValue()} 是线程安全并且足够快的
+ *
+ * @see MetricsRegistry#gauge(String, Gauge)
+ * ================================================
+ */
+public interface Gauge {
+    
+    /**
+     * 返回当前的值
+     *
+     * @return 当前的值
+     */
+    long getValue();
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import androidx.annotation.NonNull;
+
+/**
+ * ================================================
+ * 无锁的对数线性 (log-linear) 直方图, 用来统计耗时等非负数值的分布, 可以在多个线程中同时 {@link #record(long)}
+ * <p>
+ * 小于 {@link #SUB_BUCKET_COUNT} 的值每个值一个桶, 更大的值按 2 的幂次分组, 每组再线性地分为 {@link #SUB_BUCKET_COUNT} 个桶
+ * 所以估算出的分位数的相对误差不超过 1 / {@link #SUB_BUCKET_COUNT} (12.5%), 而内存占用是固定的 ({@link #BUCKET_COUNT} 个 {@code long})
+ * 大于 {@link #MAX_TRACKABLE_VALUE} 的值计入最后一个桶, 负数计为 0
+ * <p>
+ * 每个桶是 {@link AtomicLongArray} 中的一个元素, 记录只需要几次原子操作, 不会阻塞; {@link #snapshot()} 得到的是近似一致的快照
+ * ================================================
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    /**
+     * 可以精确分桶的最大值, 以微秒计约为 19 小时
+     */
+    public static final long MAX_TRACKABLE_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    public static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+    
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+    
+    /**
+     * 记录一个值
+     *
+     * @param value 需要记录的值, 比如耗时
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mBuckets.incrementAndGet(bucketIndex(value));
+        mCount.incrementAndGet();
+        mSum.addAndGet(value);
+        long max;
+        while (value > (max = mMax.get())) {
+            if (mMax.compareAndSet(max, value)) {
+                break;
+            }
+        }
+    }
+    
+    /**
+     * 返回记录的总次数
+     *
+     * @return 记录的总次数
+     */
+    public long getCount() {
+        return mCount.get();
+    }
+    
+    /**
+     * 清空所有记录
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mSum.set(0);
+        mMax.set(0);
+    }
+    
+    /**
+     * 返回当前记录的快照, 之后的记录不会影响快照
+     *
+     * @return {@link Snapshot}
+     */
+    @NonNull
+    public Snapshot snapshot() {
+        final long[] buckets = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = mBuckets.get(i);
+            count += buckets[i];
+        }
+        //以桶中的数量为准, 保证分位数的计算与桶一致
+        return new Snapshot(buckets, count, mSum.get(), mMax.get());
+    }
+    
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        if (value > MAX_TRACKABLE_VALUE) {
+            return BUCKET_COUNT - 1;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+    
+    /**
+     * 返回桶中的最小值
+     */
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        final int subBucket = index % SUB_BUCKET_COUNT;
+        return (long) (SUB_BUCKET_COUNT + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+    
+    /**
+     * 返回桶中的最大值
+     */
+    static long bucketUpperBound(int index) {
+        return index == BUCKET_COUNT - 1 ? MAX_TRACKABLE_VALUE : bucketLowerBound(index + 1) - 1;
+    }
+    
+    /**
+     * {@link Histogram} 在某一时刻的快照
+     */
+    public static final class Snapshot {
+        private final long[] mBuckets;
+        private final long mCount;
+        private final long mSum;
+        private final long mMax;
+        
+        Snapshot(long[] buckets, long count, long sum, long max) {
+            this.mBuckets = buckets;
+            this.mCount = count;
+            this.mSum = sum;
+            this.mMax = max;
+        }
+        
+        public long getCount() {
+            return mCount;
+        }
+        
+        public long getSum() {
+            return mSum;
+        }
+        
+        public long getMax() {
+            return mMax;
+        }
+        
+        public double getMean() {
+            return mCount == 0 ? 0 : (double) mSum / mCount;
+        }
+        
+        /**
+         * 估算分位数, 返回值所在桶的上界 (不会超过 {@link #getMax()}), 没有记录时返回 0
+         *
+         * @param quantile 0 ~ 1, 比如 0.99 为 P99
+         * @return 分位数
+         */
+        public long getValueAtQuantile(double quantile) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException("Quantile must be in [0, 1]");
+            }
+            if (mCount == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(quantile * mCount));
+            long seen = 0;
+            for (int i = 0; i < mBuckets.length; i++) {
+                seen += mBuckets[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), mMax);
+                }
+            }
+            return mMax;
+        }
+        
+        /**
+         * 返回每个不为空的桶的 {@code [下界, 上界, 数量]}, 可用于导出
+         *
+         * @return 不为空的桶
+         */
+        @NonNull
+        public long[][] getNonEmptyBuckets() {
+            int size = 0;
+            for (long bucket : mBuckets) {
+                if (bucket > 0) {
+                    size++;
+                }
+            }
+            final long[][] result = new long[size][];
+            int j = 0;
+            for (int i = 0; i < mBuckets.length; i++) {
+                if (mBuckets[i] > 0) {
+                    result[j++] = new long[]{bucketLowerBound(i), bucketUpperBound(i), mBuckets[i]};
+                }
+            }
+            return result;
+        }
+    }
+}
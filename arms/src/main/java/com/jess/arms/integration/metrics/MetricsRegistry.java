@@ -0,0 +1,223 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.metrics;
+
+import android.util.JsonWriter;
+
+import com.jess.arms.di.component.AppComponent;
+import com.jess.arms.utils.Preconditions;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import androidx.annotation.NonNull;
+
+/**
+ * ================================================
+ * 进程内的轻量级指标注册表, 包含计数器 ({@link Counter}), 瞬时值 ({@link Gauge}) 和对数线性直方图 ({@link Histogram})
+ * 记录都是无锁的, 可以在任意线程中调用; 可通过 {@link #writeJson(Writer, boolean)} 导出快照, 随自己的埋点一起上报
+ * <p>
+ * 框架内置了以下指标:
+ * 1. {@code cache.<type>.hits} / {@code cache.<type>.misses}: {@link com.jess.arms.integration.cache.LruCache} 和
+ * {@link com.jess.arms.integration.cache.IntelligentCache} 的命中和未命中次数
+ * 2. {@code repository.retrofit_service.created} / {@code repository.retrofit_service.create_us}: 创建 Retrofit service 的次数和耗时 (微秒)
+ * 3. {@code repository.cache_service.created}: 创建缓存 service 的次数
+ * 4. {@code http.call.duration_us} / {@code http.call.failures}: 网络请求的总耗时 (微秒) 和失败次数, 按接口统计的耗时见 {@link AppComponent#httpTimings()}
+ * 5. {@code presenter.subscriptions.added} / {@code presenter.subscriptions.released}: Presenter 中通过 {@code addDispose} 添加的订阅数量,
+ * 以及 {@code unDispose} 时释放的订阅数量 (包括在此之前已从 {@code mCompositeDisposable} 中移除的), 两者之差为还未 {@code unDispose}
+ * 的 Presenter 添加的订阅数量, 持续增长说明有 Presenter 没有被销毁
+ * 6. {@code http.limit.<host>.limit} / {@code http.limit.rejected}: 开启 {@link com.jess.arms.http.limit.ConcurrencyLimitInterceptor} 后每个域名的并发上限和被拒绝的请求数
+ * <p>
+ * 与 {@link com.jess.arms.integration.EventBusManager} 一样在整个进程中只有一个实例, 可通过 {@link #getInstance()}
+ * 或 {@link AppComponent#metrics()} 获取
+ *
+ * @see AppComponent#metrics()
+ * ================================================
+ */
+public final class MetricsRegistry {
+    private static volatile MetricsRegistry sInstance;
+    private final ConcurrentHashMap<String, Object> mMetrics = new ConcurrentHashMap<>();
+    
+    private MetricsRegistry() {
+    }
+    
+    public static MetricsRegistry getInstance() {
+        if (sInstance == null) {
+            synchronized (MetricsRegistry.class) {
+                if (sInstance == null) {
+                    sInstance = new MetricsRegistry();
+                }
+            }
+        }
+        return sInstance;
+    }
+    
+    /**
+     * 返回这个名称对应的 {@link Counter}, 不存在时创建
+     *
+     * @param name 指标名称, 比如 {@code cache.extras.hits}
+     * @return {@link Counter}
+     * @throws IllegalArgumentException 这个名称已经被注册为其他类型的指标
+     */
+    @NonNull
+    public Counter counter(@NonNull String name) {
+        return obtain(name, Counter.class);
+    }
+    
+    /**
+     * 返回这个名称对应的 {@link Histogram}, 不存在时创建
+     *
+     * @param name 指标名称, 建议以单位结尾, 比如 {@code http.call.duration_us}
+     * @return {@link Histogram}
+     * @throws IllegalArgumentException 这个名称已经被注册为其他类型的指标
+     */
+    @NonNull
+    public Histogram histogram(@NonNull String name) {
+        return obtain(name, Histogram.class);
+    }
+    
+    /**
+     * 注册 {@link Gauge}, 这个名称已经注册过 {@link Gauge} 时替换为新的 {@link Gauge}
+     *
+     * @param name  指标名称
+     * @param gauge {@link Gauge}
+     * @throws IllegalArgumentException 这个名称已经被注册为其他类型的指标
+     */
+    public void gauge(@NonNull String name, @NonNull Gauge gauge) {
+        Preconditions.checkNotNull(name, "name can not be null.");
+        Preconditions.checkNotNull(gauge, "gauge can not be null.");
+        final Object previous = mMetrics.put(name, gauge);
+        if (previous != null && !(previous instanceof Gauge)) {
+            mMetrics.put(name, previous);
+            throw new IllegalArgumentException(name + " is already registered as " + previous.getClass().getSimpleName());
+        }
+    }
+    
+    /**
+     * 移除这个名称对应的指标
+     *
+     * @param name 指标名称
+     */
+    public void remove(@NonNull String name) {
+        mMetrics.remove(name);
+    }
+    
+    private <T> T obtain(String name, Class<T> type) {
+        Preconditions.checkNotNull(name, "name can not be null.");
+        Object metric = mMetrics.get(name);
+        if (metric == null) {
+            final Object created = type == Counter.class ? new Counter() : new Histogram();
+            metric = mMetrics.putIfAbsent(name, created);
+            if (metric == null) {
+                metric = created;
+            }
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException(name + " is already registered as " + metric.getClass().getSimpleName());
+        }
+        return type.cast(metric);
+    }
+    
+    /**
+     * 以 json 格式导出当前所有指标的快照, 不包含直方图的桶
+     *
+     * @return json
+     * @see #writeJson(Writer, boolean)
+     */
+    @NonNull
+    public String toJson() {
+        final StringWriter writer = new StringWriter();
+        try {
+            writeJson(writer, false);
+        } catch (IOException e) {
+            //写入 StringWriter 不会发生 IOException
+            throw new AssertionError(e);
+        }
+        return writer.toString();
+    }
+    
+    /**
+     * 以 json 格式导出当前所有指标的快照, 格式为:
+     * <pre>{@code
+     * {
+     *   "timestamp": 1571500800000,
+     *   "counters": {"cache.extras.hits": 12},
+     *   "gauges": {"...": 3},
+     *   "histograms": {
+     *     "http.call.duration_us": {"count": 5, "sum": 1200000, "max": 400000, "mean": 240000.0,
+     *       "p50": 229375, "p90": 400000, "p99": 400000, "buckets": [[lower, upper, count], ...]}
+     *   }
+     * }
+     * }</pre>
+     *
+     * @param out            写入 json 的 {@link Writer}, 不会被关闭
+     * @param includeBuckets 是否导出直方图中每个不为空的桶, 导出后可以在服务端合并多个设备的直方图
+     * @throws IOException
+     */
+    public void writeJson(@NonNull Writer out, boolean includeBuckets) throws IOException {
+        final Map<String, Object> metrics = new TreeMap<>(mMetrics);
+        final JsonWriter writer = new JsonWriter(out);
+        writer.beginObject();
+        writer.name("timestamp").value(System.currentTimeMillis());
+        
+        writer.name("counters").beginObject();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            if (entry.getValue() instanceof Counter) {
+                writer.name(entry.getKey()).value(((Counter) entry.getValue()).getCount());
+            }
+        }
+        writer.endObject();
+        
+        writer.name("gauges").beginObject();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            if (entry.getValue() instanceof Gauge) {
+                writer.name(entry.getKey()).value(((Gauge) entry.getValue()).getValue());
+            }
+        }
+        writer.endObject();
+        
+        writer.name("histograms").beginObject();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            if (entry.getValue() instanceof Histogram) {
+                final Histogram.Snapshot snapshot = ((Histogram) entry.getValue()).snapshot();
+                writer.name(entry.getKey()).beginObject()
+                    .name("count").value(snapshot.getCount())
+                    .name("sum").value(snapshot.getSum())
+                    .name("max").value(snapshot.getMax())
+                    .name("mean").value(snapshot.getMean())
+                    .name("p50").value(snapshot.getValueAtQuantile(0.5))
+                    .name("p90").value(snapshot.getValueAtQuantile(0.9))
+                    .name("p99").value(snapshot.getValueAtQuantile(0.99));
+                if (includeBuckets) {
+                    writer.name("buckets").beginArray();
+                    for (long[] bucket : snapshot.getNonEmptyBuckets()) {
+                        writer.beginArray().value(bucket[0]).value(bucket[1]).value(bucket[2]).endArray();
+                    }
+                    writer.endArray();
+                }
+                writer.endObject();
+            }
+        }
+        writer.endObject();
+        
+        writer.endObject();
+        writer.flush();
+    }
+}
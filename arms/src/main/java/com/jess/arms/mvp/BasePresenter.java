@@ -20,8 +20,12 @@ import android.app.Service;
 import android.view.View;
 
 import com.jess.arms.integration.EventBusManager;
+import com.jess.arms.integration.metrics.Counter;
+import com.jess.arms.integration.metrics.MetricsRegistry;
 import com.jess.arms.utils.Preconditions;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.app.ComponentActivity;
@@ -45,7 +49,13 @@ import io.reactivex.functions.Action;
  * ================================================
  */
 public class BasePresenter<M extends IModel, V extends IView> implements IPresenter, LifecycleObserver {
+    //所有 Presenter 共用的订阅计数器, 两者之差即还未 unDispose 的 Presenter 添加的订阅数量
+    private static final Counter SUBSCRIPTIONS_ADDED = MetricsRegistry.getInstance().counter("presenter.subscriptions.added");
+    private static final Counter SUBSCRIPTIONS_RELEASED = MetricsRegistry.getInstance().counter("presenter.subscriptions.released");
     protected final String TAG = this.getClass().getSimpleName();
+    //上次 unDispose 之后添加的订阅数量, mCompositeDisposable 是 protected 的, 子类可以直接从中移除订阅
+    //所以不能在 unDispose 时用 CompositeDisposable#size() 计数, 否则被移除的订阅永远不会被计为释放
+    private final AtomicInteger mAddedSubscriptions = new AtomicInteger();
     protected CompositeDisposable mCompositeDisposable;
     @Nullable
     protected M mModel;
@@ -160,7 +170,10 @@ public class BasePresenter<M extends IModel, V extends IView> implements IPresen
             mCompositeDisposable = new CompositeDisposable();
         }
         //将所有 Disposable 放入容器集中处理
-        mCompositeDisposable.add(disposable);
+        if (mCompositeDisposable.add(disposable)) {
+            mAddedSubscriptions.incrementAndGet();
+            SUBSCRIPTIONS_ADDED.inc();
+        }
     }
     
     /**
@@ -171,5 +184,6 @@ public class BasePresenter<M extends IModel, V extends IView> implements IPresen
             //保证 Activity 结束时取消所有正在执行的订阅
             mCompositeDisposable.clear();
         }
+        SUBSCRIPTIONS_RELEASED.add(mAddedSubscriptions.getAndSet(0));
     }
 }
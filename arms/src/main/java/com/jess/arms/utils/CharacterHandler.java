@@ -18,24 +18,16 @@ package com.jess.arms.utils;
 import android.text.InputFilter;
 import android.text.Spanned;
 import android.text.TextUtils;
+import android.util.Xml;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.IOException;
 import java.io.StringReader;
-import java.io.StringWriter;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
-
 /**
  * ================================================
  * 处理字符串的工具类
@@ -46,6 +38,34 @@ import javax.xml.transform.stream.StreamSource;
  * ================================================
  */
 public class CharacterHandler {
+    /**
+     * {@link #jsonFormat(String)} 和 {@link #xmlFormat(String)} 默认最多输出的字符数, 超出的部分会被截断
+     */
+    public static final int DEFAULT_FORMAT_MAX_LENGTH = 512 * 1024;
+    private static final String JSON_INDENT = "    ";
+    //jsonFormat 扫描时期望的下一个 token
+    private static final int EXPECT_VALUE = 0;
+    private static final int EXPECT_KEY = 1;
+    private static final int EXPECT_COLON = 2;
+    private static final int EXPECT_COMMA_OR_CLOSE = 3;
+    private static final int EXPECT_END = 4;
+    private static final String XML_INDENT = "  ";
+    private static final String XML_DECL_VERSION = "http://xmlpull.org/v1/doc/properties.html#xmldecl-version";
+    /**
+     * 每个线程复用同一个 {@link XmlPullParser}, 避免每次格式化都重新创建解析器
+     */
+    private static final ThreadLocal<XmlPullParser> XML_PARSER = new ThreadLocal<XmlPullParser>() {
+        @Override
+        protected XmlPullParser initialValue() {
+            XmlPullParser parser = Xml.newPullParser();
+            try {
+                //不处理命名空间, 使前缀和 xmlns 属性按原样输出
+                parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+            } catch (XmlPullParserException ignored) {
+            }
+            return parser;
+        }
+    };
     
     public static final InputFilter emojiFilter = new InputFilter() {//emoji过滤器
         Pattern emoji = Pattern.compile(
@@ -91,57 +111,419 @@ public class CharacterHandler {
     }
     
     /**
-     * json 格式化
+     * json 格式化, 最多输出 {@link #DEFAULT_FORMAT_MAX_LENGTH} 个字符
      *
      * @param json
      * @return
+     * @see #jsonFormat(String, int)
      */
     public static String jsonFormat(String json) {
-        if (TextUtils.isEmpty(json)) {
+        return jsonFormat(json, DEFAULT_FORMAT_MAX_LENGTH);
+    }
+    
+    /**
+     * json 格式化
+     * <p>
+     * 逐个字符扫描 {@code json} 并重新缩进 (缩进为 4 个空格), 不会像 {@link org.json.JSONObject} 那样先构建出整棵对象树
+     * 所以内存占用只和输出的长度有关, 字符串中的内容会原样输出, 不会被重新转义
+     * 扫描时会校验括号的类型是否匹配, 以及每个 token 是否出现在合法的位置, 字符串以外只接受 true, false, null 和数字,
+     * 内容不是合法的 json 时 (比如 {@code [INFO] hello world}) 原样返回 (同样会被截断)
+     * 输出超过 {@code maxLength} 个字符时会停止扫描并截断, 被截断的部分不再校验
+     *
+     * @param json
+     * @param maxLength 最多输出的字符数
+     * @return
+     */
+    public static String jsonFormat(String json, int maxLength) {
+        if (json == null || json.length() == 0) {
             return "Empty/Null json content";
         }
-        String message;
+        if (maxLength <= 0) {
+            throw new IllegalArgumentException("maxLength must be > 0");
+        }
+        int start = 0;
+        int end = json.length();
+        while (start < end && json.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && json.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end || (json.charAt(start) != '{' && json.charAt(start) != '[')) {
+            return truncate(json, start, end, maxLength);
+        }
+        
         try {
-            json = json.trim();
-            if (json.startsWith("{")) {
-                JSONObject jsonObject = new JSONObject(json);
-                message = jsonObject.toString(4);
-            } else if (json.startsWith("[")) {
-                JSONArray jsonArray = new JSONArray(json);
-                message = jsonArray.toString(4);
-            } else {
-                message = json;
+            final StringBuilder builder = new StringBuilder(Math.min(maxLength, (end - start) + ((end - start) >> 1)));
+            //尚未闭合的 '{' 和 '[', 闭合时必须与栈顶的类型一致
+            final StringBuilder containers = new StringBuilder();
+            int expect = EXPECT_VALUE;
+            int i = start;
+            while (i < end && builder.length() < maxLength) {
+                final char c = json.charAt(i);
+                if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                    i++;
+                    continue;
+                }
+                if (expect == EXPECT_END) {
+                    //根节点闭合之后还有其他内容
+                    return truncate(json, start, end, maxLength);
+                }
+                switch (c) {
+                    case '{':
+                    case '[':
+                        if (expect != EXPECT_VALUE) {
+                            return truncate(json, start, end, maxLength);
+                        }
+                        builder.append(c);
+                        final int next = skipWhitespace(json, i + 1, end);
+                        final char close = c == '{' ? '}' : ']';
+                        if (next < end && json.charAt(next) == close) {
+                            //空对象和空数组不换行
+                            builder.append(close);
+                            i = next + 1;
+                            expect = afterValue(containers);
+                        } else {
+                            containers.append(c);
+                            newLine(builder, containers.length(), JSON_INDENT);
+                            i++;
+                            expect = c == '{' ? EXPECT_KEY : EXPECT_VALUE;
+                        }
+                        break;
+                    case '}':
+                    case ']':
+                        final int depth = containers.length();
+                        if (expect != EXPECT_COMMA_OR_CLOSE || depth == 0
+                            || containers.charAt(depth - 1) != (c == '}' ? '{' : '[')) {
+                            return truncate(json, start, end, maxLength);
+                        }
+                        containers.setLength(depth - 1);
+                        newLine(builder, depth - 1, JSON_INDENT);
+                        builder.append(c);
+                        i++;
+                        expect = afterValue(containers);
+                        break;
+                    case ',':
+                        if (expect != EXPECT_COMMA_OR_CLOSE) {
+                            return truncate(json, start, end, maxLength);
+                        }
+                        builder.append(c);
+                        newLine(builder, containers.length(), JSON_INDENT);
+                        i++;
+                        expect = containers.charAt(containers.length() - 1) == '{' ? EXPECT_KEY : EXPECT_VALUE;
+                        break;
+                    case ':':
+                        if (expect != EXPECT_COLON) {
+                            return truncate(json, start, end, maxLength);
+                        }
+                        builder.append(": ");
+                        i++;
+                        expect = EXPECT_VALUE;
+                        break;
+                    case '"':
+                        if (expect != EXPECT_VALUE && expect != EXPECT_KEY) {
+                            return truncate(json, start, end, maxLength);
+                        }
+                        final int quote = scanString(json, i, end);
+                        if (quote < 0) {
+                            return truncate(json, start, end, maxLength);
+                        }
+                        //字符串中的内容原样输出, 超出 maxLength 的部分不再复制
+                        final int copyEnd = Math.min(quote + 1, i + (maxLength - builder.length()));
+                        builder.append(json, i, copyEnd);
+                        i = copyEnd;
+                        expect = expect == EXPECT_KEY ? EXPECT_COLON : afterValue(containers);
+                        break;
+                    default:
+                        //true, false, null 或数字
+                        int literalEnd = i;
+                        while (literalEnd < end && !isJsonDelimiter(json.charAt(literalEnd))) {
+                            literalEnd++;
+                        }
+                        if (expect != EXPECT_VALUE || !isJsonLiteral(json, i, literalEnd)) {
+                            return truncate(json, start, end, maxLength);
+                        }
+                        builder.append(json, i, literalEnd);
+                        i = literalEnd;
+                        expect = afterValue(containers);
+                        break;
+                }
+            }
+            if (i < end) {
+                builder.setLength(Math.min(builder.length(), maxLength));
+                return builder.append("\n...(truncated, ").append(end - i).append(" chars omitted)").toString();
+            }
+            if (expect != EXPECT_END) {
+                return truncate(json, start, end, maxLength);
             }
-        } catch (JSONException e) {
-            message = json;
+            return builder.toString();
         } catch (OutOfMemoryError error) {
-            message = "Output omitted because of Object size";
+            return "Output omitted because of Object size";
         }
-        return message;
+    }
+    
+    private static int afterValue(CharSequence containers) {
+        return containers.length() == 0 ? EXPECT_END : EXPECT_COMMA_OR_CLOSE;
     }
     
     /**
-     * xml 格式化
+     * 返回从 {@code index} 处的引号开始的字符串的结束引号的位置, 字符串未闭合或含有未转义的控制字符时返回 -1
+     */
+    private static int scanString(String json, int index, int end) {
+        for (int i = index + 1; i < end; i++) {
+            final char c = json.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            } else if (c < ' ') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean isJsonDelimiter(char c) {
+        return c == ',' || c == ':' || c == '}' || c == ']' || c == '{' || c == '[' || c == '"'
+            || c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+    
+    /**
+     * {@code json} 中 [{@code start}, {@code end}) 的部分是否为 true, false, null 或合法的数字
+     */
+    private static boolean isJsonLiteral(String json, int start, int end) {
+        final int length = end - start;
+        if (length == 4 && (json.startsWith("true", start) || json.startsWith("null", start))) {
+            return true;
+        }
+        if (length == 5 && json.startsWith("false", start)) {
+            return true;
+        }
+        int i = start;
+        if (i < end && json.charAt(i) == '-') {
+            i++;
+        }
+        final int integerStart = i;
+        i = skipDigits(json, i, end);
+        if (i == integerStart || (json.charAt(integerStart) == '0' && i - integerStart > 1)) {
+            return false;
+        }
+        if (i < end && json.charAt(i) == '.') {
+            final int fractionStart = ++i;
+            i = skipDigits(json, i, end);
+            if (i == fractionStart) {
+                return false;
+            }
+        }
+        if (i < end && (json.charAt(i) == 'e' || json.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (json.charAt(i) == '+' || json.charAt(i) == '-')) {
+                i++;
+            }
+            final int exponentStart = i;
+            i = skipDigits(json, i, end);
+            if (i == exponentStart) {
+                return false;
+            }
+        }
+        return i == end;
+    }
+    
+    private static int skipDigits(String json, int index, int end) {
+        while (index < end && json.charAt(index) >= '0' && json.charAt(index) <= '9') {
+            index++;
+        }
+        return index;
+    }
+    
+    private static int skipWhitespace(String json, int index, int end) {
+        while (index < end && json.charAt(index) <= ' ') {
+            index++;
+        }
+        return index;
+    }
+    
+    private static void newLine(StringBuilder builder, int depth, String indent) {
+        builder.append('\n');
+        for (int i = 0; i < depth; i++) {
+            builder.append(indent);
+        }
+    }
+    
+    private static String truncate(String content, int start, int end, int maxLength) {
+        if (end - start <= maxLength) {
+            return content.substring(start, end);
+        }
+        return content.substring(start, start + maxLength) + "\n...(truncated, " + (end - start - maxLength) + " chars omitted)";
+    }
+    
+    /**
+     * xml 格式化, 最多输出 {@link #DEFAULT_FORMAT_MAX_LENGTH} 个字符
      *
      * @param xml
      * @return
+     * @see #xmlFormat(String, int)
      */
     public static String xmlFormat(String xml) {
+        return xmlFormat(xml, DEFAULT_FORMAT_MAX_LENGTH);
+    }
+    
+    /**
+     * xml 格式化
+     * <p>
+     * 使用当前线程复用的 {@link XmlPullParser} 逐个读取节点并重新缩进 (缩进为 2 个空格), 不会构建 DOM, 也不需要 {@link javax.xml.transform.Transformer}
+     * 只含文本的元素会输出在同一行, 元素之间的空白文本会被忽略
+     * 输出超过 {@code maxLength} 个字符时会停止解析并截断, 内容不是合法的 xml 时原样返回 (同样会被截断)
+     *
+     * @param xml
+     * @param maxLength 最多输出的字符数
+     * @return
+     */
+    public static String xmlFormat(String xml, int maxLength) {
         if (TextUtils.isEmpty(xml)) {
             return "Empty/Null xml content";
         }
-        String message;
+        if (maxLength <= 0) {
+            throw new IllegalArgumentException("maxLength must be > 0");
+        }
+        final XmlPullParser parser = XML_PARSER.get();
         try {
-            Source xmlInput = new StreamSource(new StringReader(xml));
-            StreamResult xmlOutput = new StreamResult(new StringWriter());
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-            transformer.transform(xmlInput, xmlOutput);
-            message = xmlOutput.getWriter().toString().replaceFirst(">", ">\n");
-        } catch (TransformerException e) {
-            message = xml;
-        }
-        return message;
+            parser.setInput(new StringReader(xml));
+            final StringBuilder builder = new StringBuilder(Math.min(maxLength, xml.length() + (xml.length() >> 1)));
+            int depth = 0;
+            //当前元素的开始标签还没有写出 '>'
+            boolean tagOpen = false;
+            //当前元素的内容中已经输出了文本, 结束标签不再换行
+            boolean inline = false;
+            int type = parser.nextToken();
+            final Object version = parser.getProperty(XML_DECL_VERSION);
+            if (version != null) {
+                builder.append("<?xml version=\"").append(version).append('"');
+                if (parser.getInputEncoding() != null) {
+                    builder.append(" encoding=\"").append(parser.getInputEncoding()).append('"');
+                }
+                builder.append("?>");
+            }
+            for (; type != XmlPullParser.END_DOCUMENT; type = parser.nextToken()) {
+                if (builder.length() >= maxLength) {
+                    builder.setLength(maxLength);
+                    return builder.append("\n...(truncated, output limit ").append(maxLength).append(" chars)").toString();
+                }
+                if (tagOpen && type != XmlPullParser.END_TAG) {
+                    builder.append('>');
+                    tagOpen = false;
+                }
+                switch (type) {
+                    case XmlPullParser.START_TAG:
+                        trimTrailingWhitespace(builder);
+                        newLine(builder, depth++, XML_INDENT);
+                        builder.append('<').append(parser.getName());
+                        for (int i = 0; i < parser.getAttributeCount(); i++) {
+                            builder.append(' ').append(parser.getAttributeName(i)).append("=\"");
+                            escapeXml(builder, parser.getAttributeValue(i), true);
+                            builder.append('"');
+                        }
+                        tagOpen = true;
+                        inline = false;
+                        break;
+                    case XmlPullParser.END_TAG:
+                        depth--;
+                        if (tagOpen) {
+                            builder.append("/>");
+                            tagOpen = false;
+                        } else {
+                            trimTrailingWhitespace(builder);
+                            if (!inline) {
+                                newLine(builder, depth, XML_INDENT);
+                            }
+                            builder.append("</").append(parser.getName()).append('>');
+                        }
+                        inline = false;
+                        break;
+                    case XmlPullParser.TEXT:
+                        //元素之间的空白忽略, 文本中实体引用前后的空白保留
+                        if (inline) {
+                            escapeXml(builder, parser.getText(), false);
+                        } else if (!parser.isWhitespace()) {
+                            escapeXml(builder, trimLeadingWhitespace(parser.getText()), false);
+                            inline = true;
+                        }
+                        break;
+                    case XmlPullParser.ENTITY_REF:
+                        builder.append('&').append(parser.getName()).append(';');
+                        inline = true;
+                        break;
+                    case XmlPullParser.CDSECT:
+                        builder.append("<![CDATA[").append(parser.getText()).append("]]>");
+                        inline = true;
+                        break;
+                    case XmlPullParser.COMMENT:
+                        newLine(builder, depth, XML_INDENT);
+                        builder.append("<!--").append(parser.getText()).append("-->");
+                        break;
+                    case XmlPullParser.PROCESSING_INSTRUCTION:
+                        newLine(builder, depth, XML_INDENT);
+                        builder.append("<?").append(parser.getText()).append("?>");
+                        break;
+                    case XmlPullParser.DOCDECL:
+                        newLine(builder, depth, XML_INDENT);
+                        builder.append("<!DOCTYPE").append(parser.getText()).append('>');
+                        break;
+                    default:
+                        break;
+                }
+            }
+            //第一个节点前不需要换行
+            return builder.length() > 0 && builder.charAt(0) == '\n' ? builder.substring(1) : builder.toString();
+        } catch (XmlPullParserException | IOException e) {
+            return truncate(xml, 0, xml.length(), maxLength);
+        } catch (OutOfMemoryError error) {
+            return "Output omitted because of Object size";
+        } finally {
+            try {
+                //释放对 xml 的引用
+                parser.setInput(null);
+            } catch (XmlPullParserException ignored) {
+            }
+        }
+    }
+    
+    private static String trimLeadingWhitespace(String text) {
+        int start = 0;
+        while (start < text.length() && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return text.substring(start);
+    }
+    
+    private static void trimTrailingWhitespace(StringBuilder builder) {
+        int length = builder.length();
+        while (length > 0 && builder.charAt(length - 1) <= ' ') {
+            length--;
+        }
+        builder.setLength(length);
+    }
+    
+    private static void escapeXml(StringBuilder builder, String text, boolean attribute) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    builder.append("&lt;");
+                    break;
+                case '>':
+                    builder.append("&gt;");
+                    break;
+                case '&':
+                    builder.append("&amp;");
+                    break;
+                case '"':
+                    builder.append(attribute ? "&quot;" : "\"");
+                    break;
+                default:
+                    builder.append(c);
+                    break;
+            }
+        }
     }
 }
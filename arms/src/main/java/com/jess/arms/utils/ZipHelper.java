@@ -15,19 +15,34 @@
  */
 package com.jess.arms.utils;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.DataFormatException;
+import java.util.zip.CRC32;
 import java.util.zip.Deflater;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 import java.util.zip.Inflater;
 
+import androidx.annotation.Nullable;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.GzipSource;
+import okio.InflaterSource;
+import okio.Okio;
+import okio.Sink;
+import okio.Source;
+import okio.Timeout;
+
 /**
  * ================================================
  * 处理压缩和解压的工具类
@@ -38,6 +53,25 @@ import java.util.zip.Inflater;
  * ================================================
  */
 public class ZipHelper {
+    public static final String ENCODING_GZIP = "gzip";
+    public static final String ENCODING_ZLIB = "zlib";
+    public static final String ENCODING_DEFLATE = "deflate";
+    /**
+     * gzip 格式, 带 gzip 头和 CRC32 校验
+     */
+    public static final int FORMAT_GZIP = 0;
+    /**
+     * zlib 格式, 带 zlib 头和 Adler-32 校验
+     */
+    public static final int FORMAT_ZLIB = 1;
+    /**
+     * raw deflate 格式, 不带头和校验
+     */
+    public static final int FORMAT_DEFLATE = 2;
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_POOLED_DEFLATERS = 4;
+    private static final ArrayDeque<Deflater> sDeflaterPool = new ArrayDeque<>();
+    private static final ArrayDeque<Deflater> sNowrapDeflaterPool = new ArrayDeque<>();
     
     private ZipHelper() {
         throw new IllegalStateException("you can't instantiate me!");
@@ -61,27 +95,12 @@ public class ZipHelper {
      * @return
      */
     public static String decompressToStringForZlib(byte[] bytesToDecompress, String charsetName) {
-        byte[] bytesDecompressed = decompressForZlib
-            (
-                bytesToDecompress
-            );
-        
-        String returnValue = null;
-        
         try {
-            returnValue = new String
-                (
-                    bytesDecompressed,
-                    0,
-                    bytesDecompressed.length,
-                    charsetName
-                );
-        } catch (UnsupportedEncodingException uee) {
-            uee.printStackTrace();
+            return decompressToString(new Buffer().write(bytesToDecompress), ENCODING_ZLIB, Charset.forName(charsetName));
+        } catch (IOException e) {
+            e.printStackTrace();
         }
-        
-        return returnValue;
-        
+        return null;
     }
     
     /**
@@ -91,52 +110,19 @@ public class ZipHelper {
      * @return
      */
     public static byte[] decompressForZlib(byte[] bytesToDecompress) {
-        byte[] returnValues = null;
-        
-        Inflater inflater = new Inflater();
-        
-        int numberOfBytesToDecompress = bytesToDecompress.length;
-        
-        inflater.setInput
-            (
-                bytesToDecompress,
-                0,
-                numberOfBytesToDecompress
-            );
-        
-        int bufferSizeInBytes = numberOfBytesToDecompress;
-        
-        int numberOfBytesDecompressedSoFar = 0;
-        List<Byte> bytesDecompressedSoFar = new ArrayList<Byte>();
-        
+        final Source source = decompressSource(new Buffer().write(bytesToDecompress), ENCODING_ZLIB);
         try {
-            while (inflater.needsInput() == false) {
-                byte[] bytesDecompressedBuffer = new byte[bufferSizeInBytes];
-                
-                int numberOfBytesDecompressedThisTime = inflater.inflate
-                    (
-                        bytesDecompressedBuffer
-                    );
-                
-                numberOfBytesDecompressedSoFar += numberOfBytesDecompressedThisTime;
-                
-                for (int b = 0; b < numberOfBytesDecompressedThisTime; b++) {
-                    bytesDecompressedSoFar.add(bytesDecompressedBuffer[b]);
-                }
+            final Buffer buffer = new Buffer();
+            while (source.read(buffer, BUFFER_SIZE) != -1) {
+                //解压至 buffer 中
             }
-            
-            returnValues = new byte[bytesDecompressedSoFar.size()];
-            for (int b = 0; b < returnValues.length; b++) {
-                returnValues[b] = (byte) (bytesDecompressedSoFar.get(b));
-            }
-            
-        } catch (DataFormatException dfe) {
-            dfe.printStackTrace();
+            return buffer.readByteArray();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            closeQuietly(source);
         }
-        
-        inflater.end();
-        
-        return returnValues;
+        return null;
     }
     
     /**
@@ -146,26 +132,18 @@ public class ZipHelper {
      * @return
      */
     public static byte[] compressForZlib(byte[] bytesToCompress) {
-        Deflater deflater = new Deflater();
-        deflater.setInput(bytesToCompress);
-        deflater.finish();
-        
-        byte[] bytesCompressed = new byte[Short.MAX_VALUE];
-        
-        int numberOfBytesAfterCompression = deflater.deflate(bytesCompressed);
-        
-        byte[] returnValues = new byte[numberOfBytesAfterCompression];
-        
-        System.arraycopy
-            (
-                bytesCompressed,
-                0,
-                returnValues,
-                0,
-                numberOfBytesAfterCompression
-            );
-        
-        return returnValues;
+        return compressForZlib(bytesToCompress, Deflater.DEFAULT_COMPRESSION);
+    }
+    
+    /**
+     * zlib compress 2 byte
+     *
+     * @param bytesToCompress
+     * @param level           压缩级别, 0 ~ 9 或 {@link Deflater#DEFAULT_COMPRESSION}
+     * @return
+     */
+    public static byte[] compressForZlib(byte[] bytesToCompress, int level) {
+        return compress(bytesToCompress, FORMAT_ZLIB, level);
     }
     
     /**
@@ -195,26 +173,113 @@ public class ZipHelper {
      *
      * @param string
      * @return
-     * @throws IOException
      */
     public static byte[] compressForGzip(String string) {
-        ByteArrayOutputStream os = null;
-        GZIPOutputStream gos = null;
         try {
-            os = new ByteArrayOutputStream(string.length());
-            gos = new GZIPOutputStream(os);
-            gos.write(string.getBytes("UTF-8"));
-            byte[] compressed = os.toByteArray();
-            return compressed;
-        } catch (IOException e) {
+            return compressForGzip(string.getBytes("UTF-8"), Deflater.DEFAULT_COMPRESSION);
+        } catch (UnsupportedEncodingException e) {
             e.printStackTrace();
-        } finally {
-            closeQuietly(gos);
-            closeQuietly(os);
         }
         return null;
     }
     
+    /**
+     * gzip compress 2 byte
+     *
+     * @param bytesToCompress
+     * @param level           压缩级别, 0 ~ 9 或 {@link Deflater#DEFAULT_COMPRESSION}
+     * @return
+     */
+    public static byte[] compressForGzip(byte[] bytesToCompress, int level) {
+        return compress(bytesToCompress, FORMAT_GZIP, level);
+    }
+    
+    /**
+     * raw deflate (不带 zlib 头和校验和) compress 2 byte
+     *
+     * @param bytesToCompress
+     * @param level           压缩级别, 0 ~ 9 或 {@link Deflater#DEFAULT_COMPRESSION}
+     * @return
+     */
+    public static byte[] compressForDeflate(byte[] bytesToCompress, int level) {
+        return compress(bytesToCompress, FORMAT_DEFLATE, level);
+    }
+    
+    /**
+     * 返回一个边写边以 gzip 格式压缩的 {@link Sink}, 压缩后的数据写入 {@code sink}
+     * 必须调用 {@link Sink#close()} 才会写入剩余的压缩数据和 gzip 尾部, 同时会关闭 {@code sink}
+     *
+     * @param sink  压缩后的数据写入的 {@link Sink}
+     * @param level 压缩级别, 0 ~ 9 或 {@link Deflater#DEFAULT_COMPRESSION}
+     * @return 压缩用的 {@link Sink}
+     * @see #compressSink(Sink, int, int)
+     */
+    public static Sink gzipSink(Sink sink, int level) {
+        return compressSink(sink, FORMAT_GZIP, level);
+    }
+    
+    /**
+     * 返回一个边写边压缩的 {@link Sink}, 压缩后的数据写入 {@code sink}
+     * <p>
+     * 内部使用的 {@link Deflater} 从一个小型的池中获取, {@link Sink#close()} 时 (包括写入失败后) 会被重置后放回池中复用
+     * 所以必须调用 {@link Sink#close()} 才会写入剩余的压缩数据 (以及 gzip 尾部), 同时会关闭 {@code sink}
+     * 为了兼容 API 19 以下的版本, {@link Sink#flush()} 只会刷新已经压缩出的数据, 不会强制 {@link Deflater} 输出缓冲中的数据
+     *
+     * @param sink   压缩后的数据写入的 {@link Sink}
+     * @param format 压缩格式, {@link #FORMAT_GZIP}, {@link #FORMAT_ZLIB} 或 {@link #FORMAT_DEFLATE}
+     * @param level  压缩级别, 0 ~ 9 或 {@link Deflater#DEFAULT_COMPRESSION}
+     * @return 压缩用的 {@link Sink}
+     */
+    public static Sink compressSink(Sink sink, int format, int level) {
+        if (format != FORMAT_GZIP && format != FORMAT_ZLIB && format != FORMAT_DEFLATE) {
+            throw new IllegalArgumentException("Unknown format: " + format);
+        }
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        return new CompressingSink(Okio.buffer(sink), format, level);
+    }
+    
+    private static byte[] compress(byte[] bytesToCompress, int format, int level) {
+        final Buffer buffer = new Buffer();
+        final Sink sink = compressSink(buffer, format, level);
+        try {
+            sink.write(new Buffer().write(bytesToCompress), bytesToCompress.length);
+            sink.close();
+            return buffer.readByteArray();
+        } catch (IOException e) {
+            //写入 Buffer 不会发生 IOException
+            throw new AssertionError(e);
+        }
+    }
+    
+    private static synchronized Deflater obtainDeflater(int level, boolean nowrap) {
+        final ArrayDeque<Deflater> pool = nowrap ? sNowrapDeflaterPool : sDeflaterPool;
+        final Deflater deflater = pool.poll();
+        if (deflater == null) {
+            return new Deflater(level, nowrap);
+        }
+        deflater.setLevel(level);
+        return deflater;
+    }
+    
+    /**
+     * 返回池中空闲的 {@link Deflater}, 仅用于测试
+     */
+    static synchronized List<Deflater> pooledDeflaters(boolean nowrap) {
+        return new ArrayList<>(nowrap ? sNowrapDeflaterPool : sDeflaterPool);
+    }
+    
+    private static synchronized void recycleDeflater(Deflater deflater, boolean nowrap) {
+        final ArrayDeque<Deflater> pool = nowrap ? sNowrapDeflaterPool : sDeflaterPool;
+        if (pool.size() < MAX_POOLED_DEFLATERS) {
+            deflater.reset();
+            pool.offer(deflater);
+        } else {
+            deflater.end();
+        }
+    }
+    
     /**
      * gzip decompress 2 string
      *
@@ -234,28 +299,115 @@ public class ZipHelper {
      * @return
      */
     public static String decompressForGzip(byte[] compressed, String charsetName) {
-        final int BUFFER_SIZE = compressed.length;
-        GZIPInputStream gis = null;
-        ByteArrayInputStream is = null;
         try {
-            is = new ByteArrayInputStream(compressed);
-            gis = new GZIPInputStream(is, BUFFER_SIZE);
-            StringBuilder string = new StringBuilder();
-            byte[] data = new byte[BUFFER_SIZE];
-            int bytesRead;
-            while ((bytesRead = gis.read(data)) != -1) {
-                string.append(new String(data, 0, bytesRead, charsetName));
-            }
-            return string.toString();
+            return decompressToString(new Buffer().write(compressed), ENCODING_GZIP, Charset.forName(charsetName));
         } catch (IOException e) {
             e.printStackTrace();
-        } finally {
-            closeQuietly(gis);
-            closeQuietly(is);
         }
         return null;
     }
     
+    /**
+     * 根据 {@code Content-Encoding} 包装一个边读边解压的 {@link Source}, 解压出的数据直接写入调用方传入的 {@link Buffer}
+     * 由于 {@link Buffer} 的内存来自 okio 的 Segment 池, 解压过程中不会为每次读取分配新的 {@code byte[]}
+     * <p>
+     * 支持 {@code gzip}, {@code zlib} 和 {@code deflate} (与 zlib 相同, 带 zlib 头), 其他压缩方式或 {@code null} 会直接返回 {@code source}
+     * 关闭返回的 {@link Source} 时会释放 {@link Inflater} 并关闭 {@code source}
+     *
+     * @param source          压缩过的内容
+     * @param contentEncoding 压缩类型, 即 {@code Content-Encoding}
+     * @return 解压后的 {@link Source}
+     */
+    public static Source decompressSource(Source source, @Nullable String contentEncoding) {
+        if (ENCODING_GZIP.equalsIgnoreCase(contentEncoding)) {
+            return new GzipSource(source);
+        } else if (ENCODING_ZLIB.equalsIgnoreCase(contentEncoding) || ENCODING_DEFLATE.equalsIgnoreCase(contentEncoding)) {
+            return new InflaterSource(source, new Inflater());
+        }
+        return source;
+    }
+    
+    /**
+     * 是否为 {@link #decompressSource(Source, String)} 可以解压的压缩类型
+     *
+     * @param contentEncoding 压缩类型, 即 {@code Content-Encoding}
+     * @return {@code true} 为可以解压
+     */
+    public static boolean isDecompressible(@Nullable String contentEncoding) {
+        return ENCODING_GZIP.equalsIgnoreCase(contentEncoding) || ENCODING_ZLIB.equalsIgnoreCase(contentEncoding)
+            || ENCODING_DEFLATE.equalsIgnoreCase(contentEncoding);
+    }
+    
+    /**
+     * 边解压边解码, 将压缩过的内容转换为字符串, 读取完毕后会关闭 {@code source}
+     *
+     * @param source          压缩过的内容
+     * @param contentEncoding 压缩类型, 即 {@code Content-Encoding}, 不支持的类型会当作未压缩处理
+     * @param charset         内容的字符集
+     * @return 解压后的字符串
+     * @throws IOException 内容不完整或格式错误
+     * @see #decompressSource(Source, String)
+     * @see #readString(Source, Charset)
+     */
+    public static String decompressToString(Source source, @Nullable String contentEncoding, Charset charset) throws IOException {
+        if (!isDecompressible(contentEncoding) && source instanceof Buffer) {
+            return ((Buffer) source).readString(charset);
+        }
+        return readString(decompressSource(source, contentEncoding), charset);
+    }
+    
+    /**
+     * 从 {@code source} 中分块读取并增量解码为字符串, 读取完毕后会关闭 {@code source}
+     * <p>
+     * 使用 {@link CharsetDecoder} 解码, 被分块截断的多字节字符会留到下一块一起解码, 不会出现乱码
+     * 无法解码的字节会被替换为替换字符
+     *
+     * @param source  需要读取的内容
+     * @param charset 内容的字符集
+     * @return 解码后的字符串
+     * @throws IOException
+     */
+    public static String readString(Source source, Charset charset) throws IOException {
+        final BufferedSource bufferedSource = Okio.buffer(source);
+        try {
+            final CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+            final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+            final StringBuilder builder = new StringBuilder();
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                final int read = bufferedSource.read(bytes.array(), bytes.position(), bytes.remaining());
+                if (read == -1) {
+                    endOfInput = true;
+                } else {
+                    bytes.position(bytes.position() + read);
+                }
+                bytes.flip();
+                CoderResult result;
+                do {
+                    result = decoder.decode(bytes, chars, endOfInput);
+                    drain(chars, builder);
+                } while (result.isOverflow());
+                bytes.compact();
+            }
+            while (decoder.flush(chars).isOverflow()) {
+                drain(chars, builder);
+            }
+            drain(chars, builder);
+            return builder.toString();
+        } finally {
+            closeQuietly(bufferedSource);
+        }
+    }
+    
+    private static void drain(CharBuffer chars, StringBuilder builder) {
+        chars.flip();
+        builder.append(chars);
+        chars.clear();
+    }
+    
     public static void closeQuietly(Closeable closeable) {
         if (closeable != null) {
             try {
@@ -266,4 +418,121 @@ public class ZipHelper {
             }
         }
     }
+    
+    /**
+     * 边写边压缩的 {@link Sink}, 与 okio 的 {@link okio.DeflaterSink} 不同, 关闭时不会 {@link Deflater#end()} 而是放回池中复用
+     */
+    private static final class CompressingSink implements Sink {
+        private final BufferedSink sink;
+        private final int format;
+        private final boolean nowrap;
+        private final Deflater deflater;
+        private final CRC32 crc = new CRC32();
+        private final byte[] input = new byte[BUFFER_SIZE];
+        private final byte[] output = new byte[BUFFER_SIZE];
+        private long size;
+        private boolean headerWritten;
+        private boolean closed;
+        
+        CompressingSink(BufferedSink sink, int format, int level) {
+            this.sink = sink;
+            this.format = format;
+            this.nowrap = format != FORMAT_ZLIB;
+            this.deflater = obtainDeflater(level, nowrap);
+        }
+        
+        private void writeHeader() throws IOException {
+            if (headerWritten) {
+                return;
+            }
+            headerWritten = true;
+            if (format == FORMAT_GZIP) {
+                sink.writeShort(0x1f8b);//ID1 ID2
+                sink.writeByte(8);//CM, deflate
+                sink.writeByte(0);//FLG
+                sink.writeInt(0);//MTIME
+                sink.writeByte(0);//XFL
+                sink.writeByte(0);//OS
+            }
+        }
+        
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            if (closed) {
+                throw new IllegalStateException("closed");
+            }
+            writeHeader();
+            while (byteCount > 0) {
+                final int read = source.read(input, 0, (int) Math.min(byteCount, BUFFER_SIZE));
+                if (read == -1) {
+                    throw new EOFException();
+                }
+                if (format == FORMAT_GZIP) {
+                    crc.update(input, 0, read);
+                    size += read;
+                }
+                deflater.setInput(input, 0, read);
+                while (!deflater.needsInput()) {
+                    deflate();
+                }
+                byteCount -= read;
+            }
+        }
+        
+        private void deflate() throws IOException {
+            final int deflated = deflater.deflate(output, 0, output.length);
+            if (deflated > 0) {
+                sink.write(output, 0, deflated);
+                sink.emitCompleteSegments();
+            }
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            sink.flush();
+        }
+        
+        @Override
+        public Timeout timeout() {
+            return sink.timeout();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Throwable thrown = null;
+            try {
+                writeHeader();
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflate();
+                }
+                if (format == FORMAT_GZIP) {
+                    sink.writeIntLe((int) crc.getValue());
+                    sink.writeIntLe((int) size);
+                }
+            } catch (Throwable e) {
+                thrown = e;
+            }
+            //写入失败时 Deflater 本身依然可用, reset 后与新建的状态相同, 同样放回池中
+            recycleDeflater(deflater, nowrap);
+            try {
+                sink.close();
+            } catch (Throwable e) {
+                if (thrown == null) {
+                    thrown = e;
+                }
+            }
+            if (thrown instanceof IOException) {
+                throw (IOException) thrown;
+            } else if (thrown instanceof RuntimeException) {
+                throw (RuntimeException) thrown;
+            } else if (thrown instanceof Error) {
+                throw (Error) thrown;
+            }
+        }
+    }
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http;
+
+import com.jess.arms.utils.ZipHelper;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class GzipRequestBodyTest {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    
+    @Test
+    public void writeTo_roundTrips() throws IOException {
+        final String json = largeJson();
+        final GzipRequestBody body = new GzipRequestBody(RequestBody.create(JSON, json));
+        assertEquals(JSON, body.contentType());
+        assertEquals(-1, body.contentLength());
+        
+        final Buffer out = new Buffer();
+        body.writeTo(out);
+        final byte[] gzip = out.readByteArray();
+        assertEquals(true, gzip.length < json.length());
+        assertEquals(json, ZipHelper.decompressForGzip(gzip));
+        
+        //同一个请求体可以再次写入 (比如重试时)
+        body.writeTo(out);
+        assertEquals(json, ZipHelper.decompressForGzip(out.readByteArray()));
+    }
+    
+    @Test
+    public void writeTo_roundTripsAtEveryLevel() throws IOException {
+        final String json = largeJson();
+        for (int level = Deflater.NO_COMPRESSION; level <= Deflater.BEST_COMPRESSION; level++) {
+            final Buffer out = new Buffer();
+            new GzipRequestBody(RequestBody.create(JSON, json), level).writeTo(out);
+            assertEquals("level " + level, json, ZipHelper.decompressForGzip(out.readByteArray()));
+        }
+    }
+    
+    @Test
+    public void writeTo_failureDoesNotWriteTrailerOrCloseSink() throws IOException {
+        final boolean[] closed = new boolean[1];
+        final Buffer out = new Buffer();
+        final BufferedSink sink = Okio.buffer(new ForwardingSink(out) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        });
+        final RequestBody failing = new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return JSON;
+            }
+            
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                sink.writeUtf8(largeJson());
+                throw new IOException("source failed");
+            }
+        };
+        try {
+            new GzipRequestBody(failing).writeTo(sink);
+            fail();
+        } catch (IOException expected) {
+            assertEquals("source failed", expected.getMessage());
+        }
+        
+        assertFalse(closed[0]);
+        //已发出的部分数据没有 gzip 尾部, 无法被解压成一个完整的请求体
+        out.writeAll(sink.buffer());
+        assertNull(ZipHelper.decompressForGzip(out.readByteArray()));
+    }
+    
+    private static String largeJson() {
+        final StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < 5000; i++) {
+            builder.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"用户").append(i).append("\"}");
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.limit;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveLimiterTest {
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(100);
+    private final Call call = new OkHttpClient().newCall(new Request.Builder().url("http://localhost/").build());
+    
+    @Test
+    public void acquire_rejectsAboveLimitWithoutQueue() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(LimitConfig.builder().limit(2, 1, 10).queue(0, 0).build());
+        assertTrue(limiter.acquire(call));
+        assertTrue(limiter.acquire(call));
+        assertFalse(limiter.acquire(call));
+        
+        //onIgnored 只归还名额, 不改变上限
+        limiter.onIgnored();
+        assertEquals(2, limiter.getLimit());
+        assertTrue(limiter.acquire(call));
+        assertFalse(limiter.acquire(call));
+    }
+    
+    @Test
+    public void onDropped_backsOffDownToMinLimit() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(LimitConfig.builder().limit(8, 2, 10).backoffRatio(0.5)
+            .queue(0, 0).build());
+        assertTrue(limiter.acquire(call));
+        limiter.onDropped();
+        assertEquals(4, limiter.getLimit());
+        assertTrue(limiter.acquire(call));
+        limiter.onDropped();
+        assertEquals(2, limiter.getLimit());
+        assertTrue(limiter.acquire(call));
+        limiter.onDropped();
+        assertEquals(2, limiter.getLimit());
+    }
+    
+    @Test
+    public void aimd_growsOnlyWhenSaturated() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(LimitConfig.builder().algorithm(LimitConfig.Algorithm.AIMD)
+            .limit(2, 1, 10).queue(0, 0).build());
+        saturate(limiter);
+        limiter.onSuccess(RTT);
+        assertEquals(3, limiter.getLimit());
+        
+        //只有一个请求在进行中, 并发数不到上限的一半, 不再提高上限
+        limiter.onSuccess(RTT);
+        limiter.onSuccess(RTT);
+        assertEquals(3, limiter.getLimit());
+    }
+    
+    @Test
+    public void aimd_backsOffWhenRttExceedsTolerance() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(LimitConfig.builder().algorithm(LimitConfig.Algorithm.AIMD)
+            .limit(10, 1, 10).rttTolerance(2).backoffRatio(0.5).queue(0, 0).build());
+        for (int i = 0; i < 5; i++) {
+            saturate(limiter);
+            limiter.onSuccess(RTT);
+        }
+        assertEquals(10, limiter.getLimit());
+        
+        saturate(limiter);
+        limiter.onSuccess(RTT * 10);
+        assertEquals(5, limiter.getLimit());
+    }
+    
+    @Test
+    public void gradient_growsWhileRttIsStable() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(LimitConfig.builder().limit(4, 1, 32).queue(0, 0).build());
+        for (int i = 0; i < 20; i++) {
+            saturate(limiter);
+            limiter.onSuccess(RTT);
+        }
+        assertTrue(String.valueOf(limiter.getLimit()), limiter.getLimit() > 8);
+    }
+    
+    @Test
+    public void gradient_shrinksWhenRttRises() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(LimitConfig.builder().limit(16, 1, 32).queue(0, 0).build());
+        for (int i = 0; i < 50; i++) {
+            saturate(limiter);
+            limiter.onSuccess(RTT);
+        }
+        final int stable = limiter.getLimit();
+        for (int i = 0; i < 10; i++) {
+            saturate(limiter);
+            limiter.onSuccess(RTT * 10);
+        }
+        assertTrue(limiter.getLimit() + " >= " + stable, limiter.getLimit() < stable);
+        assertTrue(limiter.getLimit() >= 1);
+    }
+    
+    @Test
+    public void queuedAcquire_isWokenByRelease() throws Exception {
+        final AdaptiveLimiter limiter = new AdaptiveLimiter(LimitConfig.builder().limit(1, 1, 1).queue(5000, 1).build());
+        assertTrue(limiter.acquire(call));
+        final AtomicBoolean acquired = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    acquired.set(limiter.acquire(call));
+                } catch (Exception ignored) {
+                } finally {
+                    done.countDown();
+                }
+            }
+        }).start();
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+        
+        limiter.onSuccess(RTT);
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertTrue(acquired.get());
+    }
+    
+    /**
+     * 占满所有名额, 使下一次 onSuccess 时的并发数等于上限
+     */
+    private void saturate(AdaptiveLimiter limiter) throws Exception {
+        //noinspection StatementWithEmptyBody
+        while (limiter.acquire(call)) {
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.limit;
+
+import com.jess.arms.integration.metrics.MetricsRegistry;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ConcurrencyLimitInterceptorTest {
+    private final ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor(
+        LimitConfig.builder().limit(1, 1, 1).queue(0, 0).build(),
+        Collections.<String, LimitConfig>emptyMap(), MetricsRegistry.getInstance());
+    private final OkHttpClient client = new OkHttpClient.Builder()
+        .addInterceptor(interceptor)
+        .addInterceptor(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) {
+                //不访问网络, 直接返回响应
+                return new Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(ResponseBody.create(MediaType.get("text/plain"), "body"))
+                    .build();
+            }
+        })
+        .build();
+    
+    @Test
+    public void permit_isHeldUntilBodyIsConsumed() throws IOException {
+        Response response = execute();
+        //响应头已经返回, 但响应体还未读取, 名额依然被占用
+        try {
+            execute();
+            fail();
+        } catch (LimitExceededException e) {
+            assertEquals("limit.test", e.getHost());
+        }
+        
+        assertEquals("body", response.body().string());
+        execute().close();
+    }
+    
+    @Test
+    public void permit_isReleasedWhenBodyIsClosedUnread() throws IOException {
+        execute().close();
+        execute().close();
+    }
+    
+    private Response execute() throws IOException {
+        return client.newCall(new Request.Builder().url("http://limit.test/").build()).execute();
+    }
+}
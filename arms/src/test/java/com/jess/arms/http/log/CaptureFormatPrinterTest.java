@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.log;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.Request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CaptureFormatPrinterTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void responses_carryTheCallIdOfTheirRequest() throws Exception {
+        final CaptureFormatPrinter printer = new CaptureFormatPrinter(folder.getRoot());
+        final Request first = new Request.Builder().url("https://example.com/a").build();
+        final Request second = new Request.Builder().url("https://example.com/a").build();
+        printer.printFileRequest(first);
+        printer.printFileRequest(second);
+        //同一 url 的两个请求以相反的顺序收到响应, 第二个响应还被重定向到了另一个 url
+        printer.printFileResponse(second, 10, true, 200, "", Collections.emptyList(), "OK", "https://example.com/b");
+        printer.printFileResponse(first, 20, false, 500, "", Collections.emptyList(), "Error", "https://example.com/a");
+        printer.printFileResponse(20, true, 200, "", Collections.emptyList(), "OK", "https://example.com/c");
+        
+        final List<CaptureRecord> records = awaitRecords(printer, 5);
+        final CaptureRecord firstRequest = records.get(0);
+        final CaptureRecord secondRequest = records.get(1);
+        assertNotEquals(firstRequest.callId, secondRequest.callId);
+        assertEquals(secondRequest.callId, records.get(2).callId);
+        assertEquals(200, records.get(2).code);
+        assertEquals(firstRequest.callId, records.get(3).callId);
+        assertEquals(500, records.get(3).code);
+        //没有 Request 的响应无法配对
+        assertEquals(CaptureRecord.NO_CALL_ID, records.get(4).callId);
+    }
+    
+    @Test
+    public void records_redactQueryParameters() throws Exception {
+        final CaptureFormatPrinter printer = new CaptureFormatPrinter(folder.getRoot(), CaptureFormatPrinter.DEFAULT_FILE_BYTES,
+            CaptureFormatPrinter.DEFAULT_MAX_FILES, 16, new HttpRedactor.Builder().bodyField("token").build());
+        printer.printFileRequest(new Request.Builder().url("https://example.com/a?token=abc&page=1").build());
+        
+        assertEquals("https://example.com/a?token=***&page=1", awaitRecords(printer, 1).get(0).url);
+    }
+    
+    /**
+     * 读取抓包文件中的记录, 直到读到 {@code count} 条
+     */
+    private static List<CaptureRecord> awaitRecords(CaptureFormatPrinter printer, int count) throws Exception {
+        final long deadline = System.currentTimeMillis() + 5000;
+        List<CaptureRecord> records = Collections.emptyList();
+        while (System.currentTimeMillis() < deadline) {
+            records = readRecords(printer.getCaptureFiles());
+            if (records.size() >= count) {
+                return records;
+            }
+            Thread.sleep(10);
+        }
+        assertTrue("Only " + records.size() + " records", records.size() >= count);
+        return records;
+    }
+    
+    private static List<CaptureRecord> readRecords(List<File> files) throws IOException {
+        final List<CaptureRecord> records = new ArrayList<>();
+        for (File file : files) {
+            final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            int position = 0;
+            while (position + CaptureFormatPrinter.RECORD_HEADER_SIZE <= buffer.limit()
+                && buffer.getInt(position) == CaptureFormatPrinter.RECORD_MAGIC) {
+                final byte[] payload = new byte[buffer.getInt(position + 4)];
+                buffer.position(position + CaptureFormatPrinter.RECORD_HEADER_SIZE);
+                buffer.get(payload);
+                position += CaptureFormatPrinter.RECORD_HEADER_SIZE + payload.length;
+                records.add(CaptureRecord.decode(payload));
+            }
+        }
+        return records;
+    }
+}
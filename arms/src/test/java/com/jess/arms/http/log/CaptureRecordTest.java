@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.log;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class CaptureRecordTest {
+    
+    @Test
+    public void encodeDecode_roundTripsEveryField() throws EOFException {
+        final CaptureRecord record = new CaptureRecord(CaptureRecord.TYPE_RESPONSE, 42, 1500000000123L, 87, 404, false,
+            "Not Found", "https://example.com/a?b=c", "Content-Type: application/json\nX-Id: 1\n",
+            "application/json; charset=utf-8", "{\"error\":\"missing\"}");
+        final CaptureRecord decoded = CaptureRecord.decode(record.encode());
+        
+        assertEquals(CaptureRecord.TYPE_RESPONSE, decoded.type);
+        assertEquals(42, decoded.callId);
+        assertEquals(1500000000123L, decoded.timestamp);
+        assertEquals(87, decoded.chainMs);
+        assertEquals(404, decoded.code);
+        assertEquals(false, decoded.successful);
+        assertEquals("Not Found", decoded.message());
+        assertEquals("https://example.com/a?b=c", decoded.url);
+        assertEquals("Content-Type: application/json\nX-Id: 1\n", decoded.headers);
+        assertEquals("application/json; charset=utf-8", decoded.contentType);
+        assertEquals("{\"error\":\"missing\"}", decoded.body);
+    }
+    
+    @Test
+    public void encodeDecode_keepsNullAndEmptyStringsApart() throws EOFException {
+        final CaptureRecord record = new CaptureRecord(CaptureRecord.TYPE_REQUEST, CaptureRecord.NO_CALL_ID, 0, 0, 0, true,
+            "GET", "https://example.com/", "", null, "");
+        final CaptureRecord decoded = CaptureRecord.decode(record.encode());
+        
+        assertEquals(CaptureRecord.TYPE_REQUEST, decoded.type);
+        assertEquals(CaptureRecord.NO_CALL_ID, decoded.callId);
+        assertEquals(true, decoded.successful);
+        assertEquals("", decoded.headers);
+        assertNull(decoded.contentType);
+        assertEquals("", decoded.body);
+    }
+    
+    @Test
+    public void encodeDecode_keepsMultibyteText() throws EOFException {
+        final String body = "{\"name\":\"中文 😀 é\"}";
+        final CaptureRecord record = new CaptureRecord(CaptureRecord.TYPE_REQUEST, 1, 0, 0, 0, false,
+            "POST", "https://example.com/用户", "X-Name: 值\n", "application/json", body);
+        final CaptureRecord decoded = CaptureRecord.decode(record.encode());
+        
+        assertEquals(body, decoded.body);
+        assertEquals("https://example.com/用户", decoded.url);
+        assertEquals("X-Name: 值\n", decoded.headers);
+    }
+    
+    @Test
+    public void decode_truncatedRecordThrows() {
+        final byte[] bytes = new CaptureRecord(CaptureRecord.TYPE_REQUEST, 1, 0, 0, 0, false,
+            "GET", "https://example.com/", "", null, "body").encode();
+        try {
+            CaptureRecord.decode(Arrays.copyOf(bytes, bytes.length - 1));
+            fail();
+        } catch (EOFException expected) {
+        }
+    }
+}
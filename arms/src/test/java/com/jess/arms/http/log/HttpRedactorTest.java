@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.log;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HttpRedactorTest {
+    private final HttpRedactor redactor = new HttpRedactor.Builder()
+        .header("Authorization")
+        .bodyField("token")
+        .bodyField("password")
+        .build();
+    
+    @Test
+    public void redactUrl_hidesConfiguredQueryParameters() {
+        assertEquals("https://example.com/login?token=***&page=2&password=***",
+            redactor.redactUrl("https://example.com/login?token=abc&page=2&password=p%40ss"));
+        assertEquals("https://example.com/a?page=1&token=***#top",
+            redactor.redactUrl("https://example.com/a?page=1&token=abc#top"));
+    }
+    
+    @Test
+    public void redactUrl_matchesWholeParameterNamesOnly() {
+        assertEquals("https://example.com/a?access_token=abc&tokens=1",
+            redactor.redactUrl("https://example.com/a?access_token=abc&tokens=1"));
+        //路径中的同名片段不是查询参数
+        assertEquals("https://example.com/token=abc", redactor.redactUrl("https://example.com/token=abc"));
+    }
+    
+    @Test
+    public void redactUrl_withoutBodyFieldsReturnsUrl() {
+        final String url = "https://example.com/a?token=abc";
+        assertEquals(url, HttpRedactor.DEFAULT.redactUrl(url));
+    }
+    
+    @Test
+    public void redactHeaders_hidesConfiguredHeadersIgnoringCase() {
+        assertEquals("authorization: ***\nAccept: */*\n",
+            redactor.redactHeaders("authorization: Bearer abc\nAccept: */*\n"));
+        assertTrue(redactor.isRedactedHeader("AUTHORIZATION"));
+        assertFalse(redactor.isRedactedHeader("Accept"));
+    }
+    
+    @Test
+    public void redactBody_hidesJsonFieldsAndFormParameters() {
+        assertEquals("{\"user\":{\"token\": \"***\",\"age\":1},\"password\":\"***\"}",
+            redactor.redactBody("{\"user\":{\"token\": \"a\\\"b\",\"age\":1},\"password\":123}"));
+        assertEquals("token=***&name=jess", redactor.redactBody("token=abc&name=jess"));
+    }
+}
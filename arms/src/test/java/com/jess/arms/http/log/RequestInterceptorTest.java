@@ -0,0 +1,250 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.http.log;
+
+import com.jess.arms.utils.ZipHelper;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RequestInterceptorTest {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private final RecordingPrinter printer = new RecordingPrinter();
+    
+    @Test
+    public void capture_fullReadWithinLimit() throws IOException {
+        final String json = json(100);
+        final Response response = intercept(json, 64 * 1024);
+        assertEquals(0, printer.bodies.size());
+        
+        assertEquals(json, response.body().string());
+        assertEquals(1, printer.bodies.size());
+        assertEquals(json, printer.bodies.get(0));
+    }
+    
+    @Test
+    public void capture_fullReadOverLimitIsTruncated() throws IOException {
+        final String json = json(5000);
+        final Response response = intercept(json, 1000);
+        
+        //调用方读取到的始终是完整的响应体
+        assertEquals(json, response.body().string());
+        assertEquals(json.substring(0, 1000) + "\n...(truncated, capture limit 1000 bytes)", printer.bodies.get(0));
+    }
+    
+    @Test
+    public void capture_partialReadLogsOnlyConsumedBytes() throws IOException {
+        final String json = json(5000);
+        final Response response = intercept(json, 64 * 1024);
+        final BufferedSource source = response.body().source();
+        //BufferedSource 会从 CapturingSource 预读 8KB, 日志中只能包含真正被读取的 10 个字节
+        assertEquals(json.substring(0, 10), source.readUtf8(10));
+        response.close();
+        
+        assertEquals(1, printer.bodies.size());
+        assertEquals(json.substring(0, 10) + "\n...(response body closed after 10 bytes)", printer.bodies.get(0));
+    }
+    
+    @Test
+    public void capture_partialReadBeyondLimit() throws IOException {
+        final String json = json(5000);
+        final Response response = intercept(json, 100);
+        assertEquals(json.substring(0, 20000), response.body().source().readUtf8(20000));
+        response.close();
+        
+        assertEquals(json.substring(0, 100) + "\n...(response body closed after 20000 bytes)", printer.bodies.get(0));
+    }
+    
+    @Test
+    public void capture_unreadBodyLogsNothingConsumed() throws IOException {
+        final Response response = intercept(json(100), 64 * 1024);
+        response.close();
+        
+        assertEquals(1, printer.bodies.size());
+        assertEquals("\n...(response body closed after 0 bytes)", printer.bodies.get(0));
+        //关闭多次只打印一次
+        response.close();
+        assertEquals(1, printer.bodies.size());
+    }
+    
+    @Test
+    public void capture_gzipBodyIsDecompressed() throws IOException {
+        final String json = json(2000);
+        final Buffer gzip = new Buffer().write(ZipHelper.compressForGzip(json));
+        final Response response = proceed(new Response.Builder()
+            .header("Content-Encoding", "gzip")
+            .body(ResponseBody.create(JSON, gzip.size(), gzip)), 64 * 1024);
+        
+        assertEquals(json, ZipHelper.decompressForGzip(response.body().bytes()));
+        assertEquals(json, printer.bodies.get(0));
+    }
+    
+    @Test
+    public void capturingSource_capturesExactlyWhatWasConsumed() throws IOException {
+        //多字节字符会被读取的边界截断, 按字节比较
+        final String text = "中文😀" + json(3000);
+        final List<ByteString> captured = new ArrayList<>();
+        final long[] consumed = new long[1];
+        final RequestInterceptor.CapturingSource source = new RequestInterceptor.CapturingSource(
+            new Buffer().writeUtf8(text), 1024 * 1024) {
+            @Override
+            void onCaptured(Buffer buffer, long bytes, boolean complete) {
+                assertTrue(!complete);
+                captured.add(buffer.readByteString());
+                consumed[0] = bytes;
+            }
+        };
+        final BufferedSource consumer = source.buffer();
+        final Buffer read = new Buffer();
+        //不同大小的多次读取, 跨越多个 Segment
+        for (int size : new int[]{1, 7, 8192, 3, 9000}) {
+            consumer.readFully(read, size);
+        }
+        consumer.close();
+        
+        assertEquals(1, captured.size());
+        assertEquals(read.size(), consumed[0]);
+        assertEquals(read.readByteString(), captured.get(0));
+    }
+    
+    private Response intercept(String body, long captureLimit) throws IOException {
+        return proceed(new Response.Builder().body(ResponseBody.create(JSON, body)), captureLimit);
+    }
+    
+    private Response proceed(final Response.Builder builder, long captureLimit) throws IOException {
+        final RequestInterceptor interceptor = new RequestInterceptor();
+        interceptor.mPrinter = printer;
+        interceptor.printLevel = RequestInterceptor.Level.RESPONSE;
+        interceptor.mCaptureLimit = captureLimit;
+        final Request request = new Request.Builder().url("https://example.com/users").build();
+        return interceptor.intercept(new FakeChain(request, builder.request(request).protocol(Protocol.HTTP_1_1)
+            .code(200).message("OK").build()));
+    }
+    
+    private static String json(int items) {
+        final StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < items; i++) {
+            builder.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"user").append(i).append("\"}");
+        }
+        return builder.append(']').toString();
+    }
+    
+    private static final class RecordingPrinter implements FormatPrinter {
+        final List<String> bodies = new ArrayList<>();
+        
+        @Override
+        public void printJsonRequest(@NonNull Request request, @NonNull String bodyString) {
+        }
+        
+        @Override
+        public void printFileRequest(@NonNull Request request) {
+        }
+        
+        @Override
+        public void printJsonResponse(long chainMs, boolean isSuccessful, int code, @NonNull String headers,
+                                      @Nullable MediaType contentType, @Nullable String bodyString, @NonNull List<String> segments,
+                                      @NonNull String message, @NonNull String responseUrl) {
+            bodies.add(bodyString);
+        }
+        
+        @Override
+        public void printFileResponse(long chainMs, boolean isSuccessful, int code, @NonNull String headers,
+                                      @NonNull List<String> segments, @NonNull String message, @NonNull String responseUrl) {
+        }
+    }
+    
+    private static final class FakeChain implements Interceptor.Chain {
+        private final Request request;
+        private final Response response;
+        
+        FakeChain(Request request, Response response) {
+            this.request = request;
+            this.response = response;
+        }
+        
+        @Override
+        public Request request() {
+            return request;
+        }
+        
+        @Override
+        public Response proceed(Request request) {
+            return response;
+        }
+        
+        @Nullable
+        @Override
+        public Connection connection() {
+            return null;
+        }
+        
+        @Override
+        public Call call() {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public int connectTimeoutMillis() {
+            return 0;
+        }
+        
+        @Override
+        public Interceptor.Chain withConnectTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+        
+        @Override
+        public int readTimeoutMillis() {
+            return 0;
+        }
+        
+        @Override
+        public Interceptor.Chain withReadTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+        
+        @Override
+        public int writeTimeoutMillis() {
+            return 0;
+        }
+        
+        @Override
+        public Interceptor.Chain withWriteTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+    }
+}
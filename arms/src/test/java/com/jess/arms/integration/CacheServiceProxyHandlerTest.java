@@ -0,0 +1,226 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration;
+
+import com.jess.arms.integration.cache.CachePolicy;
+import com.jess.arms.integration.cache.DiskCache;
+import com.jess.arms.integration.cache.LifeCache;
+import com.jess.arms.integration.cache.LruCache;
+import com.jess.arms.integration.cache.ResponseCache;
+import com.jess.arms.integration.cache.SerializableCodec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CacheServiceProxyHandlerTest {
+    private static final String KEY = UserCache.class.getCanonicalName() + "#getUser:1";
+    private final AtomicInteger requests = new AtomicInteger();
+    private LruCache<String, Object> memory;
+    private ResponseCache responseCache;
+    private UserCache service;
+    private File directory;
+    
+    @Before
+    public void setUp() throws IOException {
+        memory = new LruCache<>(10);
+        responseCache = new ResponseCache(memory, null);
+        service = create(responseCache);
+        directory = File.createTempFile("response-cache", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdirs());
+    }
+    
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        directory.delete();
+    }
+    
+    @Test
+    public void networkOnly_skipsCacheAndStoresResult() {
+        seed(false);
+        service.getUser(network("new"), 1, CachePolicy.NETWORK_ONLY).test().assertValues("new");
+        assertEquals(1, requests.get());
+        assertEquals("new", responseCache.get(KEY).getValue());
+    }
+    
+    @Test
+    public void cacheFirst_freshCacheSkipsNetwork() {
+        seed(false);
+        service.getUser(network("new"), 1, CachePolicy.CACHE_FIRST).test().assertValues("cached");
+        assertEquals(0, requests.get());
+    }
+    
+    @Test
+    public void cacheFirst_expiredCacheRequestsNetwork() {
+        seed(true);
+        service.getUser(network("new"), 1, CachePolicy.CACHE_FIRST).test().assertValues("new");
+        assertEquals(1, requests.get());
+        assertEquals("new", responseCache.get(KEY).getValue());
+    }
+    
+    @Test
+    public void cacheFirst_networkErrorFallsBackToExpiredCache() {
+        seed(true);
+        service.getUser(Observable.<String>error(new InterruptedIOException()), 1, CachePolicy.CACHE_FIRST)
+            .test()
+            .assertValues("cached")
+            .assertComplete();
+    }
+    
+    @Test
+    public void cacheFirst_missRequestsNetwork() {
+        service.getUser(network("new"), 1, CachePolicy.CACHE_FIRST).test().assertValues("new");
+        assertEquals(1, requests.get());
+        //不同的参数使用不同的 key
+        service.getUser(network("other"), 2, CachePolicy.CACHE_FIRST).test().assertValues("other");
+        assertEquals(2, requests.get());
+    }
+    
+    @Test
+    public void cacheThenNetwork_emitsCacheThenNetwork() {
+        seed(false);
+        service.getUser(network("new"), 1, CachePolicy.CACHE_THEN_NETWORK).test().assertValues("cached", "new");
+        assertEquals("new", responseCache.get(KEY).getValue());
+    }
+    
+    @Test
+    public void staleWhileRevalidate_returnsStaleAndRefreshesInBackground() throws InterruptedException {
+        seed(true);
+        final CountDownLatch refreshed = new CountDownLatch(1);
+        Observable<String> source = network("new").doOnComplete(refreshed::countDown);
+        service.getUser(source, 1, CachePolicy.STALE_WHILE_REVALIDATE).test().assertValues("cached");
+        
+        assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+        assertEquals("new", responseCache.get(KEY).getValue());
+        assertEquals(1, requests.get());
+    }
+    
+    @Test
+    public void staleWhileRevalidate_freshCacheSkipsNetwork() {
+        seed(false);
+        service.getUser(network("new"), 1, CachePolicy.STALE_WHILE_REVALIDATE).test().assertValues("cached");
+        assertEquals(0, requests.get());
+    }
+    
+    @Test
+    public void single_usesCache() {
+        seed(UserCache.class.getCanonicalName() + "#getUserSingle:1", false);
+        service.getUserSingle(Single.just("new"), 1, CachePolicy.CACHE_FIRST).test().assertValue("cached");
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void single_rejectsCacheThenNetwork() {
+        service.getUserSingle(Single.just("new"), 1, CachePolicy.CACHE_THEN_NETWORK);
+    }
+    
+    @Test
+    public void firstLookupAfterReopen_hitsDiskCache() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        create(new ResponseCache(new LruCache<String, Object>(10), openDisk(executor)))
+            .getUser(network("new"), 1, CachePolicy.CACHE_FIRST).test().assertValues("new");
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        
+        //模拟进程重启, 磁盘缓存的索引重建被阻塞, 第一次读取需要等待重建完成而不是直接请求网络
+        final CountDownLatch blocked = new CountDownLatch(1);
+        executor = Executors.newSingleThreadExecutor();
+        executor.execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            TestObserver<String> observer = create(new ResponseCache(new LruCache<String, Object>(10), openDisk(executor)))
+                .getUser(network("newer"), 1, CachePolicy.CACHE_FIRST)
+                .subscribeOn(Schedulers.io())
+                .test();
+            assertFalse(observer.awaitTerminalEvent(200, TimeUnit.MILLISECONDS));
+            blocked.countDown();
+            assertTrue(observer.awaitTerminalEvent(5, TimeUnit.SECONDS));
+            observer.assertValues("new");
+            assertEquals(1, requests.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private Observable<String> network(final String value) {
+        return Observable.fromCallable(() -> {
+            requests.incrementAndGet();
+            return value;
+        });
+    }
+    
+    private void seed(boolean expired) {
+        seed(KEY, expired);
+    }
+    
+    /**
+     * 直接向内存缓存写入指定写入时间的缓存, UserCache 的有效期为 1 分钟
+     */
+    private void seed(String key, boolean expired) {
+        final long age = expired ? TimeUnit.MINUTES.toMillis(2) : 0;
+        memory.put(key, new ResponseCache.Entry("cached", System.currentTimeMillis() - age));
+    }
+    
+    private DiskCache<Object> openDisk(ExecutorService executor) {
+        return new DiskCache<>(directory, 1024 * 1024, new SerializableCodec<>(), executor);
+    }
+    
+    private static UserCache create(ResponseCache responseCache) {
+        return (UserCache) Proxy.newProxyInstance(UserCache.class.getClassLoader(), new Class<?>[]{UserCache.class},
+            new CacheServiceProxyHandler(responseCache, UserCache.class));
+    }
+    
+    interface UserCache {
+        
+        @LifeCache(duration = 1)
+        Observable<String> getUser(Observable<String> source, int id, CachePolicy policy);
+        
+        @LifeCache(duration = 1)
+        Single<String> getUserSingle(Single<String> source, int id, CachePolicy policy);
+    }
+}
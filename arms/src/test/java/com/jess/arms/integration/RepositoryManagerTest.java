@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration;
+
+import com.jess.arms.http.priority.Priority;
+import com.jess.arms.http.priority.PriorityExecutor;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import androidx.annotation.NonNull;
+import dagger.Lazy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RepositoryManagerTest {
+    
+    @Test
+    public void warmUpRetrofitServices_runsAtBackgroundPriority() {
+        final RecordingExecutor executor = new RecordingExecutor();
+        final RepositoryManager repositoryManager = newRepositoryManager(executor);
+        try {
+            repositoryManager.warmUpRetrofitServices(Collections.<Class<?>>emptyList(), null);
+            assertEquals(Priority.BACKGROUND, executor.priority);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private static RepositoryManager newRepositoryManager(final ExecutorService executor) {
+        final RepositoryManager repositoryManager = new RepositoryManager();
+        repositoryManager.mExecutorService = new Lazy<ExecutorService>() {
+            @Override
+            public ExecutorService get() {
+                return executor;
+            }
+        };
+        return repositoryManager;
+    }
+    
+    private static final class RecordingExecutor extends PriorityExecutor {
+        volatile Priority priority;
+        
+        RecordingExecutor() {
+            super(1, Executors.defaultThreadFactory());
+        }
+        
+        @Override
+        public void execute(@NonNull Runnable command, @NonNull Priority priority) {
+            assertNull(this.priority);
+            this.priority = priority;
+            super.execute(command, priority);
+        }
+    }
+}
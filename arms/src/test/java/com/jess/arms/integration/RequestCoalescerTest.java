@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.SingleSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RequestCoalescerTest {
+    private final RequestCoalescer coalescer = new RequestCoalescer(true);
+    private final AtomicInteger subscriptions = new AtomicInteger();
+    private final PublishSubject<String> response = PublishSubject.create();
+    
+    @Test
+    public void concurrentSubscribers_shareOneSubscription() throws Exception {
+        final Observable<String> first = coalescer.observable(method(), new Object[]{"user", 1}, upstream());
+        final Observable<String> second = coalescer.observable(method(), new Object[]{"user", 1}, upstream());
+        final TestObserver<String> a = first.test();
+        final TestObserver<String> b = second.test();
+        
+        assertEquals(1, subscriptions.get());
+        assertEquals(1, coalescer.getInFlightCount());
+        response.onNext("jess");
+        response.onComplete();
+        
+        a.assertResult("jess");
+        b.assertResult("jess");
+        assertEquals(2, coalescer.getRequestCount());
+        assertEquals(1, coalescer.getCoalescedCount());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+    
+    @Test
+    public void lateSubscriber_receivesValuesEmittedBeforeItJoined() throws Exception {
+        final TestObserver<String> a = coalescer.observable(method(), null, upstream()).test();
+        response.onNext("1");
+        final TestObserver<String> b = coalescer.observable(method(), null, upstream()).test();
+        response.onNext("2");
+        response.onComplete();
+        
+        assertEquals(1, subscriptions.get());
+        a.assertResult("1", "2");
+        b.assertResult("1", "2");
+    }
+    
+    @Test
+    public void arrayArguments_areComparedDeeply() throws Exception {
+        coalescer.observable(method(), new Object[]{new int[]{1, 2}}, upstream()).test();
+        coalescer.observable(method(), new Object[]{new int[]{1, 2}}, upstream()).test();
+        assertEquals(1, subscriptions.get());
+        
+        coalescer.observable(method(), new Object[]{new int[]{1, 3}}, upstream()).test();
+        coalescer.observable(Object.class.getMethod("hashCode"), new Object[]{new int[]{1, 2}}, upstream()).test();
+        assertEquals(3, subscriptions.get());
+        assertEquals(3, coalescer.getInFlightCount());
+    }
+    
+    @Test
+    public void error_isDeliveredToEverySubscriberAndNotCached() throws Exception {
+        final TestObserver<String> a = coalescer.observable(method(), null, upstream()).test();
+        final TestObserver<String> b = coalescer.observable(method(), null, upstream()).test();
+        final IOException error = new IOException("timeout");
+        response.onError(error);
+        
+        a.assertFailure(IOException.class);
+        b.assertFailure(IOException.class);
+        assertTrue(a.errors().get(0) == error && b.errors().get(0) == error);
+        assertEquals(0, coalescer.getInFlightCount());
+        
+        //失败的请求不会被缓存, 再次调用会重新请求
+        final PublishSubject<String> retry = PublishSubject.create();
+        final TestObserver<String> c = coalescer.observable(method(), null, upstream(retry)).test();
+        assertEquals(2, subscriptions.get());
+        retry.onNext("ok");
+        retry.onComplete();
+        c.assertResult("ok");
+    }
+    
+    @Test
+    public void newRequest_afterSharedOneCompletes() throws Exception {
+        final Observable<String> observable = coalescer.observable(method(), null, upstream());
+        final TestObserver<String> a = observable.test();
+        response.onNext("1");
+        response.onComplete();
+        a.assertResult("1");
+        
+        final PublishSubject<String> next = PublishSubject.create();
+        final TestObserver<String> b = coalescer.observable(method(), null, upstream(next)).test();
+        //同一个 Observable 再次订阅也会发起新的请求
+        final TestObserver<String> c = observable.test();
+        assertEquals(2, subscriptions.get());
+        next.onNext("2");
+        next.onComplete();
+        b.assertResult("2");
+        c.assertResult("2");
+        assertEquals(1, coalescer.getCoalescedCount());
+    }
+    
+    @Test
+    public void disposingAllSubscribers_cancelsTheSharedRequest() throws Exception {
+        final TestObserver<String> a = coalescer.observable(method(), null, upstream()).test();
+        final TestObserver<String> b = coalescer.observable(method(), null, upstream()).test();
+        a.dispose();
+        assertTrue(response.hasObservers());
+        b.dispose();
+        
+        assertFalse(response.hasObservers());
+        assertEquals(0, coalescer.getInFlightCount());
+        coalescer.observable(method(), null, upstream()).test();
+        assertEquals(2, subscriptions.get());
+    }
+    
+    @Test
+    public void single_sharesOneSubscription() throws Exception {
+        final SingleSubject<String> single = SingleSubject.create();
+        final Callable<Single<String>> upstream = () -> {
+            subscriptions.incrementAndGet();
+            return single;
+        };
+        final TestObserver<String> a = coalescer.single(method(), null, upstream).test();
+        final TestObserver<String> b = coalescer.single(method(), null, upstream).test();
+        single.onSuccess("jess");
+        
+        assertEquals(1, subscriptions.get());
+        a.assertResult("jess");
+        b.assertResult("jess");
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+    
+    private static Method method() throws NoSuchMethodException {
+        return Object.class.getMethod("toString");
+    }
+    
+    private Callable<ObservableSource<String>> upstream() {
+        return upstream(response);
+    }
+    
+    private Callable<ObservableSource<String>> upstream(final Observable<String> source) {
+        return () -> {
+            subscriptions.incrementAndGet();
+            return source;
+        };
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import android.content.ComponentCallbacks2;
+
+import com.jess.arms.integration.metrics.MetricsRegistry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class CacheRegistryTest {
+    private final CacheRegistry registry = new CacheRegistry(TrimPolicy.DEFAULT, MetricsRegistry.getInstance());
+    
+    @Test
+    public void onLowMemory_keepsCachesWritable() {
+        LruCache<String, String> cache = new LruCache<>(10);
+        registry.register(CacheType.EXTRAS, cache);
+        
+        registry.onLowMemory();
+        assertEquals(5, cache.getMaxSize());
+        cache.put("a", "1");
+        assertNotNull(cache.get("a"));
+        
+        registry.restore();
+        assertEquals(10, cache.getMaxSize());
+    }
+    
+    @Test
+    public void trimMemoryComplete_clearsUntilRestore() {
+        LruCache<String, String> cache = new LruCache<>(10);
+        registry.register(CacheType.EXTRAS, cache);
+        cache.put("a", "1");
+        
+        registry.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertEquals(0, cache.getMaxSize());
+        assertEquals(0, cache.size());
+        
+        registry.restore();
+        assertEquals(10, cache.getMaxSize());
+        cache.put("a", "1");
+        assertEquals("1", cache.get("a"));
+    }
+    
+    @Test
+    public void onTrimMemory_onlyShrinks() {
+        LruCache<String, String> cache = new LruCache<>(100);
+        registry.register(CacheType.EXTRAS, cache);
+        
+        registry.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+        assertEquals(25, cache.getMaxSize());
+        //较轻的内存级别不会放大已经缩小的缓存
+        registry.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(25, cache.getMaxSize());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentLruCacheTest {
+    
+    @Test
+    public void evict_removesLeastRecentlyUsedFirst() {
+        final List<Integer> evicted = new ArrayList<>();
+        ConcurrentLruCache<Integer, String> cache = new ConcurrentLruCache<Integer, String>(3, 1) {
+            @Override
+            protected void onItemEvicted(Integer key, String value) {
+                evicted.add(key);
+            }
+        };
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+        cache.get(1);
+        cache.put(4, "d");
+        cache.put(5, "e");
+        
+        assertEquals(2, evicted.size());
+        assertEquals(2, (int) evicted.get(0));
+        assertEquals(3, (int) evicted.get(1));
+        assertTrue(cache.containsKey(1));
+        assertEquals(3, cache.size());
+    }
+    
+    @Test
+    public void put_replacingValueMovesEntryToTail() {
+        ConcurrentLruCache<Integer, String> cache = new ConcurrentLruCache<>(2, 1);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        assertEquals("a", cache.put(1, "a2"));
+        cache.put(3, "c");
+        
+        assertFalse(cache.containsKey(2));
+        assertEquals("a2", cache.get(1));
+        assertEquals(2, cache.size());
+    }
+    
+    @Test
+    public void remove_thenEvictStillConsistent() {
+        ConcurrentLruCache<Integer, String> cache = new ConcurrentLruCache<>(2, 1);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        assertEquals("a", cache.remove(1));
+        cache.put(3, "c");
+        
+        assertEquals(2, cache.size());
+        assertTrue(cache.containsKey(2));
+        assertTrue(cache.containsKey(3));
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertTrue(cache.keySet().isEmpty());
+    }
+    
+    @Test
+    public void nullKey_isSupported() {
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<>(4);
+        assertNull(cache.put(null, "a"));
+        assertTrue(cache.containsKey(null));
+        assertEquals("a", cache.get(null));
+        assertTrue(cache.keySet().contains(null));
+        assertEquals("a", cache.remove(null));
+        assertFalse(cache.containsKey(null));
+    }
+    
+    @Test
+    public void setSizeMultiplier_trimsEverySegment() {
+        ConcurrentLruCache<Integer, Integer> cache = new ConcurrentLruCache<>(256, 4);
+        for (int i = 0; i < 256; i++) {
+            cache.put(i, i);
+        }
+        cache.setSizeMultiplier(0.5f);
+        assertEquals(128, cache.getMaxSize());
+        assertTrue(cache.size() <= 128);
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DiskCacheTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Codec<StringBuilder> CODEC = new Codec<StringBuilder>() {
+        @Override
+        public byte[] encode(StringBuilder value) {
+            return value.toString().getBytes(UTF_8);
+        }
+        
+        @Override
+        public StringBuilder decode(byte[] bytes) {
+            return new StringBuilder(new String(bytes, UTF_8));
+        }
+    };
+    private final QueueExecutor executor = new QueueExecutor();
+    private File directory;
+    
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("disk-cache", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdirs());
+    }
+    
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        directory.delete();
+    }
+    
+    @Test
+    public void queries_doNotLoadOnCallerThread() {
+        DiskCache<StringBuilder> cache = open();
+        cache.put("a", new StringBuilder("1"));
+        assertFalse(cache.containsKey("a"));
+        assertTrue(cache.keySet().isEmpty());
+        
+        executor.runAll();
+        assertTrue(cache.containsKey("a"));
+        assertEquals("1", cache.get("a").toString());
+    }
+    
+    @Test
+    public void get_waitsForIndexLoad() throws Exception {
+        DiskCache<StringBuilder> cache = open();
+        cache.put("a", new StringBuilder("1"));
+        executor.runAll();
+        
+        //重新打开后索引还未重建, 工作线程中的 get 等待重建完成而不是直接返回 null
+        final DiskCache<StringBuilder> reopened = open();
+        final AtomicReference<StringBuilder> result = new AtomicReference<>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result.set(reopened.get("a"));
+            }
+        });
+        reader.start();
+        reader.join(100);
+        assertTrue(reader.isAlive());
+        
+        executor.runAll();
+        reader.join(5000);
+        assertFalse(reader.isAlive());
+        assertEquals("1", result.get().toString());
+    }
+    
+    @Test
+    public void put_encodesOnExecutor() {
+        final int[] encodes = new int[1];
+        DiskCache<StringBuilder> cache = new DiskCache<>(directory, 1024 * 1024, new Codec<StringBuilder>() {
+            @Override
+            public byte[] encode(StringBuilder value) throws IOException {
+                encodes[0]++;
+                return CODEC.encode(value);
+            }
+            
+            @Override
+            public StringBuilder decode(byte[] bytes) throws IOException {
+                return CODEC.decode(bytes);
+            }
+        }, executor);
+        StringBuilder value = new StringBuilder("before");
+        cache.put("a", value);
+        assertEquals(0, encodes[0]);
+        
+        //序列化在 mExecutor 中执行, 所以写入之后的修改也会被写入磁盘
+        value.append(" after");
+        executor.runAll();
+        assertEquals(1, encodes[0]);
+        assertEquals("before after", cache.get("a").toString());
+    }
+    
+    @Test
+    public void append_survivesReopen() {
+        DiskCache<StringBuilder> cache = open();
+        cache.put("a", new StringBuilder("1"));
+        cache.put("b", new StringBuilder("2"));
+        cache.put("a", new StringBuilder("3"));
+        cache.remove("b");
+        executor.runAll();
+        
+        DiskCache<StringBuilder> reopened = open();
+        executor.runAll();
+        assertEquals("3", reopened.get("a").toString());
+        assertFalse(reopened.containsKey("b"));
+        assertEquals(1, reopened.keySet().size());
+    }
+    
+    @Test
+    public void tornRecord_isDroppedOnReopen() throws IOException {
+        DiskCache<StringBuilder> cache = open();
+        cache.put("a", new StringBuilder("1"));
+        cache.put("b", new StringBuilder("2"));
+        executor.runAll();
+        long written = cache.size();
+        
+        //模拟写入最后一条记录时进程被杀死, 记录的最后一个字节未写入
+        RandomAccessFile file = new RandomAccessFile(new File(directory, "0.seg"), "rw");
+        try {
+            file.seek(written - 1);
+            file.write(0);
+        } finally {
+            file.close();
+        }
+        
+        DiskCache<StringBuilder> reopened = open();
+        executor.runAll();
+        assertEquals("1", reopened.get("a").toString());
+        assertFalse(reopened.containsKey("b"));
+        
+        //之后的写入覆盖不完整的记录
+        reopened.put("c", new StringBuilder("4"));
+        executor.runAll();
+        DiskCache<StringBuilder> again = open();
+        executor.runAll();
+        assertEquals("1", again.get("a").toString());
+        assertEquals("4", again.get("c").toString());
+        assertFalse(again.containsKey("b"));
+    }
+    
+    @Test
+    public void clear_isOrderedWithPendingWrites() {
+        DiskCache<StringBuilder> cache = open();
+        cache.put("a", new StringBuilder("1"));
+        cache.clear();
+        cache.put("b", new StringBuilder("2"));
+        executor.runAll();
+        
+        assertFalse(cache.containsKey("a"));
+        assertEquals("2", cache.get("b").toString());
+    }
+    
+    @Test
+    public void getAsync_readsAfterPendingWrites() {
+        DiskCache<StringBuilder> cache = open();
+        cache.put("a", new StringBuilder("1"));
+        final StringBuilder[] result = new StringBuilder[1];
+        cache.getAsync("a", new DiskCache.Callback<StringBuilder>() {
+            @Override
+            public void onResult(String key, StringBuilder value) {
+                result[0] = value;
+            }
+        });
+        executor.runAll();
+        assertEquals("1", result[0].toString());
+    }
+    
+    private DiskCache<StringBuilder> open() {
+        return new DiskCache<>(directory, 1024 * 1024, CODEC, executor);
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ExpiringCacheTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+    private final FakeTicker ticker = new FakeTicker();
+    
+    @Test
+    public void expireAfterWrite() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(new LruCache<String, String>(10),
+            ExpiryPolicy.builder().expireAfterWrite(10, TimeUnit.SECONDS).ticker(ticker).build());
+        cache.put("a", "1");
+        ticker.advance(TimeUnit.SECONDS.toNanos(9));
+        assertEquals("1", cache.get("a"));
+        ticker.advance(TimeUnit.SECONDS.toNanos(1));
+        assertNull(cache.get("a"));
+        assertFalse(cache.containsKey("a"));
+        assertEquals(0, cache.size());
+    }
+    
+    @Test
+    public void expireAfterAccess_isExtendedByReads() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(new LruCache<String, String>(10),
+            ExpiryPolicy.builder().expireAfterAccess(10, TimeUnit.SECONDS).ticker(ticker).build());
+        cache.put("a", "1");
+        for (int i = 0; i < 5; i++) {
+            ticker.advance(TimeUnit.SECONDS.toNanos(8));
+            assertEquals("1", cache.get("a"));
+        }
+        ticker.advance(TimeUnit.SECONDS.toNanos(11));
+        assertNull(cache.get("a"));
+    }
+    
+    @Test
+    public void put_withDurationOverridesPolicy() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(new LruCache<String, String>(10),
+            ExpiryPolicy.builder().expireAfterWrite(1, TimeUnit.HOURS).ticker(ticker).build());
+        cache.put("short", "1", 5, TimeUnit.SECONDS);
+        cache.put("long", "2");
+        ticker.advance(TimeUnit.MINUTES.toNanos(1));
+        
+        assertNull(cache.get("short"));
+        assertEquals("2", cache.get("long"));
+        assertEquals(1, cache.keySet().size());
+    }
+    
+    @Test
+    public void refreshAfterWrite_returnsOldValueThenReplacesIt() {
+        final int[] refreshes = new int[1];
+        ExpiringCache<String, String> cache = new ExpiringCache<>(new LruCache<String, String>(10),
+            ExpiryPolicy.builder().refreshAfterWrite(10, TimeUnit.SECONDS).ticker(ticker).build(),
+            new ExpiringCache.Refresher<String, String>() {
+                @Override
+                public String refresh(String key, String oldValue) {
+                    refreshes[0]++;
+                    return oldValue + "'";
+                }
+            }, DIRECT);
+        cache.put("a", "1");
+        assertEquals("1", cache.get("a"));
+        assertEquals(0, refreshes[0]);
+        
+        ticker.advance(TimeUnit.SECONDS.toNanos(10));
+        assertEquals("1", cache.get("a"));
+        assertEquals(1, refreshes[0]);
+        assertEquals("1'", cache.get("a"));
+        assertEquals(1, refreshes[0]);
+    }
+    
+    @Test
+    public void refreshAfterWrite_keepsDurationOfEntry() {
+        final int[] refreshes = new int[1];
+        ExpiringCache<String, String> cache = new ExpiringCache<>(new LruCache<String, String>(10),
+            ExpiryPolicy.builder().expireAfterWrite(1, TimeUnit.HOURS).refreshAfterWrite(10, TimeUnit.SECONDS)
+                .ticker(ticker).build(),
+            new ExpiringCache.Refresher<String, String>() {
+                @Override
+                public String refresh(String key, String oldValue) {
+                    //只刷新一次, 之后返回 null 保留旧值
+                    return refreshes[0]++ == 0 ? oldValue + "'" : null;
+                }
+            }, DIRECT);
+        cache.put("a", "1", 30, TimeUnit.SECONDS);
+        ticker.advance(TimeUnit.SECONDS.toNanos(10));
+        assertEquals("1", cache.get("a"));
+        assertEquals("1'", cache.get("a"));
+    
+        //刷新后的条目依然在写入 30 秒后过期, 而不是使用过期策略中的 1 小时
+        ticker.advance(TimeUnit.SECONDS.toNanos(29));
+        assertEquals("1'", cache.get("a"));
+        ticker.advance(TimeUnit.SECONDS.toNanos(1));
+        assertNull(cache.get("a"));
+    }
+    
+    @Test
+    public void concurrentAccess_keepsTimerWheelConsistent() throws InterruptedException {
+        final ExpiringCache<Integer, String> cache = new ExpiringCache<>(new ConcurrentLruCache<Integer, String>(256),
+            ExpiryPolicy.builder().expireAfterAccess(10, TimeUnit.SECONDS).ticker(ticker).build());
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 20000; i++) {
+                            final Integer key = (i * 31 + id) & 127;
+                            switch (i % 8) {
+                                case 0:
+                                    cache.put(key, key + ":" + i);
+                                    break;
+                                case 1:
+                                    cache.remove(key);
+                                    break;
+                                case 2:
+                                    //推进时间, 使读取线程在锁外推迟过期时间的同时, 时间轮也在推进
+                                    ticker.advance(TimeUnit.MILLISECONDS.toNanos(50));
+                                    break;
+                                default:
+                                    final String value = cache.get(key);
+                                    if (value != null && !value.startsWith(key + ":")) {
+                                        throw new AssertionError(key + " -> " + value);
+                                    }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        
+        //所有条目都在不再被访问的 10 秒后过期, 时间轮中不能残留任何条目
+        ticker.advance(TimeUnit.SECONDS.toNanos(11));
+        assertEquals(0, cache.size());
+        for (int key = 0; key < 128; key++) {
+            assertNull(cache.get(key));
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void expiringCacheType_refreshRequiresRefresher() {
+        new ExpiringCacheType(CacheType.EXTRAS,
+            ExpiryPolicy.builder().refreshAfterWrite(1, TimeUnit.SECONDS).build());
+    }
+    
+    @Test
+    public void expiringCacheType_carriesRefresher() {
+        ExpiringCache.Refresher<String, Object> refresher = new ExpiringCache.Refresher<String, Object>() {
+            @Override
+            public Object refresh(String key, Object oldValue) {
+                return oldValue;
+            }
+        };
+        ExpiringCacheType type = new ExpiringCacheType(CacheType.EXTRAS,
+            ExpiryPolicy.builder().refreshAfterWrite(1, TimeUnit.SECONDS).build(), refresher);
+        assertTrue(type.getRefresher() == refresher);
+        assertEquals(CacheType.EXTRAS.getCacheTypeId(), type.getCacheTypeId());
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 手动推进时间的 {@link Ticker}, 用于测试过期策略
+ */
+final class FakeTicker implements Ticker {
+    private final AtomicLong nanos = new AtomicLong();
+    
+    @Override
+    public long read() {
+        return nanos.get();
+    }
+    
+    void advance(long nanos) {
+        this.nanos.addAndGet(nanos);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrequencySketchTest {
+    
+    @Test
+    public void increment_isCountedUntilSaturation() {
+        FrequencySketch<Integer> sketch = new FrequencySketch<>(512);
+        assertEquals(0, sketch.frequency(1));
+        for (int i = 1; i <= 5; i++) {
+            sketch.increment(1);
+            assertEquals(i, sketch.frequency(1));
+        }
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(1);
+        }
+        assertEquals(15, sketch.frequency(1));
+    }
+    
+    @Test
+    public void frequency_neverUnderestimates() {
+        FrequencySketch<Integer> sketch = new FrequencySketch<>(64);
+        for (int key = 0; key < 64; key++) {
+            for (int i = 0; i < key % 8; i++) {
+                sketch.increment(key);
+            }
+        }
+        for (int key = 0; key < 64; key++) {
+            assertTrue(sketch.frequency(key) >= key % 8);
+        }
+    }
+    
+    @Test
+    public void reset_halvesCountersOnceSampleSizeIsReached() {
+        //最大容量为 16 时采样大小为 160
+        FrequencySketch<Integer> sketch = new FrequencySketch<>(16);
+        final int hot = -1;
+        for (int i = 0; i < 12; i++) {
+            sketch.increment(hot);
+        }
+        boolean reset = false;
+        for (int key = 0; key < 1000 && !reset; key++) {
+            final int before = sketch.frequency(hot);
+            sketch.increment(key);
+            final int after = sketch.frequency(hot);
+            if (after < before) {
+                assertTrue(after >= before >>> 1 && after <= (before + 1) >>> 1);
+                reset = true;
+            }
+        }
+        assertTrue("sketch was never reset", reset);
+    }
+    
+    @Test
+    public void reset_subtractsOddCountersBeforeHalving() throws Exception {
+        FrequencySketch<Integer> sketch = new FrequencySketch<>(16);
+        //一个元素使 4 个计数器变为 1, 减半后全部归零, 所以 size 也应该归零而不是变为负数
+        sketch.increment(1);
+        assertEquals(1, getSize(sketch));
+        
+        Method reset = FrequencySketch.class.getDeclaredMethod("reset");
+        reset.setAccessible(true);
+        reset.invoke(sketch);
+        
+        assertEquals(0, getSize(sketch));
+        assertEquals(0, sketch.frequency(1));
+    }
+    
+    private static int getSize(FrequencySketch<?> sketch) throws Exception {
+        Field size = FrequencySketch.class.getDeclaredField("size");
+        size.setAccessible(true);
+        return size.getInt(sketch);
+    }
+}
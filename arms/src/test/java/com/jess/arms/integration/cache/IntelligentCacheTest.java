@@ -0,0 +1,309 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IntelligentCacheTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Codec<String> CODEC = new Codec<String>() {
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(UTF_8);
+        }
+        
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, UTF_8);
+        }
+    };
+    private final QueueExecutor executor = new QueueExecutor();
+    private File directory;
+    
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("intelligent-cache", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdirs());
+    }
+    
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        directory.delete();
+    }
+    
+    @Test
+    public void put_doesNotWriteThrough() {
+        DiskCache<String> disk = open();
+        IntelligentCache<String> cache = new IntelligentCache<>(new LruCache<String, String>(2), disk);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        executor.runAll();
+        
+        assertTrue(disk.keySet().isEmpty());
+    }
+    
+    @Test
+    public void evicted_spillsToDisk() {
+        DiskCache<String> disk = open();
+        IntelligentCache<String> cache = new IntelligentCache<>(new LruCache<String, String>(2), disk);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        executor.runAll();
+        
+        assertEquals(1, disk.keySet().size());
+        assertEquals("1", disk.get("a"));
+    }
+    
+    @Test
+    public void put_invalidatesSpilledValue() {
+        DiskCache<String> disk = open();
+        IntelligentCache<String> cache = new IntelligentCache<>(new LruCache<String, String>(2), disk);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        cache.put("a", "4");
+        executor.runAll();
+        
+        //"a" 被重新写入内存, 磁盘中的旧值被删除, 同时 "b" 被淘汰至磁盘
+        assertFalse(disk.containsKey("a"));
+        assertEquals("2", disk.get("b"));
+        assertEquals("4", cache.get("a"));
+    }
+    
+    @Test
+    public void clear_doesNotSpill() {
+        DiskCache<String> disk = open();
+        IntelligentCache<String> cache = new IntelligentCache<>(new LruCache<String, String>(2), disk);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.clear();
+        executor.runAll();
+        
+        assertTrue(disk.keySet().isEmpty());
+    }
+    
+    @Test
+    public void get_promotesFromDiskInBackground() {
+        DiskCache<String> disk = open();
+        IntelligentCache<String> cache = new IntelligentCache<>(new LruCache<String, String>(2), disk);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        executor.runAll();
+        
+        assertNull(cache.get("a"));
+        executor.runAll();
+        assertEquals("1", cache.get("a"));
+    }
+    
+    @Test
+    public void containsKey_agreesWithGet() {
+        DiskCache<String> disk = open();
+        IntelligentCache<String> cache = new IntelligentCache<>(new LruCache<String, String>(2), disk);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        executor.runAll();
+        
+        //"a" 只存在于磁盘中
+        assertFalse(cache.containsKey("a"));
+        assertFalse(cache.keySet().contains("a"));
+        assertNull(cache.get("a"));
+    }
+    
+    @Test
+    public void removeWinsOverPendingPromotion() {
+        DiskCache<String> disk = open();
+        IntelligentCache<String> cache = new IntelligentCache<>(new LruCache<String, String>(2), disk);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        executor.runAll();
+        
+        assertNull(cache.get("a"));
+        cache.remove("a");
+        executor.runAll();
+        assertFalse(cache.containsKey("a"));
+        assertFalse(disk.containsKey("a"));
+    }
+    
+    @Test
+    public void getAsync_readsSpilledValueAfterReopen() {
+        IntelligentCache<String> cache = new IntelligentCache<>(new LruCache<String, String>(2), open());
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        executor.runAll();
+        
+        //模拟进程重启, 索引尚未重建时的第一次读取
+        IntelligentCache<String> reopened = new IntelligentCache<>(new LruCache<String, String>(2), open());
+        final String[] result = new String[1];
+        reopened.getAsync("a", new DiskCache.Callback<String>() {
+            @Override
+            public void onResult(String key, String value) {
+                result[0] = value;
+            }
+        });
+        assertNull(result[0]);
+        executor.runAll();
+        assertEquals("1", result[0]);
+        assertEquals("1", reopened.get("a"));
+    }
+    
+    @Test
+    public void getAsync_memoryHitCallsBackImmediately() {
+        IntelligentCache<String> cache = new IntelligentCache<>(new LruCache<String, String>(2), open());
+        cache.put("a", "1");
+        executor.runAll();
+        final String[] result = new String[1];
+        cache.getAsync("a", new DiskCache.Callback<String>() {
+            @Override
+            public void onResult(String key, String value) {
+                result[0] = value;
+            }
+        });
+        assertEquals("1", result[0]);
+        assertEquals(0, executor.pending());
+    }
+    
+    @Test
+    public void concurrentAccess_neverReadsOlderValueThanOwnWrite() throws InterruptedException {
+        final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+        try {
+            //容量很小, 条目频繁被淘汰至磁盘, 读取未命中时又在后台从磁盘读取, 与写入线程竞争
+            final IntelligentCache<String> cache = new IntelligentCache<>(new LruCache<String, String>(8),
+                new DiskCache<>(directory, 1024 * 1024, CODEC, diskExecutor));
+            final int threads = 8;
+            final CountDownLatch start = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(threads);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            for (int t = 0; t < threads; t++) {
+                final int id = t;
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            //每个线程只写入自己的 key, 写入之后读取到的版本不能比自己写入的更旧
+                            for (int version = 0; version < 5000; version++) {
+                                final String key = id + "-" + (version & 3);
+                                cache.put(key, String.valueOf(version));
+                                final String value = cache.get(key);
+                                if (value != null && Integer.parseInt(value) < version) {
+                                    throw new AssertionError(key + " read " + value + " after writing " + version);
+                                }
+                                cache.put(IntelligentCache.getKeyOfKeep(key), String.valueOf(version));
+                            }
+                        } catch (Throwable e) {
+                            failure.compareAndSet(null, e);
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                }).start();
+            }
+            start.countDown();
+            assertTrue(done.await(60, TimeUnit.SECONDS));
+            if (failure.get() != null) {
+                throw new AssertionError(failure.get());
+            }
+            //mMap 中永久存储的数据不会被淘汰, 保存的是每个 key 最后写入的版本
+            for (int t = 0; t < threads; t++) {
+                for (int k = 0; k < 4; k++) {
+                    assertEquals(String.valueOf(4996 + k), cache.get(IntelligentCache.getKeyOfKeep(t + "-" + k)));
+                }
+            }
+        } finally {
+            diskExecutor.shutdownNow();
+            assertTrue(diskExecutor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void diskCache_requiresEvictableCache() {
+        new IntelligentCache<>(new Cache<String, String>() {
+            @Override
+            public int size() {
+                return 0;
+            }
+            
+            @Override
+            public int getMaxSize() {
+                return 0;
+            }
+            
+            @Override
+            public String get(String key) {
+                return null;
+            }
+            
+            @Override
+            public String put(String key, String value) {
+                return null;
+            }
+            
+            @Override
+            public String remove(String key) {
+                return null;
+            }
+            
+            @Override
+            public boolean containsKey(String key) {
+                return false;
+            }
+            
+            @Override
+            public Set<String> keySet() {
+                return null;
+            }
+            
+            @Override
+            public void clear() {
+            }
+        }, open());
+    }
+    
+    private DiskCache<String> open() {
+        return new DiskCache<>(directory, 1024 * 1024, CODEC, executor);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LruCacheTest {
+    
+    @Test
+    public void weigher_sizesAreRecordedOnInsert() {
+        LruCache<String, int[]> cache = new LruCache<>(10L, (key, value) -> value.length);
+        int[] value = new int[4];
+        cache.put("a", value);
+        cache.put("b", new int[4]);
+        assertEquals(8L, cache.getWeightedSize());
+        cache.put("c", new int[4]);
+        
+        assertFalse(cache.containsKey("a"));
+        assertEquals(8L, cache.getWeightedSize());
+        assertEquals(4L, weightOf(cache, "b"));
+    }
+    
+    @Test
+    public void trimToSize_overrideIsCalledOnEveryEviction() {
+        final List<Integer> trims = new ArrayList<>();
+        LruCache<Integer, Integer> cache = new LruCache<Integer, Integer>(2) {
+            @Override
+            protected synchronized void trimToSize(int size) {
+                trims.add(size);
+                super.trimToSize(size);
+            }
+        };
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.put(3, 3);
+        cache.setSizeMultiplier(0.5f);
+        cache.clear();
+        
+        assertEquals(5, trims.size());
+        assertEquals(2, (int) trims.get(2));
+        assertEquals(1, (int) trims.get(3));
+        assertEquals(0, (int) trims.get(4));
+        assertTrue(cache.keySet().isEmpty());
+    }
+    
+    private static long weightOf(LruCache<String, int[]> cache, String key) {
+        long before = cache.getWeightedSize();
+        cache.remove(key);
+        return before - cache.getWeightedSize();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimerWheelTest {
+    private final List<String> expired = new ArrayList<>();
+    private final TimerWheel.Listener<String> listener = new TimerWheel.Listener<String>() {
+        @Override
+        public void onExpired(TimerWheel.Node<String> node) {
+            expired.add(node.key);
+        }
+    };
+    
+    @Test
+    public void advance_expiresOnlyDueNodes() {
+        TimerWheel<String> wheel = new TimerWheel<>(0L);
+        wheel.schedule(node("second", TimeUnit.SECONDS.toNanos(2)));
+        wheel.schedule(node("minute", TimeUnit.MINUTES.toNanos(3)));
+        wheel.schedule(node("hour", TimeUnit.HOURS.toNanos(5)));
+        
+        wheel.advance(TimeUnit.SECONDS.toNanos(1), listener);
+        assertTrue(expired.isEmpty());
+        wheel.advance(TimeUnit.SECONDS.toNanos(5), listener);
+        assertEquals(1, expired.size());
+        assertEquals("second", expired.get(0));
+        
+        wheel.advance(TimeUnit.MINUTES.toNanos(2), listener);
+        assertEquals(1, expired.size());
+        wheel.advance(TimeUnit.MINUTES.toNanos(4), listener);
+        assertEquals(2, expired.size());
+        assertEquals("minute", expired.get(1));
+        
+        wheel.advance(TimeUnit.HOURS.toNanos(6), listener);
+        assertEquals(3, expired.size());
+        assertEquals("hour", expired.get(2));
+    }
+    
+    @Test
+    public void advance_cascadesNodesFromCoarserWheels() {
+        TimerWheel<String> wheel = new TimerWheel<>(0L);
+        //落入分钟级的桶中, 推进到所在的桶时还未到期, 需要重新放入秒级的桶
+        long deadline = TimeUnit.SECONDS.toNanos(90);
+        wheel.schedule(node("a", deadline));
+        
+        for (long now = 0; now < deadline; now += TimeUnit.SECONDS.toNanos(1)) {
+            wheel.advance(now, listener);
+            assertTrue("expired early at " + now, expired.isEmpty());
+        }
+        wheel.advance(deadline + TimeUnit.SECONDS.toNanos(2), listener);
+        assertEquals(1, expired.size());
+    }
+    
+    @Test
+    public void deschedule_preventsExpiry() {
+        TimerWheel<String> wheel = new TimerWheel<>(0L);
+        TimerWheel.Node<String> node = node("a", TimeUnit.SECONDS.toNanos(2));
+        wheel.schedule(node);
+        wheel.deschedule(node);
+        wheel.deschedule(node);
+        
+        wheel.advance(TimeUnit.MINUTES.toNanos(1), listener);
+        assertTrue(expired.isEmpty());
+    }
+    
+    private static TimerWheel.Node<String> node(String key, long deadline) {
+        TimerWheel.Node<String> node = new TimerWheel.Node<>(key);
+        node.deadline = deadline;
+        return node;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.cache;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 使用扫描和 Zipf 分布的访问序列比较 {@link TinyLfuCache} 与 {@link LruCache} 的命中率
+ */
+public class TinyLfuCacheTest {
+    private static final int CACHE_SIZE = 500;
+    
+    @Test
+    public void basicOperations() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100);
+        assertNull(cache.put("a", "1"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("1", cache.put("a", "2"));
+        assertEquals("2", cache.get("a"));
+        assertEquals(1, cache.size());
+        assertEquals("2", cache.remove("a"));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+    
+    @Test
+    public void size_neverExceedsMaxSize() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(CACHE_SIZE);
+        for (int key : zipfTrace(5000, 20000, 0.8, 1)) {
+            if (cache.get(key) == null) {
+                cache.put(key, key);
+            }
+            assertTrue(cache.size() <= CACHE_SIZE);
+        }
+    }
+    
+    @Test
+    public void hotEntries_surviveScan() {
+        TinyLfuCache<Integer, Integer> tinyLfu = new TinyLfuCache<>(100);
+        LruCache<Integer, Integer> lru = new LruCache<>(100);
+        for (Cache<Integer, Integer> cache : Arrays.<Cache<Integer, Integer>>asList(tinyLfu, lru)) {
+            for (int round = 0; round < 10; round++) {
+                for (int key = 0; key < 50; key++) {
+                    if (cache.get(key) == null) {
+                        cache.put(key, key);
+                    }
+                }
+            }
+            //每个 key 只访问一次的扫描
+            for (int key = 1000; key < 3000; key++) {
+                if (cache.get(key) == null) {
+                    cache.put(key, key);
+                }
+            }
+        }
+        assertTrue(residentCount(tinyLfu, 50) >= 45);
+        assertEquals(0, residentCount(lru, 50));
+    }
+    
+    @Test
+    public void hitRatio_zipf() {
+        int[] trace = zipfTrace(10000, 200000, 0.9, 42);
+        double tinyLfu = hitRatio(new TinyLfuCache<>(CACHE_SIZE), trace);
+        double lru = hitRatio(new LruCache<>(CACHE_SIZE), trace);
+        assertTrue("TinyLFU " + tinyLfu + " < LRU " + lru, tinyLfu >= lru);
+    }
+    
+    @Test
+    public void hitRatio_zipfMixedWithScan() {
+        int[] zipf = zipfTrace(10000, 200000, 0.9, 7);
+        //每隔一次访问插入一个只访问一次的 key
+        int[] trace = new int[zipf.length * 2];
+        for (int i = 0; i < zipf.length; i++) {
+            trace[2 * i] = zipf[i];
+            trace[2 * i + 1] = 1000000 + i;
+        }
+        double tinyLfu = hitRatio(new TinyLfuCache<>(CACHE_SIZE), trace);
+        double lru = hitRatio(new LruCache<>(CACHE_SIZE), trace);
+        assertTrue("TinyLFU " + tinyLfu + " should beat LRU " + lru + " on a scan", tinyLfu > lru * 1.5);
+    }
+    
+    private static int residentCount(Cache<Integer, Integer> cache, int keys) {
+        int count = 0;
+        for (int key = 0; key < keys; key++) {
+            if (cache.containsKey(key)) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    private static double hitRatio(Cache<Integer, Integer> cache, int[] trace) {
+        int hits = 0;
+        for (int key : trace) {
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, key);
+            }
+        }
+        return (double) hits / trace.length;
+    }
+    
+    /**
+     * 生成 {@code length} 次访问的序列, key 的范围为 [0, keys), 访问概率服从指数为 {@code exponent} 的 Zipf 分布
+     */
+    static int[] zipfTrace(int keys, int length, double exponent, long seed) {
+        double[] cdf = new double[keys];
+        double sum = 0;
+        for (int i = 0; i < keys; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        Random random = new Random(seed);
+        int[] trace = new int[length];
+        for (int i = 0; i < length; i++) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            trace[i] = index >= 0 ? index : -index - 1;
+        }
+        return trace;
+    }
+}
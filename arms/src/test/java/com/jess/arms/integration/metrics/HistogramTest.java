@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.integration.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+    
+    @Test
+    public void bucketIndex_smallValuesHaveOwnBuckets() {
+        for (int value = 0; value < Histogram.SUB_BUCKET_COUNT; value++) {
+            assertEquals(value, Histogram.bucketIndex(value));
+            assertEquals(value, Histogram.bucketLowerBound(value));
+            assertEquals(value, Histogram.bucketUpperBound(value));
+        }
+    }
+    
+    @Test
+    public void bucketIndex_powerOfTwoBoundaries() {
+        //[8, 15] 依然是每个值一个桶, 从 16 开始每个桶包含 2 个值
+        assertEquals(8, Histogram.bucketIndex(8));
+        assertEquals(15, Histogram.bucketIndex(15));
+        assertEquals(16, Histogram.bucketIndex(16));
+        assertEquals(16, Histogram.bucketIndex(17));
+        assertEquals(17, Histogram.bucketIndex(18));
+        assertEquals(23, Histogram.bucketIndex(31));
+        assertEquals(24, Histogram.bucketIndex(32));
+        for (int exponent = 4; exponent <= 36; exponent++) {
+            final long power = 1L << exponent;
+            assertEquals(Histogram.bucketIndex(power - 1) + 1, Histogram.bucketIndex(power));
+            assertEquals(power, Histogram.bucketLowerBound(Histogram.bucketIndex(power)));
+        }
+    }
+    
+    @Test
+    public void bucketBounds_areContiguousAndMapBackToTheirBucket() {
+        for (int i = 0; i < Histogram.BUCKET_COUNT; i++) {
+            final long lower = Histogram.bucketLowerBound(i);
+            final long upper = Histogram.bucketUpperBound(i);
+            assertEquals(i, Histogram.bucketIndex(lower));
+            assertEquals(i, Histogram.bucketIndex(upper));
+            if (i > 0) {
+                assertEquals(Histogram.bucketUpperBound(i - 1) + 1, lower);
+            }
+            //每个桶的宽度不超过下界的 1 / SUB_BUCKET_COUNT
+            assertTrue(i + ": " + lower + " ~ " + upper, (upper - lower) * Histogram.SUB_BUCKET_COUNT <= lower);
+        }
+        assertEquals(Histogram.MAX_TRACKABLE_VALUE, Histogram.bucketUpperBound(Histogram.BUCKET_COUNT - 1));
+    }
+    
+    @Test
+    public void bucketIndex_clampsLargeValuesToLastBucket() {
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.bucketIndex(Histogram.MAX_TRACKABLE_VALUE));
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.bucketIndex(Histogram.MAX_TRACKABLE_VALUE + 1));
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.bucketIndex(Long.MAX_VALUE));
+    }
+    
+    @Test
+    public void quantiles_uniformValuesWithinRelativeError() {
+        final Histogram histogram = new Histogram();
+        final int count = 100000;
+        for (int value = 1; value <= count; value++) {
+            histogram.record(value);
+        }
+        final Histogram.Snapshot snapshot = histogram.snapshot();
+        for (double quantile : new double[]{0.01, 0.5, 0.9, 0.99, 0.999}) {
+            final long exact = (long) Math.ceil(quantile * count);
+            assertWithinRelativeError(quantile, exact, snapshot.getValueAtQuantile(quantile));
+        }
+        assertEquals(1, snapshot.getValueAtQuantile(0));
+        assertEquals(count, snapshot.getValueAtQuantile(1));
+        assertEquals(count, snapshot.getMax());
+        assertEquals((count + 1) / 2.0, snapshot.getMean(), 1e-9);
+    }
+    
+    @Test
+    public void quantiles_skewedValuesWithinRelativeError() {
+        final Histogram histogram = new Histogram();
+        final Random random = new Random(42);
+        final long[] values = new long[50000];
+        for (int i = 0; i < values.length; i++) {
+            //对数正态分布, 类似请求耗时 (微秒), 有长尾
+            values[i] = (long) Math.exp(9 + random.nextGaussian() * 1.5);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        final Histogram.Snapshot snapshot = histogram.snapshot();
+        for (double quantile : new double[]{0.5, 0.75, 0.9, 0.95, 0.99, 0.999}) {
+            final long exact = values[(int) Math.ceil(quantile * values.length) - 1];
+            assertWithinRelativeError(quantile, exact, snapshot.getValueAtQuantile(quantile));
+        }
+        assertEquals(values[values.length - 1], snapshot.getValueAtQuantile(1));
+    }
+    
+    @Test
+    public void quantile_neverExceedsMax() {
+        final Histogram histogram = new Histogram();
+        histogram.record(1000);
+        //1000 所在的桶的上界为 1023
+        assertEquals(1023, Histogram.bucketUpperBound(Histogram.bucketIndex(1000)));
+        assertEquals(1000, histogram.snapshot().getValueAtQuantile(0.5));
+    }
+    
+    @Test
+    public void record_negativeValuesCountAsZero() {
+        final Histogram histogram = new Histogram();
+        histogram.record(-5);
+        final Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(0, snapshot.getSum());
+        assertEquals(0, snapshot.getValueAtQuantile(1));
+    }
+    
+    @Test
+    public void snapshot_emptyAndReset() {
+        final Histogram histogram = new Histogram();
+        assertEquals(0, histogram.snapshot().getValueAtQuantile(0.99));
+        assertEquals(0, histogram.snapshot().getMean(), 0);
+        histogram.record(10);
+        histogram.record(20);
+        assertEquals(2, histogram.getCount());
+        
+        final Histogram.Snapshot snapshot = histogram.snapshot();
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.snapshot().getNonEmptyBuckets().length);
+        //重置不影响之前的快照
+        assertEquals(2, snapshot.getCount());
+        assertEquals(20, snapshot.getMax());
+    }
+    
+    @Test
+    public void nonEmptyBuckets_reportBoundsAndCounts() {
+        final Histogram histogram = new Histogram();
+        histogram.record(3);
+        histogram.record(3);
+        histogram.record(16);
+        histogram.record(17);
+        final long[][] buckets = histogram.snapshot().getNonEmptyBuckets();
+        assertEquals(2, buckets.length);
+        assertArrayEquals(new long[]{3, 3, 2}, buckets[0]);
+        assertArrayEquals(new long[]{16, 17, 2}, buckets[1]);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void quantile_outOfRangeThrows() {
+        new Histogram().snapshot().getValueAtQuantile(1.5);
+    }
+    
+    private static void assertWithinRelativeError(double quantile, long exact, long estimated) {
+        //估算值为桶的上界, 不会小于真实值, 且相对误差不超过 1 / SUB_BUCKET_COUNT
+        final String message = "P" + quantile * 100 + ": exact " + exact + ", estimated " + estimated;
+        assertTrue(message, estimated >= exact);
+        assertTrue(message, estimated - exact <= (double) exact / Histogram.SUB_BUCKET_COUNT);
+    }
+}
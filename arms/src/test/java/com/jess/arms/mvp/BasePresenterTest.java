@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.mvp;
+
+import com.jess.arms.integration.metrics.Counter;
+import com.jess.arms.integration.metrics.MetricsRegistry;
+
+import org.junit.Test;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BasePresenterTest {
+    private final Counter added = MetricsRegistry.getInstance().counter("presenter.subscriptions.added");
+    private final Counter released = MetricsRegistry.getInstance().counter("presenter.subscriptions.released");
+    
+    @Test
+    public void unDispose_releasesEverySubscriptionIncludingRemovedOnes() {
+        final long addedBefore = added.getCount();
+        final long releasedBefore = released.getCount();
+        final TestPresenter presenter = new TestPresenter();
+        final Disposable first = Disposables.empty();
+        final Disposable second = Disposables.empty();
+        presenter.addDispose(first);
+        presenter.addDispose(second);
+        presenter.addDispose(Disposables.empty());
+        //子类直接从容器中移除的订阅也要计为释放, 否则两个计数器之差永远不会归零
+        presenter.mCompositeDisposable.remove(first);
+        presenter.mCompositeDisposable.delete(second);
+        
+        presenter.unDispose();
+        assertEquals(3, added.getCount() - addedBefore);
+        assertEquals(3, released.getCount() - releasedBefore);
+        assertTrue(first.isDisposed());
+        
+        //重复 unDispose 不会重复计数
+        presenter.onDestroy();
+        assertEquals(3, released.getCount() - releasedBefore);
+    }
+    
+    @Test
+    public void addDispose_afterUnDisposeIsCountedAgain() {
+        final long releasedBefore = released.getCount();
+        final TestPresenter presenter = new TestPresenter();
+        presenter.addDispose(Disposables.empty());
+        presenter.unDispose();
+        presenter.addDispose(Disposables.empty());
+        presenter.addDispose(Disposables.empty());
+        presenter.onDestroy();
+        
+        assertEquals(3, released.getCount() - releasedBefore);
+    }
+    
+    private static final class TestPresenter extends BasePresenter<IModel, IView> {
+        @Override
+        public boolean useEventBus() {
+            return false;
+        }
+    }
+}
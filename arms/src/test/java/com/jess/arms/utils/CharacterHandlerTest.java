@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CharacterHandlerTest {
+    
+    @Test
+    public void jsonFormat_indentsNestedContainers() {
+        assertEquals("{\n"
+                + "    \"a\": 1,\n"
+                + "    \"b\": [\n"
+                + "        true,\n"
+                + "        null,\n"
+                + "        -1.5e+3\n"
+                + "    ],\n"
+                + "    \"c\": {\n"
+                + "        \"d\": \"e\"\n"
+                + "    }\n"
+                + "}",
+            CharacterHandler.jsonFormat(" {\"a\":1, \"b\":[true,null,-1.5e+3],\n\"c\":{\"d\":\"e\"}} "));
+    }
+    
+    @Test
+    public void jsonFormat_keepsEmptyContainersOnOneLine() {
+        assertEquals("{\n"
+                + "    \"a\": {},\n"
+                + "    \"b\": [],\n"
+                + "    \"c\": [\n"
+                + "        {},\n"
+                + "        []\n"
+                + "    ]\n"
+                + "}",
+            CharacterHandler.jsonFormat("{\"a\":{},\"b\":[ ],\"c\":[{ },[]]}"));
+        assertEquals("[]", CharacterHandler.jsonFormat("[]"));
+    }
+    
+    @Test
+    public void jsonFormat_copiesStringsVerbatim() {
+        //转义的引号, 以及紧挨着结束引号的转义反斜杠, 字符串中的括号和逗号不影响缩进
+        assertEquals("{\n"
+                + "    \"a\": \"x\\\"y\",\n"
+                + "    \"b\": \"\\\\\",\n"
+                + "    \"c\": \"\\\\\\\"\",\n"
+                + "    \"d\": \"{[,:]}\"\n"
+                + "}",
+            CharacterHandler.jsonFormat("{\"a\":\"x\\\"y\",\"b\":\"\\\\\",\"c\":\"\\\\\\\"\",\"d\":\"{[,:]}\"}"));
+    }
+    
+    @Test
+    public void jsonFormat_keepsUnicode() {
+        assertEquals("{\n"
+                + "    \"名字\": \"张三\",\n"
+                + "    \"emoji\": \"\ud83d\ude00\",\n"
+                + "    \"escaped\": \"\\u4e2d\"\n"
+                + "}",
+            CharacterHandler.jsonFormat("{\"名字\":\"张三\",\"emoji\":\"\ud83d\ude00\",\"escaped\":\"\\u4e2d\"}"));
+    }
+    
+    @Test
+    public void jsonFormat_returnsMalformedInputUnchanged() {
+        final String[] malformed = {
+            "{\"a\":1",
+            "{\"a\" 1}",
+            "{\"a\":1,}",
+            "[1,]",
+            "[1}",
+            "{\"a\":1}}",
+            "{\"a\":tru}",
+            "{'a':1}",
+            "[01]",
+            "[\"a\nb\"]",
+            "[\"unterminated]",
+            "{\"a\":1} trailing",
+        };
+        for (String json : malformed) {
+            assertEquals(json, CharacterHandler.jsonFormat(json));
+        }
+    }
+    
+    @Test
+    public void jsonFormat_passesPlainTextThrough() {
+        assertEquals("[INFO] hello world", CharacterHandler.jsonFormat("[INFO] hello world"));
+        assertEquals("hello", CharacterHandler.jsonFormat("  hello\n"));
+        assertEquals("Empty/Null json content", CharacterHandler.jsonFormat(""));
+        assertEquals("Empty/Null json content", CharacterHandler.jsonFormat(null));
+    }
+    
+    @Test
+    public void jsonFormat_truncatesLongBody() {
+        final String json = "[1,2,3,4,5,6,7,8,9]";
+        final String formatted = CharacterHandler.jsonFormat(json, 12);
+        //"[\n    1,\n   " 是前 12 个字符, 之后的 "2,3,4,5,6,7,8,9]" 共 16 个字符未扫描
+        assertEquals("[\n    1,\n   \n...(truncated, 16 chars omitted)", formatted);
+        
+        //截断发生在字符串中间
+        assertEquals("[\n    \"abc\n...(truncated, 5 chars omitted)",
+            CharacterHandler.jsonFormat("[\"abcdef\"]", 10));
+        
+        //不是 json 的内容同样会被截断
+        assertEquals("hello\n...(truncated, 6 chars omitted)", CharacterHandler.jsonFormat("hello world", 5));
+    }
+    
+    @Test
+    public void jsonFormat_formatsLargeInput() {
+        final int count = 100000;
+        final StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"item").append(i).append("\"}");
+        }
+        json.append(']');
+        final String formatted = CharacterHandler.jsonFormat(json.toString(), Integer.MAX_VALUE);
+        
+        //每个对象占 4 行, 加上首尾的方括号
+        int lines = 1;
+        for (int i = 0; i < formatted.length(); i++) {
+            if (formatted.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        assertEquals(count * 4 + 2, lines);
+        assertTrue(formatted.endsWith("        \"name\": \"item" + (count - 1) + "\"\n    }\n]"));
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jess.arms.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Sink;
+import okio.Source;
+import okio.Timeout;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ZipHelperTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    
+    @Test
+    public void compressForGzip_writesHeaderAndTrailer() throws IOException {
+        final byte[] input = randomText(100 * 1024).getBytes(UTF_8);
+        final byte[] gzip = ZipHelper.compressForGzip(input, Deflater.DEFAULT_COMPRESSION);
+        
+        assertEquals((byte) 0x1f, gzip[0]);
+        assertEquals((byte) 0x8b, gzip[1]);
+        assertEquals(8, gzip[2]);
+        //尾部为小端序的 CRC32 和原始数据长度
+        final CRC32 crc = new CRC32();
+        crc.update(input);
+        final ByteBuffer trailer = ByteBuffer.wrap(gzip, gzip.length - 8, 8).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals((int) crc.getValue(), trailer.getInt());
+        assertEquals(input.length, trailer.getInt());
+        //JDK 的 GZIPInputStream 会校验 CRC 和长度
+        assertArrayEquals(input, readFully(new GZIPInputStream(new ByteArrayInputStream(gzip))));
+    }
+    
+    @Test
+    public void decompressForGzip_rejectsCorruptedTrailer() {
+        final byte[] gzip = ZipHelper.compressForGzip("hello, gzip");
+        gzip[gzip.length - 8] ^= 1;
+        assertNull(ZipHelper.decompressForGzip(gzip));
+    }
+    
+    @Test
+    public void gzip_roundTripsEmptyInput() {
+        final byte[] gzip = ZipHelper.compressForGzip(new byte[0], Deflater.DEFAULT_COMPRESSION);
+        assertEquals("", ZipHelper.decompressForGzip(gzip));
+    }
+    
+    @Test
+    public void zlib_roundTripsInputLargerThanBuffer() throws Exception {
+        //远大于内部 8KB 的缓冲区以及 32KB 的 deflate 窗口
+        final byte[] input = randomText(200 * 1024).getBytes(UTF_8);
+        final byte[] zlib = ZipHelper.compressForZlib(input);
+        
+        final Inflater inflater = new Inflater();
+        inflater.setInput(zlib);
+        final byte[] inflated = new byte[input.length];
+        assertEquals(input.length, inflater.inflate(inflated));
+        assertEquals(true, inflater.finished());
+        inflater.end();
+        assertArrayEquals(input, inflated);
+        
+        assertArrayEquals(input, ZipHelper.decompressForZlib(zlib));
+        assertEquals(new String(input, UTF_8), ZipHelper.decompressToStringForZlib(zlib));
+    }
+    
+    @Test
+    public void decompressForZlib_readsOutputOfJdkDeflater() {
+        final byte[] input = randomText(64 * 1024).getBytes(UTF_8);
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(input);
+        deflater.finish();
+        final byte[] output = new byte[input.length * 2];
+        final int length = deflater.deflate(output);
+        deflater.end();
+        
+        assertArrayEquals(input, ZipHelper.decompressForZlib(Arrays.copyOf(output, length)));
+    }
+    
+    @Test
+    public void readString_decodesCharacterSplitAcrossBufferBoundary() throws IOException {
+        //"中" 占 3 个字节, 前 8191 个字节之后它会被 8KB 的缓冲区截断
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 8191; i++) {
+            builder.append('a');
+        }
+        builder.append("中文😀").append(randomText(20 * 1024));
+        final String text = builder.toString();
+        
+        assertEquals(text, ZipHelper.readString(new Buffer().writeUtf8(text), UTF_8));
+    }
+    
+    @Test
+    public void readString_decodesSourceThatReturnsOneByteAtATime() throws IOException {
+        final String text = "中文 é 😀 " + randomText(1024);
+        assertEquals(text, ZipHelper.readString(new TrickleSource(new Buffer().writeUtf8(text)), UTF_8));
+    }
+    
+    @Test
+    public void decompressToString_gzipWithMultibyteText() throws IOException {
+        final String text = randomText(50 * 1024);
+        final byte[] gzip = ZipHelper.compressForGzip(text);
+        assertEquals(text, ZipHelper.decompressToString(new TrickleSource(new Buffer().write(gzip)), ZipHelper.ENCODING_GZIP, UTF_8));
+    }
+    
+    @Test
+    public void readString_replacesTruncatedCharacterAtEnd() throws IOException {
+        final byte[] bytes = "ab中".getBytes(UTF_8);
+        assertEquals("ab�", ZipHelper.readString(new Buffer().write(bytes, 0, bytes.length - 1), UTF_8));
+    }
+    
+    @Test
+    public void compressSink_returnsResetDeflaterToPoolOnSuccess() throws IOException {
+        final List<Deflater> before = ZipHelper.pooledDeflaters(true);
+        final Buffer out = new Buffer();
+        final BufferedSink sink = Okio.buffer(ZipHelper.gzipSink(out, Deflater.DEFAULT_COMPRESSION));
+        sink.writeUtf8(randomText(64 * 1024));
+        sink.close();
+        
+        assertPooledAndReset(before, ZipHelper.pooledDeflaters(true));
+        assertEquals(randomText(64 * 1024), ZipHelper.decompressForGzip(out.readByteArray()));
+    }
+    
+    @Test
+    public void compressSink_returnsResetDeflaterToPoolOnFailure() throws IOException {
+        final List<Deflater> before = ZipHelper.pooledDeflaters(true);
+        final BufferedSink sink = Okio.buffer(ZipHelper.gzipSink(new FailingSink(), Deflater.DEFAULT_COMPRESSION));
+        try {
+            sink.writeUtf8(randomText(256 * 1024));
+            sink.close();
+            fail();
+        } catch (IOException expected) {
+            ZipHelper.closeQuietly(sink);
+        }
+        
+        assertPooledAndReset(before, ZipHelper.pooledDeflaters(true));
+        //失败后放回池中的 Deflater 依然可以正确压缩
+        final String text = randomText(32 * 1024);
+        assertEquals(text, ZipHelper.decompressForGzip(ZipHelper.compressForGzip(text)));
+    }
+    
+    @Test
+    public void compressSink_zlibAndGzipUseSeparatePools() {
+        final List<Deflater> gzipBefore = ZipHelper.pooledDeflaters(true);
+        final List<Deflater> zlibBefore = ZipHelper.pooledDeflaters(false);
+        ZipHelper.compressForZlib(new byte[100]);
+        
+        assertPooledAndReset(zlibBefore, ZipHelper.pooledDeflaters(false));
+        assertEquals(gzipBefore, ZipHelper.pooledDeflaters(true));
+    }
+    
+    /**
+     * 压缩一次后, 池中的第一个 Deflater (或新建的 Deflater) 被取出使用, 重置后放回池的末尾
+     */
+    private static void assertPooledAndReset(List<Deflater> before, List<Deflater> after) {
+        assertEquals(Math.max(before.size(), 1), after.size());
+        if (!before.isEmpty()) {
+            assertSame(before.get(0), after.get(after.size() - 1));
+        }
+        for (Deflater deflater : after) {
+            assertEquals(0, deflater.getTotalIn());
+            assertEquals(0, deflater.getTotalOut());
+            assertFalse(deflater.finished());
+        }
+    }
+    
+    /**
+     * 由单字节, 双字节, 三字节和四字节字符组成的可压缩文本
+     */
+    static String randomText(int length) {
+        final String[] words = {"hello", "中文", "é", "😀", "MVPArms", " ", "\n"};
+        final Random random = new Random(length);
+        final StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            builder.append(words[random.nextInt(words.length)]);
+        }
+        return builder.toString();
+    }
+    
+    private static byte[] readFully(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+    
+    /**
+     * 每次只读取一个字节的 {@link Source}
+     */
+    private static final class TrickleSource implements Source {
+        private final Source delegate;
+        
+        TrickleSource(Source delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            return delegate.read(sink, Math.min(byteCount, 1));
+        }
+        
+        @Override
+        public Timeout timeout() {
+            return delegate.timeout();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+    
+    /**
+     * 每次写入都失败的 {@link Sink}
+     */
+    private static final class FailingSink implements Sink {
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            throw new IOException("broken pipe");
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            throw new IOException("broken pipe");
+        }
+        
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -30,6 +30,7 @@ import androidx.annotation.NonNull;
 import androidx.fragment.app.FragmentManager;
 import me.jessyan.mvparms.demo.BuildConfig;
 import me.jessyan.mvparms.demo.mvp.model.api.Api;
+import me.jessyan.mvparms.demo.mvp.model.api.service.UserService;
 import me.jessyan.progressmanager.ProgressManager;
 import me.jessyan.retrofiturlmanager.RetrofitUrlManager;
 import retrofit2.converter.gson.GsonConverterFactory;
@@ -121,6 +122,9 @@ public final class GlobalConfiguration implements ConfigModule {
             //可以自定义一个单例的线程池供全局使用
             //                .executorService(Executors.newCachedThreadPool())
             
+            //在 App 启动后于后台预先创建首页所使用的 Retrofit service, 并预解析所有方法, 缩短首页第一次请求的耗时
+            .warmUpServices(UserService.class)
+            
             //这里提供一个全局处理 Http 请求和响应结果的处理类, 可以比客户端提前一步拿到服务器返回的结果, 可以做一些操作, 比如 Token 超时后, 重新获取 Token
             .globalHttpHandler(new GlobalHttpHandlerImpl(context))
             //用来处理 RxJava 中发生的所有错误, RxJava 中发生的每个错误都会回调此接口
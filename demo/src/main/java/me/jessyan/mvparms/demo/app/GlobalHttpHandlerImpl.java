@@ -21,12 +21,12 @@ import android.text.TextUtils;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.jess.arms.http.GlobalHttpHandler;
+import com.jess.arms.http.HttpResultSupplier;
 import com.jess.arms.http.log.RequestInterceptor;
 
 import java.util.List;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 import me.jessyan.mvparms.demo.mvp.model.entity.User;
 import okhttp3.Interceptor;
 import okhttp3.Request;
@@ -52,18 +52,20 @@ public class GlobalHttpHandlerImpl implements GlobalHttpHandler {
     /**
      * 这里可以先客户端一步拿到每一次 Http 请求的结果, 可以先解析成 Json, 再做一些操作, 如检测到 token 过期后
      * 重新请求 token, 并重新执行请求
+     * <p>
+     * 服务器返回的结果只在调用 {@link HttpResultSupplier#get()} 时才会被读取, 所以只在需要时读取
      *
-     * @param httpResult 服务器返回的结果 (已被框架自动转换为字符串)
+     * @param httpResult 延迟读取的服务器返回的结果 (已被框架自动转换为字符串)
      * @param chain      {@link okhttp3.Interceptor.Chain}
      * @param response   {@link Response}
      * @return {@link Response}
      */
     @NonNull
     @Override
-    public Response onHttpResultResponse(@Nullable String httpResult, @NonNull Interceptor.Chain chain, @NonNull Response response) {
-        if (!TextUtils.isEmpty(httpResult) && RequestInterceptor.isJson(response.body().contentType())) {
+    public Response onHttpResultResponse(@NonNull HttpResultSupplier httpResult, @NonNull Interceptor.Chain chain, @NonNull Response response) {
+        if (RequestInterceptor.isJson(response.body().contentType()) && !TextUtils.isEmpty(httpResult.get())) {
             try {
-                List<User> list = new Gson().fromJson(httpResult, new TypeToken<List<User>>() {
+                List<User> list = new Gson().fromJson(httpResult.get(), new TypeToken<List<User>>() {
                 }.getType());
                 User user = list.get(0);
                 Timber.w("Result ------> " + user.getLogin() + "    ||   Avatar_url------> " + user.getAvatarUrl());
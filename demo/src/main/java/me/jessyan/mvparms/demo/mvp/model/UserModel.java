@@ -17,6 +17,7 @@ package me.jessyan.mvparms.demo.mvp.model;
 
 import com.jess.arms.di.scope.ActivityScope;
 import com.jess.arms.integration.IRepositoryManager;
+import com.jess.arms.integration.cache.CachePolicy;
 import com.jess.arms.mvp.BaseModel;
 
 import java.util.List;
@@ -27,6 +28,7 @@ import androidx.lifecycle.Lifecycle;
 import androidx.lifecycle.OnLifecycleEvent;
 import io.reactivex.Observable;
 import me.jessyan.mvparms.demo.mvp.contract.UserContract;
+import me.jessyan.mvparms.demo.mvp.model.api.cache.CommonCache;
 import me.jessyan.mvparms.demo.mvp.model.api.service.UserService;
 import me.jessyan.mvparms.demo.mvp.model.entity.User;
 import timber.log.Timber;
@@ -52,11 +54,14 @@ public class UserModel extends BaseModel implements UserContract.Model {
     
     @Override
     public Observable<List<User>> getUsers(int lastIdQueried, boolean update) {
-        //使用rxcache缓存,上拉刷新则不读取缓存,加载更多读取缓存
+        //使用 Cache service 缓存, update 为 true 时不读取缓存, 否则缓存未过期时直接使用缓存, 不请求网络
         return mRepositoryManager
-            .obtainRetrofitService(UserService.class)
-            .getUsers(lastIdQueried, USERS_PER_PAGE);
-        
+            .obtainCacheService(CommonCache.class)
+            .getUsers(mRepositoryManager
+                    .obtainRetrofitService(UserService.class)
+                    .getUsers(lastIdQueried, USERS_PER_PAGE),
+                lastIdQueried,
+                update ? CachePolicy.NETWORK_ONLY : CachePolicy.CACHE_FIRST);
     }
     
     @OnLifecycleEvent(Lifecycle.Event.ON_PAUSE)
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017 JessYan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.jessyan.mvparms.demo.mvp.model.api.cache;
+
+import com.jess.arms.integration.IRepositoryManager;
+import com.jess.arms.integration.cache.CachePolicy;
+import com.jess.arms.integration.cache.LifeCache;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import me.jessyan.mvparms.demo.mvp.model.entity.User;
+
+/**
+ * ================================================
+ * 展示 {@link IRepositoryManager#obtainCacheService(Class)} 中需要传入的 Cache service 的使用方式
+ * ================================================
+ */
+public interface CommonCache {
+    
+    @LifeCache(duration = 2, timeUnit = TimeUnit.MINUTES)
+    Observable<List<User>> getUsers(Observable<List<User>> users, int lastIdQueried, CachePolicy policy);
+}
@@ -15,6 +15,8 @@
  */
 package me.jessyan.mvparms.demo.mvp.model.entity;
 
+import java.io.Serializable;
+
 /**
  * ================================================
  * User 实体类
@@ -24,7 +26,9 @@ package me.jessyan.mvparms.demo.mvp.model.entity;
  * <a href="https://github.com/JessYanCoding">Follow me</a>
  * ================================================
  */
-public class User {
+public class User implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
     private final int id;
     private final String login;
     private final String avatar_url;